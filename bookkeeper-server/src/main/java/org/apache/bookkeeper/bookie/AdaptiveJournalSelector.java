@@ -0,0 +1,220 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.net.BookieId;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Assigns ledgers to journals based on the journals load, instead of a fixed mapping.
+ *
+ * <p>A new ledger goes to the journal with the lowest load, which is estimated as the number of entries in the
+ * journal queue multiplied by the recent sync latency of the journal, so that a slow journal disk receives fewer
+ * ledgers.
+ *
+ * <p>All the adds of a ledger go to its journal, so that they're acknowledged in order and a force ledger on that
+ * journal covers all of them. A ledger is only moved to another journal when all its adds were acknowledged, it
+ * was not written for a while, and its journal is much more loaded than the least loaded one, so that the ledgers
+ * written continuously stay on their journal and don't log their master key again on each move. Ledgers with adds
+ * acknowledged before sync are never moved while they're in use, since their entries are only made durable by a
+ * force ledger on their journal.
+ */
+class AdaptiveJournalSelector {
+
+    // A ledger is only moved to a journal whose load is at most 1/REBALANCE_LOAD_RATIO of the current one
+    private static final long REBALANCE_LOAD_RATIO = 2;
+
+    // A ledger is only moved to another journal when it was not written for this time
+    @VisibleForTesting
+    static final long REBALANCE_IDLE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @VisibleForTesting
+    static final long IDLE_LEDGER_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final List<Journal> journals;
+    private final ConcurrentLongHashMap<LedgerJournal> ledgerJournals;
+    private final Counter reassignmentsCounter;
+    private final AtomicLong lastIdleLedgersCleanup = new AtomicLong(MathUtils.nowInNano());
+
+    /**
+     * The journal assigned to a ledger.
+     */
+    static final class LedgerJournal {
+        private Journal journal;
+        private int pendingAdds;
+        private boolean ackBeforeSync;
+        private boolean removed;
+        private long lastAddNanos;
+        // Whether the ledger master key was logged in the journal
+        private boolean masterKeyLogged;
+
+        LedgerJournal(Journal journal) {
+            this.journal = journal;
+            this.lastAddNanos = MathUtils.nowInNano();
+        }
+
+        synchronized Journal getJournal() {
+            return journal;
+        }
+
+        /**
+         * Check whether the ledger master key must be logged in the journal, before the entries, so that the
+         * journal can be replayed on its own. Following calls return false until the ledger moves to another
+         * journal.
+         */
+        synchronized boolean shouldLogMasterKey() {
+            boolean shouldLog = !masterKeyLogged;
+            masterKeyLogged = true;
+            return shouldLog;
+        }
+
+        /**
+         * Release an add that could not be submitted to the journal.
+         */
+        synchronized void cancelAdd() {
+            pendingAdds--;
+        }
+
+        /**
+         * Wrap the callback of an add, so that the ledger journal knows when the add is acknowledged.
+         */
+        WriteCallback trackAdd(WriteCallback cb) {
+            return (int rc, long ledgerId, long entryId, BookieId addr, Object ctx) -> {
+                synchronized (LedgerJournal.this) {
+                    pendingAdds--;
+                }
+                cb.writeComplete(rc, ledgerId, entryId, addr, ctx);
+            };
+        }
+    }
+
+    AdaptiveJournalSelector(List<Journal> journals, Counter reassignmentsCounter) {
+        this.journals = journals;
+        this.reassignmentsCounter = reassignmentsCounter;
+        this.ledgerJournals = ConcurrentLongHashMap.<LedgerJournal>newBuilder()
+                .expectedItems(1024)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                .build();
+    }
+
+    /**
+     * @return the journal currently assigned to the ledger
+     */
+    Journal getJournal(long ledgerId) {
+        return ledgerJournals.computeIfAbsent(ledgerId, id -> new LedgerJournal(leastLoadedJournal()))
+                .getJournal();
+    }
+
+    /**
+     * Select the journal for an add on the ledger, moving the ledger to a less loaded journal if it has no pending
+     * adds. Adds on the same ledger must not be started concurrently.
+     *
+     * <p>The callback of the add must be wrapped with {@link LedgerJournal#trackAdd(WriteCallback)}.
+     */
+    LedgerJournal startAdd(long ledgerId, boolean ackBeforeSync) {
+        return startAdd(ledgerId, ackBeforeSync, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    LedgerJournal startAdd(long ledgerId, boolean ackBeforeSync, long now) {
+        removeIdleLedgersIfNeeded(now);
+
+        while (true) {
+            LedgerJournal ledgerJournal = ledgerJournals.computeIfAbsent(ledgerId,
+                    id -> new LedgerJournal(leastLoadedJournal()));
+            synchronized (ledgerJournal) {
+                if (ledgerJournal.removed) {
+                    // The ledger was idle and got removed concurrently, assign it again
+                    continue;
+                }
+
+                if (ledgerJournal.pendingAdds == 0 && !ledgerJournal.ackBeforeSync
+                        && now - ledgerJournal.lastAddNanos > REBALANCE_IDLE_NANOS) {
+                    Journal leastLoaded = leastLoadedJournal();
+                    if (leastLoaded != ledgerJournal.journal
+                            && load(ledgerJournal.journal) > REBALANCE_LOAD_RATIO * load(leastLoaded)) {
+                        ledgerJournal.journal = leastLoaded;
+                        ledgerJournal.masterKeyLogged = false;
+                        reassignmentsCounter.inc();
+                    }
+                }
+
+                ledgerJournal.pendingAdds++;
+                ledgerJournal.ackBeforeSync |= ackBeforeSync;
+                ledgerJournal.lastAddNanos = now;
+                return ledgerJournal;
+            }
+        }
+    }
+
+    @VisibleForTesting
+    LedgerJournal getLedgerJournal(long ledgerId) {
+        return ledgerJournals.get(ledgerId);
+    }
+
+    private Journal leastLoadedJournal() {
+        Journal leastLoaded = journals.get(0);
+        long minLoad = load(leastLoaded);
+        for (int i = 1; i < journals.size(); i++) {
+            Journal journal = journals.get(i);
+            long load = load(journal);
+            if (load < minLoad) {
+                leastLoaded = journal;
+                minLoad = load;
+            }
+        }
+        return leastLoaded;
+    }
+
+    private static long load(Journal journal) {
+        return (journal.getQueueDepth() + 1L) * Math.max(1L, journal.getSyncLatencyEwmaNanos());
+    }
+
+    /**
+     * Forget the ledgers with no adds in progress that were not written recently. Their entries acknowledged
+     * before sync were made durable by the periodic journal syncs in the meantime.
+     */
+    private void removeIdleLedgersIfNeeded(long now) {
+        long lastCleanup = lastIdleLedgersCleanup.get();
+        if (now - lastCleanup < IDLE_LEDGER_TIMEOUT_NANOS
+                || !lastIdleLedgersCleanup.compareAndSet(lastCleanup, now)) {
+            return;
+        }
+
+        ledgerJournals.removeIf((ledgerId, ledgerJournal) -> {
+            synchronized (ledgerJournal) {
+                if (ledgerJournal.pendingAdds == 0 && now - ledgerJournal.lastAddNanos > IDLE_LEDGER_TIMEOUT_NANOS) {
+                    ledgerJournal.removed = true;
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+}
@@ -55,6 +55,8 @@ public interface BookKeeperServerStats {
     String READ_ENTRY = "READ_ENTRY";
     String READ_ENTRY_REJECTED = "READ_ENTRY_REJECTED";
     String READ_ENTRY_SCHEDULING_DELAY = "READ_ENTRY_SCHEDULING_DELAY";
+    String READ_ENTRY_TRAFFIC_CLASS_QUEUE_DELAY = "READ_ENTRY_TRAFFIC_CLASS_QUEUE_DELAY";
+    String READ_ENTRY_TRAFFIC_CLASS_IN_FLIGHT_BYTES = "READ_ENTRY_TRAFFIC_CLASS_IN_FLIGHT_BYTES";
     String READ_ENTRY_FENCE_REQUEST = "READ_ENTRY_FENCE_REQUEST";
     String READ_ENTRY_FENCE_WAIT = "READ_ENTRY_FENCE_WAIT";
     String READ_ENTRY_FENCE_READ = "READ_ENTRY_FENCE_READ";
@@ -98,6 +100,13 @@ public interface BookKeeperServerStats {
     String READ_ENTRY_BLOCKED = "READ_ENTRY_BLOCKED";
     String READ_ENTRY_BLOCKED_WAIT = "READ_ENTRY_BLOCKED_WAIT";
 
+    String TENANT_ADD_REQUESTS = "TENANT_ADD_REQUESTS";
+    String TENANT_ADD_BYTES = "TENANT_ADD_BYTES";
+    String TENANT_READ_REQUESTS = "TENANT_READ_REQUESTS";
+    String TENANT_READ_BYTES = "TENANT_READ_BYTES";
+    String TENANT_THROTTLED = "TENANT_THROTTLED";
+    String TENANT_THROTTLED_WAIT = "TENANT_THROTTLED_WAIT";
+
     //
     // Journal Stats (scoped under SERVER_SCOPE)
     //
@@ -117,6 +126,8 @@ public interface BookKeeperServerStats {
     String JOURNAL_CREATION_LATENCY = "JOURNAL_CREATION_LATENCY";
     String JOURNAL_MEMORY_MAX = "JOURNAL_MEMORY_MAX";
     String JOURNAL_MEMORY_USED = "JOURNAL_MEMORY_USED";
+    String JOURNAL_SYNC_LATENCY_EWMA = "JOURNAL_SYNC_LATENCY_EWMA";
+    String JOURNAL_LEDGER_REASSIGNMENTS = "JOURNAL_LEDGER_REASSIGNMENTS";
 
     // Ledger Storage Stats
     String STORAGE_GET_OFFSET = "STORAGE_GET_OFFSET";
@@ -142,6 +153,7 @@ public interface BookKeeperServerStats {
     // Ledger Cache Counters
     String LEDGER_CACHE_HIT = "LEDGER_CACHE_HIT";
     String LEDGER_CACHE_MISS = "LEDGER_CACHE_MISS";
+    String LEDGER_CACHE_HIT_RATIO = "LEDGER_CACHE_HIT_RATIO";
 
     // Compaction/Garbage Collection Related Counters
     String ACTIVE_ENTRY_LOG_COUNT = "ACTIVE_ENTRY_LOG_TOTAL";
@@ -158,6 +170,8 @@ public interface BookKeeperServerStats {
     // Index Related Counters
     String INDEX_INMEM_ILLEGAL_STATE_RESET = "INDEX_INMEM_ILLEGAL_STATE_RESET";
     String INDEX_INMEM_ILLEGAL_STATE_DELETE = "INDEX_INMEM_ILLEGAL_STATE_DELETE";
+    String INDEX_INMEM_PAGE_EVICTIONS = "INDEX_INMEM_PAGE_EVICTIONS";
+    String INDEX_INMEM_PAGE_EVICTION_SCANS = "INDEX_INMEM_PAGE_EVICTION_SCANS";
     String JOURNAL_FORCE_WRITE_QUEUE_SIZE = "JOURNAL_FORCE_WRITE_QUEUE_SIZE";
     String JOURNAL_NUM_FLUSH_EMPTY_QUEUE = "JOURNAL_NUM_FLUSH_EMPTY_QUEUE";
     String JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES = "JOURNAL_NUM_FLUSH_MAX_OUTSTANDING_BYTES";
@@ -20,6 +20,7 @@ package org.apache.bookkeeper.bookie;
 
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
+import java.util.List;
 import java.util.PrimitiveIterator;
 import java.util.concurrent.CompletableFuture;
 import org.apache.bookkeeper.common.util.Watcher;
@@ -57,6 +58,27 @@ public interface Bookie {
     // TODO: Shouldn't this be async?
     ByteBuf readEntry(long ledgerId, long entryId)
             throws IOException, NoLedgerException, BookieException;
+
+    /**
+     * Read an entry from the caches of the ledger storage, without blocking on the disk.
+     *
+     * @return the entry, or null if the entry is not in the caches
+     */
+    default ByteBuf readEntryIfCached(long ledgerId, long entryId)
+            throws IOException, NoLedgerException, BookieException {
+        return null;
+    }
+
+    /**
+     * Read consecutive entries of a ledger, up to a number of entries and a number of bytes. The reads stop at the
+     * first entry that can't be read, other than the first one.
+     *
+     * @param maxSize the max number of bytes of the entries, the first entry is read even if larger
+     * @return the entries, at least the first one. The caller must release them.
+     */
+    List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, NoLedgerException, BookieException;
+
     long readLastAddConfirmed(long ledgerId) throws IOException, BookieException;
     PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) throws IOException, NoLedgerException;
 
@@ -98,6 +98,8 @@ public class BookieImpl implements Bookie {
     final LedgerStorage ledgerStorage;
     final RegistrationManager registrationManager;
     final List<Journal> journals;
+    // Assigns ledgers to the least loaded journals, null when ledgers are mapped to journals by their id
+    private final AdaptiveJournalSelector journalSelector;
 
     final HandleFactory handles;
     final boolean entryLogPerLedgerEnabled;
@@ -495,6 +497,12 @@ public class BookieImpl implements Bookie {
 
         // Expose Stats
         this.bookieStats = new BookieStats(statsLogger, journalDirectories.size(), conf.getJournalQueueSize());
+
+        if (conf.isJournalAdaptiveStripingEnabled() && journals.size() > 1 && writeDataToJournal) {
+            this.journalSelector = new AdaptiveJournalSelector(journals, bookieStats.getJournalLedgerReassignments());
+        } else {
+            this.journalSelector = null;
+        }
     }
 
     @VisibleForTesting
@@ -937,6 +945,9 @@ public class BookieImpl implements Bookie {
     }
 
     private Journal getJournal(long ledgerId) {
+        if (journalSelector != null) {
+            return journalSelector.getJournal(ledgerId);
+        }
         return journals.get(MathUtils.signSafeMod(ledgerId, journals.size()));
     }
 
@@ -964,32 +975,60 @@ public class BookieImpl implements Bookie {
 
         // journal `addEntry` should happen after the entry is added to ledger storage.
         // otherwise the journal entry can potentially be rolled before the ledger is created in ledger storage.
-        if (masterKeyCache.get(ledgerId) == null) {
-            // Force the load into masterKey cache
-            byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
-            if (oldValue == null) {
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = null;
+        Journal journal;
+        boolean logMasterKey = false;
+        if (journalSelector != null) {
+            ledgerJournal = journalSelector.startAdd(ledgerId, ackBeforeSync);
+            journal = ledgerJournal.getJournal();
+            // The ledger might have moved to a journal that doesn't have its master key yet
+            logMasterKey = ledgerJournal.shouldLogMasterKey();
+        } else {
+            journal = getJournal(ledgerId);
+        }
+
+        try {
+            if (masterKeyCache.get(ledgerId) == null) {
+                // Force the load into masterKey cache
+                byte[] oldValue = masterKeyCache.putIfAbsent(ledgerId, masterKey);
+                if (oldValue == null) {
+                    logMasterKey = true;
+                }
+            }
+
+            if (logMasterKey) {
                 ByteBuf masterKeyEntry = createMasterKeyEntry(ledgerId, masterKey);
                 try {
-                    getJournal(ledgerId).logAddEntry(
+                    journal.logAddEntry(
                             masterKeyEntry, false /* ackBeforeSync */, new NopWriteCallback(), null);
                 } finally {
                     ReferenceCountUtil.release(masterKeyEntry);
                 }
             }
-        }
 
-        if (!writeDataToJournal) {
-            cb.writeComplete(0, ledgerId, entryId, null, ctx);
-            if (ctx instanceof BookieRequestHandler) {
-                ((BookieRequestHandler) ctx).flushPendingResponse();
+            if (!writeDataToJournal) {
+                cb.writeComplete(0, ledgerId, entryId, null, ctx);
+                if (ctx instanceof BookieRequestHandler) {
+                    ((BookieRequestHandler) ctx).flushPendingResponse();
+                }
+                return;
             }
-            return;
-        }
 
-        if (LOG.isTraceEnabled()) {
-            LOG.trace("Adding {}@{}", entryId, ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Adding {}@{}", entryId, ledgerId);
+            }
+            if (ledgerJournal != null) {
+                journal.logAddEntry(entry, ackBeforeSync, ledgerJournal.trackAdd(cb), ctx);
+                // The add is now tracked by its callback
+                ledgerJournal = null;
+            } else {
+                journal.logAddEntry(entry, ackBeforeSync, cb, ctx);
+            }
+        } finally {
+            if (ledgerJournal != null) {
+                ledgerJournal.cancelAdd();
+            }
         }
-        getJournal(ledgerId).logAddEntry(entry, ackBeforeSync, cb, ctx);
     }
 
     /**
@@ -1162,6 +1201,52 @@ public class BookieImpl implements Bookie {
         }
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        List<ByteBuf> entries = null;
+        try {
+            LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Reading {} entries from {}@{}", maxCount, firstEntryId, ledgerId);
+            }
+            entries = handle.readEntries(firstEntryId, maxCount, maxSize);
+            for (ByteBuf entry : entries) {
+                bookieStats.getReadBytes().addCount(entry.readableBytes());
+                bookieStats.getReadBytesStats().registerSuccessfulValue(entry.readableBytes());
+            }
+            return entries;
+        } finally {
+            long elapsedNanos = MathUtils.elapsedNanos(requestNanos);
+            if (entries != null) {
+                // One event per entry, as for the single entry reads, with the time of the batch split between them
+                long entryNanos = elapsedNanos / Math.max(1, entries.size());
+                for (int i = 0; i < entries.size(); i++) {
+                    bookieStats.getReadEntryStats().registerSuccessfulEvent(entryNanos, TimeUnit.NANOSECONDS);
+                }
+            } else {
+                bookieStats.getReadEntryStats().registerFailedEvent(elapsedNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    @Override
+    public ByteBuf readEntryIfCached(long ledgerId, long entryId)
+            throws IOException, NoLedgerException, BookieException {
+        long requestNanos = MathUtils.nowInNano();
+        LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
+        ByteBuf entry = handle.readEntryIfCached(entryId);
+        if (entry != null) {
+            int entrySize = entry.readableBytes();
+            bookieStats.getReadBytes().addCount(entrySize);
+            bookieStats.getReadEntryStats().registerSuccessfulEvent(MathUtils.elapsedNanos(requestNanos),
+                    TimeUnit.NANOSECONDS);
+            bookieStats.getReadBytesStats().registerSuccessfulValue(entrySize);
+        }
+        return entry;
+    }
+
     public long readLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         LedgerDescriptor handle = handles.getReadOnlyHandle(ledgerId);
         return handle.getLastAddConfirmed();
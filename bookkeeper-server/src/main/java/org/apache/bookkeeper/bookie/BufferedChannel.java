@@ -62,6 +62,8 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
      */
     protected final long unpersistedBytesBound;
     private final boolean doRegularFlushes;
+    // Whether the writes larger than the write buffer are written directly to the file channel
+    private final boolean writeThrough;
 
     /*
      * it tracks the number of bytes which are not persisted yet by force
@@ -86,6 +88,17 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
 
     public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
             long unpersistedBytesBound) throws IOException {
+        this(allocator, fc, writeCapacity, readCapacity, unpersistedBytesBound, false);
+    }
+
+    /**
+     * Create a buffered channel.
+     *
+     * @param writeThrough whether the writes of at least the write capacity skip the write buffer, and are written
+     *                     directly to the file channel after the buffered data, so that their content is not copied
+     */
+    public BufferedChannel(ByteBufAllocator allocator, FileChannel fc, int writeCapacity, int readCapacity,
+            long unpersistedBytesBound, boolean writeThrough) throws IOException {
         super(fc, readCapacity);
         this.writeCapacity = writeCapacity;
         this.position = fc.position();
@@ -94,6 +107,7 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         this.unpersistedBytes = new AtomicLong(0);
         this.unpersistedBytesBound = unpersistedBytesBound;
         this.doRegularFlushes = unpersistedBytesBound > 0;
+        this.writeThrough = writeThrough;
     }
 
     @Override
@@ -119,6 +133,12 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         boolean shouldForceWrite = false;
         synchronized (this) {
             int len = src.readableBytes();
+            if (writeThrough && len >= writeCapacity) {
+                // Large writes skip the write buffer, so that their content is not copied before being written
+                flush();
+                writeThrough(src);
+                copied = len;
+            }
             while (copied < len) {
                 int bytesToCopy = Math.min(src.readableBytes() - copied, writeBuffer.writableBytes());
                 writeBuffer.writeBytes(src, src.readerIndex() + copied, bytesToCopy);
@@ -204,6 +224,33 @@ public class BufferedChannel extends BufferedReadChannel implements Closeable {
         writeBufferStartPosition.set(fileChannel.position());
     }
 
+    /**
+     * Run the action once the data flushed so far is written to the file. {@link #flush()} writes the data itself,
+     * so the action is run right away.
+     */
+    public void whenFlushedWritten(Runnable action) {
+        action.run();
+    }
+
+    /**
+     * Extend the file with the zeros, at the given position, ahead of the writes.
+     */
+    public void preallocate(ByteBuffer zeros, long pos) throws IOException {
+        fileChannel.write(zeros, pos);
+    }
+
+    /**
+     * Write the data directly to the file channel, after the write buffer was flushed.
+     */
+    private void writeThrough(ByteBuf src) throws IOException {
+        ByteBuffer[] toWrite = src.nioBuffers(src.readerIndex(), src.readableBytes());
+        long remaining = src.readableBytes();
+        while (remaining > 0) {
+            remaining -= fileChannel.write(toWrite);
+        }
+        writeBufferStartPosition.set(fileChannel.position());
+    }
+
     /**
      * force a sync operation so that data is persisted to the disk.
      * @param forceMetadata
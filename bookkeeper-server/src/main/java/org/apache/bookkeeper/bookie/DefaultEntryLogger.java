@@ -223,6 +223,8 @@ public class DefaultEntryLogger implements EntryLogger {
 
     final EntryLoggerAllocator entryLoggerAllocator;
     private final EntryLogManager entryLogManager;
+    // Reads the sealed entry logs through mapped windows, null if disabled
+    private final EntryLogMmapReader mmapReader;
 
     private final CopyOnWriteArrayList<EntryLogListener> listeners = new CopyOnWriteArrayList<EntryLogListener>();
 
@@ -358,6 +360,17 @@ public class DefaultEntryLogger implements EntryLogger {
             this.entryLogManager = new EntryLogManagerForSingleEntryLog(conf, ledgerDirsManager, entryLoggerAllocator,
                     listeners, recentlyCreatedEntryLogsStatus);
         }
+        if (conf.isEntryLogMmapReadEnabled()) {
+            this.mmapReader = new EntryLogMmapReader(allocator, conf.getEntryLogMmapWindowSizeBytes(),
+                    conf.getEntryLogMmapMaxMappedBytes());
+        } else {
+            this.mmapReader = null;
+        }
+    }
+
+    @VisibleForTesting
+    EntryLogMmapReader getMmapReader() {
+        return mmapReader;
     }
 
     EntryLogManager getEntryLogManager() {
@@ -519,6 +532,9 @@ public class DefaultEntryLogger implements EntryLogger {
     @Override
     public boolean removeEntryLog(long entryLogId) {
         removeFromChannelsAndClose(entryLogId);
+        if (null != mmapReader) {
+            mmapReader.removeLog(entryLogId);
+        }
         File entryLogFile;
         try {
             entryLogFile = findFile(entryLogId);
@@ -848,6 +864,13 @@ public class DefaultEntryLogger implements EntryLogger {
         try {
             fc = getFCForEntryInternal(ledgerId, entryId, entryLogId, pos);
 
+            if (null != mmapReader && isSealedForMmap(entryLogId)) {
+                ByteBuf data = readMappedEntry(ledgerId, entryId, entryLogId, pos, fc, validateEntry);
+                if (null != data) {
+                    return data;
+                }
+            }
+
             ByteBuf sizeBuff = readEntrySize(ledgerId, entryId, entryLogId, pos, fc);
             entrySize = sizeBuff.getInt(0);
             if (validateEntry) {
@@ -871,6 +894,40 @@ public class DefaultEntryLogger implements EntryLogger {
         return data;
     }
 
+    /**
+     * Whether an entry log is sealed and flushed, and so can be read through mapped windows.
+     */
+    private boolean isSealedForMmap(long entryLogId) {
+        return entryLoggerAllocator.isSealed(entryLogId)
+                && null == entryLogManager.getCurrentLogIfPresent(entryLogId)
+                && recentlyCreatedEntryLogsStatus.isFlushedLogId(entryLogId);
+    }
+
+    /**
+     * Read an entry of a sealed entry log through the mapped window holding it.
+     *
+     * @return the entry, or null if the entry is not within one window of the log
+     */
+    private ByteBuf readMappedEntry(long ledgerId, long entryId, long entryLogId, long pos,
+                                    BufferedReadChannel fc, boolean validateEntry)
+            throws EntryLookupException, IOException {
+        // The size, the ledger id and the entry id of the entry
+        ByteBuf sizeBuff = mmapReader.read(entryLogId, fc.fileChannel, pos - 4, sizeBuffer.get().capacity());
+        if (null == sizeBuff) {
+            return null;
+        }
+        int entrySize;
+        try {
+            entrySize = sizeBuff.getInt(0);
+            if (validateEntry) {
+                validateEntry(ledgerId, entryId, entryLogId, pos, sizeBuff);
+            }
+        } finally {
+            ReferenceCountUtil.release(sizeBuff);
+        }
+        return mmapReader.read(entryLogId, fc.fileChannel, pos, entrySize);
+    }
+
     /**
      * Read the header of an entry log.
      */
@@ -1216,6 +1273,9 @@ public class DefaultEntryLogger implements EntryLogger {
                 IOUtils.close(LOG, compactionLogChannel);
             }
         }
+        if (null != mmapReader) {
+            mmapReader.close();
+        }
         // shutdown the pre-allocation thread
         entryLoggerAllocator.stop();
     }
@@ -0,0 +1,384 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link BufferedChannel} that appends to the file with O_DIRECT writes, submitted asynchronously.
+ *
+ * <p>{@link #flush()} copies the write buffer into an aligned native buffer and hands it to the write executor,
+ * without waiting for the write to complete, so that the caller can keep filling the next batch while up to
+ * {@code maxOutstandingWrites} batches are being written. {@link #forceWrite(boolean)} waits for the batches
+ * flushed before the call to be written and then syncs the file, while more batches can still be flushed by other
+ * threads. Since a flushed batch isn't written yet when {@link #flush()} returns, the actions that need the data in
+ * the file are registered with {@link #whenFlushedWritten(Runnable)}, and run by the writer thread.
+ *
+ * <p>All the writes of the file, including its preallocation, go through the O_DIRECT file descriptor, the file
+ * channel is only used to read.
+ *
+ * <p>Writes must start and end on aligned offsets, so each write starts from the beginning of the block holding the
+ * end of the previous write, and rewrites its tail. Since consecutive writes can overlap, they must be executed in
+ * order: the write executor has to be single-threaded.
+ *
+ * <p>This channel is meant for appending, reads are only served from the data that was already written.
+ */
+class DirectBufferedChannel extends BufferedChannel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(DirectBufferedChannel.class);
+
+    static final int ALIGNMENT = 4096;
+
+    private final NativeIO nativeIO;
+    private final String filename;
+    private final int fd;
+    private final Executor writeExecutor;
+
+    private final int maxOutstandingWrites;
+    private final BlockingQueue<AlignedBuffer> buffers;
+    private final AlignedBuffer[] allBuffers;
+
+    // Beginning of the block that holds the end of the last flushed write
+    private long blockStart;
+    // Data of the last flushed write that falls into its last block, it will be written again by the next write
+    private final ByteBuf tail;
+
+    // Position up to which the flushed data was written in the file
+    private long writtenPosition;
+    private IOException writeError;
+    // Actions to run once the data up to their position is written, in position order
+    private final ArrayDeque<WrittenAction> writtenActions = new ArrayDeque<>();
+    private final Object writeLock = new Object();
+
+    private boolean preallocateSupported = true;
+    private boolean closed = false;
+
+    private static final class AlignedBuffer {
+        final long pointer;
+        final ByteBuf buf;
+
+        AlignedBuffer(long pointer, ByteBuf buf) {
+            this.pointer = pointer;
+            this.buf = buf;
+        }
+    }
+
+    private static final class WrittenAction {
+        final long position;
+        final Runnable action;
+
+        WrittenAction(long position, Runnable action) {
+            this.position = position;
+            this.action = action;
+        }
+    }
+
+    DirectBufferedChannel(ByteBufAllocator allocator, File file, FileChannel fc, int capacity,
+                          NativeIO nativeIO, Executor writeExecutor, int maxOutstandingWrites) throws IOException {
+        super(allocator, fc, capacity);
+        this.nativeIO = nativeIO;
+        this.filename = file.getPath();
+        this.writeExecutor = writeExecutor;
+        this.maxOutstandingWrites = Math.max(1, maxOutstandingWrites);
+
+        this.blockStart = alignDown(position);
+        this.writtenPosition = position;
+        this.tail = allocator.directBuffer(ALIGNMENT, ALIGNMENT);
+        try {
+            // The existing data of the first block (eg: the journal header) gets written again with the first write
+            int tailSize = (int) (position - blockStart);
+            while (tail.readableBytes() < tailSize) {
+                int read = tail.writeBytes(fc, blockStart + tail.readableBytes(), tailSize - tail.readableBytes());
+                if (read <= 0) {
+                    throw new IOException("Short read on " + filename + " at position " + blockStart);
+                }
+            }
+
+            this.fd = nativeIO.open(filename, NativeIO.O_WRONLY | NativeIO.O_DIRECT, 00644);
+        } catch (IOException e) {
+            tail.release();
+            super.close();
+            throw e;
+        }
+
+        // A flush can hold a partial block of the previous write, followed by the whole write buffer
+        int alignedBufferSize = alignUp(ALIGNMENT + capacity);
+        this.buffers = new ArrayBlockingQueue<>(this.maxOutstandingWrites);
+        this.allBuffers = new AlignedBuffer[this.maxOutstandingWrites];
+        try {
+            for (int i = 0; i < this.maxOutstandingWrites; i++) {
+                long pointer = nativeIO.posix_memalign(ALIGNMENT, alignedBufferSize);
+                allBuffers[i] = new AlignedBuffer(pointer, Unpooled.wrappedBuffer(pointer, alignedBufferSize, false));
+                buffers.add(allBuffers[i]);
+            }
+        } catch (NativeIOException e) {
+            freeBuffers();
+            nativeIO.close(fd);
+            tail.release();
+            super.close();
+            throw new IOException("Failed to allocate write buffers for " + filename, e);
+        }
+    }
+
+    /**
+     * Submit the data in the write buffer to be written to the file. This doesn't wait for the write to complete,
+     * unless {@code maxOutstandingWrites} writes are already in progress.
+     */
+    @Override
+    public synchronized void flush() throws IOException {
+        int bytesToWrite = writeBuffer.readableBytes();
+        if (bytesToWrite == 0) {
+            return;
+        }
+        checkWriteError();
+
+        AlignedBuffer buffer = acquireBuffer();
+        ByteBuf buf = buffer.buf;
+        buf.clear();
+        buf.writeBytes(tail, tail.readerIndex(), tail.readableBytes());
+        buf.writeBytes(writeBuffer, writeBuffer.readerIndex(), bytesToWrite);
+        int alignedSize = alignUp(buf.writerIndex());
+        buf.writeZero(alignedSize - buf.writerIndex());
+
+        long offset = blockStart;
+        long endPosition = writeBufferStartPosition.get() + bytesToWrite;
+
+        blockStart = alignDown(endPosition);
+        tail.clear();
+        tail.writeBytes(buf, (int) (blockStart - offset), (int) (endPosition - blockStart));
+
+        writeBuffer.clear();
+        writeBufferStartPosition.set(endPosition);
+
+        try {
+            writeExecutor.execute(() -> write(buffer, alignedSize, offset, endPosition));
+        } catch (RejectedExecutionException e) {
+            buffers.add(buffer);
+            // The batch was taken out of the write buffer, the file would have a gap
+            IOException error = new IOException("Failed to submit the write of " + filename + " at offset "
+                    + offset, e);
+            synchronized (writeLock) {
+                writeError = error;
+                writtenActions.clear();
+                writeLock.notifyAll();
+            }
+            throw error;
+        }
+    }
+
+    /**
+     * Run the action once the data flushed so far is written to the file, on the writer thread. The action is
+     * never run if the write fails.
+     */
+    @Override
+    public void whenFlushedWritten(Runnable action) {
+        long flushedPosition = writeBufferStartPosition.get();
+        synchronized (writeLock) {
+            if (writeError != null) {
+                return;
+            }
+            if (writtenPosition < flushedPosition) {
+                writtenActions.add(new WrittenAction(flushedPosition, action));
+                return;
+            }
+        }
+        action.run();
+    }
+
+    /**
+     * Extend the file with fallocate on the O_DIRECT file descriptor, rather than writing the zeros through the
+     * page cache. Preallocation is skipped when the file system doesn't support it.
+     */
+    @Override
+    public synchronized void preallocate(ByteBuffer zeros, long pos) throws IOException {
+        if (!preallocateSupported) {
+            return;
+        }
+        try {
+            nativeIO.fallocate(fd, 0, pos, zeros.remaining());
+        } catch (NativeIOException e) {
+            preallocateSupported = false;
+            LOG.warn("Failed to preallocate {}, errno: {}, skipping preallocation", filename, e.getErrno());
+        }
+    }
+
+    /**
+     * Wait for all the data flushed so far to be written, and sync the file.
+     */
+    @Override
+    public long forceWrite(boolean forceMetadata) throws IOException {
+        long positionForceWrite = writeBufferStartPosition.get();
+        waitForWrites(positionForceWrite);
+
+        try {
+            nativeIO.fsync(fd);
+        } catch (NativeIOException e) {
+            throw new IOException("Failed to sync " + filename + " errno: " + e.getErrno(), e);
+        }
+        return positionForceWrite;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            flush();
+        } finally {
+            // Wait for all the outstanding writes to give their buffers back before freeing them, even if the
+            // thread is interrupted, since the writes are still using them
+            for (int i = 0; i < maxOutstandingWrites; i++) {
+                Uninterruptibles.takeUninterruptibly(buffers);
+            }
+            freeBuffers();
+            tail.release();
+            try {
+                nativeIO.close(fd);
+            } finally {
+                super.close();
+            }
+        }
+        checkWriteError();
+    }
+
+    private void write(AlignedBuffer buffer, int size, long offset, long endPosition) {
+        try {
+            synchronized (writeLock) {
+                if (writeError != null) {
+                    // A previous write failed, the file has a gap that cannot be filled anymore
+                    return;
+                }
+            }
+
+            IOException error = null;
+            try {
+                int written = nativeIO.pwrite(fd, buffer.pointer, size, offset);
+                if (written != size) {
+                    error = new IOException("Incomplete write on " + filename + " at offset " + offset
+                            + ": " + written + " of " + size + " bytes written");
+                }
+            } catch (NativeIOException e) {
+                error = new IOException("Failed to write " + filename + " at offset " + offset
+                        + " errno: " + e.getErrno(), e);
+            }
+
+            ArrayDeque<WrittenAction> actionsToRun = null;
+            synchronized (writeLock) {
+                if (error != null) {
+                    writeError = error;
+                    writtenActions.clear();
+                } else {
+                    writtenPosition = endPosition;
+                    while (!writtenActions.isEmpty() && writtenActions.peek().position <= endPosition) {
+                        if (actionsToRun == null) {
+                            actionsToRun = new ArrayDeque<>();
+                        }
+                        actionsToRun.add(writtenActions.poll());
+                    }
+                }
+                writeLock.notifyAll();
+            }
+
+            if (actionsToRun != null) {
+                for (WrittenAction writtenAction : actionsToRun) {
+                    try {
+                        writtenAction.action.run();
+                    } catch (Throwable t) {
+                        LOG.error("Failed to run the action after the write of {} at offset {}", filename, offset, t);
+                    }
+                }
+            }
+        } finally {
+            buffers.add(buffer);
+        }
+    }
+
+    private void waitForWrites(long position) throws IOException {
+        synchronized (writeLock) {
+            while (writtenPosition < position && writeError == null) {
+                try {
+                    writeLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for writes on " + filename, e);
+                }
+            }
+        }
+        checkWriteError();
+    }
+
+    private void checkWriteError() throws IOException {
+        synchronized (writeLock) {
+            if (writeError != null) {
+                throw writeError;
+            }
+        }
+    }
+
+    private AlignedBuffer acquireBuffer() throws IOException {
+        try {
+            return buffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a write buffer on " + filename, e);
+        }
+    }
+
+    private void freeBuffers() {
+        for (AlignedBuffer buffer : allBuffers) {
+            if (buffer != null) {
+                try {
+                    nativeIO.free(buffer.pointer);
+                } catch (NativeIOException e) {
+                    // Nothing else we can do, the memory is leaked
+                }
+            }
+        }
+    }
+
+    private static long alignDown(long position) {
+        return position & ~((long) ALIGNMENT - 1);
+    }
+
+    private static int alignUp(int size) {
+        return (size + ALIGNMENT - 1) & ~(ALIGNMENT - 1);
+    }
+}
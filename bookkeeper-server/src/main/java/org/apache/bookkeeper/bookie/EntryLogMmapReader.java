@@ -0,0 +1,272 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.IllegalReferenceCountException;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.internal.PlatformDependent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the sealed entry logs through memory mapped windows of the log files.
+ *
+ * <p>The sealed entry logs are immutable, so the bytes read are returned as slices of the mapped windows, without
+ * a read syscall nor a copy. Each window maps a fixed size region of a log file. The windows are unmapped in the
+ * order they were mapped once the mapped bytes go over the limit, and when their log is removed, but only after
+ * all the buffers read from them are released.
+ */
+class EntryLogMmapReader {
+    private static final Logger LOG = LoggerFactory.getLogger(EntryLogMmapReader.class);
+
+    private final ByteBufAllocator allocator;
+    private final int windowSize;
+    private final long maxMappedBytes;
+
+    private final ConcurrentLongHashMap<MappedLog> mappedLogs;
+    // Windows in the order they were mapped, to unmap the oldest ones first
+    private final ConcurrentLinkedQueue<Window> mappedWindows = new ConcurrentLinkedQueue<>();
+    private final AtomicLong mappedBytes = new AtomicLong(0);
+
+    EntryLogMmapReader(ByteBufAllocator allocator, long windowSize, long maxMappedBytes) {
+        this.allocator = allocator;
+        this.windowSize = (int) Math.max(4096, Math.min(windowSize, Integer.MAX_VALUE));
+        this.maxMappedBytes = maxMappedBytes;
+        this.mappedLogs = ConcurrentLongHashMap.<MappedLog>newBuilder().build();
+    }
+
+    /**
+     * Read bytes of a sealed entry log.
+     *
+     * @param logId the id of the entry log
+     * @param fileChannel the file channel of the entry log, to map the window of the bytes if it isn't mapped
+     * @param pos the position of the bytes in the entry log
+     * @param length the number of bytes
+     * @return a buffer holding the bytes, or null if the bytes are not all within one window of the log
+     */
+    ByteBuf read(long logId, FileChannel fileChannel, long pos, int length) throws IOException {
+        if (pos < 0 || length < 0) {
+            return null;
+        }
+        int index = (int) (pos / windowSize);
+        int offset = (int) (pos % windowSize);
+        if (offset + (long) length > windowSize) {
+            return null;
+        }
+        Window window = getWindow(logId, fileChannel, index);
+        if (window == null) {
+            return null;
+        }
+        if (offset + length > window.buffer.capacity()) {
+            window.release();
+            return null;
+        }
+        ByteBuffer slice = window.buffer.duplicate();
+        slice.position(offset);
+        slice.limit(offset + length);
+        // The window is released when the buffer is released
+        return new MappedByteBuf(allocator, window, Unpooled.wrappedBuffer(slice.slice()));
+    }
+
+    /**
+     * Get a window of a log, mapping it if needed.
+     *
+     * @return the window, retained for the caller, or null if the window is beyond the end of the log
+     */
+    private Window getWindow(long logId, FileChannel fileChannel, int index) throws IOException {
+        MappedLog mappedLog = mappedLogs.get(logId);
+        if (mappedLog == null) {
+            // Sealed logs don't grow, the windows cover the size of the log when it is first read
+            long logSize = fileChannel.size();
+            mappedLog = mappedLogs.computeIfAbsent(logId, id -> new MappedLog(logSize, windowSize));
+        }
+        if (index >= mappedLog.windows.length()) {
+            return null;
+        }
+        Window window = mappedLog.windows.get(index);
+        if (window != null && tryRetain(window)) {
+            if (mappedLog.windows.get(index) == window) {
+                return window;
+            }
+            window.release();
+        }
+
+        Window newWindow;
+        synchronized (mappedLog) {
+            window = mappedLog.windows.get(index);
+            if (window != null && tryRetain(window)) {
+                return window;
+            }
+            long start = (long) index * windowSize;
+            long size = Math.min(windowSize, fileChannel.size() - start);
+            if (size <= 0) {
+                return null;
+            }
+            MappedByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            newWindow = new Window(mappedLog, index, buffer);
+            // One reference for the log, one for the caller
+            newWindow.retain();
+            mappedLog.windows.set(index, newWindow);
+        }
+        mappedWindows.add(newWindow);
+        mappedBytes.addAndGet(newWindow.buffer.capacity());
+        if (mappedLogs.get(logId) != mappedLog) {
+            // The log was removed meanwhile
+            unmapWindow(newWindow);
+        } else if (mappedBytes.get() > maxMappedBytes) {
+            unmapOldestWindows();
+        }
+        return newWindow;
+    }
+
+    private static boolean tryRetain(Window window) {
+        try {
+            window.retain();
+            return true;
+        } catch (IllegalReferenceCountException e) {
+            // The window was unmapped meanwhile
+            return false;
+        }
+    }
+
+    private void unmapOldestWindows() {
+        Window window;
+        while (mappedBytes.get() > maxMappedBytes && (window = mappedWindows.poll()) != null) {
+            unmapWindow(window);
+        }
+    }
+
+    private void unmapWindow(Window window) {
+        if (window.mappedLog.windows.compareAndSet(window.index, window, null)) {
+            mappedBytes.addAndGet(-window.buffer.capacity());
+            window.release();
+        }
+    }
+
+    /**
+     * Unmap the windows of a log, once the buffers read from them are released.
+     *
+     * @param logId the id of the entry log
+     */
+    void removeLog(long logId) {
+        MappedLog mappedLog = mappedLogs.remove(logId);
+        if (mappedLog == null) {
+            return;
+        }
+        mappedWindows.removeIf(window -> window.mappedLog == mappedLog);
+        synchronized (mappedLog) {
+            for (int i = 0; i < mappedLog.windows.length(); i++) {
+                Window window = mappedLog.windows.get(i);
+                if (window != null) {
+                    unmapWindow(window);
+                }
+            }
+        }
+    }
+
+    /**
+     * Unmap the windows of all the logs, once the buffers read from them are released.
+     */
+    void close() {
+        for (long logId : mappedLogs.keys()) {
+            removeLog(logId);
+        }
+    }
+
+    @VisibleForTesting
+    long getMappedBytes() {
+        return mappedBytes.get();
+    }
+
+    @VisibleForTesting
+    boolean isMapped(long logId, int index) {
+        MappedLog mappedLog = mappedLogs.get(logId);
+        return mappedLog != null && index < mappedLog.windows.length() && mappedLog.windows.get(index) != null;
+    }
+
+    private static class MappedLog {
+        private final AtomicReferenceArray<Window> windows;
+
+        MappedLog(long logSize, int windowSize) {
+            this.windows = new AtomicReferenceArray<>((int) ((logSize + windowSize - 1) / windowSize));
+        }
+    }
+
+    private static class Window extends AbstractReferenceCounted {
+        private final MappedLog mappedLog;
+        private final int index;
+        private final MappedByteBuffer buffer;
+
+        Window(MappedLog mappedLog, int index, MappedByteBuffer buffer) {
+            this.mappedLog = mappedLog;
+            this.index = index;
+            this.buffer = buffer;
+        }
+
+        @Override
+        protected void deallocate() {
+            try {
+                PlatformDependent.freeDirectBuffer(buffer);
+            } catch (Throwable t) {
+                // Left to the garbage collector
+                LOG.warn("Failed to unmap entry log window", t);
+            }
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+    }
+
+    /**
+     * Buffer holding bytes of a mapped window, releasing the window when released.
+     */
+    private static class MappedByteBuf extends CompositeByteBuf {
+        private final Window window;
+
+        MappedByteBuf(ByteBufAllocator allocator, Window window, ByteBuf slice) {
+            super(allocator, true, 1, slice);
+            this.window = window;
+        }
+
+        @Override
+        protected void deallocate() {
+            super.deallocate();
+            window.release();
+        }
+    }
+}
@@ -19,6 +19,7 @@
 
 package org.apache.bookkeeper.bookie;
 
+import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Iterator;
@@ -317,8 +318,7 @@ public class EntryMemTable implements AutoCloseable{
 
             this.lock.readLock().lock();
             try {
-                EntryKeyValue toAdd = cloneWithAllocator(ledgerId, entryId, entry);
-                size = internalAdd(toAdd);
+                size = putEntry(ledgerId, entryId, entry);
                 if (size == 0) {
                     skipListSemaphore.release(len);
                 }
@@ -338,6 +338,17 @@ public class EntryMemTable implements AutoCloseable{
         }
     }
 
+    /**
+     * Add the entry to the memtable, if not already there.
+     * Callers should ensure they already have the read lock taken.
+     *
+     * @return the size of the entry, or 0 if the entry was already there
+     */
+    long putEntry(long ledgerId, long entryId, final ByteBuffer entry) throws IOException {
+        EntryKeyValue toAdd = cloneWithAllocator(ledgerId, entryId, entry);
+        return internalAdd(toAdd);
+    }
+
     /**
     * Internal version of add() that doesn't clone KVs with the
     * allocator, and doesn't take the lock.
@@ -442,6 +453,34 @@ public class EntryMemTable implements AutoCloseable{
         return (EntryKeyValue) result;
     }
 
+    /**
+     * Find the entry with given key.
+     * @param ledgerId
+     * @param entryId
+     * @return the entry or null if none found.
+     */
+    ByteBuf getEntryBuffer(long ledgerId, long entryId) throws IOException {
+        EntryKeyValue kv = getEntry(ledgerId, entryId);
+        return null == kv ? null : kv.getValueAsByteBuffer();
+    }
+
+    /**
+     * Find the last entry with the given ledger key.
+     * @param ledgerId
+     * @return the entry or null if none found.
+     */
+    ByteBuf getLastEntryBuffer(long ledgerId) throws IOException {
+        EntryKeyValue kv = getLastEntry(ledgerId);
+        return null == kv ? null : kv.getValueAsByteBuffer();
+    }
+
+    /**
+     * Check if there are entries of the given ledger in the mem-table.
+     */
+    boolean containsLedger(long ledgerId) throws IOException {
+        return null != getLastEntry(ledgerId);
+    }
+
     /**
      * Check if the entire heap usage for this EntryMemTable exceeds limit.
      */
@@ -22,59 +22,67 @@ package org.apache.bookkeeper.bookie;
 
 import static java.lang.Long.max;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_CACHE_HIT;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_CACHE_HIT_RATIO;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_CACHE_MISS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.LEDGER_CACHE_READ_PAGE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.NUM_INDEX_PAGES;
 
 // CHECKSTYLE.OFF: IllegalImport
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import io.netty.util.internal.PlatformDependent;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import org.apache.bookkeeper.bookie.stats.IndexInMemPageMgrStats;
+import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 // CHECKSTYLE.ON: IllegalImport
 
 class IndexInMemPageMgr {
     private static final Logger LOG = LoggerFactory.getLogger(IndexInMemPageMgr.class);
-    private static final ConcurrentHashMap<Long, LedgerEntryPage> EMPTY_PAGE_MAP =
-            new ConcurrentHashMap<Long, LedgerEntryPage>();
 
     private static class InMemPageCollection implements LEPStateChangeCallback {
 
-        final ConcurrentMap<Long, ConcurrentMap<Long, LedgerEntryPage>> pages;
-        final Map<EntryKey, LedgerEntryPage> lruCleanPageMap;
+        // ledgerId -> (firstEntry -> page)
+        final ConcurrentLongHashMap<ConcurrentLongHashMap<LedgerEntryPage>> pages;
         final ConcurrentLinkedQueue<LedgerEntryPage> listOfFreePages;
 
+        // All the pages allocated, swept by the clock hand to find the clean pages to evict
+        private volatile LedgerEntryPage[] allocatedPages = new LedgerEntryPage[64];
+        private volatile int numAllocatedPages = 0;
+        private final AtomicInteger clockHand = new AtomicInteger(0);
+
         // Stats
         private final IndexInMemPageMgrStats inMemPageMgrStats;
 
         public InMemPageCollection(StatsLogger statsLogger) {
-            pages = new ConcurrentHashMap<>();
-            lruCleanPageMap =
-                    Collections.synchronizedMap(new LinkedHashMap<EntryKey, LedgerEntryPage>(16, 0.75f, true));
+            pages = ConcurrentLongHashMap.<ConcurrentLongHashMap<LedgerEntryPage>>newBuilder().build();
             listOfFreePages = new ConcurrentLinkedQueue<LedgerEntryPage>();
             inMemPageMgrStats = new IndexInMemPageMgrStats(statsLogger);
         }
 
+        private static ConcurrentLongHashMap<LedgerEntryPage> newLedgerPageMap() {
+            return ConcurrentLongHashMap.<LedgerEntryPage>newBuilder()
+                    .expectedItems(16)
+                    .concurrencyLevel(4)
+                    .build();
+        }
+
         /**
          * Retrieve the LedgerEntryPage corresponding to the ledger and firstEntry.
          *
@@ -83,7 +91,7 @@ class IndexInMemPageMgr {
          * @returns LedgerEntryPage if present
          */
         private LedgerEntryPage getPage(long ledgerId, long firstEntry) {
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(ledgerId);
             if (null != map) {
                 return map.get(firstEntry);
             }
@@ -96,24 +104,29 @@ class IndexInMemPageMgr {
          * @param lep Ledger Entry Page object
          */
         private LedgerEntryPage putPage(LedgerEntryPage lep) {
-            // Do a get here to avoid too many new ConcurrentHashMaps() as putIntoTable is called frequently.
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(lep.getLedger());
-            if (null == map) {
-                ConcurrentMap<Long, LedgerEntryPage> mapToPut = new ConcurrentHashMap<Long, LedgerEntryPage>();
-                map = pages.putIfAbsent(lep.getLedger(), mapToPut);
-                if (null == map) {
-                    map = mapToPut;
+            while (true) {
+                ConcurrentLongHashMap<LedgerEntryPage> map =
+                        pages.computeIfAbsent(lep.getLedger(), ledgerId -> newLedgerPageMap());
+                LedgerEntryPage oldPage = map.putIfAbsent(lep.getFirstEntry(), lep);
+                if (null != oldPage) {
+                    return oldPage;
                 }
+                if (pages.get(lep.getLedger()) == map) {
+                    return lep;
+                }
+                // The map of the ledger was removed when its last page was evicted, try again with a new map
+                map.remove(lep.getFirstEntry(), lep);
             }
-            LedgerEntryPage oldPage = map.putIfAbsent(lep.getFirstEntry(), lep);
-            if (null == oldPage) {
-                oldPage = lep;
-                // Also include this in the clean page map if it qualifies.
-                // Note: This is done for symmetry and correctness, however it should never
-                // get exercised since we shouldn't attempt a put without the page being in use
-                addToCleanPagesList(lep);
+        }
+
+        /**
+         * Remove a LedgerEntryPage from the page map, if it is still there.
+         */
+        private void removePage(long ledgerId, long firstEntry, LedgerEntryPage lep) {
+            ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(ledgerId);
+            if (null != map && map.remove(firstEntry, lep) && map.isEmpty()) {
+                pages.remove(ledgerId, map);
             }
-            return oldPage;
         }
 
         /**
@@ -125,16 +138,18 @@ class IndexInMemPageMgr {
         private long getLastEntryInMem(long ledgerId) {
             long lastEntry = 0;
             // Find the last entry in the cache
-            ConcurrentMap<Long, LedgerEntryPage> map = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> map = pages.get(ledgerId);
             if (map != null) {
                 for (LedgerEntryPage lep: map.values()) {
                     if (lep.getMaxPossibleEntry() < lastEntry) {
                         continue;
                     }
                     lep.usePage();
-                    long highest = lep.getLastEntry();
-                    if (highest > lastEntry) {
-                        lastEntry = highest;
+                    if (lep.getLedger() == ledgerId) {
+                        long highest = lep.getLastEntry();
+                        if (highest > lastEntry) {
+                            lastEntry = highest;
+                        }
                     }
                     lep.releasePage();
                 }
@@ -150,12 +165,14 @@ class IndexInMemPageMgr {
          */
         private void removeEntriesForALedger(long ledgerId) {
             // remove pages first to avoid page flushed when deleting file info
-            ConcurrentMap<Long, LedgerEntryPage> lPages = pages.remove(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> lPages = pages.remove(ledgerId);
             if (null != lPages) {
-                for (Map.Entry<Long, LedgerEntryPage> pageEntry: lPages.entrySet()) {
-                    LedgerEntryPage lep = pageEntry.getValue();
+                for (LedgerEntryPage lep: lPages.values()) {
                     lep.usePage();
-                    lep.markDeleted();
+                    // The page may have been evicted meanwhile
+                    if (lep.getLedger() == ledgerId) {
+                        lep.markDeleted();
+                    }
                     lep.releasePage();
                 }
             }
@@ -169,126 +186,105 @@ class IndexInMemPageMgr {
          * @returns last entry in the in memory pages.
          */
         private LinkedList<Long> getFirstEntryListToBeFlushed(long ledgerId) {
-            ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(ledgerId);
+            ConcurrentLongHashMap<LedgerEntryPage> pageMap = pages.get(ledgerId);
             if (pageMap == null || pageMap.isEmpty()) {
                 return null;
             }
 
             LinkedList<Long> firstEntryList = new LinkedList<Long>();
-            for (ConcurrentMap.Entry<Long, LedgerEntryPage> entry: pageMap.entrySet()) {
-                LedgerEntryPage lep = entry.getValue();
+            pageMap.forEach((firstEntry, lep) -> {
                 if (lep.isClean()) {
-                    if (!lep.inUse()) {
-                        addToCleanPagesList(lep);
-                    }
                     if (LOG.isTraceEnabled()) {
                         LOG.trace("Page is clean " + lep);
                     }
                 } else {
-                    firstEntryList.add(lep.getFirstEntry());
+                    firstEntryList.add(firstEntry);
                 }
-            }
+            });
             return firstEntryList;
         }
 
         /**
-         * Add the LedgerEntryPage to the clean page LRU map.
+         * Get the set of active ledgers.
          *
-         * @param lep Ledger Entry Page object
          */
-        private void addToCleanPagesList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (lep.isClean() && !lep.inUse()) {
-                    lruCleanPageMap.put(lep.getEntryKey(), lep);
-                }
-            }
+        List<Long> getActiveLedgers() {
+            return pages.keys();
         }
 
         /**
-         * Remove the LedgerEntryPage from the clean page LRU map.
-         *
-         * @param lep Ledger Entry Page object
+         * Keep track of a newly allocated page, for the clock hand to sweep it.
          */
-        private void removeFromCleanPageList(LedgerEntryPage lep) {
-            synchronized (lruCleanPageMap) {
-                if (!lep.isClean() || lep.inUse()) {
-                    lruCleanPageMap.remove(lep.getEntryKey());
-                }
+        synchronized void addAllocatedPage(LedgerEntryPage lep) {
+            LedgerEntryPage[] currentPages = allocatedPages;
+            if (numAllocatedPages == currentPages.length) {
+                currentPages = Arrays.copyOf(currentPages, currentPages.length * 2);
             }
-        }
-
-        /**
-         * Get the set of active ledgers.
-         *
-         */
-        Set<Long> getActiveLedgers() {
-            return pages.keySet();
+            currentPages[numAllocatedPages] = lep;
+            allocatedPages = currentPages;
+            numAllocatedPages++;
         }
 
         /**
          * Get a clean page and provision it for the specified ledger and firstEntry within the ledger.
          *
+         * <p>The free pages of the deleted ledgers are taken first. Otherwise, the clock hand sweeps the allocated
+         * pages and evicts the first clean page that is not in use and was not used since the previous sweep: the
+         * pages used meanwhile get a second chance.
+         *
          * @param ledgerId Ledger id
          * @param firstEntry Id of the first entry in the page
          * @returns LedgerEntryPage if present
          */
         LedgerEntryPage grabCleanPage(long ledgerId, long firstEntry) {
-            LedgerEntryPage lep = listOfFreePages.poll();
-            if (null != lep) {
-                lep.resetPage();
-                lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
-                lep.usePage();
+            LedgerEntryPage lep;
+            while (null != (lep = listOfFreePages.poll())) {
+                if (!lep.tryUsePage()) {
+                    // Still used, it is added back to the free pages once released
+                    continue;
+                }
+                if (!lep.isDeleted()) {
+                    // Already reused from an earlier copy in the list
+                    lep.releasePageNoCallback();
+                    continue;
+                }
+                lep.reusePage(ledgerId, firstEntry);
                 return lep;
             }
-            while (lruCleanPageMap.size() > 0) {
-                lep = null;
-                synchronized (lruCleanPageMap) {
-                    Iterator<Map.Entry<EntryKey, LedgerEntryPage>> iterator = lruCleanPageMap.entrySet().iterator();
-
-                    Map.Entry<EntryKey, LedgerEntryPage> entry = null;
-                    while (iterator.hasNext()) {
-                        entry = iterator.next();
-                        iterator.remove();
-                        if (entry.getValue().isClean() && !entry.getValue().inUse()) {
-                            lep = entry.getValue();
-                            break;
-                        }
-                    }
 
-                    if (null == lep) {
-                        if (LOG.isDebugEnabled()) {
-                            LOG.debug("Did not find eligible page in the first pass");
-                        }
-                        return null;
-                    }
+            LedgerEntryPage[] candidates = allocatedPages;
+            int numPages = Math.min(numAllocatedPages, candidates.length);
+            if (numPages == 0) {
+                return null;
+            }
+            // Two sweeps: the first one may only clear the reference bits
+            for (int i = 0; i < 2 * numPages; i++) {
+                lep = candidates[(clockHand.getAndIncrement() & Integer.MAX_VALUE) % numPages];
+                inMemPageMgrStats.getEvictionScanCounter().inc();
+                if (null == lep || lep.isDeleted() || !lep.isClean() || lep.inUse() || lep.clearReferenced()) {
+                    continue;
                 }
-
-                // We found a candidate page, lets see if we can reclaim it before its re-used
-                ConcurrentMap<Long, LedgerEntryPage> pageMap = pages.get(lep.getLedger());
-                // Remove from map only if nothing has changed since we checked this lep.
-                // Its possible for the ledger to have been deleted or the page to have already
-                // been reclaimed. The page map is the definitive source of information, if anything
-                // has changed we should leave this page along and continue iterating to find
-                // another suitable page.
-                if ((null != pageMap) && (pageMap.remove(lep.getFirstEntry(), lep))) {
-                    if (!lep.isClean()) {
-                        // Someone wrote to this page while we were reclaiming it.
-                        pageMap.put(lep.getFirstEntry(), lep);
-                        lep = null;
-                    } else {
-                        // Do some bookkeeping on the page table
-                        pages.remove(lep.getLedger(), EMPTY_PAGE_MAP);
-                        // We can now safely reset this lep and return it.
-                        lep.usePage();
-                        lep.zeroPage();
-                        lep.setLedgerAndFirstEntry(ledgerId, firstEntry);
-                        return lep;
-                    }
-                } else {
-                    lep = null;
+                if (!lep.tryUsePage()) {
+                    continue;
                 }
+                // Detach the page from its ledger before checking that nobody started to use it, so that the
+                // users coming after the check find out that the page is not theirs anymore
+                EntryKey key = lep.getEntryKey();
+                lep.invalidateEntryKey();
+                if (lep.getUseCount() != 1 || !lep.isClean() || lep.isDeleted()) {
+                    lep.setEntryKey(key);
+                    lep.releasePageNoCallback();
+                    continue;
+                }
+                removePage(key.getLedgerId(), key.getEntryId(), lep);
+                lep.reusePage(ledgerId, firstEntry);
+                inMemPageMgrStats.getEvictionCounter().inc();
+                return lep;
             }
-            return lep;
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Did not find eligible page in two sweeps");
+            }
+            return null;
         }
 
         public void addToListOfFreePages(LedgerEntryPage lep) {
@@ -302,26 +298,24 @@ class IndexInMemPageMgr {
 
         @Override
         public void onSetInUse(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
+            // The clock hand skips the pages in use
         }
 
         @Override
         public void onResetInUse(LedgerEntryPage lep) {
-            if (!lep.isDeleted()) {
-                addToCleanPagesList(lep);
-            } else {
+            if (lep.isDeleted()) {
                 addToListOfFreePages(lep);
             }
         }
 
         @Override
         public void onSetClean(LedgerEntryPage lep) {
-            addToCleanPagesList(lep);
+            // The clock hand evicts the clean pages
         }
 
         @Override
         public void onSetDirty(LedgerEntryPage lep) {
-            removeFromCleanPageList(lep);
+            // The clock hand skips the dirty pages
         }
     }
 
@@ -341,6 +335,7 @@ class IndexInMemPageMgr {
     private final Counter ledgerCacheHitCounter;
     private final Counter ledgerCacheMissCounter;
     private final OpStatsLogger ledgerCacheReadPageStats;
+    private final HitRatio ledgerCacheHitRatio = new HitRatio();
 
     public IndexInMemPageMgr(int pageSize,
                              int entriesPerPage,
@@ -380,6 +375,63 @@ class IndexInMemPageMgr {
                     }
                 }
         );
+        statsLogger.registerGauge(
+                LEDGER_CACHE_HIT_RATIO,
+                new Gauge<Double>() {
+                    @Override
+                    public Double getDefaultValue() {
+                        return 0.0;
+                    }
+                    @Override
+                    public Double getSample() {
+                        return ledgerCacheHitRatio.getRatio(MathUtils.nowInNano());
+                    }
+                }
+        );
+    }
+
+    /**
+     * Hit ratio of the ledger cache over a sliding window of one to two periods.
+     *
+     * <p>The hits and misses are cumulative, and the ratio is computed from a snapshot of them taken at the start
+     * of the previous period, so that reading the ratio does not change it, whoever reads it and how often.
+     */
+    @VisibleForTesting
+    static final class HitRatio {
+        static final long PERIOD_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+
+        // Snapshots of the hits and misses at the start of the previous and of the current period
+        private long previousHits;
+        private long previousMisses;
+        private long currentHits;
+        private long currentMisses;
+        private long currentStartNanos = MathUtils.nowInNano();
+
+        void recordHit() {
+            hits.increment();
+        }
+
+        void recordMiss() {
+            misses.increment();
+        }
+
+        synchronized double getRatio(long nowNanos) {
+            long totalHits = hits.sum();
+            long totalMisses = misses.sum();
+            if (nowNanos - currentStartNanos >= PERIOD_NANOS) {
+                previousHits = currentHits;
+                previousMisses = currentMisses;
+                currentHits = totalHits;
+                currentMisses = totalMisses;
+                currentStartNanos = nowNanos;
+            }
+            long windowHits = totalHits - previousHits;
+            long windowLookups = windowHits + totalMisses - previousMisses;
+            return windowLookups == 0 ? 0.0 : (double) windowHits / windowLookups;
+        }
     }
 
     /**
@@ -411,9 +463,11 @@ class IndexInMemPageMgr {
         LedgerEntryPage lep = getLedgerEntryPageFromCache(ledger, pageEntry, false);
         if (lep == null) {
             ledgerCacheMissCounter.inc();
+            ledgerCacheHitRatio.recordMiss();
             lep = grabLedgerEntryPage(ledger, pageEntry);
         } else {
             ledgerCacheHitCounter.inc();
+            ledgerCacheHitRatio.recordHit();
         }
         return lep;
     }
@@ -427,6 +481,11 @@ class IndexInMemPageMgr {
         }
         if (null != lep) {
             lep.usePage();
+            // The page may have been evicted and reused for another ledger meanwhile
+            if (!lep.hasEntryKey(ledger, firstEntry)) {
+                lep.releasePage();
+                return null;
+            }
         }
         return lep;
     }
@@ -440,38 +499,55 @@ class IndexInMemPageMgr {
      * @param pageEntry Start entry of this entry page.
      */
     private LedgerEntryPage grabLedgerEntryPage(long ledger, long pageEntry) throws IOException {
-        LedgerEntryPage lep = grabCleanPage(ledger, pageEntry);
-        try {
-            // should get the up to date page from the persistence manager
-            // before we put it into table otherwise we would put
-            // an empty page in it
-            Stopwatch readPageStopwatch = Stopwatch.createStarted();
-            boolean isNewPage = indexPersistenceManager.updatePage(lep);
-            if (!isNewPage) {
-                ledgerCacheReadPageStats.registerSuccessfulEvent(
-                        readPageStopwatch.elapsed(TimeUnit.MICROSECONDS),
-                        TimeUnit.MICROSECONDS);
+        while (true) {
+            LedgerEntryPage lep = grabCleanPage(ledger, pageEntry);
+            try {
+                // should get the up to date page from the persistence manager
+                // before we put it into table otherwise we would put
+                // an empty page in it
+                Stopwatch readPageStopwatch = Stopwatch.createStarted();
+                boolean isNewPage = indexPersistenceManager.updatePage(lep);
+                if (!isNewPage) {
+                    ledgerCacheReadPageStats.registerSuccessfulEvent(
+                            readPageStopwatch.elapsed(TimeUnit.MICROSECONDS),
+                            TimeUnit.MICROSECONDS);
+                }
+            } catch (IOException ie) {
+                // if we grab a clean page, but failed to update the page
+                // we should put this page in the free page list so that it
+                // can be reassigned to the next grabPage request
+                lep.markDeleted();
+                lep.releasePageNoCallback();
+                pageMapAndList.addToListOfFreePages(lep);
+                throw ie;
+            }
+            LedgerEntryPage oldLep = pageMapAndList.putPage(lep);
+            if (lep == oldLep) {
+                return lep;
             }
-        } catch (IOException ie) {
-            // if we grab a clean page, but failed to update the page
-            // we should put this page in the free page list so that it
-            // can be reassigned to the next grabPage request
-            lep.releasePageNoCallback();
-            pageMapAndList.addToListOfFreePages(lep);
-            throw ie;
-        }
-        LedgerEntryPage oldLep;
-        if (lep != (oldLep = pageMapAndList.putPage(lep))) {
             // if we grab a clean page, but failed to put it in the cache
             // we should put this page in the free page list so that it
             // can be reassigned to the next grabPage request
+            lep.markDeleted();
             lep.releasePageNoCallback();
             pageMapAndList.addToListOfFreePages(lep);
             // Increment the use count of the old lep because this is unexpected
             oldLep.usePage();
-            lep = oldLep;
+            if (oldLep.hasEntryKey(ledger, pageEntry)) {
+                return oldLep;
+            }
+            // The old lep was evicted meanwhile, try again
+            oldLep.releasePage();
         }
-        return lep;
+    }
+
+    /**
+     * Check if the page of the ledger is in the cache, without using it.
+     */
+    @VisibleForTesting
+    boolean isPageCached(long ledger, long firstEntry) {
+        LedgerEntryPage lep = pageMapAndList.getPage(ledger, firstEntry);
+        return lep != null && lep.hasEntryKey(ledger, firstEntry);
     }
 
     void removePagesForLedger(long ledgerId) {
@@ -499,6 +575,7 @@ class IndexInMemPageMgr {
                 LedgerEntryPage lep = new LedgerEntryPage(pageSize, entriesPerPage, pageMapAndList);
                 lep.setLedgerAndFirstEntry(ledger, entry);
                 lep.usePage();
+                pageMapAndList.addAllocatedPage(lep);
                 return lep;
             }
 
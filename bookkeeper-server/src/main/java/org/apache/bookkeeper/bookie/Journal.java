@@ -32,6 +32,7 @@ import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.util.Recycler;
 import io.netty.util.Recycler.Handle;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -41,6 +42,8 @@ import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import org.apache.bookkeeper.bookie.LedgerDirsManager.NoWritableLedgerDirException;
@@ -52,6 +55,8 @@ import org.apache.bookkeeper.common.collections.RecyclableArrayList;
 import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.common.util.MemoryLimitController;
 import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOImpl;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.proto.BookieRequestHandler;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
@@ -92,6 +97,10 @@ public class Journal implements CheckpointSource {
                 int capacity) -> new BufferedChannel(UnpooledByteBufAllocator.DEFAULT, fc, capacity);
 
         BufferedChannel create(FileChannel fc, int capacity) throws IOException;
+
+        default BufferedChannel create(File file, FileChannel fc, int capacity) throws IOException {
+            return create(fc, capacity);
+        }
     }
 
 
@@ -541,8 +550,11 @@ public class Journal implements CheckpointSource {
             long fsyncStartTime = MathUtils.nowInNano();
             try {
                 lastRequest.flushFileToDisk();
-                journalStats.getJournalSyncStats().registerSuccessfulEvent(MathUtils.elapsedNanos(fsyncStartTime),
-                        TimeUnit.NANOSECONDS);
+                long fsyncNanos = MathUtils.elapsedNanos(fsyncStartTime);
+                journalStats.getJournalSyncStats().registerSuccessfulEvent(fsyncNanos, TimeUnit.NANOSECONDS);
+                // Only updated by this thread
+                long ewma = syncLatencyEwmaNanos;
+                syncLatencyEwmaNanos = ewma + (fsyncNanos - ewma) / SYNC_LATENCY_EWMA_WEIGHT;
                 lastLogMark.setCurLogMark(lastRequest.logId, lastRequest.lastFlushedPosition);
             } catch (IOException ioe) {
                 journalStats.getJournalSyncStats()
@@ -621,8 +633,20 @@ public class Journal implements CheckpointSource {
     // Should data be fsynced on disk before triggering the callback
     private final boolean syncData;
 
+    // Write the journal with O_DIRECT writes submitted in background, keeping several batches in flight
+    private final boolean directIoEnabled;
+    private final int maxOutstandingWrites;
+    private final NativeIO nativeIO;
+    private final ExecutorService directWriteExecutor;
+    // Write the entries larger than the write buffer directly to the journal file, without copying them
+    private final boolean writeThroughEnabled;
+
     private final LastLogMark lastLogMark = new LastLogMark(0, 0);
 
+    // Moving average of the sync latency, each new sample weighs 1/SYNC_LATENCY_EWMA_WEIGHT
+    private static final int SYNC_LATENCY_EWMA_WEIGHT = 8;
+    private volatile long syncLatencyEwmaNanos = 0;
+
     private static final String LAST_MARK_DEFAULT_NAME = "lastMark";
 
     private final String lastMarkFileName;
@@ -693,6 +717,18 @@ public class Journal implements CheckpointSource {
         this.flushWhenQueueEmpty = maxGroupWaitInNanos <= 0 || conf.getJournalFlushWhenQueueEmpty();
 
         this.removePagesFromCache = conf.getJournalRemovePagesFromCache();
+        this.directIoEnabled = conf.isJournalDirectIoEnabled();
+        this.maxOutstandingWrites = conf.getJournalMaxOutstandingWrites();
+        this.writeThroughEnabled = conf.isJournalWriteThroughEnabled();
+        if (directIoEnabled) {
+            this.nativeIO = new NativeIOImpl();
+            // Writes must be executed in order, since consecutive writes can overlap on their first block
+            this.directWriteExecutor = Executors.newSingleThreadExecutor(
+                    new DefaultThreadFactory("bookie-journal-writer-" + journalIndex));
+        } else {
+            this.nativeIO = null;
+            this.directWriteExecutor = null;
+        }
         // read last log mark
         if (conf.getJournalDirs().length == 1) {
             lastMarkFileName = LAST_MARK_DEFAULT_NAME;
@@ -713,7 +749,8 @@ public class Journal implements CheckpointSource {
 
         // Expose Stats
         this.journalStats = new JournalStats(journalStatsLogger, journalMaxMemory,
-                () -> memoryLimitController.currentUsage());
+                () -> memoryLimitController.currentUsage(),
+                () -> TimeUnit.NANOSECONDS.toMicros(syncLatencyEwmaNanos));
     }
 
     public Journal(int journalIndex, File journalDirectory, ServerConfiguration conf,
@@ -743,6 +780,20 @@ public class Journal implements CheckpointSource {
         return lastLogMark;
     }
 
+    /**
+     * @return the number of entries waiting to be written in the journal
+     */
+    int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * @return the moving average of the journal sync latency, in nanoseconds
+     */
+    long getSyncLatencyEwmaNanos() {
+        return syncLatencyEwmaNanos;
+    }
+
     /**
      * Update lastLogMark of the journal
      * Indicates that the file has been processed.
@@ -1093,22 +1144,43 @@ public class Journal implements CheckpointSource {
                         journalFlushWatcher.reset().start();
                         bc.flush();
 
-                        for (int i = 0; i < toFlush.size(); i++) {
-                            QueueEntry entry = toFlush.get(i);
-                            if (entry != null && (!syncData || entry.ackBeforeSync)) {
-                                toFlush.set(i, null);
-                                numEntriesToFlush--;
-                                if (entry.getCtx() instanceof BookieRequestHandler
-                                        && entry.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
-                                    writeHandlers.add((BookieRequestHandler) entry.getCtx());
+                        if (directIoEnabled) {
+                            // The flushed batch is still being written, the entries acknowledged before the sync
+                            // must wait for their write to complete
+                            List<QueueEntry> toAck = null;
+                            for (int i = 0; i < toFlush.size(); i++) {
+                                QueueEntry entry = toFlush.get(i);
+                                if (entry != null && (!syncData || entry.ackBeforeSync)) {
+                                    toFlush.set(i, null);
+                                    numEntriesToFlush--;
+                                    if (toAck == null) {
+                                        toAck = new ArrayList<>();
+                                    }
+                                    toAck.add(entry);
                                 }
-                                entry.run();
                             }
+                            if (toAck != null) {
+                                final List<QueueEntry> entries = toAck;
+                                bc.whenFlushedWritten(() -> ackEntries(entries));
+                            }
+                        } else {
+                            for (int i = 0; i < toFlush.size(); i++) {
+                                QueueEntry entry = toFlush.get(i);
+                                if (entry != null && (!syncData || entry.ackBeforeSync)) {
+                                    toFlush.set(i, null);
+                                    numEntriesToFlush--;
+                                    if (entry.getCtx() instanceof BookieRequestHandler
+                                            && entry.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
+                                        writeHandlers.add((BookieRequestHandler) entry.getCtx());
+                                    }
+                                    entry.run();
+                                }
+                            }
+                            writeHandlers.forEach(
+                                    (ObjectProcedure<? super BookieRequestHandler>)
+                                            BookieRequestHandler::flushPendingResponse);
+                            writeHandlers.clear();
                         }
-                        writeHandlers.forEach(
-                                (ObjectProcedure<? super BookieRequestHandler>)
-                                        BookieRequestHandler::flushPendingResponse);
-                        writeHandlers.clear();
 
                         lastFlushPosition = bc.position();
                         journalStats.getJournalFlushStats().registerSuccessfulEvent(
@@ -1231,8 +1303,39 @@ public class Journal implements CheckpointSource {
         LOG.info("Journal exited loop!");
     }
 
+    /**
+     * Acknowledge the entries whose write completed in background, on the journal writer thread.
+     */
+    private static void ackEntries(List<QueueEntry> entries) {
+        ObjectHashSet<BookieRequestHandler> handlers = new ObjectHashSet<>();
+        for (QueueEntry entry : entries) {
+            if (entry.getCtx() instanceof BookieRequestHandler
+                    && entry.entryId != BookieImpl.METAENTRY_ID_FORCE_LEDGER) {
+                handlers.add((BookieRequestHandler) entry.getCtx());
+            }
+            entry.run();
+        }
+        handlers.forEach((ObjectProcedure<? super BookieRequestHandler>) BookieRequestHandler::flushPendingResponse);
+    }
+
     public BufferedChannelBuilder getBufferedChannelBuilder() {
-        return (FileChannel fc, int capacity) -> new BufferedChannel(allocator, fc, capacity);
+        if (!directIoEnabled) {
+            return (FileChannel fc, int capacity) -> new BufferedChannel(allocator, fc, capacity, capacity, 0L,
+                    writeThroughEnabled);
+        }
+
+        return new BufferedChannelBuilder() {
+            @Override
+            public BufferedChannel create(FileChannel fc, int capacity) throws IOException {
+                throw new IOException("Journal direct I/O requires the journal file");
+            }
+
+            @Override
+            public BufferedChannel create(File file, FileChannel fc, int capacity) throws IOException {
+                return new DirectBufferedChannel(allocator, file, fc, capacity, nativeIO, directWriteExecutor,
+                        maxOutstandingWrites);
+            }
+        };
     }
 
     /**
@@ -1253,6 +1356,9 @@ public class Journal implements CheckpointSource {
             running = false;
             this.interruptThread();
             this.joinThread();
+            if (directWriteExecutor != null) {
+                directWriteExecutor.shutdown();
+            }
             LOG.info("Finished Shutting down Journal thread");
         } catch (IOException | InterruptedException ie) {
             Thread.currentThread().interrupt();
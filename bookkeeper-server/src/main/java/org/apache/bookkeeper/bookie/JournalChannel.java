@@ -23,6 +23,8 @@ package org.apache.bookkeeper.bookie;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
@@ -31,7 +33,6 @@ import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import org.apache.bookkeeper.conf.ServerConfiguration;
 import org.apache.bookkeeper.util.PageCacheUtil;
-import org.apache.bookkeeper.util.ZeroBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -185,11 +186,11 @@ class JournalChannel implements Closeable {
             }
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else if (reuseFile) { // Open an existing journal to write, it needs fileChannelProvider support reuse file.
             fc = channel.getFileChannel();
             formatVersion = formatVersionToWrite;
-            writeHeader(bcBuilder, writeBufferSize);
+            writeHeader(fn, bcBuilder, writeBufferSize);
         } else {  // open an existing file to read.
             fc = channel.getFileChannel();
             // readonly, use fileChannel directly, no need to use BufferedChannel
@@ -247,21 +248,22 @@ class JournalChannel implements Closeable {
         }
     }
 
-    private void writeHeader(Journal.BufferedChannelBuilder bcBuilder,
+    private void writeHeader(File fn, Journal.BufferedChannelBuilder bcBuilder,
                              int writeBufferSize) throws IOException {
         int headerSize = (V4 == formatVersion) ? VERSION_HEADER_SIZE : HEADER_SIZE;
-        ByteBuffer bb = ByteBuffer.allocate(headerSize);
-        ZeroBuffer.put(bb);
-        bb.clear();
-        bb.put(magicWord);
-        bb.putInt(formatVersion);
-        bb.clear();
-        fc.write(bb);
-
-        bc = bcBuilder.create(fc, writeBufferSize);
+        ByteBuf header = Unpooled.buffer(headerSize);
+        header.writeBytes(magicWord);
+        header.writeInt(formatVersion);
+        header.writeZero(headerSize - header.writerIndex());
+
+        // The header and the preallocation go through the buffered channel, like the entries, since it may not
+        // write through the file channel
+        bc = bcBuilder.create(fn, fc, writeBufferSize);
+        bc.write(header);
+        bc.flush();
         forceWrite(true);
         nextPrealloc = this.preAllocSize;
-        fc.write(zeros, nextPrealloc - journalAlignSize);
+        bc.preallocate(zeros, nextPrealloc - journalAlignSize);
     }
 
     public static void renameJournalFile(File source, File target) throws IOException {
@@ -286,7 +288,7 @@ class JournalChannel implements Closeable {
         if (bc.position() + size > nextPrealloc) {
             nextPrealloc += preAllocSize;
             zeros.clear();
-            fc.write(zeros, nextPrealloc - journalAlignSize);
+            bc.preallocate(zeros, nextPrealloc - journalAlignSize);
         }
     }
 
@@ -49,7 +49,9 @@ public class LedgerEntryPage implements AutoCloseable {
     private final AtomicInteger version = new AtomicInteger(0);
     private volatile int last = -1; // Last update position
     private final LEPStateChangeCallback callback;
-    private boolean deleted;
+    private volatile boolean deleted;
+    // Reference bit of the CLOCK eviction, set when the page is used
+    private volatile boolean referenced = true;
 
     public static int getIndexEntrySize() {
         return indexEntrySize;
@@ -105,12 +107,55 @@ public class LedgerEntryPage implements AutoCloseable {
     }
 
     public void usePage() {
+        referenced = true;
         int oldVal = useCount.getAndIncrement();
         if ((0 == oldVal) && (null != callback)) {
             callback.onSetInUse(this);
         }
     }
 
+    /**
+     * Use the page only if nobody else is using it.
+     *
+     * @return true if the page is now in use by the caller only
+     */
+    boolean tryUsePage() {
+        if (!useCount.compareAndSet(0, 1)) {
+            return false;
+        }
+        if (null != callback) {
+            callback.onSetInUse(this);
+        }
+        return true;
+    }
+
+    int getUseCount() {
+        return useCount.get();
+    }
+
+    /**
+     * Clear the reference bit of the page.
+     *
+     * @return true if the page was used since the reference bit was last cleared
+     */
+    boolean clearReferenced() {
+        if (referenced) {
+            referenced = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reset a page used only by the caller, to hold the entries of another ledger.
+     */
+    void reusePage(long ledgerId, long firstEntry) {
+        zeroPage();
+        deleted = false;
+        referenced = true;
+        setLedgerAndFirstEntry(ledgerId, firstEntry);
+    }
+
     public void releasePageNoCallback() {
         releasePageInternal(false);
     }
@@ -235,6 +280,22 @@ public class LedgerEntryPage implements AutoCloseable {
         return entryKey;
     }
 
+    void setEntryKey(EntryKey entryKey) {
+        this.entryKey = entryKey;
+    }
+
+    /**
+     * Detach the page from its ledger, so that its concurrent users find it doesn't hold their entries anymore.
+     */
+    void invalidateEntryKey() {
+        this.entryKey = new EntryKey(-1, BookieProtocol.INVALID_ENTRY_ID);
+    }
+
+    boolean hasEntryKey(long ledgerId, long firstEntry) {
+        EntryKey key = entryKey;
+        return key.getLedgerId() == ledgerId && key.getEntryId() == firstEntry;
+    }
+
     void setLedgerAndFirstEntry(long ledgerId, long firstEntry) {
         if (firstEntry % entriesPerPage != 0) {
             throw new IllegalArgumentException(firstEntry + " is not a multiple of " + entriesPerPage);
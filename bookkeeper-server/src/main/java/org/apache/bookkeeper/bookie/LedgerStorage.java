@@ -144,6 +144,46 @@ public interface LedgerStorage {
      */
     ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException;
 
+    /**
+     * Read an entry from the caches of the storage, without blocking on the disk.
+     *
+     * @return the entry, or null if the entry is not in the caches or the storage has no caches
+     */
+    default ByteBuf getEntryIfCached(long ledgerId, long entryId) throws IOException, BookieException {
+        return null;
+    }
+
+    /**
+     * Read consecutive entries of a ledger from storage, up to a number of entries and a number of bytes.
+     * The reads stop at the first entry that can't be read, other than the first one.
+     *
+     * @param maxSize the max number of bytes of the entries, the first entry is read even if larger
+     * @return the entries, at least the first one. The caller must release them.
+     */
+    default List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        List<ByteBuf> entries = new ArrayList<>();
+        long size = 0;
+        for (long entryId = firstEntryId; entries.size() < maxCount; entryId++) {
+            ByteBuf entry;
+            try {
+                entry = getEntry(ledgerId, entryId);
+            } catch (IOException | BookieException e) {
+                if (entries.isEmpty()) {
+                    throw e;
+                }
+                break;
+            }
+            if (!entries.isEmpty() && size + entry.readableBytes() > maxSize) {
+                entry.release();
+                break;
+            }
+            entries.add(entry);
+            size += entry.readableBytes();
+        }
+        return entries;
+    }
+
     /**
      * Get last add confirmed.
      *
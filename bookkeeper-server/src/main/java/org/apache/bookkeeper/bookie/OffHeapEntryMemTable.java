@@ -0,0 +1,431 @@
+/**
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.bookkeeper.bookie.Bookie.NoLedgerException;
+import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.bookie.storage.ldb.ArrayGroupSort;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.util.IteratorUtility;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
+import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+
+/**
+ * EntryMemTable keeping the entries off the Java heap.
+ *
+ * <p>The entries are copied in direct slabs taken from the bookie allocator, and indexed by (ledgerId, entryId) in
+ * primitive hash maps, so that the memtable doesn't create any object per entry. The entries are sorted by
+ * (ledgerId, entryId) when the snapshot is flushed, as in the write cache of the DbLedgerStorage. The slabs of a
+ * snapshot are released once it is flushed.
+ *
+ * <p>The snapshot is flushed by the flushing thread, the entries are not flushed in parallel.
+ */
+@Slf4j
+class OffHeapEntryMemTable extends EntryMemTable {
+
+    /**
+     * Entries of the memtable, or of its snapshot.
+     */
+    static class EntryTable {
+        static final EntryTable EMPTY_VALUE = new EntryTable(Checkpoint.MAX, null, 0, 0);
+
+        final Checkpoint cp;
+        private final ByteBufAllocator allocator;
+        private final int slabSize;
+        private final int maxAllocSize;
+
+        // (ledgerId, entryId) -> (location, length), the location being (slab index << 32 | offset in the slab)
+        private final ConcurrentLongLongPairHashMap index = ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(4096)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                .build();
+        private final ConcurrentLongLongHashMap lastEntryMap = ConcurrentLongLongHashMap.newBuilder()
+                .expectedItems(256)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                .build();
+
+        private volatile ByteBuf[] slabs = new ByteBuf[0];
+        private int currentSlabIdx = -1;
+        private int currentSlabOffset;
+
+        EntryTable(Checkpoint cp, ByteBufAllocator allocator, int slabSize, int maxAllocSize) {
+            this.cp = cp;
+            this.allocator = allocator;
+            this.slabSize = slabSize;
+            this.maxAllocSize = maxAllocSize;
+        }
+
+        int compareTo(final Checkpoint cp) {
+            return this.cp.compareTo(cp);
+        }
+
+        boolean isEmpty() {
+            return index.isEmpty();
+        }
+
+        /**
+         * Add an entry, if not already there.
+         *
+         * @return the size of the entry, or 0 if the entry was already there
+         */
+        int put(long ledgerId, long entryId, ByteBuffer entry) {
+            if (index.containsKey(ledgerId, entryId)) {
+                return 0;
+            }
+            int length = entry.remaining();
+            long location = allocate(length);
+            ByteBuf slab = slabs[(int) (location >>> 32)];
+            slab.setBytes((int) location, entry.duplicate());
+            if (!index.putIfAbsent(ledgerId, entryId, location, length)) {
+                // Added concurrently, the space is lost until the slab is released
+                return 0;
+            }
+
+            while (true) {
+                long currentLastEntryId = lastEntryMap.get(ledgerId);
+                if (currentLastEntryId > entryId
+                        || lastEntryMap.compareAndSet(ledgerId, currentLastEntryId, entryId)) {
+                    break;
+                }
+            }
+            return length;
+        }
+
+        private synchronized long allocate(int length) {
+            if (length > maxAllocSize) {
+                // Large entries get their own slab, so that they don't waste the end of the current one
+                return ((long) addSlab(allocator.directBuffer(length, length))) << 32;
+            }
+            if (currentSlabIdx < 0 || currentSlabOffset + length > slabSize) {
+                currentSlabIdx = addSlab(allocator.directBuffer(slabSize, slabSize));
+                currentSlabOffset = 0;
+            }
+            long location = (((long) currentSlabIdx) << 32) | currentSlabOffset;
+            currentSlabOffset += length;
+            return location;
+        }
+
+        private int addSlab(ByteBuf slab) {
+            ByteBuf[] newSlabs = Arrays.copyOf(slabs, slabs.length + 1);
+            newSlabs[slabs.length] = slab;
+            slabs = newSlabs;
+            return newSlabs.length - 1;
+        }
+
+        ByteBuf get(long ledgerId, long entryId) {
+            LongPair result = index.get(ledgerId, entryId);
+            if (result == null) {
+                return null;
+            }
+            return copy(result.first, (int) result.second);
+        }
+
+        ByteBuf getLastEntry(long ledgerId) {
+            long lastEntryId = lastEntryMap.get(ledgerId);
+            return lastEntryId == -1 ? null : get(ledgerId, lastEntryId);
+        }
+
+        boolean containsLedger(long ledgerId) {
+            return lastEntryMap.containsKey(ledgerId);
+        }
+
+        private ByteBuf copy(long location, int length) {
+            ByteBuf entry = allocator.buffer(length, length);
+            entry.writeBytes(slabs[(int) (location >>> 32)], (int) location, length);
+            return entry;
+        }
+
+        /**
+         * Get the entries sorted by (ledgerId, entryId), as groups of (ledgerId, entryId, location, length).
+         */
+        long[] sortedEntries() {
+            long[] entries = new long[(int) index.size() * 4];
+            int[] idx = new int[1];
+            index.forEach((ledgerId, entryId, location, length) -> {
+                if (idx[0] < entries.length) {
+                    entries[idx[0]++] = ledgerId;
+                    entries[idx[0]++] = entryId;
+                    entries[idx[0]++] = location;
+                    entries[idx[0]++] = length;
+                }
+            });
+            ArrayGroupSort.sort(entries, 0, idx[0]);
+            return idx[0] == entries.length ? entries : Arrays.copyOf(entries, idx[0]);
+        }
+
+        PrimitiveIterator.OfLong entriesOfLedger(long ledgerId) {
+            LongStream.Builder entryIds = LongStream.builder();
+            if (containsLedger(ledgerId)) {
+                index.forEach((lid, entryId, location, length) -> {
+                    if (lid == ledgerId) {
+                        entryIds.add(entryId);
+                    }
+                });
+            }
+            return entryIds.build().sorted().iterator();
+        }
+
+        ByteBuf slice(long location, int length) {
+            return slabs[(int) (location >>> 32)].slice((int) location, length);
+        }
+
+        void release() {
+            for (ByteBuf slab : slabs) {
+                slab.release();
+            }
+            slabs = new ByteBuf[0];
+        }
+    }
+
+    private final ByteBufAllocator bufAllocator;
+    private final int slabSize;
+    private final int maxAllocSize;
+
+    volatile EntryTable table;
+
+    // Snapshot of the memtable, made for the flusher
+    volatile EntryTable snapshotTable;
+
+    public OffHeapEntryMemTable(final ServerConfiguration conf, final CheckpointSource source,
+                                final ByteBufAllocator allocator, final StatsLogger statsLogger) {
+        super(conf, source, statsLogger);
+        this.bufAllocator = allocator;
+        this.slabSize = conf.getSkipListArenaChunkSize();
+        this.maxAllocSize = Math.min(conf.getSkipListArenaMaxAllocSize(), slabSize);
+        this.table = newTable();
+        this.snapshotTable = EntryTable.EMPTY_VALUE;
+    }
+
+    private EntryTable newTable() {
+        return new EntryTable(checkpointSource.newCheckpoint(), bufAllocator, slabSize, maxAllocSize);
+    }
+
+    @Override
+    Checkpoint snapshot(Checkpoint oldCp) throws IOException {
+        Checkpoint cp = null;
+        // No-op if snapshot currently has entries
+        if (this.snapshotTable.isEmpty() && this.table.compareTo(oldCp) < 0) {
+            final long startTimeNanos = MathUtils.nowInNano();
+            this.lock.writeLock().lock();
+            try {
+                if (this.snapshotTable.isEmpty() && !this.table.isEmpty()
+                        && this.table.compareTo(oldCp) < 0) {
+                    this.snapshotTable = this.table;
+                    this.table = newTable();
+                    // get the checkpoint of the memtable.
+                    cp = this.table.cp;
+                    this.size.set(0);
+                }
+            } finally {
+                this.lock.writeLock().unlock();
+            }
+
+            if (null != cp) {
+                memTableStats.getSnapshotStats()
+                    .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            } else {
+                memTableStats.getSnapshotStats()
+                    .registerFailedEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+            }
+        }
+        return cp;
+    }
+
+    @Override
+    long flushSnapshot(final SkipListFlusher flusher, Checkpoint checkpoint) throws IOException {
+        long size = 0;
+        if (this.snapshotTable.compareTo(checkpoint) < 0) {
+            long ledger, ledgerGC = -1;
+            synchronized (this) {
+                EntryTable entries = this.snapshotTable;
+                if (entries.compareTo(checkpoint) < 0) {
+                    long[] sortedEntries = entries.sortedEntries();
+                    for (int i = 0; i < sortedEntries.length; i += 4) {
+                        ledger = sortedEntries[i];
+                        int length = (int) sortedEntries[i + 3];
+                        size += length;
+                        if (ledgerGC != ledger) {
+                            try {
+                                flusher.process(ledger, sortedEntries[i + 1],
+                                        entries.slice(sortedEntries[i + 2], length));
+                            } catch (NoLedgerException exception) {
+                                ledgerGC = ledger;
+                            }
+                        }
+                    }
+                    memTableStats.getFlushBytesCounter().addCount(size);
+                    clearSnapshot(entries);
+                }
+            }
+        }
+
+        skipListSemaphore.release((int) size);
+        return size;
+    }
+
+    private void clearSnapshot(final EntryTable entries) {
+        // Caller makes sure that entries not empty
+        assert !entries.isEmpty();
+        this.lock.writeLock().lock();
+        try {
+            assert this.snapshotTable == entries;
+            this.snapshotTable = EntryTable.EMPTY_VALUE;
+            // The readers copy the entries under the read lock, the slabs are no longer used
+            entries.release();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    long putEntry(long ledgerId, long entryId, final ByteBuffer entry) {
+        long sizeChange = table.put(ledgerId, entryId, entry);
+        if (sizeChange > 0) {
+            size.addAndGet(sizeChange);
+        }
+        return sizeChange;
+    }
+
+    @Override
+    ByteBuf getEntryBuffer(long ledgerId, long entryId) throws IOException {
+        long startTimeNanos = MathUtils.nowInNano();
+        this.lock.readLock().lock();
+        try {
+            ByteBuf entry = this.table.get(ledgerId, entryId);
+            if (entry == null) {
+                entry = this.snapshotTable.get(ledgerId, entryId);
+            }
+            return entry;
+        } finally {
+            this.lock.readLock().unlock();
+            memTableStats.getGetEntryStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    ByteBuf getLastEntryBuffer(long ledgerId) throws IOException {
+        long startTimeNanos = MathUtils.nowInNano();
+        this.lock.readLock().lock();
+        try {
+            ByteBuf entry = this.table.getLastEntry(ledgerId);
+            if (entry == null) {
+                entry = this.snapshotTable.getLastEntry(ledgerId);
+            }
+            return entry;
+        } finally {
+            this.lock.readLock().unlock();
+            memTableStats.getGetEntryStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(startTimeNanos), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    boolean containsLedger(long ledgerId) {
+        this.lock.readLock().lock();
+        try {
+            return this.table.containsLedger(ledgerId) || this.snapshotTable.containsLedger(ledgerId);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the entry with given key, copied on the heap.
+     */
+    @Override
+    public EntryKeyValue getEntry(long ledgerId, long entryId) throws IOException {
+        return toEntryKeyValue(ledgerId, getEntryBuffer(ledgerId, entryId));
+    }
+
+    /**
+     * Find the last entry with the given ledger key, copied on the heap.
+     */
+    @Override
+    public EntryKeyValue getLastEntry(long ledgerId) throws IOException {
+        return toEntryKeyValue(ledgerId, getLastEntryBuffer(ledgerId));
+    }
+
+    private static EntryKeyValue toEntryKeyValue(long ledgerId, ByteBuf entry) {
+        if (entry == null) {
+            return null;
+        }
+        try {
+            byte[] bytes = new byte[entry.readableBytes()];
+            entry.getBytes(entry.readerIndex(), bytes);
+            // The entry starts with its ledger id and entry id
+            return new EntryKeyValue(ledgerId, entry.getLong(entry.readerIndex() + 8), bytes);
+        } finally {
+            entry.release();
+        }
+    }
+
+    @Override
+    boolean isEmpty() {
+        return size.get() == 0 && snapshotTable.isEmpty();
+    }
+
+    @Override
+    void dump() {
+        for (EntryTable entries : new EntryTable[] { this.table, this.snapshotTable }) {
+            long[] sortedEntries = entries.sortedEntries();
+            for (int i = 0; i < sortedEntries.length; i += 4) {
+                log.info("{}:{}", sortedEntries[i], sortedEntries[i + 1]);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        this.lock.writeLock().lock();
+        try {
+            this.table.release();
+            this.snapshotTable.release();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    PrimitiveIterator.OfLong getListOfEntriesOfLedger(long ledgerId) {
+        PrimitiveIterator.OfLong entriesInTable;
+        PrimitiveIterator.OfLong entriesInSnapshot;
+        this.lock.readLock().lock();
+        try {
+            entriesInTable = this.table.entriesOfLedger(ledgerId);
+            entriesInSnapshot = this.snapshotTable.entriesOfLedger(ledgerId);
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return IteratorUtility.mergePrimitiveLongIterator(entriesInTable, entriesInSnapshot);
+    }
+}
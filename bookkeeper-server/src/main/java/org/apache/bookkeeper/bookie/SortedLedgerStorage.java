@@ -59,6 +59,7 @@ public class SortedLedgerStorage
     private StateManager stateManager;
     private ServerConfiguration conf;
     private StatsLogger statsLogger;
+    private ByteBufAllocator allocator;
     private final InterleavedLedgerStorage interleavedLedgerStorage;
 
     public SortedLedgerStorage() {
@@ -80,6 +81,7 @@ public class SortedLedgerStorage
             throws IOException {
         this.conf = conf;
         this.statsLogger = statsLogger;
+        this.allocator = allocator;
 
         interleavedLedgerStorage.initializeWithEntryLogListener(
             conf,
@@ -112,7 +114,9 @@ public class SortedLedgerStorage
     public void setCheckpointSource(CheckpointSource checkpointSource) {
         interleavedLedgerStorage.setCheckpointSource(checkpointSource);
 
-        if (conf.isEntryLogPerLedgerEnabled()) {
+        if (conf.isEntryMemTableOffHeapEnabled()) {
+            this.memTable = new OffHeapEntryMemTable(conf, checkpointSource, allocator, statsLogger);
+        } else if (conf.isEntryLogPerLedgerEnabled()) {
             this.memTable = new EntryMemTableWithParallelFlusher(conf, checkpointSource, statsLogger);
         } else {
             this.memTable = new EntryMemTable(conf, checkpointSource, statsLogger);
@@ -158,8 +162,7 @@ public class SortedLedgerStorage
         // Done this way because checking the skip list is an O(logN) operation compared to
         // the O(1) for the ledgerCache.
         if (!interleavedLedgerStorage.ledgerExists(ledgerId)) {
-            EntryKeyValue kv = memTable.getLastEntry(ledgerId);
-            if (null == kv) {
+            if (!memTable.containsLedger(ledgerId)) {
                 return interleavedLedgerStorage.ledgerExists(ledgerId);
             }
         }
@@ -209,9 +212,9 @@ public class SortedLedgerStorage
      * @return
      */
     private ByteBuf getLastEntryId(long ledgerId) throws IOException {
-        EntryKeyValue kv = memTable.getLastEntry(ledgerId);
-        if (null != kv) {
-            return kv.getValueAsByteBuffer();
+        ByteBuf lastEntry = memTable.getLastEntryBuffer(ledgerId);
+        if (null != lastEntry) {
+            return lastEntry;
         }
         // If it doesn't exist in the skip list, then fallback to the ledger cache+index.
         return interleavedLedgerStorage.getEntry(ledgerId, BookieProtocol.LAST_ADD_CONFIRMED);
@@ -226,13 +229,11 @@ public class SortedLedgerStorage
         try {
             buffToRet = interleavedLedgerStorage.getEntry(ledgerId, entryId);
         } catch (Bookie.NoEntryException nee) {
-            EntryKeyValue kv = memTable.getEntry(ledgerId, entryId);
-            if (null == kv) {
+            buffToRet = memTable.getEntryBuffer(ledgerId, entryId);
+            if (null == buffToRet) {
                 // The entry might have been flushed since we last checked, so query the ledger cache again.
                 // If the entry truly doesn't exist, then this will throw a NoEntryException
                 buffToRet = interleavedLedgerStorage.getEntry(ledgerId, entryId);
-            } else {
-                buffToRet = kv.getValueAsByteBuffer();
             }
         }
         // buffToRet will not be null when we reach here.
@@ -31,6 +31,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.GET_LIST_OF_ENTRIES_OF_LEDGER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_DIRS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_LEDGER_REASSIGNMENTS;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_MAX_SIZE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_BYTES;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY;
@@ -92,12 +93,18 @@ public class BookieStats {
     private final Gauge<Integer> journalDirsGauge;
     @StatsDoc(name = JOURNAL_QUEUE_MAX_SIZE, help = "maximum length of a journal queue")
     private final Gauge<Integer> journalQueueMaxQueueSizeGauge;
+    @StatsDoc(
+        name = JOURNAL_LEDGER_REASSIGNMENTS,
+        help = "total number of ledgers moved to a less loaded journal, when journal adaptive striping is enabled"
+    )
+    private final Counter journalLedgerReassignments;
 
     public BookieStats(StatsLogger statsLogger, int numJournalDirs, int maxJournalQueueSize) {
         this.statsLogger = statsLogger;
         writeBytes = statsLogger.getCounter(WRITE_BYTES);
         readBytes = statsLogger.getCounter(READ_BYTES);
         forceLedgerOps = statsLogger.getCounter(BOOKIE_FORCE_LEDGER);
+        journalLedgerReassignments = statsLogger.getCounter(JOURNAL_LEDGER_REASSIGNMENTS);
         addEntryStats = statsLogger.getOpStatsLogger(BOOKIE_ADD_ENTRY);
         recoveryAddEntryStats = statsLogger.getOpStatsLogger(BOOKIE_RECOVERY_ADD_ENTRY);
         readEntryStats = statsLogger.getOpStatsLogger(BOOKIE_READ_ENTRY);
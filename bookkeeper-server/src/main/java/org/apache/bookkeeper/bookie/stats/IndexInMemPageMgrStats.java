@@ -23,6 +23,8 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.BOOKIE_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.INDEX_INMEM_ILLEGAL_STATE_DELETE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.INDEX_INMEM_ILLEGAL_STATE_RESET;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.INDEX_INMEM_PAGE_EVICTIONS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.INDEX_INMEM_PAGE_EVICTION_SCANS;
 
 import lombok.Getter;
 import org.apache.bookkeeper.stats.Counter;
@@ -51,10 +53,22 @@ public class IndexInMemPageMgrStats {
         help = "The number of index pages detected as in illegal state when deleting"
     )
     private final Counter illegalStateDeleteCounter;
+    @StatsDoc(
+        name = INDEX_INMEM_PAGE_EVICTIONS,
+        help = "The number of clean index pages evicted to hold other index pages"
+    )
+    private final Counter evictionCounter;
+    @StatsDoc(
+        name = INDEX_INMEM_PAGE_EVICTION_SCANS,
+        help = "The number of index pages scanned by the clock hand to find the pages to evict"
+    )
+    private final Counter evictionScanCounter;
 
     public IndexInMemPageMgrStats(StatsLogger statsLogger) {
         illegalStateResetCounter = statsLogger.getCounter(INDEX_INMEM_ILLEGAL_STATE_RESET);
         illegalStateDeleteCounter = statsLogger.getCounter(INDEX_INMEM_ILLEGAL_STATE_DELETE);
+        evictionCounter = statsLogger.getCounter(INDEX_INMEM_PAGE_EVICTIONS);
+        evictionScanCounter = statsLogger.getCounter(INDEX_INMEM_PAGE_EVICTION_SCANS);
     }
 
 }
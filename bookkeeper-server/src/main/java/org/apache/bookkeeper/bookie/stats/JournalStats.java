@@ -41,6 +41,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_L
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_QUEUE_SIZE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SCOPE;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SYNC;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_SYNC_LATENCY_EWMA;
 import static org.apache.bookkeeper.bookie.BookKeeperServerStats.JOURNAL_WRITE_BYTES;
 
 import com.google.common.annotations.VisibleForTesting;
@@ -172,9 +173,20 @@ public class JournalStats {
             help = "The actual amount of memory in bytes currently used by the bookie journal"
     )
     private final Gauge<Long> journalMemoryUsedStats;
+    @StatsDoc(
+            name = JOURNAL_SYNC_LATENCY_EWMA,
+            help = "The moving average of the journal sync latency in microseconds, used to balance ledgers"
+                + " between journals"
+    )
+    private final Gauge<Long> journalSyncLatencyEwmaStats;
 
     public JournalStats(StatsLogger statsLogger, final long maxJournalMemoryBytes,
                         Supplier<Long> currentJournalMemoryBytes) {
+        this(statsLogger, maxJournalMemoryBytes, currentJournalMemoryBytes, () -> 0L);
+    }
+
+    public JournalStats(StatsLogger statsLogger, final long maxJournalMemoryBytes,
+                        Supplier<Long> currentJournalMemoryBytes, Supplier<Long> syncLatencyEwmaMicros) {
         journalAddEntryStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_ADD_ENTRY);
         journalForceLedgerStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_FORCE_LEDGER);
         journalSyncStats = statsLogger.getOpStatsLogger(BookKeeperServerStats.JOURNAL_SYNC);
@@ -221,6 +233,19 @@ public class JournalStats {
             }
         };
         statsLogger.registerGauge(JOURNAL_MEMORY_USED, journalMemoryUsedStats);
+
+        journalSyncLatencyEwmaStats = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return syncLatencyEwmaMicros.get();
+            }
+        };
+        statsLogger.registerGauge(JOURNAL_SYNC_LATENCY_EWMA, journalSyncLatencyEwmaStats);
     }
 
     @VisibleForTesting
@@ -21,8 +21,11 @@
 package org.apache.bookkeeper.bookie.storage;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.util.ReferenceCountUtil;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import org.apache.bookkeeper.bookie.AbstractLogCompactor;
 import org.apache.bookkeeper.bookie.Bookie.NoEntryException;
 import org.apache.bookkeeper.bookie.EntryLogMetadata;
@@ -67,6 +70,43 @@ public interface EntryLogger extends AutoCloseable {
     ByteBuf readEntry(long ledgerId, long entryId, long entryLocation)
             throws IOException, NoEntryException;
 
+    /**
+     * Read consecutive entries of a ledger from an entrylog, starting at a location.
+     * The entries are read while they follow each other in the entrylog and have
+     * consecutive entry IDs, up to a number of entries and a number of bytes.
+     * @param ledgerId the ledgerID to match
+     * @param firstEntryId the entryID of the first entry to match
+     * @param entryLocation the location from which to read the first entry
+     * @param maxCount the max number of entries to read
+     * @param maxSize the max number of bytes of the entries, the first entry is read even if larger
+     * @return the entries, at least the first one. The caller must release them.
+     */
+    default List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long entryLocation,
+                                      int maxCount, long maxSize)
+            throws IOException, NoEntryException {
+        List<ByteBuf> entries = new ArrayList<>();
+        ByteBuf entry = readEntry(ledgerId, firstEntryId, entryLocation);
+        entries.add(entry);
+        long size = entry.readableBytes();
+        long location = entryLocation + Integer.BYTES + entry.readableBytes();
+        while (entries.size() < maxCount && (location >> 32) == (entryLocation >> 32)) {
+            try {
+                entry = readEntry(ledgerId, firstEntryId + entries.size(), location);
+            } catch (IOException e) {
+                // The next entry belongs to another ledger, or the end of the log is reached
+                break;
+            }
+            if (size + entry.readableBytes() > maxSize) {
+                ReferenceCountUtil.release(entry);
+                break;
+            }
+            entries.add(entry);
+            size += entry.readableBytes();
+            location += Integer.BYTES + entry.readableBytes();
+        }
+        return entries;
+    }
+
     /**
      * Flush any outstanding writes to disk.
      */
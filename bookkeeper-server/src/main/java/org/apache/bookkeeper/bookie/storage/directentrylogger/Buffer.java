@@ -187,6 +187,24 @@ class Buffer {
         return bytesToRead;
     }
 
+    /**
+     * Read a bytebuf of size from the buffer at the given offset, without moving the position of the buffer,
+     * so that many threads can read from the buffer at once.
+     * If there are not enough bytes in the buffer to satisfy the read, some of the bytes are read
+     * into the byte buffer and the number of bytes read is returned.
+     */
+    int readByteBufAt(ByteBuf buffer, int offset, int size) throws IOException {
+        int bytesToRead = Math.min(size, bufferSize - offset);
+        try {
+            buffer.writeBytes(this.buffer, offset, bytesToRead);
+        } catch (Exception e) {
+            throw new IOException(exMsg("Error reading buffer")
+                                  .kv("offset", offset).kv("size", size)
+                                  .kv("bufferSize", bufferSize).toString(), e);
+        }
+        return bytesToRead;
+    }
+
     /**
      * The data pointer object for the native buffer. This can be used
      * by JNI method which take a char* or void*.
@@ -30,14 +30,29 @@ import org.apache.bookkeeper.common.util.nativeio.NativeIO;
  */
 public class BufferPool implements AutoCloseable {
     private final ArrayBlockingQueue<Buffer> pool;
+    private final NativeIO nativeIO;
+    private final ByteBufAllocator allocator;
+    private final int bufferSize;
 
     BufferPool(NativeIO nativeIO, ByteBufAllocator allocator, int bufferSize, int maxPoolSize) throws IOException {
+        this(nativeIO, allocator, bufferSize, maxPoolSize, maxPoolSize);
+    }
+
+    BufferPool(NativeIO nativeIO, ByteBufAllocator allocator, int bufferSize,
+               int maxPoolSize, int initialPoolSize) throws IOException {
+        this.nativeIO = nativeIO;
+        this.allocator = allocator;
+        this.bufferSize = bufferSize;
         pool = new ArrayBlockingQueue<>(maxPoolSize);
-        for (int i = 0; i < maxPoolSize; i++) {
+        for (int i = 0; i < initialPoolSize; i++) {
             pool.add(new Buffer(nativeIO, allocator, bufferSize));
         }
     }
 
+    int bufferSize() {
+        return bufferSize;
+    }
+
     Buffer acquire() throws IOException {
         try {
             return pool.take();
@@ -47,9 +62,21 @@ public class BufferPool implements AutoCloseable {
         }
     }
 
+    /**
+     * Take a buffer from the pool, or allocate a new one if the pool is empty, rather than waiting for
+     * a buffer to be released. The buffers allocated are kept by the pool on release, up to its max size.
+     */
+    Buffer acquireOrAllocate() throws IOException {
+        Buffer buffer = pool.poll();
+        if (buffer == null) {
+            buffer = new Buffer(nativeIO, allocator, bufferSize);
+        }
+        return buffer;
+    }
+
     void release(Buffer buffer) {
         buffer.reset();
-        if (!pool.add(buffer)) {
+        if (!pool.offer(buffer)) {
             buffer.free();
         }
     }
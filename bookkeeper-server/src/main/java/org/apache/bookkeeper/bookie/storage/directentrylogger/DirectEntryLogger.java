@@ -41,7 +41,6 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -73,6 +72,7 @@ public class DirectEntryLogger implements EntryLogger {
     private final DirectEntryLoggerStats stats;
     private final ByteBufAllocator allocator;
     private final BufferPool writeBuffers;
+    private final BufferPool readBuffers;
     private final int readBufferSize;
     private final int maxSaneEntrySize;
     private final Set<Integer> unflushedLogs;
@@ -81,8 +81,7 @@ public class DirectEntryLogger implements EntryLogger {
 
     private List<Future<?>> pendingFlushes;
     private final NativeIO nativeIO;
-    private final List<Cache<?, ?>> allCaches = new CopyOnWriteArrayList<>();
-    private final ThreadLocal<Cache<Integer, LogReader>> caches;
+    private final Cache<Integer, LogReader> readers;
 
     private static final int NUMBER_OF_WRITE_BUFFERS = 8;
 
@@ -121,24 +120,22 @@ public class DirectEntryLogger implements EntryLogger {
         int singleWriteBufferSize = Buffer.nextAlignment((int) (totalWriteBufferSize / NUMBER_OF_WRITE_BUFFERS));
         this.writeBuffers = new BufferPool(nativeIO, allocator, singleWriteBufferSize, NUMBER_OF_WRITE_BUFFERS);
 
-        // The total read buffer memory needs to get split across all the read threads, since the caches
-        // are thread-specific and we want to ensure we don't pass the total memory limit.
-        long perThreadBufferSize = totalReadBufferSize / numReadThreads;
+        // The readers are shared by all the read threads, and each of them caches a few blocks of its log,
+        // so the total read buffer memory bounds the number of cached readers.
+        long readerBufferSize = (long) this.readBufferSize * DirectReader.CACHED_BLOCKS;
 
-        // if the amount of total read buffer size is too low, and/or the number of read threads is too high
-        // then the perThreadBufferSize can be lower than the readBufferSize causing immediate eviction of readers
-        // from the cache
-        if (perThreadBufferSize < readBufferSize) {
-            slog.kv("reason", "perThreadBufferSize lower than readBufferSize (causes immediate reader cache eviction)")
+        // if the amount of total read buffer size is too low, then no reader can be cached
+        if (totalReadBufferSize < readerBufferSize) {
+            slog.kv("reason", "totalReadBufferSize lower than the buffers of a reader "
+                    + "(causes immediate reader cache eviction)")
                 .kv("totalReadBufferSize", totalReadBufferSize)
                 .kv("totalNumReadThreads", numReadThreads)
                 .kv("readBufferSize", readBufferSize)
-                .kv("perThreadBufferSize", perThreadBufferSize)
+                .kv("readerBufferSize", readerBufferSize)
                 .error(Events.ENTRYLOGGER_MISCONFIGURED);
         }
 
-        long maxCachedReadersPerThread = perThreadBufferSize / readBufferSize;
-        long maxCachedReaders = maxCachedReadersPerThread * numReadThreads;
+        long maxCachedReaders = totalReadBufferSize / readerBufferSize;
 
         this.slog
             .kv("maxFileSize", maxFileSize)
@@ -147,30 +144,31 @@ public class DirectEntryLogger implements EntryLogger {
             .kv("singleWriteBufferSize", singleWriteBufferSize)
             .kv("totalReadBufferSize", totalReadBufferSize)
             .kv("readBufferSize", readBufferSize)
-            .kv("perThreadBufferSize", perThreadBufferSize)
-            .kv("maxCachedReadersPerThread", maxCachedReadersPerThread)
+            .kv("readerBufferSize", readerBufferSize)
             .kv("maxCachedReaders", maxCachedReaders)
             .info(Events.ENTRYLOGGER_CREATED);
 
-        this.caches = ThreadLocal.withInitial(() -> {
-            RemovalListener<Integer, LogReader> rl = (notification) -> {
-                try {
-                    notification.getValue().close();
-                    this.stats.getCloseReaderCounter().inc();
-                } catch (IOException ioe) {
-                    slog.kv("logID", notification.getKey()).error(Events.READER_CLOSE_ERROR);
-                }
-            };
-            Cache<Integer, LogReader> cache = CacheBuilder.newBuilder()
-                    .maximumWeight(perThreadBufferSize)
-                    .weigher((key, value) -> readBufferSize)
-                    .removalListener(rl)
-                    .expireAfterAccess(maxFdCacheTimeSeconds, TimeUnit.SECONDS)
-                    .concurrencyLevel(1) // important to avoid too aggressive eviction
-                    .build();
-            allCaches.add(cache);
-            return cache;
-        });
+        // The buffers of the blocks evicted from the readers are kept for the next blocks read, rather than
+        // allocated again, up to a buffer for each block a read thread may be reading
+        this.readBuffers = new BufferPool(nativeIO, allocator, this.readBufferSize,
+                                          numReadThreads * DirectReader.CACHED_BLOCKS, 0);
+
+        RemovalListener<Integer, LogReader> rl = (notification) -> {
+            try {
+                // The reads in progress on the reader complete before its file is closed
+                notification.getValue().close();
+                this.stats.getCloseReaderCounter().inc();
+            } catch (IOException ioe) {
+                slog.kv("logID", notification.getKey()).error(Events.READER_CLOSE_ERROR);
+            }
+        };
+        this.readers = CacheBuilder.newBuilder()
+                .maximumWeight(totalReadBufferSize)
+                .weigher((Integer key, LogReader value) -> (int) readerBufferSize)
+                .removalListener(rl)
+                .expireAfterAccess(maxFdCacheTimeSeconds, TimeUnit.SECONDS)
+                .concurrencyLevel(1) // important to avoid too aggressive eviction, hits don't lock the cache
+                .build();
     }
 
     @Override
@@ -212,9 +210,8 @@ public class DirectEntryLogger implements EntryLogger {
     }
 
     private LogReader getReader(int logId) throws IOException {
-        Cache<Integer, LogReader> cache = caches.get();
         try {
-            LogReader reader = cache.get(logId, () -> {
+            LogReader reader = readers.get(logId, () -> {
                 this.stats.getOpenReaderCounter().inc();
                 return newDirectReader(logId);
             });
@@ -237,16 +234,43 @@ public class DirectEntryLogger implements EntryLogger {
         }
     }
 
+    private ByteBuf readEntryAt(int logId, int pos) throws IOException {
+        LogReader reader = getReader(logId);
+        try {
+            return reader.readEntryAt(pos);
+        } catch (IOException ioe) {
+            if (ioe instanceof EOFException || !reader.isClosed()) {
+                throw ioe;
+            }
+            // The readers are shared by the read threads, so the reader may have been evicted
+            // and closed by another thread meanwhile
+            return getReader(logId).readEntryAt(pos);
+        }
+    }
+
+    private List<ByteBuf> readEntriesAt(int logId, int pos, long ledgerId, long firstEntryId, int maxCount,
+                                        long maxSize) throws IOException {
+        LogReader reader = getReader(logId);
+        try {
+            return reader.readEntriesAt(pos, ledgerId, firstEntryId, maxCount, maxSize);
+        } catch (IOException ioe) {
+            if (ioe instanceof EOFException || !reader.isClosed()) {
+                throw ioe;
+            }
+            // The reader may have been evicted and closed by another thread meanwhile
+            return getReader(logId).readEntriesAt(pos, ledgerId, firstEntryId, maxCount, maxSize);
+        }
+    }
+
     private ByteBuf internalReadEntry(long ledgerId, long entryId, long location, boolean validateEntry)
             throws IOException, NoEntryException {
         int logId = (int) (location >> 32);
         int pos = (int) (location & 0xFFFFFFFF);
 
         long start = System.nanoTime();
-        LogReader reader = getReader(logId);
 
         try {
-            ByteBuf buf = reader.readEntryAt(pos);
+            ByteBuf buf = readEntryAt(logId, pos);
             if (validateEntry) {
                 long thisLedgerId = buf.getLong(0);
                 long thisEntryId = buf.getLong(8);
@@ -270,6 +294,40 @@ public class DirectEntryLogger implements EntryLogger {
         }
     }
 
+    @Override
+    public List<ByteBuf> readEntries(long ledgerId, long firstEntryId, long entryLocation, int maxCount, long maxSize)
+            throws IOException, NoEntryException {
+        int logId = (int) (entryLocation >> 32);
+        int pos = (int) (entryLocation & 0xFFFFFFFF);
+
+        long start = System.nanoTime();
+
+        List<ByteBuf> entries;
+        try {
+            entries = readEntriesAt(logId, pos, ledgerId, firstEntryId, maxCount, maxSize);
+        } catch (EOFException eof) {
+            stats.getReadEntryStats().registerFailedEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new NoEntryException(
+                    exMsg("Entry location doesn't exist").kv("location", entryLocation).toString(),
+                    ledgerId, firstEntryId);
+        }
+        // The following entries are only read while they are the next entries of the ledger, check the first one
+        ByteBuf first = entries.get(0);
+        long thisLedgerId = first.getLong(0);
+        long thisEntryId = first.getLong(8);
+        if (thisLedgerId != ledgerId || thisEntryId != firstEntryId) {
+            entries.forEach(ReferenceCountUtil::release);
+            stats.getReadEntryStats().registerFailedEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new IOException(
+                    exMsg("Bad location").kv("location", entryLocation)
+                    .kv("expectedLedger", ledgerId).kv("expectedEntry", firstEntryId)
+                    .kv("foundLedger", thisLedgerId).kv("foundEntry", thisEntryId)
+                    .toString());
+        }
+        stats.getReadEntryStats().registerSuccessfulEvent(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return entries;
+    }
+
     @Override
     public void flush() throws IOException {
         long start = System.nanoTime();
@@ -358,11 +416,10 @@ public class DirectEntryLogger implements EntryLogger {
         flushAndCloseCurrent(); // appends metadata to current log
         flush(); // wait for all outstanding flushes
 
-        for (Cache<?, ?> c : allCaches) {
-            c.invalidateAll();
-        }
+        readers.invalidateAll();
 
         writeBuffers.close();
+        readBuffers.close();
     }
 
     @Override
@@ -443,8 +500,8 @@ public class DirectEntryLogger implements EntryLogger {
     @VisibleForTesting
     LogReader newDirectReader(int logId) throws IOException {
         return new DirectReader(logId, logFilename(ledgerDir, logId),
-                                allocator, nativeIO, readBufferSize,
-                                maxSaneEntrySize, stats.getReadBlockStats());
+                                allocator, nativeIO, readBuffers,
+                                maxSaneEntrySize, stats.getReadBlockStats(), slog);
     }
 
     private LogWriter newDirectWriter(int newId) throws IOException {
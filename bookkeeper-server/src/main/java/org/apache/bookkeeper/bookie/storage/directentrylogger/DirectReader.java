@@ -25,38 +25,81 @@ import static org.apache.bookkeeper.common.util.ExceptionMessageHelper.exMsg;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AbstractReferenceCounted;
+import io.netty.util.IllegalReferenceCountException;
 import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import org.apache.bookkeeper.common.util.nativeio.NativeIO;
 import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.apache.bookkeeper.slogger.Slogger;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 
+/**
+ * Reader of a log file, which can be used by many threads at once.
+ *
+ * <p>All the reads are positional, there is no cursor shared between the reads. The last blocks read are kept in
+ * a small cache, so that the header and index of the log, and entries spanning two blocks, don't need to be read
+ * again. The blocks are immutable once read, and are released once they are evicted from the cache and the reads
+ * using them are done. Once the reader is closed, new reads are rejected, and the file is closed once the reads in
+ * progress are done.
+ */
 class DirectReader implements LogReader {
+    /**
+     * Number of blocks of the log cached by a reader.
+     */
+    static final int CACHED_BLOCKS = 2;
+
     private final ByteBufAllocator allocator;
     private final NativeIO nativeIO;
-    private final Buffer nativeBuffer;
+    private final BufferPool bufferPool;
+    private final int blockSize;
     private final String filename;
     private final int logId;
     private final int fd;
     private final int maxSaneEntrySize;
     private final OpStatsLogger readBlockStats;
-    private long currentBlock = -1;
-    private long currentBlockEnd = -1;
-    private long maxOffset;
-    private boolean closed;
+    private final Slogger slog;
+    private final AtomicReferenceArray<Block> blocks = new AtomicReferenceArray<>(CACHED_BLOCKS);
+    // One reference held until the reader is closed, plus one for each read in progress
+    private final AtomicInteger refCount = new AtomicInteger(1);
+    private final AtomicBoolean closeRequested = new AtomicBoolean(false);
+    private volatile long maxOffset;
 
     DirectReader(int logId, String filename, ByteBufAllocator allocator,
                  NativeIO nativeIO, int bufferSize,
                  int maxSaneEntrySize, OpStatsLogger readBlockStats) throws IOException {
+        this(logId, filename, allocator, nativeIO, bufferSize, null,
+             maxSaneEntrySize, readBlockStats, Slogger.NULL);
+    }
+
+    DirectReader(int logId, String filename, ByteBufAllocator allocator,
+                 NativeIO nativeIO, BufferPool bufferPool,
+                 int maxSaneEntrySize, OpStatsLogger readBlockStats, Slogger slog) throws IOException {
+        this(logId, filename, allocator, nativeIO, bufferPool.bufferSize(), bufferPool,
+             maxSaneEntrySize, readBlockStats, slog);
+    }
+
+    private DirectReader(int logId, String filename, ByteBufAllocator allocator,
+                         NativeIO nativeIO, int bufferSize, BufferPool bufferPool,
+                         int maxSaneEntrySize, OpStatsLogger readBlockStats, Slogger slog) throws IOException {
+        assertValidBlockSize(bufferSize);
         this.nativeIO = nativeIO;
         this.allocator = allocator;
+        this.bufferPool = bufferPool;
+        this.blockSize = bufferSize;
         this.logId = logId;
         this.filename = filename;
         this.maxSaneEntrySize = maxSaneEntrySize;
         this.readBlockStats = readBlockStats;
-        closed = false;
+        this.slog = slog;
 
         try {
             fd = nativeIO.open(filename,
@@ -69,7 +112,6 @@ class DirectReader implements LogReader {
                                   .kv("errno", ne.getErrno()).toString());
         }
         refreshMaxOffset();
-        nativeBuffer = new Buffer(nativeIO, allocator, bufferSize);
     }
 
     @Override
@@ -78,78 +120,160 @@ class DirectReader implements LogReader {
     }
 
     private void clearCache() {
-        synchronized (nativeBuffer) {
-            currentBlock = -1;
-            currentBlockEnd = -1;
+        for (int i = 0; i < CACHED_BLOCKS; i++) {
+            Block block = blocks.getAndSet(i, null);
+            if (block != null) {
+                block.release();
+            }
         }
     }
 
     @Override
     public ByteBuf readBufferAt(long offset, int size) throws IOException, EOFException {
-        ByteBuf buf = allocator.buffer(size);
+        assertValidOffset(offset);
+        acquireRef();
         try {
-            readIntoBufferAt(buf, offset, size);
-        } catch (IOException e) {
-            ReferenceCountUtil.release(buf);
-            throw e;
+            return doReadBufferAt(offset, size);
+        } finally {
+            releaseRef();
         }
-
-        return buf;
     }
 
     @Override
     public void readIntoBufferAt(ByteBuf buffer, long offset, int size) throws IOException, EOFException {
         assertValidOffset(offset);
-        synchronized (nativeBuffer) {
-            while (size > 0) {
-                int bytesRead = readBytesIntoBuf(buffer, offset, size);
-                size -= bytesRead;
-                offset += bytesRead;
-            }
+        acquireRef();
+        try {
+            doReadIntoBufferAt(buffer, offset, size);
+        } finally {
+            releaseRef();
         }
     }
 
     @Override
     public int readIntAt(long offset) throws IOException, EOFException {
         assertValidOffset(offset);
-        synchronized (nativeBuffer) {
-            if (offset >= currentBlock && offset + Integer.BYTES <= currentBlockEnd) { // fast path
-                return nativeBuffer.readInt(offsetInBlock(offset));
-            } else { // slow path
-                ByteBuf intBuf = readBufferAt(offset, Integer.BYTES);
-                try {
-                    return intBuf.getInt(0);
-                } finally {
-                    ReferenceCountUtil.release(intBuf);
-                }
-            }
+        acquireRef();
+        try {
+            return doReadIntAt(offset);
+        } finally {
+            releaseRef();
         }
     }
 
     @Override
     public long readLongAt(long offset) throws IOException, EOFException {
         assertValidOffset(offset);
-        synchronized (nativeBuffer) {
-            if (offset >= currentBlock && offset + Long.BYTES <= currentBlockEnd) { // fast path
-                return nativeBuffer.readLong(offsetInBlock(offset));
-            } else { // slow path
-                ByteBuf longBuf = readBufferAt(offset, Long.BYTES);
-                try {
-                    return longBuf.getLong(0);
-                } finally {
-                    ReferenceCountUtil.release(longBuf);
+        acquireRef();
+        try {
+            return doReadLongAt(offset);
+        } finally {
+            releaseRef();
+        }
+    }
+
+    @Override
+    public ByteBuf readEntryAt(int offset) throws IOException, EOFException {
+        assertValidEntryOffset(offset);
+        acquireRef();
+        try {
+            return doReadEntryAt(offset);
+        } finally {
+            releaseRef();
+        }
+    }
+
+    @Override
+    public List<ByteBuf> readEntriesAt(int offset, long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, EOFException {
+        assertValidEntryOffset(offset);
+        acquireRef();
+        try {
+            List<ByteBuf> entries = new ArrayList<>();
+            ByteBuf entry = doReadEntryAt(offset);
+            entries.add(entry);
+            long size = entry.readableBytes();
+            long entryOffset = (long) offset + entry.readableBytes() + Integer.BYTES;
+            // The following entries are read from the cached blocks, one at a time, and only while they are the next
+            // entries of the ledger, so that no more than the blocks holding the batch are read
+            while (entries.size() < maxCount && entryOffset <= Integer.MAX_VALUE) {
+                entry = readNextEntryAt(entryOffset, ledgerId, firstEntryId + entries.size(), maxSize - size);
+                if (entry == null) {
+                    break;
                 }
+                entries.add(entry);
+                size += entry.readableBytes();
+                entryOffset += entry.readableBytes() + Integer.BYTES;
             }
+            return entries;
+        } finally {
+            releaseRef();
         }
     }
 
-    private int readBytesIntoBuf(ByteBuf buf, long offset, int size) throws IOException, EOFException {
-        synchronized (nativeBuffer) {
-            if (offset < currentBlock || offset >= currentBlockEnd) {
-                readBlock(offset);
+    // The doRead methods are called with a reference on the reader held, so that a read in progress completes
+    // even if the reader is closed meanwhile
+
+    private ByteBuf doReadBufferAt(long offset, int size) throws IOException, EOFException {
+        ByteBuf buf = allocator.buffer(size);
+        try {
+            doReadIntoBufferAt(buf, offset, size);
+        } catch (IOException e) {
+            ReferenceCountUtil.release(buf);
+            throw e;
+        }
+
+        return buf;
+    }
+
+    private void doReadIntoBufferAt(ByteBuf buffer, long offset, int size) throws IOException, EOFException {
+        while (size > 0) {
+            int bytesRead = readBytesIntoBuf(buffer, offset, size);
+            size -= bytesRead;
+            offset += bytesRead;
+        }
+    }
+
+    private int doReadIntAt(long offset) throws IOException, EOFException {
+        Block block = getBlock(offset);
+        try {
+            if (offset + Integer.BYTES <= block.end) { // fast path
+                return block.buffer.readInt(block.offsetInBlock(offset));
             }
-            int offsetInBuffer = offsetInBlock(offset);
-            int sizeInBuffer = sizeInBlock(offset, size);
+        } finally {
+            block.release();
+        }
+        // slow path, the value spans two blocks
+        ByteBuf intBuf = doReadBufferAt(offset, Integer.BYTES);
+        try {
+            return intBuf.getInt(0);
+        } finally {
+            ReferenceCountUtil.release(intBuf);
+        }
+    }
+
+    private long doReadLongAt(long offset) throws IOException, EOFException {
+        Block block = getBlock(offset);
+        try {
+            if (offset + Long.BYTES <= block.end) { // fast path
+                return block.buffer.readLong(block.offsetInBlock(offset));
+            }
+        } finally {
+            block.release();
+        }
+        // slow path, the value spans two blocks
+        ByteBuf longBuf = doReadBufferAt(offset, Long.BYTES);
+        try {
+            return longBuf.getLong(0);
+        } finally {
+            ReferenceCountUtil.release(longBuf);
+        }
+    }
+
+    private int readBytesIntoBuf(ByteBuf buf, long offset, int size) throws IOException, EOFException {
+        Block block = getBlock(offset);
+        try {
+            int sizeInBuffer = block.sizeInBlock(offset, size);
             if (sizeInBuffer <= 0) {
                 throw new EOFException(exMsg("Not enough bytes available")
                                       .kv("file", filename)
@@ -157,13 +281,13 @@ class DirectReader implements LogReader {
                                       .kv("offset", offset)
                                       .kv("size", size).toString());
             }
-            return nativeBuffer.readByteBuf(buf, offsetInBuffer, size);
+            return block.buffer.readByteBufAt(buf, block.offsetInBlock(offset), sizeInBuffer);
+        } finally {
+            block.release();
         }
     }
 
-    @Override
-    public ByteBuf readEntryAt(int offset) throws IOException, EOFException {
-        assertValidEntryOffset(offset);
+    private ByteBuf doReadEntryAt(int offset) throws IOException, EOFException {
         int sizeOffset = offset - Integer.BYTES;
         if (sizeOffset < 0) {
             throw new IOException(exMsg("Invalid offset, buffer size missing")
@@ -171,7 +295,7 @@ class DirectReader implements LogReader {
                                   .kv("offset", offset).toString());
         }
 
-        int entrySize = readIntAt(sizeOffset);
+        int entrySize = doReadIntAt(sizeOffset);
         if (entrySize == 0) {
             // reading an entry with size 0 may mean reading from preallocated
             // space. if we receive an offset in preallocated space, it may
@@ -179,7 +303,7 @@ class DirectReader implements LogReader {
             // of that block is out of date. So clear the cache and let it be
             // loaded again.
             clearCache();
-            entrySize = readIntAt(sizeOffset);
+            entrySize = doReadIntAt(sizeOffset);
         }
         if (entrySize > maxSaneEntrySize || entrySize <= 0) {
             throw new IOException(exMsg("Invalid entry size")
@@ -188,19 +312,97 @@ class DirectReader implements LogReader {
                                   .kv("maxSaneEntrySize", maxSaneEntrySize)
                                   .kv("readEntrySize", entrySize).toString());
         }
-        return readBufferAt(offset, entrySize);
+        return doReadBufferAt(offset, entrySize);
+    }
+
+    /**
+     * Read the entry at an offset, if it is the expected entry and fits in the remaining size.
+     *
+     * @return the entry, or null if the entry is not the expected one, is too large, is past the end of the written
+     *         entries, or can't be read
+     */
+    private ByteBuf readNextEntryAt(long offset, long ledgerId, long entryId, long remainingSize) {
+        try {
+            if (offset + 2 * Long.BYTES > maxOffset) {
+                // Check if there's new data in the file
+                refreshMaxOffset();
+                if (offset + 2 * Long.BYTES > maxOffset) {
+                    return null;
+                }
+            }
+            int entrySize = doReadIntAt(offset - Integer.BYTES);
+            if (entrySize < 2 * Long.BYTES || entrySize > maxSaneEntrySize || entrySize > remainingSize
+                    || doReadLongAt(offset) != ledgerId || doReadLongAt(offset + Long.BYTES) != entryId) {
+                return null;
+            }
+            return doReadBufferAt(offset, entrySize);
+        } catch (EOFException e) {
+            // End of the written entries
+            return null;
+        } catch (IOException e) {
+            // The entries read so far are returned, the next read of the entry on its own reports the error
+            slog.kv("file", filename).kv("logId", logId).kv("offset", offset).kv("ledgerId", ledgerId)
+                .kv("entryId", entryId).warn(Events.READ_NEXT_ENTRY_ERROR, e);
+            return null;
+        }
     }
 
-    void readBlock(long offset) throws IOException {
-        final int blockSize = nativeBuffer.size();
-        assertValidBlockSize(blockSize);
-        final long blockStart = offset & ~(blockSize - 1);
+    /**
+     * Get the block of the file holding the byte at an offset, from the cache or reading it.
+     *
+     * @return the block, retained for the caller
+     */
+    private Block getBlock(long offset) throws IOException {
+        final long blockStart = offset & ~((long) blockSize - 1);
+        final int slot = (int) ((blockStart / blockSize) % CACHED_BLOCKS);
+        Block block = blocks.get(slot);
+        if (block != null && block.start == blockStart && offset < block.end && block.tryRetain()) {
+            return block;
+        }
+        return readBlock(slot, blockStart);
+    }
 
+    private Block readBlock(int slot, long blockStart) throws IOException {
         if (blockStart + blockSize > maxOffset) {
             // Check if there's new data in the file
             refreshMaxOffset();
         }
-        final long bytesAvailable = maxOffset > blockStart ? maxOffset - blockStart : 0;
+        final long currentMaxOffset = maxOffset;
+        final long bytesAvailable = currentMaxOffset > blockStart ? currentMaxOffset - blockStart : 0;
+        Buffer buffer = bufferPool != null
+                ? bufferPool.acquireOrAllocate()
+                : new Buffer(nativeIO, allocator, blockSize);
+        try {
+            readAligned(buffer, blockStart, bytesAvailable);
+        } catch (IOException | RuntimeException e) {
+            releaseBuffer(buffer);
+            throw e;
+        }
+        Block block = new Block(blockStart, blockStart + Math.min(blockSize, bytesAvailable), buffer);
+        // One reference for the cache, one for the caller
+        block.retain();
+        Block evicted = blocks.getAndSet(slot, block);
+        if (evicted != null) {
+            evicted.release();
+        }
+        return block;
+    }
+
+    private void releaseBuffer(Buffer buffer) {
+        if (bufferPool != null) {
+            bufferPool.release(buffer);
+        } else {
+            buffer.free();
+        }
+    }
+
+    /**
+     * Read an aligned block of the file into a buffer.
+     *
+     * @return the number of bytes read, which may be less than the size of the buffer at the end of the file
+     */
+    private long readAligned(Buffer buffer, long blockStart, long bytesAvailable) throws IOException {
+        final int blockSize = buffer.size();
         final long startNs = System.nanoTime();
 
         long bufferOffset = 0;
@@ -210,7 +412,7 @@ class DirectReader implements LogReader {
         try {
             while (true) {
                 long readSize = blockSize - bufferOffset;
-                long pointerWithOffset = nativeBuffer.pointer(bufferOffset, readSize);
+                long pointerWithOffset = buffer.pointer(bufferOffset, readSize);
                 bytesRead = nativeIO.pread(fd, pointerWithOffset,
                                            readSize,
                                            blockStart + bufferOffset);
@@ -242,20 +444,47 @@ class DirectReader implements LogReader {
                                   .kv("errno", ne.getErrno()).toString());
         }
         readBlockStats.registerSuccessfulEvent(System.nanoTime() - startNs, TimeUnit.NANOSECONDS);
-        currentBlock = blockStart;
-        currentBlockEnd = blockStart + Math.min(blockSize, bytesAvailable);
+        return bufferOffset + bytesRead;
     }
 
     @Override
     public void close() throws IOException {
-        synchronized (nativeBuffer) {
-            nativeBuffer.free();
+        if (closeRequested.compareAndSet(false, true) && refCount.decrementAndGet() == 0) {
+            closeFile();
+        }
+    }
+
+    private void acquireRef() throws IOException {
+        while (true) {
+            int refs = refCount.get();
+            if (refs <= 0 || closeRequested.get()) {
+                throw new IOException(exMsg("Reader closed")
+                                      .kv("file", filename)
+                                      .kv("logId", logId).toString());
+            }
+            if (refCount.compareAndSet(refs, refs + 1)) {
+                return;
+            }
         }
+    }
+
+    private void releaseRef() {
+        if (refCount.decrementAndGet() == 0) {
+            // The reader was closed while this read was in progress
+            try {
+                closeFile();
+            } catch (IOException ioe) {
+                slog.kv("file", filename).kv("logId", logId).error(Events.READER_CLOSE_ERROR, ioe);
+            }
+        }
+    }
+
+    private void closeFile() throws IOException {
+        clearCache();
 
         try {
             int ret = nativeIO.close(fd);
             checkState(ret == 0, "Close should throw exception on non-zero return (%d)", ret);
-            closed = true;
         } catch (NativeIOException ne) {
             throw new IOException(exMsg(ne.getMessage())
                     .kv("file", filename)
@@ -265,7 +494,7 @@ class DirectReader implements LogReader {
 
     @Override
     public boolean isClosed() {
-        return closed;
+        return closeRequested.get();
     }
 
     @Override
@@ -279,7 +508,9 @@ class DirectReader implements LogReader {
             checkState(ret >= 0,
                                      "Lseek should throw exception on negative return (%d)", ret);
             synchronized (this) {
-                maxOffset = ret;
+                if (ret > maxOffset) {
+                    maxOffset = ret;
+                }
             }
         } catch (NativeIOException ne) {
             throw new IOException(exMsg(ne.getMessage())
@@ -289,29 +520,6 @@ class DirectReader implements LogReader {
         }
     }
 
-    private int offsetInBlock(long offset) {
-        long blockOffset = offset - currentBlock;
-        if (blockOffset < 0 || blockOffset > Integer.MAX_VALUE) {
-            throw new IllegalArgumentException(exMsg("Invalid offset passed")
-                                               .kv("offset", offset).kv("blockOffset", blockOffset)
-                                               .kv("currentBlock", currentBlock).toString());
-        }
-        return (int) blockOffset;
-    }
-
-    private int sizeInBlock(long offset, int size) {
-        if (offset > currentBlockEnd || offset < currentBlock) {
-            throw new IllegalArgumentException(exMsg("Invalid offset passed")
-                                               .kv("offset", offset)
-                                               .kv("currentBlock", currentBlock)
-                                               .kv("currentBlockEnd", currentBlockEnd).toString());
-        }
-
-        long available = currentBlockEnd - offset;
-        checkState(available <= Integer.MAX_VALUE, "Available(%d) must be less than max int", available);
-        return Math.min(size, (int) available);
-    }
-
     private static void assertValidOffset(long offset) {
         if (offset < 0) {
             throw new IllegalArgumentException(
@@ -336,4 +544,63 @@ class DirectReader implements LogReader {
                     .kv("minBlockSize", Buffer.ALIGNMENT).toString());
         }
     }
+
+    /**
+     * Block of the file read into a buffer. The buffer is released once the block is evicted from the cache
+     * and the reads using it are done.
+     */
+    private class Block extends AbstractReferenceCounted {
+        private final long start;
+        private final long end;
+        private final Buffer buffer;
+
+        Block(long start, long end, Buffer buffer) {
+            this.start = start;
+            this.end = end;
+            this.buffer = buffer;
+        }
+
+        boolean tryRetain() {
+            try {
+                retain();
+                return true;
+            } catch (IllegalReferenceCountException e) {
+                // The block was evicted and released meanwhile
+                return false;
+            }
+        }
+
+        int offsetInBlock(long offset) {
+            long blockOffset = offset - start;
+            if (blockOffset < 0 || blockOffset > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(exMsg("Invalid offset passed")
+                                                   .kv("offset", offset).kv("blockOffset", blockOffset)
+                                                   .kv("currentBlock", start).toString());
+            }
+            return (int) blockOffset;
+        }
+
+        int sizeInBlock(long offset, int size) {
+            if (offset > end || offset < start) {
+                throw new IllegalArgumentException(exMsg("Invalid offset passed")
+                                                   .kv("offset", offset)
+                                                   .kv("currentBlock", start)
+                                                   .kv("currentBlockEnd", end).toString());
+            }
+
+            long available = end - offset;
+            checkState(available <= Integer.MAX_VALUE, "Available(%d) must be less than max int", available);
+            return Math.min(size, (int) available);
+        }
+
+        @Override
+        protected void deallocate() {
+            releaseBuffer(buffer);
+        }
+
+        @Override
+        public ReferenceCounted touch(Object hint) {
+            return this;
+        }
+    }
 }
@@ -73,6 +73,12 @@ public enum Events {
      */
     READER_CLOSE_ERROR,
 
+    /**
+     * An error occurred reading an entry following the first entry of a batch read. The batch is cut short before
+     * that entry.
+     */
+    READ_NEXT_ENTRY_ERROR,
+
     /**
      * An attempt to read entrylog metadata failed. Falling back to scanning the log to get the metadata.
      * This can occur if a bookie crashes before closing the entrylog cleanly.
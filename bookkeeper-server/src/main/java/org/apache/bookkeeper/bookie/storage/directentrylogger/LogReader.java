@@ -23,6 +23,7 @@ package org.apache.bookkeeper.bookie.storage.directentrylogger;
 import io.netty.buffer.ByteBuf;
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Interface for reading from a bookkeeper entry log.
@@ -73,6 +74,21 @@ public interface LogReader extends AutoCloseable {
      */
     ByteBuf readEntryAt(int offset) throws IOException, EOFException;
 
+    /**
+     * Read the entries following each other in the log, starting at a given offset.
+     * The entries following the first one are only read while they are the next entries
+     * of the ledger, up to a number of entries and a number of bytes.
+     * It is the responsibility of the caller to release the returned buffers.
+     * @param offset the offset at which to read the first entry.
+     * @param ledgerId the ledger of the entries.
+     * @param firstEntryId the entry id of the first entry.
+     * @param maxCount the max number of entries to read.
+     * @param maxSize the max number of bytes of the entries, the first entry is read even if larger.
+     * @return the entries, at least the first one. The caller must release.
+     */
+    List<ByteBuf> readEntriesAt(int offset, long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, EOFException;
+
     @Override
     void close() throws IOException;
 
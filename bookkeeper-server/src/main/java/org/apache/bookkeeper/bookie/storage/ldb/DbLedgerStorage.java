@@ -106,6 +106,12 @@ public class DbLedgerStorage implements LedgerStorage {
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_SIZE = 100;
     // the default value is -1. this feature(limit of read ahead bytes) is disabled
     private static final int DEFAULT_READ_AHEAD_CACHE_BATCH_BYTES_SIZE = -1;
+    static final String READ_CACHE_EVICTION_POLICY = "dbStorage_readCacheEvictionPolicy";
+    static final String READ_AHEAD_ADAPTIVE_ENABLED = "dbStorage_readAheadAdaptiveEnabled";
+    static final String READ_AHEAD_MAX_BATCH_SIZE = "dbStorage_readAheadMaxBatchSize";
+    static final String READ_AHEAD_THREADS = "dbStorage_readAheadThreads";
+    static final String WRITE_CACHE_FLUSH_SHARDS = "dbStorage_writeCacheFlushShards";
+    static final String WRITE_CACHES_COUNT = "dbStorage_writeCachesCount";
 
     private static final long DEFAULT_DIRECT_IO_TOTAL_WRITEBUFFER_SIZE_MB =
         (long) (0.125 * PlatformDependent.estimateMaxDirectMemory())
@@ -361,6 +367,17 @@ public class DbLedgerStorage implements LedgerStorage {
         return getLedgerStorage(ledgerId).getEntry(ledgerId, entryId);
     }
 
+    @Override
+    public ByteBuf getEntryIfCached(long ledgerId, long entryId) throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).getEntryIfCached(ledgerId, entryId);
+    }
+
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        return getLedgerStorage(ledgerId).getEntries(ledgerId, firstEntryId, maxCount, maxSize);
+    }
+
     @Override
     public long getLastAddConfirmed(long ledgerId) throws IOException, BookieException {
         return getLedgerStorage(ledgerId).getLastAddConfirmed(ledgerId);
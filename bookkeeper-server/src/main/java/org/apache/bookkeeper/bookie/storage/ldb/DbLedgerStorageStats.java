@@ -52,14 +52,18 @@ class DbLedgerStorageStats {
     private static final String WRITE_CACHE_MISSES = "write-cache-misses";
     private static final String READ_CACHE_HITS = "read-cache-hits";
     private static final String READ_CACHE_MISSES = "read-cache-misses";
+    private static final String READ_CACHE_ADMISSION_REJECTS = "read-cache-admission-rejects";
     private static final String READAHEAD_BATCH_COUNT = "readahead-batch-count";
     private static final String READAHEAD_BATCH_SIZE = "readahead-batch-size";
     private static final String READAHEAD_TIME = "readahead-time";
+    private static final String READAHEAD_SKIPPED = "readahead-skipped";
+    private static final String READAHEAD_REJECTED = "readahead-rejected";
     private static final String FLUSH = "flush";
     private static final String FLUSH_ENTRYLOG = "flush-entrylog";
     private static final String FLUSH_LOCATIONS_INDEX = "flush-locations-index";
     private static final String FLUSH_LEDGER_INDEX = "flush-ledger-index";
     private static final String FLUSH_SIZE = "flush-size";
+    private static final String FLUSH_THROUGHPUT = "flush-throughput";
 
     @Deprecated
     private static final String THROTTLED_WRITE_REQUESTS = "throttled-write-requests";
@@ -68,6 +72,7 @@ class DbLedgerStorageStats {
     private static final String REJECTED_WRITE_REQUESTS = "rejected-write-requests";
     private static final String WRITE_CACHE_SIZE = "write-cache-size";
     private static final String WRITE_CACHE_COUNT = "write-cache-count";
+    private static final String WRITE_CACHES_BEING_FLUSHED = "write-caches-being-flushed";
     private static final String READ_CACHE_SIZE = "read-cache-size";
     private static final String READ_CACHE_COUNT = "read-cache-count";
 
@@ -119,6 +124,12 @@ class DbLedgerStorageStats {
         parent = READ_ENTRY
     )
     private final Counter readCacheMissCounter;
+    @StatsDoc(
+        name = READ_CACHE_ADMISSION_REJECTS,
+        help = "number of entries read from entry logs that were not admitted in the read cache",
+        parent = READ_ENTRY
+    )
+    private final Counter readCacheAdmissionRejectCounter;
     @StatsDoc(
         name = READAHEAD_BATCH_COUNT,
         help = "the distribution of num of entries to read in one readahead batch"
@@ -134,6 +145,17 @@ class DbLedgerStorageStats {
             help = "Time spent on readahead operations"
     )
     private final Counter readAheadTime;
+    @StatsDoc(
+            name = READAHEAD_SKIPPED,
+            help = "number of read cache misses that did not trigger a readahead, because the ledger is not read"
+                    + " sequentially or a readahead is already in progress"
+    )
+    private final Counter readAheadSkippedCounter;
+    @StatsDoc(
+            name = READAHEAD_REJECTED,
+            help = "number of readahead operations dropped because too many were pending"
+    )
+    private final Counter readAheadRejectedCounter;
     @StatsDoc(
         name = FLUSH,
         help = "operation stats of flushing write cache to entry log files"
@@ -159,6 +181,11 @@ class DbLedgerStorageStats {
         help = "the distribution of number of bytes flushed from write cache to entry log files"
     )
     private final OpStatsLogger flushSizeStats;
+    @StatsDoc(
+        name = FLUSH_THROUGHPUT,
+        help = "the distribution of the throughput, in MB/s, of flushing write cache to entry log files"
+    )
+    private final OpStatsLogger flushThroughputStats;
     @StatsDoc(
         name = THROTTLED_WRITE_REQUESTS,
         help = "The number of requests throttled due to write cache is full"
@@ -185,6 +212,11 @@ class DbLedgerStorageStats {
         help = "Current number of entries in write cache"
     )
     private final Gauge<Long> writeCacheCountGauge;
+    @StatsDoc(
+        name = WRITE_CACHES_BEING_FLUSHED,
+        help = "Current number of full write caches waiting to be flushed"
+    )
+    private final Gauge<Long> writeCachesBeingFlushedGauge;
     @StatsDoc(
         name = READ_CACHE_SIZE,
         help = "Current number of bytes in read cache"
@@ -200,23 +232,28 @@ class DbLedgerStorageStats {
                          Supplier<Long> writeCacheSizeSupplier,
                          Supplier<Long> writeCacheCountSupplier,
                          Supplier<Long> readCacheSizeSupplier,
-                         Supplier<Long> readCacheCountSupplier) {
+                         Supplier<Long> readCacheCountSupplier,
+                         Supplier<Long> writeCachesBeingFlushedSupplier) {
         addEntryStats = stats.getThreadScopedOpStatsLogger(ADD_ENTRY);
         readEntryStats = stats.getThreadScopedOpStatsLogger(READ_ENTRY);
         readFromLocationIndexTime = stats.getThreadScopedCounter(READ_ENTRY_LOCATIONS_INDEX_TIME);
         readFromEntryLogTime = stats.getThreadScopedCounter(READ_ENTRYLOG_TIME);
         readCacheHitCounter = stats.getCounter(READ_CACHE_HITS);
         readCacheMissCounter = stats.getCounter(READ_CACHE_MISSES);
+        readCacheAdmissionRejectCounter = stats.getCounter(READ_CACHE_ADMISSION_REJECTS);
         writeCacheHitCounter = stats.getCounter(WRITE_CACHE_HITS);
         writeCacheMissCounter = stats.getCounter(WRITE_CACHE_MISSES);
         readAheadBatchCountStats = stats.getOpStatsLogger(READAHEAD_BATCH_COUNT);
         readAheadBatchSizeStats = stats.getOpStatsLogger(READAHEAD_BATCH_SIZE);
         readAheadTime = stats.getThreadScopedCounter(READAHEAD_TIME);
+        readAheadSkippedCounter = stats.getCounter(READAHEAD_SKIPPED);
+        readAheadRejectedCounter = stats.getCounter(READAHEAD_REJECTED);
         flushStats = stats.getOpStatsLogger(FLUSH);
         flushEntryLogStats = stats.getOpStatsLogger(FLUSH_ENTRYLOG);
         flushLocationIndexStats = stats.getOpStatsLogger(FLUSH_LOCATIONS_INDEX);
         flushLedgerIndexStats = stats.getOpStatsLogger(FLUSH_LEDGER_INDEX);
         flushSizeStats = stats.getOpStatsLogger(FLUSH_SIZE);
+        flushThroughputStats = stats.getOpStatsLogger(FLUSH_THROUGHPUT);
 
         throttledWriteRequests = stats.getThreadScopedCounter(THROTTLED_WRITE_REQUESTS);
         throttledWriteStats = stats.getOpStatsLogger(THROTTLED_WRITE);
@@ -246,6 +283,18 @@ class DbLedgerStorageStats {
             }
         };
         stats.registerGauge(WRITE_CACHE_COUNT, writeCacheCountGauge);
+        writeCachesBeingFlushedGauge = new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return writeCachesBeingFlushedSupplier.get();
+            }
+        };
+        stats.registerGauge(WRITE_CACHES_BEING_FLUSHED, writeCachesBeingFlushedGauge);
         readCacheSizeGauge = new Gauge<Long>() {
             @Override
             public Long getDefaultValue() {
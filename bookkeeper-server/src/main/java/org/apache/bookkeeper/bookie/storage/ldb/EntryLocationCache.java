@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+
+/**
+ * Fixed-size cache of (ledgerId, entryId) -&gt; location mappings.
+ *
+ * <p>The memory is organized as a hash table of buckets of 2 slots, with each slot holding the ledger id, the entry
+ * id, the location and a checksum of the 3 of them. When both slots of a bucket are taken, a new mapping replaces
+ * one of them, so the cache never uses more than the configured amount of memory, and never needs to be resized.
+ *
+ * <p>No locks are taken: a slot is written by first invalidating its checksum, and a reader only accepts a slot
+ * when the checksum matches its content. The slots are accessed with volatile semantics, so a reader racing with a
+ * writer will see a miss, rather than a mix of the old and the new mapping.
+ */
+class EntryLocationCache {
+
+    private static final int SLOT_SIZE = 4;
+    private static final int SLOTS_PER_BUCKET = 2;
+    private static final int BUCKET_SIZE = SLOT_SIZE * SLOTS_PER_BUCKET;
+
+    private static final int MAX_BUCKETS = 1 << 24;
+
+    private static final int LEDGER_ID_OFFSET = 0;
+    private static final int ENTRY_ID_OFFSET = 1;
+    private static final int LOCATION_OFFSET = 2;
+    private static final int CHECKSUM_OFFSET = 3;
+
+    private final AtomicLongArray table;
+    private final int bucketMask;
+
+    EntryLocationCache(long maxSizeBytes) {
+        long buckets = Math.max(1, Math.min(MAX_BUCKETS, maxSizeBytes / (BUCKET_SIZE * Long.BYTES)));
+        int bucketsCount = (int) Long.highestOneBit(buckets);
+        this.bucketMask = bucketsCount - 1;
+        this.table = new AtomicLongArray(bucketsCount * BUCKET_SIZE);
+    }
+
+    /**
+     * @return the number of mappings the cache can hold
+     */
+    int capacity() {
+        return table.length() / SLOT_SIZE;
+    }
+
+    /**
+     * @return the location of the entry, or 0 if not found in the cache
+     */
+    long get(long ledgerId, long entryId) {
+        long hash = hash(ledgerId, entryId);
+        int bucketOffset = bucketOffset(hash);
+
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            int slot = bucketOffset + i * SLOT_SIZE;
+            if (table.get(slot + LEDGER_ID_OFFSET) == ledgerId
+                    && table.get(slot + ENTRY_ID_OFFSET) == entryId) {
+                long location = table.get(slot + LOCATION_OFFSET);
+                if (table.get(slot + CHECKSUM_OFFSET) == checksum(ledgerId, entryId, location)) {
+                    return location;
+                }
+            }
+        }
+
+        return 0;
+    }
+
+    void put(long ledgerId, long entryId, long location) {
+        long hash = hash(ledgerId, entryId);
+        int bucketOffset = bucketOffset(hash);
+
+        // Reuse the slot with the same key, otherwise an empty slot, otherwise pick one based on the hash
+        int targetSlot = -1;
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            int slot = bucketOffset + i * SLOT_SIZE;
+            if (table.get(slot + LEDGER_ID_OFFSET) == ledgerId
+                    && table.get(slot + ENTRY_ID_OFFSET) == entryId) {
+                targetSlot = slot;
+                break;
+            } else if (targetSlot < 0 && table.get(slot + CHECKSUM_OFFSET) == 0) {
+                targetSlot = slot;
+            }
+        }
+
+        if (targetSlot < 0) {
+            targetSlot = bucketOffset + (int) ((hash >>> 32) & (SLOTS_PER_BUCKET - 1)) * SLOT_SIZE;
+        }
+
+        table.set(targetSlot + CHECKSUM_OFFSET, 0);
+        table.set(targetSlot + LEDGER_ID_OFFSET, ledgerId);
+        table.set(targetSlot + ENTRY_ID_OFFSET, entryId);
+        table.set(targetSlot + LOCATION_OFFSET, location);
+        table.set(targetSlot + CHECKSUM_OFFSET, checksum(ledgerId, entryId, location));
+    }
+
+    /**
+     * Drop the mapping of the given entry, if any.
+     */
+    void remove(long ledgerId, long entryId) {
+        int bucketOffset = bucketOffset(hash(ledgerId, entryId));
+        for (int i = 0; i < SLOTS_PER_BUCKET; i++) {
+            int slot = bucketOffset + i * SLOT_SIZE;
+            if (table.get(slot + LEDGER_ID_OFFSET) == ledgerId
+                    && table.get(slot + ENTRY_ID_OFFSET) == entryId) {
+                table.set(slot + CHECKSUM_OFFSET, 0);
+            }
+        }
+    }
+
+    /**
+     * Drop all the mappings of the given ledgers.
+     *
+     * <p>This requires a full scan of the cache, so it should only be called in background.
+     */
+    void removeLedgers(ConcurrentLongHashSet ledgerIds) {
+        int length = table.length();
+        for (int slot = 0; slot < length; slot += SLOT_SIZE) {
+            if (table.get(slot + CHECKSUM_OFFSET) != 0
+                    && ledgerIds.contains(table.get(slot + LEDGER_ID_OFFSET))) {
+                table.set(slot + CHECKSUM_OFFSET, 0);
+            }
+        }
+    }
+
+    private int bucketOffset(long hash) {
+        return ((int) hash & bucketMask) * BUCKET_SIZE;
+    }
+
+    private static long hash(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9e3779b97f4a7c15L + entryId;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static long checksum(long ledgerId, long entryId, long location) {
+        // Never 0, so that an empty or invalidated slot can't match
+        return (hash(ledgerId ^ location, entryId) * 31 + location) | 1L;
+    }
+}
@@ -23,9 +23,11 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 import com.google.common.collect.Iterables;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.bookkeeper.bookie.Bookie;
 import org.apache.bookkeeper.bookie.EntryLocation;
 import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
@@ -45,7 +47,16 @@ import org.slf4j.LoggerFactory;
  */
 public class EntryLocationIndex implements Closeable {
 
+    static final String ENTRY_LOCATION_CACHE_MAX_SIZE_MB = "dbStorage_entryLocationCacheMaxSizeMb";
+
+    private static final long MB = 1024 * 1024;
+
     private final KeyValueStorage locationsDb;
+    // Optional cache of the most recent locations, to avoid going into the db. Null if disabled
+    private final EntryLocationCache locationCache;
+    // Bumped each time locations are updated or deleted in the db, so that a lookup racing with the change doesn't
+    // leave the old location in the cache
+    private final AtomicLong locationsGeneration = new AtomicLong();
     private final ConcurrentLongHashSet deletedLedgers = ConcurrentLongHashSet.newBuilder().build();
     private final EntryLocationIndexStats stats;
     private boolean isCompacting;
@@ -54,6 +65,15 @@ public class EntryLocationIndex implements Closeable {
             StatsLogger stats) throws IOException {
         locationsDb = storageFactory.newKeyValueStorage(basePath, "locations", DbConfigType.EntryLocation, conf);
 
+        long locationCacheSize = DbLedgerStorage.getLongVariableOrDefault(conf, ENTRY_LOCATION_CACHE_MAX_SIZE_MB, 0)
+                * MB / conf.getLedgerDirNames().length;
+        if (locationCacheSize > 0) {
+            log.info("Entry location cache enabled with size {} MB", locationCacheSize / MB);
+            locationCache = new EntryLocationCache(locationCacheSize);
+        } else {
+            locationCache = null;
+        }
+
         this.stats = new EntryLocationIndexStats(
             stats,
             () -> {
@@ -71,9 +91,19 @@ public class EntryLocationIndex implements Closeable {
     }
 
     public long getLocation(long ledgerId, long entryId) throws IOException {
+        if (locationCache != null) {
+            long location = locationCache.get(ledgerId, entryId);
+            if (location != 0) {
+                stats.getLocationCacheHitCounter().inc();
+                return location;
+            }
+            stats.getLocationCacheMissCounter().inc();
+        }
+
         LongPairWrapper key = LongPairWrapper.get(ledgerId, entryId);
         LongWrapper value = LongWrapper.get();
 
+        long generation = locationsGeneration.get();
         long startTimeNanos = MathUtils.nowInNano();
         boolean operationSuccess = false;
         try {
@@ -84,7 +114,15 @@ public class EntryLocationIndex implements Closeable {
                 return 0;
             }
             operationSuccess = true;
-            return value.getValue();
+            long location = value.getValue();
+            if (locationCache != null) {
+                locationCache.put(ledgerId, entryId, location);
+                if (locationsGeneration.get() != generation) {
+                    // The location might have changed after it was read from the db
+                    locationCache.remove(ledgerId, entryId);
+                }
+            }
+            return location;
         } finally {
             key.recycle();
             value.recycle();
@@ -139,14 +177,15 @@ public class EntryLocationIndex implements Closeable {
     }
 
     public void addLocation(long ledgerId, long entryId, long location) throws IOException {
-        Batch batch = locationsDb.newBatch();
+        Batch batch = newBatch();
         addLocation(batch, ledgerId, entryId, location);
         batch.flush();
         batch.close();
     }
 
     public Batch newBatch() {
-        return locationsDb.newBatch();
+        Batch batch = locationsDb.newBatch();
+        return locationCache != null ? new LocationCacheBatch(batch) : batch;
     }
 
     public void addLocation(Batch batch, long ledgerId, long entryId, long location) throws IOException {
@@ -163,6 +202,10 @@ public class EntryLocationIndex implements Closeable {
             key.recycle();
             value.recycle();
         }
+
+        if (batch instanceof LocationCacheBatch) {
+            ((LocationCacheBatch) batch).addLocation(ledgerId, entryId, location);
+        }
     }
 
     public void updateLocations(Iterable<EntryLocation> newLocations) throws IOException {
@@ -233,6 +276,10 @@ public class EntryLocationIndex implements Closeable {
             }
 
             batch.flush();
+            if (locationCache != null) {
+                locationsGeneration.incrementAndGet();
+                locationCache.removeLedgers(deletedLedgers);
+            }
             for (long ledgerId : ledgersToDelete) {
                 deletedLedgers.remove(ledgerId);
             }
@@ -245,5 +292,90 @@ public class EntryLocationIndex implements Closeable {
                 TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime) / 1000.0);
     }
 
+    /**
+     * Batch that exposes its locations in the location cache once they are flushed to the db.
+     *
+     * <p>Only the last locations that fit in the cache are kept.
+     */
+    private class LocationCacheBatch implements Batch {
+        private final Batch batch;
+        private final int maxLocations;
+        private long[] locations = new long[3 * 1024];
+        private int locationsIdx = 0;
+        private boolean wrapped = false;
+
+        LocationCacheBatch(Batch batch) {
+            this.batch = batch;
+            this.maxLocations = 3 * locationCache.capacity();
+        }
+
+        void addLocation(long ledgerId, long entryId, long location) {
+            if (locationsIdx == locations.length) {
+                if (locations.length < maxLocations) {
+                    locations = Arrays.copyOf(locations, Math.min(maxLocations, 2 * locations.length));
+                } else {
+                    locationsIdx = 0;
+                    wrapped = true;
+                }
+            }
+            locations[locationsIdx] = ledgerId;
+            locations[locationsIdx + 1] = entryId;
+            locations[locationsIdx + 2] = location;
+            locationsIdx += 3;
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) throws IOException {
+            batch.put(key, value);
+        }
+
+        @Override
+        public void remove(byte[] key) throws IOException {
+            batch.remove(key);
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) throws IOException {
+            batch.deleteRange(beginKey, endKey);
+        }
+
+        @Override
+        public void clear() {
+            batch.clear();
+            locationsIdx = 0;
+            wrapped = false;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            batch.flush();
+
+            locationsGeneration.incrementAndGet();
+            if (wrapped) {
+                // The oldest locations are after the index
+                putLocations(locationsIdx, locations.length);
+            }
+            putLocations(0, locationsIdx);
+            locationsIdx = 0;
+            wrapped = false;
+        }
+
+        private void putLocations(int from, int to) {
+            for (int i = from; i < to; i += 3) {
+                locationCache.put(locations[i], locations[i + 1], locations[i + 2]);
+            }
+        }
+
+        @Override
+        public int batchCount() {
+            return batch.batchCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            batch.close();
+        }
+    }
+
     private static final Logger log = LoggerFactory.getLogger(EntryLocationIndex.class);
 }
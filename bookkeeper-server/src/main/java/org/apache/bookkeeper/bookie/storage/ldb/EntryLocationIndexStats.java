@@ -24,6 +24,7 @@ import static org.apache.bookkeeper.bookie.BookKeeperServerStats.CATEGORY_SERVER
 
 import java.util.function.Supplier;
 import lombok.Getter;
+import org.apache.bookkeeper.stats.Counter;
 import org.apache.bookkeeper.stats.Gauge;
 import org.apache.bookkeeper.stats.OpStatsLogger;
 import org.apache.bookkeeper.stats.StatsLogger;
@@ -42,6 +43,8 @@ class EntryLocationIndexStats {
 
     private static final String ENTRIES_COUNT = "entries-count";
     private static final String LOOKUP_ENTRY_LOCATION = "lookup-entry-location";
+    private static final String LOCATION_CACHE_HITS = "entry-location-cache-hits";
+    private static final String LOCATION_CACHE_MISSES = "entry-location-cache-misses";
 
     @StatsDoc(
         name = ENTRIES_COUNT,
@@ -55,6 +58,18 @@ class EntryLocationIndexStats {
     )
     private final OpStatsLogger lookupEntryLocationStats;
 
+    @StatsDoc(
+            name = LOCATION_CACHE_HITS,
+            help = "number of entry location lookups served by the entry location cache"
+    )
+    private final Counter locationCacheHitCounter;
+
+    @StatsDoc(
+            name = LOCATION_CACHE_MISSES,
+            help = "number of entry location lookups not found in the entry location cache"
+    )
+    private final Counter locationCacheMissCounter;
+
     EntryLocationIndexStats(StatsLogger statsLogger,
                             Supplier<Long> entriesCountSupplier) {
         entriesCountGauge = new Gauge<Long>() {
@@ -70,6 +85,8 @@ class EntryLocationIndexStats {
         };
         statsLogger.registerGauge(ENTRIES_COUNT, entriesCountGauge);
         lookupEntryLocationStats = statsLogger.getOpStatsLogger(LOOKUP_ENTRY_LOCATION);
+        locationCacheHitCounter = statsLogger.getCounter(LOCATION_CACHE_HITS);
+        locationCacheMissCounter = statsLogger.getCounter(LOCATION_CACHE_MISSES);
     }
 
 }
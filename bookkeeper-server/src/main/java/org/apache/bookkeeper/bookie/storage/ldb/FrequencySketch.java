@@ -0,0 +1,147 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Approximate access frequency estimator for (ledgerId, entryId) keys.
+ *
+ * <p>This is a count-min sketch with 4-bit counters, as described in the TinyLFU paper. Each key maps to 4 counters
+ * and its frequency is the minimum among them, so the estimate can only be higher than the real value. Counters
+ * saturate at 15.
+ *
+ * <p>To let the sketch follow changes in the access pattern, all the counters are halved once the number of recorded
+ * accesses reaches 10 times the table size.
+ *
+ * <p>The sketch is thread-safe. Concurrent updates are applied with CAS operations, though the aging step is not
+ * atomic with respect to concurrent increments, which only adds a small error to the estimation.
+ */
+class FrequencySketch {
+
+    static final int MAX_FREQUENCY = 15;
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS = {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private final AtomicLongArray table;
+    private final int tableMask;
+    private final long sampleSize;
+    private final LongAdder additions = new LongAdder();
+
+    FrequencySketch(long expectedItems) {
+        int length = (int) Math.min(1 << 24, Math.max(64, Long.highestOneBit(Math.max(1, expectedItems - 1)) << 1));
+        this.table = new AtomicLongArray(length);
+        this.tableMask = length - 1;
+        this.sampleSize = 10L * length;
+    }
+
+    /**
+     * @return the estimated number of times the key was recorded, in the range [0, 15]
+     */
+    int frequency(long ledgerId, long entryId) {
+        long hash = spread(ledgerId, entryId);
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            long h = rehash(hash, i);
+            long value = table.get(indexOf(h));
+            frequency = Math.min(frequency, (int) ((value >>> offsetOf(h)) & 0xfL));
+        }
+        return frequency;
+    }
+
+    /**
+     * Record one access to the key.
+     */
+    void increment(long ledgerId, long entryId) {
+        long hash = spread(ledgerId, entryId);
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            long h = rehash(hash, i);
+            added |= incrementAt(indexOf(h), offsetOf(h));
+        }
+
+        if (added) {
+            additions.increment();
+            if (additions.sum() >= sampleSize) {
+                reset();
+            }
+        }
+    }
+
+    private boolean incrementAt(int index, int offset) {
+        long mask = 0xfL << offset;
+        while (true) {
+            long value = table.get(index);
+            if ((value & mask) == mask) {
+                // Counter is already saturated
+                return false;
+            }
+
+            if (table.compareAndSet(index, value, value + (1L << offset))) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Halve all the counters, so that old accesses weigh less than recent ones.
+     */
+    private synchronized void reset() {
+        if (additions.sum() < sampleSize) {
+            // Another thread already aged the sketch
+            return;
+        }
+
+        for (int i = 0; i < table.length(); i++) {
+            long value;
+            do {
+                value = table.get(i);
+            } while (!table.compareAndSet(i, value, (value >>> 1) & RESET_MASK));
+        }
+
+        additions.add(-(additions.sum() / 2));
+    }
+
+    private int indexOf(long h) {
+        return (int) (h >>> 32) & tableMask;
+    }
+
+    private static int offsetOf(long h) {
+        return ((int) h & 0xf) << 2;
+    }
+
+    private static long rehash(long hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        return h ^ (h >>> 29);
+    }
+
+    private static long spread(long ledgerId, long entryId) {
+        long h = ledgerId * 0x9e3779b97f4a7c15L + entryId;
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashMap;
+
+/**
+ * Tracks the read cache misses of each ledger, to decide how many entries to read ahead.
+ *
+ * <p>A miss on the entry right after the previous read-ahead window means the ledger is being scanned sequentially,
+ * and the window is doubled, up to the max size. A miss anywhere else means the ledger is being read at random, and
+ * the window is shrunk, until read-ahead gets disabled. A miss on an entry that falls inside the window of a
+ * read-ahead that is still in progress doesn't change the window and doesn't trigger another read-ahead. A miss
+ * inside the window of a completed read-ahead, whose entries were already evicted from the cache, starts a new
+ * window of the same size from that entry.
+ *
+ * <p>The first miss on a ledger uses the initial window size.
+ */
+class ReadAheadTracker {
+
+    private static final long STALE_PATTERN_TIME_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Factor applied to the window when a ledger is not read sequentially
+    private static final int SHRINK_FACTOR = 4;
+
+    private final int initialWindow;
+    private final int maxWindow;
+
+    private final ConcurrentLongHashMap<AccessPattern> patterns;
+
+    private static class AccessPattern {
+        // Entry that caused the latest read-ahead
+        long lastMissEntryId;
+        // First entry after the latest read-ahead window
+        long nextEntryId;
+        int window;
+        // Whether the read-ahead of the latest window has not completed yet
+        boolean inProgress;
+        volatile long lastAccessed;
+    }
+
+    ReadAheadTracker(int initialWindow, int maxWindow) {
+        this.initialWindow = initialWindow;
+        this.maxWindow = Math.max(initialWindow, maxWindow);
+        this.patterns = ConcurrentLongHashMap.<AccessPattern>newBuilder()
+                .expectedItems(1024)
+                .concurrencyLevel(Runtime.getRuntime().availableProcessors() * 2)
+                .build();
+    }
+
+    /**
+     * Record a read cache miss.
+     *
+     * @return the number of entries to read ahead after the missed entry, 0 to skip read-ahead
+     */
+    int onCacheMiss(long ledgerId, long entryId) {
+        AccessPattern pattern = patterns.get(ledgerId);
+        if (pattern == null) {
+            AccessPattern newPattern = new AccessPattern();
+            newPattern.lastMissEntryId = entryId;
+            newPattern.nextEntryId = entryId + 1 + initialWindow;
+            newPattern.window = initialWindow;
+            newPattern.inProgress = initialWindow > 0;
+            newPattern.lastAccessed = System.currentTimeMillis();
+            pattern = patterns.putIfAbsent(ledgerId, newPattern);
+            if (pattern == null) {
+                return initialWindow;
+            }
+        }
+
+        synchronized (pattern) {
+            pattern.lastAccessed = System.currentTimeMillis();
+            if (entryId > pattern.lastMissEntryId && entryId < pattern.nextEntryId) {
+                if (pattern.inProgress) {
+                    // The read-ahead for this entry is still in progress
+                    return 0;
+                }
+                // The entry was read ahead and evicted since, read ahead again from there with the same window
+            } else if (entryId == pattern.nextEntryId) {
+                pattern.window = pattern.window == 0 ? initialWindow : Math.min(pattern.window * 2, maxWindow);
+            } else {
+                pattern.window /= SHRINK_FACTOR;
+            }
+
+            pattern.lastMissEntryId = entryId;
+            pattern.nextEntryId = entryId + 1 + pattern.window;
+            pattern.inProgress = pattern.window > 0;
+            return pattern.window;
+        }
+    }
+
+    /**
+     * Record the end of a read-ahead, which might have stopped before the end of the window (eg: at the end of the
+     * entry log).
+     *
+     * @param nextEntryId the first entry that was not read ahead
+     */
+    void onReadAheadComplete(long ledgerId, long nextEntryId) {
+        AccessPattern pattern = patterns.get(ledgerId);
+        if (pattern == null) {
+            return;
+        }
+
+        synchronized (pattern) {
+            if (nextEntryId > pattern.lastMissEntryId && nextEntryId <= pattern.nextEntryId) {
+                pattern.nextEntryId = nextEntryId;
+                pattern.inProgress = false;
+            }
+        }
+    }
+
+    void removeLedger(long ledgerId) {
+        patterns.remove(ledgerId);
+    }
+
+    /**
+     * Forget the ledgers that were not read recently.
+     */
+    void removeStalePatterns() {
+        long minLastAccessed = System.currentTimeMillis() - STALE_PATTERN_TIME_MILLIS;
+        patterns.removeIf((ledgerId, pattern) -> pattern.lastAccessed < minLastAccessed);
+    }
+}
@@ -33,6 +33,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap;
 import org.apache.bookkeeper.util.collections.ConcurrentLongLongPairHashMap.LongPair;
+import org.apache.commons.lang.mutable.MutableInt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,15 +46,49 @@ import org.slf4j.LoggerFactory;
  * ring-buffer fashion. When the read cache is full, the oldest segment
  * is cleared and rotated to make space for new entries to be added to
  * the read cache.
+ *
+ * <p>With the {@link EvictionPolicy#TINY_LFU} policy, the accesses are also recorded in a {@link FrequencySketch}:
+ * <ul>
+ * <li>Once the cache is full, an entry that was read only once is not admitted, since it would just push out the
+ * entries that are being re-read (eg: a catch-up reader scanning a backlog). Read-ahead entries are always admitted.
+ * <li>When the oldest segment is rotated, its most frequently read entries are moved into the new segment instead
+ * of being discarded. Up to half of the segment can be used for that.
+ * </ul>
  */
 public class ReadCache implements Closeable {
     private static final Logger log = LoggerFactory.getLogger(ReadCache.class);
 
     private static final int DEFAULT_MAX_SEGMENT_SIZE = 1 * 1024 * 1024 * 1024;
 
+    // Entry size used to estimate the number of entries that will be tracked by the frequency sketch
+    private static final int ESTIMATED_ENTRY_SIZE = 1024;
+
+    // Minimum frequency for an entry to be admitted, once the cache is full, or to survive a segment rotation
+    private static final int MIN_FREQUENCY = 2;
+
+    /**
+     * Policy used to decide which entries are kept in the cache.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Rotate whole segments, evicting the oldest inserted entries first.
+         */
+        FIFO,
+
+        /**
+         * Filter admissions and keep the frequently read entries across segment rotations.
+         */
+        TINY_LFU
+    }
+
     private final List<ByteBuf> cacheSegments;
     private final List<ConcurrentLongLongPairHashMap> cacheIndexes;
 
+    // Only used with TINY_LFU policy, to relocate the frequent entries when rotating a segment
+    private final FrequencySketch frequencySketch;
+    private ByteBuf spareSegment;
+    private ConcurrentLongLongPairHashMap spareIndex;
+
     private int currentSegmentIdx;
     private final AtomicInteger currentSegmentOffset = new AtomicInteger(0);
 
@@ -67,29 +102,68 @@ public class ReadCache implements Closeable {
     }
 
     public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize) {
+        this(allocator, maxCacheSize, maxSegmentSize, EvictionPolicy.FIFO);
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, EvictionPolicy evictionPolicy) {
+        this(allocator, maxCacheSize, DEFAULT_MAX_SEGMENT_SIZE, evictionPolicy);
+    }
+
+    public ReadCache(ByteBufAllocator allocator, long maxCacheSize, int maxSegmentSize,
+                     EvictionPolicy evictionPolicy) {
         this.allocator = allocator;
         int segmentsCount = Math.max(2, (int) (maxCacheSize / maxSegmentSize));
-        segmentSize = (int) (maxCacheSize / segmentsCount);
+        boolean tinyLfu = evictionPolicy == EvictionPolicy.TINY_LFU;
+
+        // With TINY_LFU, one more segment is carved out of the cache size, to be used as relocation target
+        segmentSize = (int) (maxCacheSize / (tinyLfu ? segmentsCount + 1 : segmentsCount));
 
         cacheSegments = new ArrayList<>();
         cacheIndexes = new ArrayList<>();
 
         for (int i = 0; i < segmentsCount; i++) {
             cacheSegments.add(Unpooled.directBuffer(segmentSize, segmentSize));
-            ConcurrentLongLongPairHashMap concurrentLongLongPairHashMap = ConcurrentLongLongPairHashMap.newBuilder()
-                    .expectedItems(4096)
-                    .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
-                    .build();
-            cacheIndexes.add(concurrentLongLongPairHashMap);
+            cacheIndexes.add(newSegmentIndex());
+        }
+
+        if (tinyLfu) {
+            frequencySketch = new FrequencySketch(maxCacheSize / ESTIMATED_ENTRY_SIZE);
+            spareSegment = Unpooled.directBuffer(segmentSize, segmentSize);
+            spareIndex = newSegmentIndex();
+        } else {
+            frequencySketch = null;
+            spareSegment = null;
+            spareIndex = null;
         }
     }
 
+    private static ConcurrentLongLongPairHashMap newSegmentIndex() {
+        return ConcurrentLongLongPairHashMap.newBuilder()
+                .expectedItems(4096)
+                .concurrencyLevel(2 * Runtime.getRuntime().availableProcessors())
+                .build();
+    }
+
     @Override
     public void close() {
         cacheSegments.forEach(ReferenceCountUtil::safeRelease);
+        if (spareSegment != null) {
+            ReferenceCountUtil.safeRelease(spareSegment);
+        }
     }
 
-    public void put(long ledgerId, long entryId, ByteBuf entry) {
+    public boolean put(long ledgerId, long entryId, ByteBuf entry) {
+        return put(ledgerId, entryId, entry, false);
+    }
+
+    /**
+     * Insert an entry in the read cache.
+     *
+     * @param readAhead whether the entry is being inserted ahead of being requested. Read-ahead entries bypass
+     *                  the admission filter
+     * @return false if the entry was not inserted in the cache
+     */
+    public boolean put(long ledgerId, long entryId, ByteBuf entry, boolean readAhead) {
         int entrySize = entry.readableBytes();
         int alignedSize = align64(entrySize);
 
@@ -98,8 +172,13 @@ public class ReadCache implements Closeable {
         try {
             if (entrySize > segmentSize) {
                 log.warn("entrySize {} > segmentSize {}, skip update read cache!", entrySize, segmentSize);
-                return;
+                return false;
+            }
+
+            if (!readAhead && !admit(ledgerId, entryId)) {
+                return false;
             }
+
             int offset = currentSegmentOffset.getAndAdd(alignedSize);
             if (offset + entrySize > segmentSize) {
                 // Roll-over the segment (outside the read-lock)
@@ -108,7 +187,7 @@ public class ReadCache implements Closeable {
                 cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(),
                         entry.readableBytes());
                 cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
-                return;
+                return true;
             }
         } finally {
             lock.readLock().unlock();
@@ -123,20 +202,99 @@ public class ReadCache implements Closeable {
             if (offset + entrySize > segmentSize) {
                 // Rollover to next segment
                 currentSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
-                currentSegmentOffset.set(alignedSize);
-                cacheIndexes.get(currentSegmentIdx).clear();
-                offset = 0;
+                if (frequencySketch != null) {
+                    offset = relocateFrequentEntries(currentSegmentIdx, alignedSize);
+                } else {
+                    cacheIndexes.get(currentSegmentIdx).clear();
+                    offset = 0;
+                }
+                currentSegmentOffset.set(offset + alignedSize);
             }
 
             // Copy entry into read cache segment
             cacheSegments.get(currentSegmentIdx).setBytes(offset, entry, entry.readerIndex(), entry.readableBytes());
             cacheIndexes.get(currentSegmentIdx).put(ledgerId, entryId, offset, entrySize);
+            return true;
         } finally {
             lock.writeLock().unlock();
         }
     }
 
+    /**
+     * Decide whether a requested entry can be inserted. Must be called with the read lock held.
+     */
+    private boolean admit(long ledgerId, long entryId) {
+        if (frequencySketch == null) {
+            return true;
+        }
+
+        // Until the oldest segment has content, inserting the entry doesn't evict anything
+        int oldestSegmentIdx = (currentSegmentIdx + 1) % cacheSegments.size();
+        return cacheIndexes.get(oldestSegmentIdx).isEmpty()
+                || frequencySketch.frequency(ledgerId, entryId) >= MIN_FREQUENCY;
+    }
+
+    /**
+     * Clear the segment about to be reused, moving its most frequently read entries into the spare segment, which
+     * then takes its place. Must be called with the write lock held.
+     *
+     * @param reservedSize space that needs to be left available in the segment
+     * @return the offset at which the segment can be filled
+     */
+    private int relocateFrequentEntries(int segmentIdx, int reservedSize) {
+        ConcurrentLongLongPairHashMap index = cacheIndexes.get(segmentIdx);
+        ByteBuf segment = cacheSegments.get(segmentIdx);
+        int maxRelocatedSize = Math.min(segmentSize / 2, segmentSize - reservedSize);
+
+        // Find the lowest frequency for which all the entries at or above it fit in the space available
+        long[] sizeByFrequency = new long[FrequencySketch.MAX_FREQUENCY + 1];
+        index.forEach((ledgerId, entryId, entryOffset, entryLen) ->
+                sizeByFrequency[frequencySketch.frequency(ledgerId, entryId)] += align64((int) entryLen));
+
+        int threshold = FrequencySketch.MAX_FREQUENCY + 1;
+        long relocatedSize = 0;
+        while (threshold > MIN_FREQUENCY && relocatedSize + sizeByFrequency[threshold - 1] <= maxRelocatedSize) {
+            threshold--;
+            relocatedSize += sizeByFrequency[threshold];
+        }
+
+        if (relocatedSize == 0) {
+            index.clear();
+            return 0;
+        }
+
+        final int minFrequency = threshold;
+        ByteBuf targetSegment = spareSegment;
+        ConcurrentLongLongPairHashMap targetIndex = spareIndex;
+        MutableInt targetOffset = new MutableInt(0);
+        index.forEach((ledgerId, entryId, entryOffset, entryLen) -> {
+            int alignedLen = align64((int) entryLen);
+            if (frequencySketch.frequency(ledgerId, entryId) >= minFrequency
+                    && targetOffset.intValue() + alignedLen <= maxRelocatedSize) {
+                targetSegment.setBytes(targetOffset.intValue(), segment, (int) entryOffset, (int) entryLen);
+                targetIndex.put(ledgerId, entryId, targetOffset.intValue(), entryLen);
+                targetOffset.add(alignedLen);
+            }
+        });
+
+        index.clear();
+        cacheSegments.set(segmentIdx, targetSegment);
+        cacheIndexes.set(segmentIdx, targetIndex);
+        spareSegment = segment;
+        spareIndex = index;
+
+        if (log.isDebugEnabled()) {
+            log.debug("Relocated {} bytes of entries with frequency >= {} on read cache segment rotation",
+                    targetOffset.intValue(), minFrequency);
+        }
+        return targetOffset.intValue();
+    }
+
     public ByteBuf get(long ledgerId, long entryId) {
+        if (frequencySketch != null) {
+            frequencySketch.increment(ledgerId, entryId);
+        }
+
         lock.readLock().lock();
 
         try {
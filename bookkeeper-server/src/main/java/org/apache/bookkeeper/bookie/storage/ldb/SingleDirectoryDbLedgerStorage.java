@@ -35,15 +35,24 @@ import io.netty.util.ReferenceCountUtil;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.PrimitiveIterator.OfLong;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
@@ -102,8 +111,12 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     // Write cache where all new entries are inserted into
     protected volatile WriteCache writeCache;
 
-    // Write cache that is used to swap with writeCache during flushes
-    protected volatile WriteCache writeCacheBeingFlushed;
+    // Write caches that were swapped out of writeCache and are waiting to be flushed, from the oldest to the newest.
+    // The list is never modified, it gets replaced when a write cache is added or removed
+    protected volatile List<WriteCache> writeCachesBeingFlushed = Collections.emptyList();
+
+    // Empty write caches, ready to replace writeCache. Guarded by the write lock of writeCacheRotationLock
+    private final Deque<WriteCache> emptyWriteCaches = new ArrayDeque<>();
 
     // Cache where we insert entries for speculative reading
     private final ReadCache readCache;
@@ -113,7 +126,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     protected final ReentrantLock flushMutex = new ReentrantLock();
 
     protected final AtomicBoolean hasFlushBeenTriggered = new AtomicBoolean(false);
-    private final AtomicBoolean isFlushOngoing = new AtomicBoolean(false);
 
     private static String dbStoragerExecutorName = "db-storage";
     private final ExecutorService executor = Executors.newSingleThreadExecutor(
@@ -128,6 +140,21 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     private final ScheduledExecutorService cleanupExecutor = Executors
             .newSingleThreadScheduledExecutor(new DefaultThreadFactory("db-storage-cleanup"));
 
+    // Executor used to fill the read cache in background, null if read-ahead is done on the reading thread
+    private static String readAheadExecutorName = "db-storage-readahead";
+    private static final int READ_AHEAD_QUEUE_SIZE = 1024;
+    private final ExecutorService readAheadExecutor;
+
+    // Adapts the read-ahead to the access pattern of each ledger, null if the read-ahead batch size is fixed
+    private final ReadAheadTracker readAheadTracker;
+
+    // Executors used to sort the write cache shards and to build the locations index batch while the entries are
+    // appended to the entry log. Null if the flush is done on a single thread
+    private final int writeCacheFlushShards;
+    private final ExecutorService flushSortExecutor;
+    private final ExecutorService flushIndexExecutor;
+    private static final int FLUSH_INDEX_CHUNK_SIZE = 16 * 1024;
+
     private final CopyOnWriteArrayList<LedgerDeletionListener> ledgerDeletionListeners = Lists
             .newCopyOnWriteArrayList();
 
@@ -145,6 +172,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private static final long DEFAULT_MAX_THROTTLE_TIME_MILLIS = TimeUnit.SECONDS.toMillis(10);
 
+    private static final int DEFAULT_WRITE_CACHES_COUNT = 2;
+
+    private static final int DEFAULT_READ_AHEAD_MAX_BATCH_SIZE_FACTOR = 10;
+
     private final long maxReadAheadBytesSize;
 
     private final Counter flushExecutorTime;
@@ -158,6 +189,8 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             throws IOException {
         checkArgument(ledgerDirsManager.getAllLedgerDirs().size() == 1,
                 "Db implementation only allows for one storage dir");
+        // Checked before any cache memory is allocated
+        ReadCache.EvictionPolicy readCacheEvictionPolicy = getReadCacheEvictionPolicy(conf);
 
         String ledgerBaseDir = ledgerDirsManager.getAllLedgerDirs().get(0).getPath();
         // indexBaseDir default use ledgerBaseDir
@@ -178,8 +211,13 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 .scopeLabel("indexDir", indexBaseDir);
 
         this.writeCacheMaxSize = writeCacheSize;
-        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / 2);
-        this.writeCacheBeingFlushed = new WriteCache(allocator, writeCacheMaxSize / 2);
+        // The write cache memory is split among all the write caches of the ring
+        int writeCachesCount = Math.max(2,
+                conf.getInt(DbLedgerStorage.WRITE_CACHES_COUNT, DEFAULT_WRITE_CACHES_COUNT));
+        this.writeCache = new WriteCache(allocator, writeCacheMaxSize / writeCachesCount);
+        for (int i = 1; i < writeCachesCount; i++) {
+            emptyWriteCaches.add(new WriteCache(allocator, writeCacheMaxSize / writeCachesCount));
+        }
         this.singleLedgerDirs = conf.getLedgerDirs().length == 1;
 
         readCacheMaxSize = readCacheSize;
@@ -193,7 +231,41 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 DEFAULT_MAX_THROTTLE_TIME_MILLIS);
         maxThrottleTimeNanos = TimeUnit.MILLISECONDS.toNanos(maxThrottleTimeMillis);
 
-        readCache = new ReadCache(allocator, readCacheMaxSize);
+        log.info("Read cache eviction policy: {}", readCacheEvictionPolicy);
+        readCache = new ReadCache(allocator, readCacheMaxSize, readCacheEvictionPolicy);
+
+        if (conf.getBoolean(DbLedgerStorage.READ_AHEAD_ADAPTIVE_ENABLED, false)) {
+            int readAheadMaxBatchSize = conf.getInt(DbLedgerStorage.READ_AHEAD_MAX_BATCH_SIZE,
+                    readAheadCacheBatchSize * DEFAULT_READ_AHEAD_MAX_BATCH_SIZE_FACTOR);
+            readAheadTracker = new ReadAheadTracker(readAheadCacheBatchSize, readAheadMaxBatchSize);
+            log.info("Adaptive read-ahead enabled with batch size between 0 and {}", readAheadMaxBatchSize);
+        } else {
+            readAheadTracker = null;
+        }
+
+        int readAheadThreads = conf.getInt(DbLedgerStorage.READ_AHEAD_THREADS, 0);
+        if (readAheadThreads > 0) {
+            readAheadExecutor = new ThreadPoolExecutor(readAheadThreads, readAheadThreads,
+                    0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(READ_AHEAD_QUEUE_SIZE),
+                    new DefaultThreadFactory(readAheadExecutorName) {
+                        @Override
+                        protected Thread newThread(Runnable r, String name) {
+                            return super.newThread(ThreadRegistry.registerThread(r, readAheadExecutorName), name);
+                        }
+                    });
+        } else {
+            readAheadExecutor = null;
+        }
+
+        writeCacheFlushShards = conf.getInt(DbLedgerStorage.WRITE_CACHE_FLUSH_SHARDS, 1);
+        if (writeCacheFlushShards > 1) {
+            flushSortExecutor = Executors.newFixedThreadPool(writeCacheFlushShards,
+                    new DefaultThreadFactory("db-storage-flush-sort"));
+            flushIndexExecutor = Executors.newSingleThreadExecutor(new DefaultThreadFactory("db-storage-flush-index"));
+        } else {
+            flushSortExecutor = null;
+            flushIndexExecutor = null;
+        }
 
         ledgerIndex = new LedgerMetadataIndex(conf,
                 KeyValueStorageRocksDB.factory, indexBaseDir, ledgerIndexDirStatsLogger);
@@ -214,10 +286,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         dbLedgerStorageStats = new DbLedgerStorageStats(
             ledgerIndexDirStatsLogger,
-            () -> writeCache.size() + writeCacheBeingFlushed.size(),
-            () -> writeCache.count() + writeCacheBeingFlushed.count(),
+            () -> writeCache.size() + writeCachesBeingFlushed.stream().mapToLong(WriteCache::size).sum(),
+            () -> writeCache.count() + writeCachesBeingFlushed.stream().mapToLong(WriteCache::count).sum(),
             () -> readCache.size(),
-            () -> readCache.count()
+            () -> readCache.count(),
+            () -> (long) writeCachesBeingFlushed.size()
         );
 
         flushExecutorTime = ledgerIndexDirStatsLogger.getThreadScopedCounter("db-storage-thread-time");
@@ -234,6 +307,20 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
+    @VisibleForTesting
+    static ReadCache.EvictionPolicy getReadCacheEvictionPolicy(ServerConfiguration conf) {
+        String policy = conf.getString(DbLedgerStorage.READ_CACHE_EVICTION_POLICY,
+                ReadCache.EvictionPolicy.FIFO.name());
+        for (ReadCache.EvictionPolicy evictionPolicy : ReadCache.EvictionPolicy.values()) {
+            if (evictionPolicy.name().equalsIgnoreCase(policy.trim())) {
+                return evictionPolicy;
+            }
+        }
+        throw new IllegalArgumentException("Invalid value '" + policy + "' for "
+                + DbLedgerStorage.READ_CACHE_EVICTION_POLICY + ", expected one of "
+                + Arrays.toString(ReadCache.EvictionPolicy.values()));
+    }
+
     @Override
     public void initialize(ServerConfiguration conf, LedgerManager ledgerManager, LedgerDirsManager ledgerDirsManager,
             LedgerDirsManager indexDirsManager, StatsLogger statsLogger,
@@ -263,6 +350,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
             return isStale;
         });
+
+        if (readAheadTracker != null) {
+            readAheadTracker.removeStalePatterns();
+        }
     }
 
     @Override
@@ -342,6 +433,11 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         try {
             flush();
 
+            if (readAheadExecutor != null) {
+                readAheadExecutor.shutdownNow();
+                readAheadExecutor.awaitTermination(1, TimeUnit.SECONDS);
+            }
+
             gcThread.shutdown();
             entryLogger.close();
 
@@ -352,9 +448,14 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             entryLocationIndex.close();
 
             writeCache.close();
-            writeCacheBeingFlushed.close();
+            writeCachesBeingFlushed.forEach(WriteCache::close);
+            emptyWriteCaches.forEach(WriteCache::close);
             readCache.close();
             executor.shutdown();
+            if (flushSortExecutor != null) {
+                flushSortExecutor.shutdown();
+                flushIndexExecutor.shutdown();
+            }
 
         } catch (IOException e) {
             log.error("Error closing db storage", e);
@@ -381,31 +482,33 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return false;
         }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
+        // We need to try to read from all the write caches, since recent entries could be found in any of them. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to all
         // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
         long stamp = writeCacheRotationLock.tryOptimisticRead();
         WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+        List<WriteCache> localWriteCachesBeingFlushed = writeCachesBeingFlushed;
         if (!writeCacheRotationLock.validate(stamp)) {
             // Fallback to regular read lock approach
             stamp = writeCacheRotationLock.readLock();
             try {
                 localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+                localWriteCachesBeingFlushed = writeCachesBeingFlushed;
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
         }
 
-        boolean inCache = localWriteCache.hasEntry(ledgerId, entryId)
-             || localWriteCacheBeingFlushed.hasEntry(ledgerId, entryId)
-             || readCache.hasEntry(ledgerId, entryId);
-
-        if (inCache) {
+        if (localWriteCache.hasEntry(ledgerId, entryId) || readCache.hasEntry(ledgerId, entryId)) {
             return true;
         }
 
+        for (int i = localWriteCachesBeingFlushed.size() - 1; i >= 0; i--) {
+            if (localWriteCachesBeingFlushed.get(i).hasEntry(ledgerId, entryId)) {
+                return true;
+            }
+        }
+
         // Read from main storage
         long entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
         if (entryLocation != 0) {
@@ -514,38 +617,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
     private void triggerFlushAndAddEntry(long ledgerId, long entryId, ByteBuf entry)
             throws IOException, BookieException {
+        // Write cache is full, first try to replace it with an empty one
+        if (swapFullWriteCacheAndAddEntry(ledgerId, entryId, entry)) {
+            return;
+        }
+
         long throttledStartTime = MathUtils.nowInNano();
         dbLedgerStorageStats.getThrottledWriteRequests().inc();
         long absoluteTimeoutNanos = System.nanoTime() + maxThrottleTimeNanos;
 
         while (System.nanoTime() < absoluteTimeoutNanos) {
-            // Write cache is full, we need to trigger a flush so that it gets rotated
-            // If the flush has already been triggered or flush has already switched the
-            // cache, we don't need to trigger another flush
-            if (!isFlushOngoing.get() && hasFlushBeenTriggered.compareAndSet(false, true)) {
-                // Trigger an early flush in background
-                log.info("Write cache is full, triggering flush");
-                executor.execute(() -> {
-                        long startTime = System.nanoTime();
-                        try {
-                            flush();
-                        } catch (IOException e) {
-                            log.error("Error during flush", e);
-                        } finally {
-                            flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        }
-                    });
-            }
+            // All the write caches are full, we need to wait for a flush to make one of them available again.
+            // If the flush has already been triggered, we don't need to trigger another flush
+            triggerFlush();
 
-            long stamp = writeCacheRotationLock.readLock();
-            try {
-                if (writeCache.put(ledgerId, entryId, entry)) {
-                    // We succeeded in putting the entry in write cache in the
-                    recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
-                    return;
-                }
-            } finally {
-                writeCacheRotationLock.unlockRead(stamp);
+            if (swapFullWriteCacheAndAddEntry(ledgerId, entryId, entry)) {
+                recordSuccessfulEvent(dbLedgerStorageStats.getThrottledWriteStats(), throttledStartTime);
+                return;
             }
 
             // Wait some time and try again
@@ -563,6 +651,63 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         throw new OperationRejectedException();
     }
 
+    /**
+     * Add the entry to the current write cache, replacing it with an empty write cache if it is full.
+     *
+     * @return false if the entry could not be added because no empty write cache is available
+     */
+    private boolean swapFullWriteCacheAndAddEntry(long ledgerId, long entryId, ByteBuf entry) {
+        WriteCache fullWriteCache;
+        long stamp = writeCacheRotationLock.readLock();
+        try {
+            if (writeCache.put(ledgerId, entryId, entry)) {
+                return true;
+            }
+            fullWriteCache = writeCache;
+        } finally {
+            writeCacheRotationLock.unlockRead(stamp);
+        }
+
+        stamp = writeCacheRotationLock.writeLock();
+        try {
+            // The write cache might have already been swapped by another thread
+            if (writeCache == fullWriteCache && !swapWriteCache()) {
+                return false;
+            }
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+
+        triggerFlush();
+
+        stamp = writeCacheRotationLock.readLock();
+        try {
+            return writeCache.put(ledgerId, entryId, entry);
+        } finally {
+            writeCacheRotationLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Trigger a flush of the write caches, in background. The flush goes through the checkpoint, so that the journal
+     * can be trimmed up to the flushed entries.
+     */
+    private void triggerFlush() {
+        if (hasFlushBeenTriggered.compareAndSet(false, true)) {
+            log.info("Write cache is full, triggering flush");
+            executor.execute(() -> {
+                    long startTime = System.nanoTime();
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        log.error("Error during flush", e);
+                    } finally {
+                        flushExecutorTime.addLatency(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
+                    }
+                });
+        }
+    }
+
     @Override
     public ByteBuf getEntry(long ledgerId, long entryId) throws IOException, BookieException {
         long startTime = MathUtils.nowInNano();
@@ -576,27 +721,117 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         }
     }
 
-    private ByteBuf doGetEntry(long ledgerId, long entryId) throws IOException, BookieException {
-        if (log.isDebugEnabled()) {
-            log.debug("Get Entry: {}@{}", ledgerId, entryId);
+    @Override
+    public ByteBuf getEntryIfCached(long ledgerId, long entryId) {
+        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return null;
         }
+        long startTime = MathUtils.nowInNano();
+        // The misses are recorded by the read of the entry from the main storage that follows
+        ByteBuf entry = getEntryFromCaches(ledgerId, entryId, false);
+        if (entry != null) {
+            recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        }
+        return entry;
+    }
 
-        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
-            return getLastEntry(ledgerId);
+    @Override
+    public List<ByteBuf> getEntries(long ledgerId, long firstEntryId, int maxCount, long maxSize)
+            throws IOException, BookieException {
+        if (firstEntryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return CompactableLedgerStorage.super.getEntries(ledgerId, firstEntryId, maxCount, maxSize);
         }
+        long startTime = MathUtils.nowInNano();
+        List<ByteBuf> entries = new ArrayList<>();
+        long size = 0;
+        long entryId = firstEntryId;
+        try {
+            while (entries.size() < maxCount) {
+                ByteBuf entry = getEntryFromCaches(ledgerId, entryId, true);
+                if (entry != null) {
+                    if (!entries.isEmpty() && size + entry.readableBytes() > maxSize) {
+                        ReferenceCountUtil.release(entry);
+                        break;
+                    }
+                    entries.add(entry);
+                    size += entry.readableBytes();
+                    entryId++;
+                    continue;
+                }
+
+                long entryLocation;
+                long locationIndexStartNano = MathUtils.nowInNano();
+                try {
+                    entryLocation = entryLocationIndex.getLocation(ledgerId, entryId);
+                } finally {
+                    dbLedgerStorageStats.getReadFromLocationIndexTime().addLatency(
+                            MathUtils.elapsedNanos(locationIndexStartNano), TimeUnit.NANOSECONDS);
+                }
+                if (entryLocation == 0) {
+                    if (entries.isEmpty()) {
+                        // Only a negative result while in limbo equates to unknown
+                        throwIfLimbo(ledgerId);
+                        throw new NoEntryException(ledgerId, entryId);
+                    }
+                    break;
+                }
 
-        // We need to try to read from both write caches, since recent entries could be found in either of the two. The
-        // write caches are already thread safe on their own, here we just need to make sure we get references to both
+                // The entries that follow the missing one in the entry log are read at once
+                List<ByteBuf> logEntries;
+                long readEntryStartNano = MathUtils.nowInNano();
+                try {
+                    logEntries = entryLogger.readEntries(ledgerId, entryId, entryLocation,
+                            maxCount - entries.size(), entries.isEmpty() ? maxSize : maxSize - size);
+                } finally {
+                    dbLedgerStorageStats.getReadFromEntryLogTime().addLatency(
+                            MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
+                }
+                boolean full = false;
+                for (ByteBuf logEntry : logEntries) {
+                    if (full || (!entries.isEmpty() && size + logEntry.readableBytes() > maxSize)) {
+                        full = true;
+                        ReferenceCountUtil.release(logEntry);
+                        continue;
+                    }
+                    if (!readCache.put(ledgerId, entryId, logEntry)) {
+                        dbLedgerStorageStats.getReadCacheAdmissionRejectCounter().inc();
+                    }
+                    entries.add(logEntry);
+                    size += logEntry.readableBytes();
+                    entryId++;
+                }
+                if (full) {
+                    break;
+                }
+            }
+        } catch (IOException | BookieException e) {
+            if (entries.isEmpty()) {
+                recordFailedEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+                throw e;
+            }
+            // Return the entries read so far, as the reads of single entries would
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to read entry {} of ledger {}, returning the {} entries read before it",
+                        entryId, ledgerId, entries.size(), e);
+            }
+        }
+        recordSuccessfulEvent(dbLedgerStorageStats.getReadEntryStats(), startTime);
+        return entries;
+    }
+
+    private ByteBuf getEntryFromCaches(long ledgerId, long entryId, boolean recordMisses) {
+        // We need to try to read from all the write caches, since recent entries could be found in any of them. The
+        // write caches are already thread safe on their own, here we just need to make sure we get references to all
         // of them. Using an optimistic lock since the read lock is always free, unless we're swapping the caches.
         long stamp = writeCacheRotationLock.tryOptimisticRead();
         WriteCache localWriteCache = writeCache;
-        WriteCache localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+        List<WriteCache> localWriteCachesBeingFlushed = writeCachesBeingFlushed;
         if (!writeCacheRotationLock.validate(stamp)) {
             // Fallback to regular read lock approach
             stamp = writeCacheRotationLock.readLock();
             try {
                 localWriteCache = writeCache;
-                localWriteCacheBeingFlushed = writeCacheBeingFlushed;
+                localWriteCachesBeingFlushed = writeCachesBeingFlushed;
             } finally {
                 writeCacheRotationLock.unlockRead(stamp);
             }
@@ -609,14 +844,18 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return entry;
         }
 
-        // If there's a flush going on, the entry might be in the flush buffer
-        entry = localWriteCacheBeingFlushed.get(ledgerId, entryId);
-        if (entry != null) {
-            dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-            return entry;
+        // If there are write caches waiting to be flushed, the entry might be in one of them, most likely the newest
+        for (int i = localWriteCachesBeingFlushed.size() - 1; i >= 0; i--) {
+            entry = localWriteCachesBeingFlushed.get(i).get(ledgerId, entryId);
+            if (entry != null) {
+                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                return entry;
+            }
         }
 
-        dbLedgerStorageStats.getWriteCacheMissCounter().inc();
+        if (recordMisses) {
+            dbLedgerStorageStats.getWriteCacheMissCounter().inc();
+        }
 
         // Try reading from read-ahead cache
         entry = readCache.get(ledgerId, entryId);
@@ -625,7 +864,25 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             return entry;
         }
 
-        dbLedgerStorageStats.getReadCacheMissCounter().inc();
+        if (recordMisses) {
+            dbLedgerStorageStats.getReadCacheMissCounter().inc();
+        }
+        return null;
+    }
+
+    private ByteBuf doGetEntry(long ledgerId, long entryId) throws IOException, BookieException {
+        if (log.isDebugEnabled()) {
+            log.debug("Get Entry: {}@{}", ledgerId, entryId);
+        }
+
+        if (entryId == BookieProtocol.LAST_ADD_CONFIRMED) {
+            return getLastEntry(ledgerId);
+        }
+
+        ByteBuf entry = getEntryFromCaches(ledgerId, entryId, true);
+        if (entry != null) {
+            return entry;
+        }
 
         // Read from main storage
         long entryLocation;
@@ -651,16 +908,37 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     MathUtils.elapsedNanos(readEntryStartNano), TimeUnit.NANOSECONDS);
         }
 
-        readCache.put(ledgerId, entryId, entry);
+        if (!readCache.put(ledgerId, entryId, entry)) {
+            dbLedgerStorageStats.getReadCacheAdmissionRejectCounter().inc();
+        }
 
         // Try to read more entries
         long nextEntryLocation = entryLocation + 4 /* size header */ + entry.readableBytes();
-        fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation);
+        int readAheadBatchSize = readAheadTracker != null
+                ? readAheadTracker.onCacheMiss(ledgerId, entryId)
+                : readAheadCacheBatchSize;
+        if (readAheadTracker != null && readAheadBatchSize == 0) {
+            dbLedgerStorageStats.getReadAheadSkippedCounter().inc();
+        } else if (readAheadExecutor != null) {
+            try {
+                readAheadExecutor.execute(
+                        () -> fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, readAheadBatchSize));
+            } catch (RejectedExecutionException e) {
+                // Too many read-ahead operations pending, skip this one
+                dbLedgerStorageStats.getReadAheadRejectedCounter().inc();
+                if (readAheadTracker != null) {
+                    readAheadTracker.onReadAheadComplete(ledgerId, entryId + 1);
+                }
+            }
+        } else {
+            fillReadAheadCache(ledgerId, entryId + 1, nextEntryLocation, readAheadBatchSize);
+        }
 
         return entry;
     }
 
-    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation) {
+    private void fillReadAheadCache(long originalLedgerId, long firstEntryId, long firstEntryLocation,
+                                    int readAheadBatchSize) {
         long readAheadStartNano = MathUtils.nowInNano();
         int count = 0;
         long size = 0;
@@ -670,7 +948,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
             long currentEntryLogId = firstEntryLogId;
             long currentEntryLocation = firstEntryLocation;
 
-            while (chargeReadAheadCache(count, size) && currentEntryLogId == firstEntryLogId) {
+            while (chargeReadAheadCache(count, size, readAheadBatchSize) && currentEntryLogId == firstEntryLogId) {
                 ByteBuf entry = entryLogger.readEntry(originalLedgerId,
                         firstEntryId, currentEntryLocation);
 
@@ -684,7 +962,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                     }
 
                     // Insert entry in read cache
-                    readCache.put(originalLedgerId, currentEntryId, entry);
+                    readCache.put(originalLedgerId, currentEntryId, entry, true);
 
                     count++;
                     firstEntryId++;
@@ -701,6 +979,9 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 log.debug("Exception during read ahead for ledger: {}: e", originalLedgerId, e);
             }
         } finally {
+            if (readAheadTracker != null) {
+                readAheadTracker.onReadAheadComplete(originalLedgerId, firstEntryId);
+            }
             dbLedgerStorageStats.getReadAheadBatchCountStats().registerSuccessfulValue(count);
             dbLedgerStorageStats.getReadAheadBatchSizeStats().registerSuccessfulValue(size);
             dbLedgerStorageStats.getReadAheadTime().addLatency(
@@ -719,6 +1000,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         return chargeSizeCondition;
     }
 
+    private boolean chargeReadAheadCache(int currentReadAheadCount, long currentReadAheadBytes,
+                                         int readAheadBatchSize) {
+        if (readAheadBatchSize == readAheadCacheBatchSize) {
+            return chargeReadAheadCache(currentReadAheadCount, currentReadAheadBytes);
+        }
+
+        // The batch size was adapted to the access pattern, scale the bytes limit accordingly
+        boolean chargeSizeCondition = currentReadAheadCount < readAheadBatchSize
+                && currentReadAheadBytes < maxReadAheadBytesSize;
+        if (chargeSizeCondition && readAheadCacheBatchBytesSize > 0 && readAheadCacheBatchSize > 0) {
+            chargeSizeCondition = currentReadAheadBytes
+                    < readAheadCacheBatchBytesSize * readAheadBatchSize / readAheadCacheBatchSize;
+        }
+        return chargeSizeCondition;
+    }
+
     public ByteBuf getLastEntry(long ledgerId) throws IOException, BookieException {
         throwIfLimbo(ledgerId);
 
@@ -741,20 +1038,23 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                 return entry;
             }
 
-            // If there's a flush going on, the entry might be in the flush buffer
-            entry = writeCacheBeingFlushed.getLastEntry(ledgerId);
-            if (entry != null) {
-                if (log.isDebugEnabled()) {
-                    entry.readLong(); // ledgerId
-                    long entryId = entry.readLong();
-                    entry.resetReaderIndex();
+            // If there are write caches waiting to be flushed, the entry might be in one of them
+            for (int i = writeCachesBeingFlushed.size() - 1; i >= 0; i--) {
+                entry = writeCachesBeingFlushed.get(i).getLastEntry(ledgerId);
+                if (entry != null) {
                     if (log.isDebugEnabled()) {
-                        log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId, entryId);
+                        entry.readLong(); // ledgerId
+                        long entryId = entry.readLong();
+                        entry.resetReaderIndex();
+                        if (log.isDebugEnabled()) {
+                            log.debug("Found last entry for ledger {} in write cache being flushed: {}", ledgerId,
+                                    entryId);
+                        }
                     }
-                }
 
-                dbLedgerStorageStats.getWriteCacheHitCounter().inc();
-                return entry;
+                    dbLedgerStorageStats.getWriteCacheHitCounter().inc();
+                    return entry;
+                }
             }
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
@@ -784,7 +1084,7 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     boolean isFlushRequired() {
         long stamp = writeCacheRotationLock.readLock();
         try {
-            return !writeCache.isEmpty();
+            return !writeCache.isEmpty() || !writeCachesBeingFlushed.isEmpty();
         } finally {
             writeCacheRotationLock.unlockRead(stamp);
         }
@@ -799,73 +1099,22 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
 
         // Only a single flush operation can happen at a time
         flushMutex.lock();
-        long startTime = -1;
         try {
-            startTime = MathUtils.nowInNano();
-        } catch (Throwable e) {
-            // Fix spotbugs warning. Should never happen
-            flushMutex.unlock();
-            throw new IOException(e);
-        }
-
-        try {
-            if (writeCache.isEmpty()) {
+            if (writeCache.isEmpty() && writeCachesBeingFlushed.isEmpty()) {
                 return;
             }
+
             // Swap the write cache so that writes can continue to happen while the flush is
             // ongoing
-            swapWriteCache();
-
-            long sizeToFlush = writeCacheBeingFlushed.size();
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing entries. count: {} -- size {} Mb", writeCacheBeingFlushed.count(),
-                        sizeToFlush / 1024.0 / 1024);
+            if (!swapNonEmptyWriteCache()) {
+                // All the other write caches are waiting to be flushed, flush them to get an empty one back
+                flushWriteCachesBeingFlushed();
+                swapNonEmptyWriteCache();
             }
 
-            // Write all the pending entries into the entry logger and collect the offset
-            // position for each entry
-
-            Batch batch = entryLocationIndex.newBatch();
-            writeCacheBeingFlushed.forEach((ledgerId, entryId, entry) -> {
-                long location = entryLogger.addEntry(ledgerId, entry);
-                entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
-            });
-
-            long entryLoggerStart = MathUtils.nowInNano();
-            entryLogger.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
-
-            long batchFlushStartTime = MathUtils.nowInNano();
-            batch.flush();
-            batch.close();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
-            if (log.isDebugEnabled()) {
-                log.debug("DB batch flushed time : {} s",
-                        MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
-            }
-
-            long ledgerIndexStartTime = MathUtils.nowInNano();
-            ledgerIndex.flush();
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+            flushWriteCachesBeingFlushed();
 
             lastCheckpoint = thisCheckpoint;
-
-            // Discard all the entry from the write cache, since they're now persisted
-            writeCacheBeingFlushed.clear();
-
-            double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
-            double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
-
-            if (log.isDebugEnabled()) {
-                log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
-            }
-
-            recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
-            dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
-        } catch (IOException e) {
-            recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
-            // Leave IOException as it is
-            throw e;
         } finally {
             try {
                 cleanupExecutor.execute(() -> {
@@ -882,8 +1131,6 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
                         log.warn("Failed to cleanup db indexes", t);
                     }
                 });
-
-                isFlushOngoing.set(false);
             } finally {
                 flushMutex.unlock();
             }
@@ -891,21 +1138,219 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
     }
 
     /**
-     * Swap the current write cache with the replacement cache.
+     * Flush all the write caches that are waiting to be flushed, and make them available again for writes.
      */
-    private void swapWriteCache() {
-        long stamp = writeCacheRotationLock.writeLock();
+    private void flushWriteCachesBeingFlushed() throws IOException {
+        flushMutex.lock();
         try {
-            // First, swap the current write-cache map with an empty one so that writes will
-            // go on unaffected. Only a single flush is happening at the same time
-            WriteCache tmp = writeCacheBeingFlushed;
-            writeCacheBeingFlushed = writeCache;
-            writeCache = tmp;
-
-            // Set to true before updating hasFlushBeenTriggered to false.
-            isFlushOngoing.set(true);
-            // since the cache is switched, we can allow flush to be triggered
+            List<WriteCache> writeCachesToFlush = writeCachesBeingFlushed;
+            // Write caches swapped from now on will need a new flush to be triggered
             hasFlushBeenTriggered.set(false);
+            if (writeCachesToFlush.isEmpty()) {
+                return;
+            }
+
+            long startTime = MathUtils.nowInNano();
+            try {
+                long sizeToFlush = 0;
+                long countToFlush = 0;
+                for (WriteCache writeCacheToFlush : writeCachesToFlush) {
+                    sizeToFlush += writeCacheToFlush.size();
+                    countToFlush += writeCacheToFlush.count();
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Flushing entries from {} write caches. count: {} -- size {} Mb",
+                            writeCachesToFlush.size(), countToFlush, sizeToFlush / 1024.0 / 1024);
+                }
+
+                // Write all the pending entries into the entry logger and collect the offset
+                // position for each entry
+
+                Batch batch = entryLocationIndex.newBatch();
+                if (flushSortExecutor != null) {
+                    // Sort the shards in parallel and build the index batch in background, while appending to the
+                    // entry log on this thread
+                    LocationsBatchBuilder batchBuilder = new LocationsBatchBuilder(batch);
+                    try {
+                        for (WriteCache writeCacheToFlush : writeCachesToFlush) {
+                            writeCacheToFlush.forEach(batchBuilder, flushSortExecutor, writeCacheFlushShards);
+                        }
+                        flushEntryLogger();
+                    } finally {
+                        batchBuilder.awaitCompletion();
+                    }
+                } else {
+                    for (WriteCache writeCacheToFlush : writeCachesToFlush) {
+                        writeCacheToFlush.forEach((ledgerId, entryId, entry) -> {
+                            long location = entryLogger.addEntry(ledgerId, entry);
+                            entryLocationIndex.addLocation(batch, ledgerId, entryId, location);
+                        });
+                    }
+                    flushEntryLogger();
+                }
+
+                long batchFlushStartTime = MathUtils.nowInNano();
+                batch.flush();
+                batch.close();
+                recordSuccessfulEvent(dbLedgerStorageStats.getFlushLocationIndexStats(), batchFlushStartTime);
+                if (log.isDebugEnabled()) {
+                    log.debug("DB batch flushed time : {} s",
+                            MathUtils.elapsedNanos(batchFlushStartTime) / (double) TimeUnit.SECONDS.toNanos(1));
+                }
+
+                long ledgerIndexStartTime = MathUtils.nowInNano();
+                ledgerIndex.flush();
+                recordSuccessfulEvent(dbLedgerStorageStats.getFlushLedgerIndexStats(), ledgerIndexStartTime);
+
+                // Discard all the entry from the write caches, since they're now persisted
+                releaseFlushedWriteCaches(writeCachesToFlush);
+
+                double flushTimeSeconds = MathUtils.elapsedNanos(startTime) / (double) TimeUnit.SECONDS.toNanos(1);
+                double flushThroughput = sizeToFlush / 1024.0 / 1024.0 / flushTimeSeconds;
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Flushing done time {} s -- Written {} MB/s", flushTimeSeconds, flushThroughput);
+                }
+
+                recordSuccessfulEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+                dbLedgerStorageStats.getFlushSizeStats().registerSuccessfulValue(sizeToFlush);
+                dbLedgerStorageStats.getFlushThroughputStats().registerSuccessfulValue((long) flushThroughput);
+            } catch (IOException e) {
+                recordFailedEvent(dbLedgerStorageStats.getFlushStats(), startTime);
+                // Leave IOException as it is
+                throw e;
+            }
+        } finally {
+            flushMutex.unlock();
+        }
+    }
+
+    private void flushEntryLogger() throws IOException {
+        long entryLoggerStart = MathUtils.nowInNano();
+        entryLogger.flush();
+        recordSuccessfulEvent(dbLedgerStorageStats.getFlushEntryLogStats(), entryLoggerStart);
+    }
+
+    /**
+     * Appends the flushed entries to the entry log, and hands over their locations in chunks to the index executor,
+     * which adds them to the locations index batch.
+     */
+    private final class LocationsBatchBuilder implements WriteCache.EntryConsumer {
+        private final Batch batch;
+        private final List<Future<?>> pendingChunks = new ArrayList<>();
+        private long[] locations = new long[3 * FLUSH_INDEX_CHUNK_SIZE];
+        private int locationsIdx = 0;
+
+        LocationsBatchBuilder(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void accept(long ledgerId, long entryId, ByteBuf entry) throws IOException {
+            long location = entryLogger.addEntry(ledgerId, entry);
+            locations[locationsIdx] = ledgerId;
+            locations[locationsIdx + 1] = entryId;
+            locations[locationsIdx + 2] = location;
+            locationsIdx += 3;
+
+            if (locationsIdx == locations.length) {
+                submitChunk();
+            }
+        }
+
+        private void submitChunk() {
+            final long[] chunk = locations;
+            final int chunkLength = locationsIdx;
+            pendingChunks.add(flushIndexExecutor.submit(() -> {
+                for (int i = 0; i < chunkLength; i += 3) {
+                    entryLocationIndex.addLocation(batch, chunk[i], chunk[i + 1], chunk[i + 2]);
+                }
+                return null;
+            }));
+
+            locations = new long[3 * FLUSH_INDEX_CHUNK_SIZE];
+            locationsIdx = 0;
+        }
+
+        /**
+         * Wait until all the locations are added to the batch.
+         */
+        void awaitCompletion() throws IOException {
+            if (locationsIdx > 0) {
+                submitChunk();
+            }
+
+            IOException exception = null;
+            for (Future<?> chunk : pendingChunks) {
+                try {
+                    chunk.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    exception = new IOException("Interrupted while updating locations index batch", e);
+                } catch (ExecutionException e) {
+                    exception = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            }
+
+            if (exception != null) {
+                throw exception;
+            }
+        }
+    }
+
+    /**
+     * Replace the current write cache with an empty one, and queue it to be flushed. Must be called with the write
+     * lock of writeCacheRotationLock held.
+     *
+     * @return false if no empty write cache is available
+     */
+    private boolean swapWriteCache() {
+        WriteCache emptyWriteCache = emptyWriteCaches.poll();
+        if (emptyWriteCache == null) {
+            return false;
+        }
+
+        List<WriteCache> newWriteCachesBeingFlushed = new ArrayList<>(writeCachesBeingFlushed.size() + 1);
+        newWriteCachesBeingFlushed.addAll(writeCachesBeingFlushed);
+        newWriteCachesBeingFlushed.add(writeCache);
+        writeCachesBeingFlushed = newWriteCachesBeingFlushed;
+        writeCache = emptyWriteCache;
+        return true;
+    }
+
+    /**
+     * Swap the current write cache, unless it's empty.
+     *
+     * @return false if the write cache is not empty and no empty write cache is available
+     */
+    private boolean swapNonEmptyWriteCache() {
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            return writeCache.isEmpty() || swapWriteCache();
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the flushed write caches from the ones waiting to be flushed, and make them available for writes.
+     */
+    private void releaseFlushedWriteCaches(List<WriteCache> flushedWriteCaches) {
+        long stamp = writeCacheRotationLock.writeLock();
+        try {
+            // Write caches are only removed here, so the flushed ones are still at the beginning of the list
+            writeCachesBeingFlushed = new ArrayList<>(
+                    writeCachesBeingFlushed.subList(flushedWriteCaches.size(), writeCachesBeingFlushed.size()));
+        } finally {
+            writeCacheRotationLock.unlockWrite(stamp);
+        }
+
+        flushedWriteCaches.forEach(WriteCache::clear);
+
+        stamp = writeCacheRotationLock.writeLock();
+        try {
+            emptyWriteCaches.addAll(flushedWriteCaches);
         } finally {
             writeCacheRotationLock.unlockWrite(stamp);
         }
@@ -937,6 +1382,10 @@ public class SingleDirectoryDbLedgerStorage implements CompactableLedgerStorage
         entryLocationIndex.delete(ledgerId);
         ledgerIndex.delete(ledgerId);
 
+        if (readAheadTracker != null) {
+            readAheadTracker.removeLedger(ledgerId);
+        }
+
         for (int i = 0, size = ledgerDeletionListeners.size(); i < size; i++) {
             LedgerDeletionListener listener = ledgerDeletionListeners.get(i);
             listener.ledgerDeleted(ledgerId);
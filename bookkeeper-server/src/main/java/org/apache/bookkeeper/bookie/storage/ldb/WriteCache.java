@@ -22,11 +22,17 @@ package org.apache.bookkeeper.bookie.storage.ldb;
 
 import static com.google.common.base.Preconditions.checkArgument;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.ReentrantLock;
@@ -221,27 +227,9 @@ public class WriteCache implements Closeable {
         sortedEntriesLock.lock();
 
         try {
-            int entriesToSort = (int) index.size();
-            int arrayLen = entriesToSort * 4;
-            if (sortedEntries == null || sortedEntries.length < arrayLen) {
-                sortedEntries = new long[(int) (arrayLen * 2)];
-            }
-
             long startTime = MathUtils.nowInNano();
 
-            sortedEntriesIdx = 0;
-            index.forEach((ledgerId, entryId, offset, length) -> {
-                if (deletedLedgers.contains(ledgerId)) {
-                    // Ignore deleted ledgers
-                    return;
-                }
-
-                sortedEntries[sortedEntriesIdx] = ledgerId;
-                sortedEntries[sortedEntriesIdx + 1] = entryId;
-                sortedEntries[sortedEntriesIdx + 2] = offset;
-                sortedEntries[sortedEntriesIdx + 3] = length;
-                sortedEntriesIdx += 4;
-            });
+            collectEntries();
 
             if (log.isDebugEnabled()) {
                 log.debug("iteration took {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
@@ -255,32 +243,154 @@ public class WriteCache implements Closeable {
             }
             startTime = MathUtils.nowInNano();
 
-            ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
-            for (int i = 0; i < segmentsCount; i++) {
-                entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+            consumeEntries(sortedEntries, 0, sortedEntriesIdx, consumer);
+
+            if (log.isDebugEnabled()) {
+                log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+            }
+        } finally {
+            sortedEntriesLock.unlock();
+        }
+    }
+
+    /**
+     * Iterate through the stored entries in (ledgerId, entryId) order, like {@link #forEach(EntryConsumer)}, sorting
+     * them in parallel.
+     *
+     * <p>The entries are split in shards by ranges of ledger ids, and each shard is sorted on the given executor. The
+     * consumer is invoked from the calling thread, on each shard in turn, as soon as it is sorted, so that consuming
+     * the first shards overlaps with sorting the others.
+     */
+    public void forEach(EntryConsumer consumer, ExecutorService sortExecutor, int shardsCount) throws IOException {
+        sortedEntriesLock.lock();
+
+        Future<?>[] sortTasks = new Future<?>[shardsCount];
+        AtomicBoolean[] sortStarted = new AtomicBoolean[shardsCount];
+        CountDownLatch sortsDone = new CountDownLatch(shardsCount);
+        for (int i = 0; i < shardsCount; i++) {
+            sortStarted[i] = new AtomicBoolean();
+        }
+
+        try {
+            collectEntries();
+            if (sortedEntriesIdx == 0) {
+                return;
             }
 
+            // Split the entries in shards of contiguous ledger id ranges
+            long shardWidth = (maxLedgerId - minLedgerId) / shardsCount + 1;
+            int[] shardOffsets = new int[shardsCount + 1];
             for (int i = 0; i < sortedEntriesIdx; i += 4) {
-                long ledgerId = sortedEntries[i];
-                long entryId = sortedEntries[i + 1];
-                long offset = sortedEntries[i + 2];
-                long length = sortedEntries[i + 3];
-
-                int localOffset = (int) (offset & segmentOffsetMask);
-                int segmentIdx = (int) (offset >>> segmentOffsetBits);
-                ByteBuf entry = entrySegments[segmentIdx];
-                entry.setIndex(localOffset, localOffset + (int) length);
-                consumer.accept(ledgerId, entryId, entry);
+                shardOffsets[(int) ((sortedEntries[i] - minLedgerId) / shardWidth) + 1] += 4;
+            }
+            for (int i = 0; i < shardsCount; i++) {
+                shardOffsets[i + 1] += shardOffsets[i];
             }
 
-            if (log.isDebugEnabled()) {
-                log.debug("entry log adding {} ms", MathUtils.elapsedNanos(startTime) / 1e6);
+            if (shardedEntries == null || shardedEntries.length < sortedEntriesIdx) {
+                shardedEntries = new long[sortedEntries.length];
+            }
+
+            int[] positions = shardOffsets.clone();
+            for (int i = 0; i < sortedEntriesIdx; i += 4) {
+                int shard = (int) ((sortedEntries[i] - minLedgerId) / shardWidth);
+                System.arraycopy(sortedEntries, i, shardedEntries, positions[shard], 4);
+                positions[shard] += 4;
+            }
+
+            for (int i = 0; i < shardsCount; i++) {
+                int shard = i;
+                int offset = shardOffsets[i];
+                int length = shardOffsets[i + 1] - offset;
+                sortTasks[i] = sortExecutor.submit(() -> {
+                    if (sortStarted[shard].compareAndSet(false, true)) {
+                        try {
+                            ArrayGroupSort.sort(shardedEntries, offset, length);
+                        } finally {
+                            sortsDone.countDown();
+                        }
+                    }
+                });
+            }
+
+            for (int i = 0; i < shardsCount; i++) {
+                try {
+                    sortTasks[i].get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while sorting write cache entries", e);
+                } catch (ExecutionException e) {
+                    throw new IOException("Failed to sort write cache entries", e.getCause());
+                }
+
+                consumeEntries(shardedEntries, shardOffsets[i], shardOffsets[i + 1], consumer);
             }
         } finally {
+            // On failure, the shards not sorted yet are skipped, and the shards being sorted must be done with
+            // shardedEntries before the next iteration can reuse it
+            for (int i = 0; i < shardsCount; i++) {
+                if (sortStarted[i].compareAndSet(false, true)) {
+                    if (sortTasks[i] != null) {
+                        sortTasks[i].cancel(false);
+                    }
+                    sortsDone.countDown();
+                }
+            }
+            Uninterruptibles.awaitUninterruptibly(sortsDone);
             sortedEntriesLock.unlock();
         }
     }
 
+    /**
+     * Copy the index of the entries to iterate into the sortedEntries array, as groups of
+     * (ledgerId, entryId, offset, length), and find the range of ledger ids.
+     */
+    private void collectEntries() {
+        int entriesToSort = (int) index.size();
+        int arrayLen = entriesToSort * 4;
+        if (sortedEntries == null || sortedEntries.length < arrayLen) {
+            sortedEntries = new long[(int) (arrayLen * 2)];
+        }
+
+        sortedEntriesIdx = 0;
+        minLedgerId = Long.MAX_VALUE;
+        maxLedgerId = Long.MIN_VALUE;
+        index.forEach((ledgerId, entryId, offset, length) -> {
+            if (deletedLedgers.contains(ledgerId)) {
+                // Ignore deleted ledgers
+                return;
+            }
+
+            sortedEntries[sortedEntriesIdx] = ledgerId;
+            sortedEntries[sortedEntriesIdx + 1] = entryId;
+            sortedEntries[sortedEntriesIdx + 2] = offset;
+            sortedEntries[sortedEntriesIdx + 3] = length;
+            sortedEntriesIdx += 4;
+            minLedgerId = Math.min(minLedgerId, ledgerId);
+            maxLedgerId = Math.max(maxLedgerId, ledgerId);
+        });
+    }
+
+    private void consumeEntries(long[] entries, int start, int end, EntryConsumer consumer) throws IOException {
+        ByteBuf[] entrySegments = new ByteBuf[segmentsCount];
+        for (int i = 0; i < segmentsCount; i++) {
+            entrySegments[i] = cacheSegments[i].slice(0, cacheSegments[i].capacity());
+        }
+
+        for (int i = start; i < end; i += 4) {
+            long ledgerId = entries[i];
+            long entryId = entries[i + 1];
+            long offset = entries[i + 2];
+            long length = entries[i + 3];
+
+            int localOffset = (int) (offset & segmentOffsetMask);
+            int segmentIdx = (int) (offset >>> segmentOffsetBits);
+            ByteBuf entry = entrySegments[segmentIdx];
+            entry.setIndex(localOffset, localOffset + (int) length);
+            consumer.accept(ledgerId, entryId, entry);
+        }
+    }
+
     public long size() {
         return cacheSize.get();
     }
@@ -306,6 +416,10 @@ public class WriteCache implements Closeable {
     private final ReentrantLock sortedEntriesLock = new ReentrantLock();
     private long[] sortedEntries;
     private int sortedEntriesIdx;
+    private long minLedgerId;
+    private long maxLedgerId;
+    // Used to regroup the entries by shard when sorting in parallel
+    private long[] shardedEntries;
 
     private static final Logger log = LoggerFactory.getLogger(WriteCache.class);
 }
@@ -0,0 +1,188 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.bookkeeper.net.BookieId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A {@link SpeculativeRequestExecutionPolicy} whose timeouts adapt to the observed read response times.
+ *
+ * <p>A speculative request is issued when the bookie of the outstanding request has not responded after a percentile
+ * of its recent response times, as tracked by the {@link BookieReadLatencyTracker}, bounded by the min and max
+ * timeouts. The first timeout is used when the bookie has no recent response time. The time before the following
+ * speculative requests grows with the backoff multiplier, as in {@link DefaultSpeculativeRequestExecutionPolicy}.
+ *
+ * <p>The speculative requests are limited to a ratio of the requests: each request adds a fraction of a token to a
+ * budget, and each speculative request takes a token from it. When the bookies are slow because they are overloaded,
+ * the speculative requests stop when the budget is exhausted instead of adding to the load, and the outstanding
+ * requests are left to the request timeout.
+ */
+public class AdaptiveSpeculativeRequestExecutionPolicy implements SpeculativeRequestExecutionPolicy {
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveSpeculativeRequestExecutionPolicy.class);
+
+    // The budget is kept in thousandths of a speculative request
+    private static final long TOKEN = 1000;
+    // Max number of speculative requests that can be issued in a burst
+    @VisibleForTesting
+    static final long MAX_BURST = 100;
+    // Min number of recent response times of a bookie for its percentile to be used
+    private static final int MIN_SAMPLES = 20;
+
+    private final BookieReadLatencyTracker latencyTracker;
+    private final double percentile;
+    private final long firstTimeoutNanos;
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+    private final float backoffMultiplier;
+    private final long tokensPerRequest;
+    private final AtomicLong budget;
+
+    public AdaptiveSpeculativeRequestExecutionPolicy(BookieReadLatencyTracker latencyTracker,
+                                                     double percentile,
+                                                     int firstSpeculativeRequestTimeout,
+                                                     int minSpeculativeRequestTimeout,
+                                                     int maxSpeculativeRequestTimeout,
+                                                     float backoffMultiplier,
+                                                     double maxSpeculativeRequestRatio) {
+        if (percentile <= 0 || percentile > 100) {
+            throw new IllegalArgumentException("Invalid value provided for percentile");
+        }
+        if (backoffMultiplier <= 0) {
+            throw new IllegalArgumentException("Invalid value provided for backoffMultiplier");
+        }
+        if (minSpeculativeRequestTimeout > maxSpeculativeRequestTimeout) {
+            throw new IllegalArgumentException("Invalid values for minSpeculativeRequestTimeout and "
+                    + "maxSpeculativeRequestTimeout");
+        }
+        if (maxSpeculativeRequestRatio < 0) {
+            throw new IllegalArgumentException("Invalid value provided for maxSpeculativeRequestRatio");
+        }
+        this.latencyTracker = latencyTracker;
+        this.percentile = percentile;
+        this.firstTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(firstSpeculativeRequestTimeout);
+        this.minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(minSpeculativeRequestTimeout);
+        this.maxTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(maxSpeculativeRequestTimeout);
+        this.backoffMultiplier = backoffMultiplier;
+        this.tokensPerRequest = Math.round(maxSpeculativeRequestRatio * TOKEN);
+        this.budget = new AtomicLong(MAX_BURST * TOKEN);
+    }
+
+    @Override
+    public ScheduledFuture<?> initiateSpeculativeRequest(final ScheduledExecutorService scheduler,
+            final SpeculativeRequestExecutor requestExecutor) {
+        deposit(tokensPerRequest);
+        return scheduleSpeculativeRequest(scheduler, requestExecutor, timeoutNanos(requestExecutor, 0));
+    }
+
+    private long timeoutNanos(SpeculativeRequestExecutor requestExecutor, long previousTimeoutNanos) {
+        long timeoutNanos = firstTimeoutNanos;
+        BookieId bookie = requestExecutor.getPendingRequestBookie();
+        if (bookie != null) {
+            long latencyNanos = latencyTracker.getReadLatencyNanos(bookie, percentile, MIN_SAMPLES);
+            if (latencyNanos >= 0) {
+                timeoutNanos = latencyNanos;
+            }
+        }
+        timeoutNanos = Math.max(timeoutNanos, Math.round((double) previousTimeoutNanos * backoffMultiplier));
+        return Math.min(maxTimeoutNanos, Math.max(minTimeoutNanos, timeoutNanos));
+    }
+
+    private void deposit(long tokens) {
+        long current;
+        do {
+            current = budget.get();
+            if (current >= MAX_BURST * TOKEN) {
+                return;
+            }
+        } while (!budget.compareAndSet(current, Math.min(MAX_BURST * TOKEN, current + tokens)));
+    }
+
+    private boolean tryWithdraw() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < TOKEN) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - TOKEN));
+        return true;
+    }
+
+    private ScheduledFuture<?> scheduleSpeculativeRequest(final ScheduledExecutorService scheduler,
+                                                          final SpeculativeRequestExecutor requestExecutor,
+                                                          final long speculativeRequestTimeoutNanos) {
+        try {
+            return scheduler.schedule(() -> {
+                if (!tryWithdraw()) {
+                    // The outstanding request is left to the request timeout
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("Speculative request budget exhausted, not issuing speculative request for {}",
+                                requestExecutor);
+                    }
+                    return;
+                }
+                ListenableFuture<Boolean> issueNextRequest = requestExecutor.issueSpeculativeRequest();
+                Futures.addCallback(issueNextRequest, new FutureCallback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean issueNextRequest) {
+                        if (issueNextRequest) {
+                            scheduleSpeculativeRequest(scheduler, requestExecutor,
+                                    timeoutNanos(requestExecutor, speculativeRequestTimeoutNanos));
+                        } else {
+                            // No speculative request was issued
+                            deposit(TOKEN);
+                            if (LOG.isTraceEnabled()) {
+                                LOG.trace("Stopped issuing speculative requests for {}, "
+                                        + "speculativeReadTimeout = {} ns", requestExecutor,
+                                        speculativeRequestTimeoutNanos);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Throwable thrown) {
+                        LOG.warn("Failed to issue speculative request for {}, speculativeReadTimeout = {} ns : ",
+                                requestExecutor, speculativeRequestTimeoutNanos, thrown);
+                    }
+                }, directExecutor());
+            }, speculativeRequestTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException re) {
+            if (!scheduler.isShutdown()) {
+                LOG.warn("Failed to schedule speculative request for {}, speculativeReadTimeout = {} ns : ",
+                        requestExecutor, speculativeRequestTimeoutNanos, re);
+            }
+        }
+        return null;
+    }
+}
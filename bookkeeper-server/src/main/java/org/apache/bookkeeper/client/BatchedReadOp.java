@@ -132,7 +132,7 @@ public class BatchedReadOp extends ReadOpBase implements BatchedReadEntryCallbac
                     maxCount, maxSize, this, new ReadContext(bookieIndex, to, entry), flags, lh.ledgerKey);
         } else {
             clientCtx.getBookieClient().batchReadEntries(to, lh.ledgerId, entry.eId, maxCount, maxSize,
-                    this, new ReadContext(bookieIndex, to, entry), BookieProtocol.FLAG_NONE);
+                    this, new ReadContext(bookieIndex, to, entry), trafficClassFlags);
         }
     }
 
@@ -197,6 +197,7 @@ public class BatchedReadOp extends ReadOpBase implements BatchedReadEntryCallbac
 
         static final int NOT_FOUND = -1;
         int nextReplicaIndexToReadFrom = 0;
+        BookieId lastSentTo;
         final BitSet sentReplicas;
         final BitSet erroredReplicas;
         SequenceReadRequest(List<BookieId> ensemble,
@@ -218,6 +219,11 @@ public class BatchedReadOp extends ReadOpBase implements BatchedReadEntryCallbac
             return nextReplicaIndexToReadFrom;
         }
 
+        @Override
+        public synchronized BookieId getPendingRequestBookie() {
+            return lastSentTo;
+        }
+
         private BitSet getSentToBitSet() {
             BitSet b = new BitSet(ensemble.size());
 
@@ -269,6 +275,7 @@ public class BatchedReadOp extends ReadOpBase implements BatchedReadEntryCallbac
 
             try {
                 BookieId to = ensemble.get(bookieIndex);
+                lastSentTo = to;
                 sendReadTo(bookieIndex, to, this);
                 sentToHosts.add(to);
                 sentReplicas.set(replica);
@@ -40,6 +40,7 @@ import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -62,6 +63,7 @@ import org.apache.bookkeeper.client.api.LedgersIterator;
 import org.apache.bookkeeper.client.api.ListLedgersResult;
 import org.apache.bookkeeper.client.api.ListLedgersResultBuilder;
 import org.apache.bookkeeper.client.api.OpenBuilder;
+import org.apache.bookkeeper.client.api.WriteBatch;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.common.allocator.ByteBufAllocatorBuilder;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
@@ -117,6 +119,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     // The stats logger for this client.
     private final StatsLogger statsLogger;
     private final BookKeeperClientStats clientStats;
+    private final BookieReadLatencyTracker bookieReadLatencyTracker;
+    private final ClientEntryCache entryCache;
+    private final ExecutorService digestExecutor;
     private final double bookieQuarantineRatio;
 
     // whether the event loop group is one we created, or is owned by whoever
@@ -420,7 +425,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
             this.featureProvider = featureProvider;
         }
 
-        this.internalConf = ClientInternalConf.fromConfigAndFeatureProvider(conf, this.featureProvider);
+        this.bookieReadLatencyTracker = ClientInternalConf.newBookieReadLatencyTracker(conf);
+        this.internalConf = ClientInternalConf.fromConfigAndFeatureProvider(conf, this.featureProvider,
+                this.bookieReadLatencyTracker);
 
         // initialize resources
         this.scheduler = OrderedScheduler.newSchedulerBuilder().numThreads(1).name("BookKeeperClientScheduler").build();
@@ -481,6 +488,20 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                     .build();
         }
 
+        if (conf.getReadEntryCacheMaxSizeMb() > 0) {
+            this.entryCache = new ClientEntryCache(this.allocator, conf.getReadEntryCacheMaxSizeMb() * 1024 * 1024,
+                    clientStats);
+        } else {
+            this.entryCache = null;
+        }
+
+        if (conf.getParallelDigestThreads() > 0) {
+            this.digestExecutor = Executors.newFixedThreadPool(conf.getParallelDigestThreads(),
+                    new DefaultThreadFactory("BookKeeperClientDigestThread"));
+        } else {
+            this.digestExecutor = null;
+        }
+
 
         if (null == requestTimer) {
             this.requestTimer = new HashedWheelTimer(
@@ -546,9 +567,12 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
     @VisibleForTesting
     BookKeeper() {
         conf = new ClientConfiguration();
-        internalConf = ClientInternalConf.fromConfig(conf);
+        bookieReadLatencyTracker = ClientInternalConf.newBookieReadLatencyTracker(conf);
+        internalConf = ClientInternalConf.fromConfig(conf, bookieReadLatencyTracker);
         statsLogger = NullStatsLogger.INSTANCE;
         clientStats = BookKeeperClientStats.newInstance(statsLogger);
+        entryCache = null;
+        digestExecutor = null;
         scheduler = null;
         requestTimer = null;
         metadataDriver = null;
@@ -1465,6 +1489,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         if (!mainWorkerPool.awaitTermination(10, TimeUnit.SECONDS)) {
             LOG.warn("The mainWorkerPool did not shutdown cleanly");
         }
+        if (digestExecutor != null) {
+            digestExecutor.shutdown();
+        }
         if (this.bookieInfoScheduler != null) {
             this.bookieInfoScheduler.shutdown();
             if (!bookieInfoScheduler.awaitTermination(10, TimeUnit.SECONDS)) {
@@ -1478,6 +1505,9 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         if (ownEventLoopGroup) {
             eventLoopGroup.shutdownGracefully();
         }
+        if (entryCache != null) {
+            entryCache.clear();
+        }
         this.metadataDriver.close();
     }
 
@@ -1592,6 +1622,11 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
         }
     }
 
+    @Override
+    public WriteBatch newWriteBatch() {
+        return new LedgerWriteBatch(bookieClient);
+    }
+
     @Override
     public ListLedgersResultBuilder newListLedgersOp() {
         return () -> {
@@ -1649,6 +1684,21 @@ public class BookKeeper implements org.apache.bookkeeper.client.api.BookKeeper {
                 return clientStats;
             }
 
+            @Override
+            public BookieReadLatencyTracker getBookieReadLatencyTracker() {
+                return bookieReadLatencyTracker;
+            }
+
+            @Override
+            public ClientEntryCache getEntryCache() {
+                return entryCache;
+            }
+
+            @Override
+            public ExecutorService getDigestExecutor() {
+                return digestExecutor;
+            }
+
             @Override
             public boolean isClientClosed() {
                 return BookKeeper.this.isClosed();
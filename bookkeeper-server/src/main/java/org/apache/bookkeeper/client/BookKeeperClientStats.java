@@ -65,6 +65,9 @@ public interface BookKeeperClientStats {
     String SPECULATIVE_READ_COUNT = "SPECULATIVE_READ_COUNT";
     String READ_REQUESTS_REORDERED = "READ_REQUESTS_REORDERED";
     String GET_LIST_OF_ENTRIES_OF_LEDGER_OP = "GET_LIST_OF_ENTRIES_OF_LEDGER";
+    String READ_CACHE_HITS = "READ_CACHE_HITS";
+    String READ_CACHE_MISSES = "READ_CACHE_MISSES";
+    String READ_CACHE_SIZE = "READ_CACHE_SIZE";
 
     // per channel stats
     String CHANNEL_SCOPE = "per_channel_bookie_client";
@@ -90,6 +93,8 @@ public interface BookKeeperClientStats {
     String ADD_OP_OUTSTANDING = "ADD_OP_OUTSTANDING";
     String READ_OP_OUTSTANDING = "READ_OP_OUTSTANDING";
     String NETTY_OPS = "NETTY_OPS";
+    String NETTY_FLUSHES = "NETTY_FLUSHES";
+    String NETTY_REQUESTS_PER_FLUSH = "NETTY_REQUESTS_PER_FLUSH";
     String ACTIVE_NON_TLS_CHANNEL_COUNTER = "ACTIVE_NON_TLS_CHANNEL_COUNTER";
     String ACTIVE_TLS_CHANNEL_COUNTER = "ACTIVE_TLS_CHANNEL_COUNTER";
     String FAILED_CONNECTION_COUNTER = "FAILED_CONNECTION_COUNTER";
@@ -129,7 +134,10 @@ public interface BookKeeperClientStats {
     OpStatsLogger getWriteDelayedDueToNotEnoughFaultDomainsLatency();
     Counter getWriteDelayedDueToNotEnoughFaultDomains();
     Counter getWriteTimedOutDueToNotEnoughFaultDomains();
+    Counter getReadCacheHitsCounter();
+    Counter getReadCacheMissesCounter();
     void registerPendingAddsGauge(Gauge<Integer> gauge);
+    void registerReadCacheSizeGauge(Gauge<Long> gauge);
 
     static BookKeeperClientStats newInstance(StatsLogger stats) {
         return new BookKeeperClientStatsImpl(stats);
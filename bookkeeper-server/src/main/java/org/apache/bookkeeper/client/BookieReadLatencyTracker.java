@@ -0,0 +1,186 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.net.BookieId;
+
+/**
+ * Tracks a decaying estimate of the read response times of each bookie, from the completed reads of the client.
+ *
+ * <p>For each bookie, it keeps a histogram of the response times with logarithmic buckets, in which the samples are
+ * exponentially weighted by their age, so that the percentiles follow the recent behavior of the bookie whatever the
+ * read rate. The weights use forward decay: a new sample weighs more than the previous ones instead of decaying all
+ * the buckets on each sample, and the buckets are rescaled once in a while.
+ *
+ * <p>The number of samples of an estimate is decayed the same way, so that a bookie that had many reads a while ago
+ * and only a few recent ones does not have enough samples for its percentiles to be used.
+ *
+ * <p>The estimate of a bookie expires when no read completed on it for a few half-lives, so that a bookie that was
+ * slow and is not read from anymore is tried again later.
+ */
+public class BookieReadLatencyTracker {
+
+    /**
+     * Percentile used to compare the bookies when reordering reads, a bookie with occasional slow reads, eg: with a
+     * noisy disk, is noticed before its average moves.
+     */
+    static final double REORDER_PERCENTILE = 99.0;
+
+    // Number of half-lives without samples after which an estimate is discarded
+    private static final int EXPIRY_HALF_LIVES = 4;
+    // 4 buckets per power of 2 of microseconds, ie: a precision of 25% on the percentiles
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int NUM_BUCKETS = 64 * SUB_BUCKETS;
+    // Maximum weight of a sample relative to the landmark before the buckets are rescaled
+    private static final double MAX_WEIGHT = 1e12;
+
+    private final ConcurrentMap<BookieId, Estimate> estimates = new ConcurrentHashMap<>();
+    private final double decayNanos;
+    private final long expiryNanos;
+
+    public BookieReadLatencyTracker(long halfLifeNanos) {
+        checkArgument(halfLifeNanos > 0, "Half-life must be positive");
+        this.decayNanos = halfLifeNanos / Math.log(2);
+        this.expiryNanos = EXPIRY_HALF_LIVES * halfLifeNanos;
+    }
+
+    /**
+     * Record the response time of a successful read on a bookie.
+     */
+    public void recordReadLatency(BookieId bookie, long latencyNanos) {
+        recordReadLatency(bookie, latencyNanos, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    void recordReadLatency(BookieId bookie, long latencyNanos, long nowNanos) {
+        estimates.computeIfAbsent(bookie, b -> new Estimate(nowNanos))
+                .update(latencyNanos, nowNanos, decayNanos);
+    }
+
+    /**
+     * Get the estimated tail read response time of a bookie, used to reorder the reads.
+     *
+     * @return the estimated response time in nanoseconds, or -1 if there is no recent read on the bookie
+     */
+    public long getReadLatencyNanos(BookieId bookie) {
+        return getReadLatencyNanos(bookie, REORDER_PERCENTILE, 1);
+    }
+
+    /**
+     * Get a percentile of the recent read response times of a bookie.
+     *
+     * @param percentile the percentile, between 0 and 100
+     * @param minSamples the minimum number of samples, weighted by their age, for the estimate to be returned
+     * @return the estimated response time in nanoseconds, or -1 if there are not enough recent reads on the bookie
+     */
+    public long getReadLatencyNanos(BookieId bookie, double percentile, int minSamples) {
+        return getReadLatencyNanos(bookie, percentile, minSamples, MathUtils.nowInNano());
+    }
+
+    @VisibleForTesting
+    long getReadLatencyNanos(BookieId bookie, double percentile, int minSamples, long nowNanos) {
+        Estimate estimate = estimates.get(bookie);
+        if (estimate == null) {
+            return -1L;
+        }
+        if (nowNanos - estimate.lastSampleNanos() > expiryNanos) {
+            estimates.remove(bookie, estimate);
+            return -1L;
+        }
+        return estimate.percentileNanos(percentile / 100, minSamples, nowNanos, decayNanos);
+    }
+
+    private static int bucket(long latencyNanos) {
+        long micros = Math.max(1, latencyNanos / 1000);
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exp - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exp - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long bucketUpperBoundNanos(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket * 1000L;
+        }
+        int exp = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = bucket % SUB_BUCKETS;
+        long upperMicros = ((long) (SUB_BUCKETS + sub + 1) << (exp - SUB_BUCKET_BITS)) - 1;
+        return upperMicros * 1000L;
+    }
+
+    private static final class Estimate {
+        private final double[] buckets = new double[NUM_BUCKETS];
+        private double total;
+        private long landmarkNanos;
+        private long lastSampleNanos;
+
+        Estimate(long nowNanos) {
+            this.landmarkNanos = nowNanos;
+            this.lastSampleNanos = nowNanos;
+        }
+
+        synchronized void update(long latencyNanos, long nowNanos, double decayNanos) {
+            double weight = Math.exp((nowNanos - landmarkNanos) / decayNanos);
+            if (weight > MAX_WEIGHT) {
+                for (int i = 0; i < buckets.length; i++) {
+                    buckets[i] /= weight;
+                }
+                total /= weight;
+                landmarkNanos = nowNanos;
+                weight = 1;
+            }
+            buckets[bucket(latencyNanos)] += weight;
+            total += weight;
+            lastSampleNanos = nowNanos;
+        }
+
+        synchronized long lastSampleNanos() {
+            return lastSampleNanos;
+        }
+
+        synchronized long percentileNanos(double quantile, int minSamples, long nowNanos, double decayNanos) {
+            // The weights are relative to the landmark, the decayed number of samples is their sum relative to now
+            double samples = total / Math.exp((nowNanos - landmarkNanos) / decayNanos);
+            if (total == 0 || samples < minSamples) {
+                return -1L;
+            }
+            double target = quantile * total;
+            double cumulated = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                cumulated += buckets[i];
+                if (cumulated >= target && buckets[i] > 0) {
+                    return bucketUpperBoundNanos(i);
+                }
+            }
+            return bucketUpperBoundNanos(NUM_BUCKETS - 1);
+        }
+    }
+}
@@ -44,4 +44,14 @@ public interface BookiesHealthInfo {
      */
     long getBookiePendingRequests(BookieId bookieSocketAddress);
 
+    /**
+     * Returns the estimated read response time of a bookie.
+     *
+     * @param bookieSocketAddress
+     * @return estimated read response time in nanoseconds, -1 if it is unknown
+     */
+    default long getBookieReadLatencyNanos(BookieId bookieSocketAddress) {
+        return -1L;
+    }
+
 }
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client;
 
 import io.netty.buffer.ByteBufAllocator;
+import java.util.concurrent.ExecutorService;
 import org.apache.bookkeeper.common.util.OrderedExecutor;
 import org.apache.bookkeeper.common.util.OrderedScheduler;
 import org.apache.bookkeeper.meta.LedgerManager;
@@ -42,5 +43,22 @@ public interface ClientContext {
     OrderedExecutor getMainWorkerPool();
     OrderedScheduler getScheduler();
     BookKeeperClientStats getClientStats();
+
+    /**
+     * @return the read response times of the bookies, shared by all the ledger handles of the client
+     */
+    BookieReadLatencyTracker getBookieReadLatencyTracker();
+
+    /**
+     * @return the cache of the entries read by the client, or null if the read entry cache is disabled
+     */
+    ClientEntryCache getEntryCache();
+
+    /**
+     * @return the executor computing the digests of large entries in chunks, or null if the parallel digests are
+     *         disabled
+     */
+    ExecutorService getDigestExecutor();
+
     boolean isClientClosed();
 }
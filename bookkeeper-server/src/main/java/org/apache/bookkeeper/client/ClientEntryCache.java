@@ -0,0 +1,287 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.client;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.Gauge;
+
+/**
+ * Cache of the entries read by the client, shared by all the ledger handles of a {@link BookKeeper} client.
+ *
+ * <p>Only the entries that cannot change anymore are cached, ie: the entries up to the last add confirmed of their
+ * ledger. The data of the entries is copied in direct buffers, outside of the heap, and the total size of the data is
+ * bounded.
+ *
+ * <p>The cache is split in segments, each with its own lock, and each segment uses a segmented LRU eviction: new
+ * entries are added to a probation part, and move to a protected part when they are read again, so that a long scan of
+ * entries that are read once doesn't evict the entries read by several readers. The entries evicted from the protected
+ * part go back to the probation part, and the entries are evicted from the probation part first.
+ *
+ * <p>The cache also keeps the fetches in progress, so that concurrent readers of the same entry wait for the first
+ * fetch instead of reading it from the bookies again.
+ */
+class ClientEntryCache {
+
+    private static final int NUM_SEGMENTS = 16;
+    // Share of the size of a segment for the entries read more than once
+    private static final double PROTECTED_RATIO = 0.8;
+
+    private final ByteBufAllocator allocator;
+    private final Segment[] segments;
+    private final ConcurrentMap<EntryKey, CompletableFuture<Void>> pendingFetches = new ConcurrentHashMap<>();
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+
+    ClientEntryCache(ByteBufAllocator allocator, long maxSizeBytes, BookKeeperClientStats clientStats) {
+        checkArgument(maxSizeBytes > 0, "Cache size must be positive");
+        this.allocator = allocator;
+        this.segments = new Segment[NUM_SEGMENTS];
+        for (int i = 0; i < NUM_SEGMENTS; i++) {
+            segments[i] = new Segment(maxSizeBytes / NUM_SEGMENTS);
+        }
+        this.hitsCounter = clientStats.getReadCacheHitsCounter();
+        this.missesCounter = clientStats.getReadCacheMissesCounter();
+        clientStats.registerReadCacheSizeGauge(new Gauge<Long>() {
+            @Override
+            public Long getDefaultValue() {
+                return 0L;
+            }
+
+            @Override
+            public Long getSample() {
+                return size();
+            }
+        });
+    }
+
+    /**
+     * Get an entry from the cache, and count the read as a cache hit or miss.
+     *
+     * @param entry the entry to fill with a retained duplicate of the cached data and the cached length
+     * @return true if the entry was found in the cache
+     */
+    boolean get(long ledgerId, long entryId, LedgerEntryImpl entry) {
+        if (getAfterFetch(ledgerId, entryId, entry)) {
+            hitsCounter.inc();
+            return true;
+        } else {
+            missesCounter.inc();
+            return false;
+        }
+    }
+
+    /**
+     * Get an entry from the cache once the concurrent fetch of the entry is done. The read was already counted by
+     * {@link #get(long, long, LedgerEntryImpl)}, so this lookup isn't counted.
+     *
+     * @param entry the entry to fill with a retained duplicate of the cached data and the cached length
+     * @return true if the entry was found in the cache
+     */
+    boolean getAfterFetch(long ledgerId, long entryId, LedgerEntryImpl entry) {
+        EntryKey key = new EntryKey(ledgerId, entryId);
+        return segmentFor(key).get(key, entry);
+    }
+
+    /**
+     * Add an entry to the cache. The data is copied, the caller keeps the ownership of the buffer.
+     */
+    void put(long ledgerId, long entryId, long length, ByteBuf data) {
+        EntryKey key = new EntryKey(ledgerId, entryId);
+        Segment segment = segmentFor(key);
+        int size = data.readableBytes();
+        if (size > segment.maxSize || segment.contains(key)) {
+            return;
+        }
+        ByteBuf copy = allocator.directBuffer(size, size);
+        copy.writeBytes(data, data.readerIndex(), size);
+        segment.put(key, new CachedEntry(copy, length));
+    }
+
+    /**
+     * Register a fetch of an entry from the bookies.
+     *
+     * @param fetch the future of the fetch, to be completed with {@link #endFetch(long, long, CompletableFuture)}
+     * @return the future of the fetch already in progress for this entry, or null if the fetch was registered
+     */
+    CompletableFuture<Void> startFetch(long ledgerId, long entryId, CompletableFuture<Void> fetch) {
+        return pendingFetches.putIfAbsent(new EntryKey(ledgerId, entryId), fetch);
+    }
+
+    /**
+     * Unregister a fetch of an entry, and notify the readers waiting for it. It is called after the entry was added to
+     * the cache, or when the fetch failed.
+     */
+    void endFetch(long ledgerId, long entryId, CompletableFuture<Void> fetch) {
+        pendingFetches.remove(new EntryKey(ledgerId, entryId), fetch);
+        fetch.complete(null);
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentFor(EntryKey key) {
+        return segments[(key.hashCode() & Integer.MAX_VALUE) % NUM_SEGMENTS];
+    }
+
+    private static final class EntryKey {
+        private final long ledgerId;
+        private final long entryId;
+
+        EntryKey(long ledgerId, long entryId) {
+            this.ledgerId = ledgerId;
+            this.entryId = entryId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EntryKey)) {
+                return false;
+            }
+            EntryKey other = (EntryKey) o;
+            return ledgerId == other.ledgerId && entryId == other.entryId;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = ledgerId * 0x9E3779B97F4A7C15L + entryId;
+            h ^= h >>> 32;
+            return (int) h;
+        }
+    }
+
+    private static final class CachedEntry {
+        private final ByteBuf data;
+        private final long length;
+
+        CachedEntry(ByteBuf data, long length) {
+            this.data = data;
+            this.length = length;
+        }
+
+        int size() {
+            return data.readableBytes();
+        }
+    }
+
+    private static final class Segment {
+        private final long maxSize;
+        private final long maxProtectedSize;
+        // Maps in access order, the eldest entry is the least recently used
+        private final LinkedHashMap<EntryKey, CachedEntry> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<EntryKey, CachedEntry> protectedEntries = new LinkedHashMap<>(16, 0.75f, true);
+        private long size;
+        private long protectedSize;
+
+        Segment(long maxSize) {
+            this.maxSize = maxSize;
+            this.maxProtectedSize = (long) (maxSize * PROTECTED_RATIO);
+        }
+
+        synchronized boolean get(EntryKey key, LedgerEntryImpl entry) {
+            CachedEntry cached = protectedEntries.get(key);
+            if (cached == null) {
+                cached = probation.remove(key);
+                if (cached == null) {
+                    return false;
+                }
+                // Read again, promote it to the protected part
+                protectedEntries.put(key, cached);
+                protectedSize += cached.size();
+                while (protectedSize > maxProtectedSize) {
+                    Map.Entry<EntryKey, CachedEntry> demoted = removeEldest(protectedEntries);
+                    protectedSize -= demoted.getValue().size();
+                    probation.put(demoted.getKey(), demoted.getValue());
+                }
+            }
+            entry.setLength(cached.length);
+            entry.setEntryBuf(cached.data.retainedDuplicate());
+            return true;
+        }
+
+        synchronized boolean contains(EntryKey key) {
+            return protectedEntries.containsKey(key) || probation.containsKey(key);
+        }
+
+        synchronized void put(EntryKey key, CachedEntry cached) {
+            if (protectedEntries.containsKey(key) || probation.containsKey(key)) {
+                // Added by a concurrent reader
+                cached.data.release();
+                return;
+            }
+            probation.put(key, cached);
+            size += cached.size();
+            while (size > maxSize) {
+                Map.Entry<EntryKey, CachedEntry> evicted;
+                if (!probation.isEmpty()) {
+                    evicted = removeEldest(probation);
+                } else {
+                    evicted = removeEldest(protectedEntries);
+                    protectedSize -= evicted.getValue().size();
+                }
+                size -= evicted.getValue().size();
+                evicted.getValue().data.release();
+            }
+        }
+
+        synchronized long size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            probation.values().forEach(cached -> cached.data.release());
+            protectedEntries.values().forEach(cached -> cached.data.release());
+            probation.clear();
+            protectedEntries.clear();
+            size = 0;
+            protectedSize = 0;
+        }
+
+        private static Map.Entry<EntryKey, CachedEntry> removeEldest(LinkedHashMap<EntryKey, CachedEntry> map) {
+            Iterator<Map.Entry<EntryKey, CachedEntry>> iterator = map.entrySet().iterator();
+            Map.Entry<EntryKey, CachedEntry> eldest = iterator.next();
+            iterator.remove();
+            return eldest;
+        }
+    }
+}
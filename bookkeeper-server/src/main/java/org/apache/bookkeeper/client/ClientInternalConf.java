@@ -40,6 +40,7 @@ class ClientInternalConf {
     final boolean enableParallelRecoveryRead;
     final boolean enableReorderReadSequence;
     final boolean enableStickyReads;
+    final boolean trackBookieReadLatency;
     final int recoveryReadBatchSize;
     final int throttleValue;
     final int bookieFailureHistoryExpirationMSec;
@@ -50,22 +51,40 @@ class ClientInternalConf {
     final boolean enforceMinNumFaultDomainsForWrite;
     final boolean batchReadEnabled;
     final int nettyMaxFrameSizeBytes;
+    final int readStreamMaxOutstandingRequests;
+    final long readStreamRequestSizeBytes;
+    final long readStreamMaxMemoryBytes;
+    final int parallelDigestChunkSize;
+    final boolean systemClient;
+    final long tailingReadMaxEntriesBehindLac;
 
     static ClientInternalConf defaultValues() {
-        return fromConfig(new ClientConfiguration());
+        ClientConfiguration conf = new ClientConfiguration();
+        return fromConfig(conf, newBookieReadLatencyTracker(conf));
     }
 
-    static ClientInternalConf fromConfig(ClientConfiguration conf) {
-        return fromConfigAndFeatureProvider(conf, SettableFeatureProvider.DISABLE_ALL);
+    static ClientInternalConf fromConfig(ClientConfiguration conf,
+                                         BookieReadLatencyTracker bookieReadLatencyTracker) {
+        return fromConfigAndFeatureProvider(conf, SettableFeatureProvider.DISABLE_ALL, bookieReadLatencyTracker);
     }
 
     static ClientInternalConf fromConfigAndFeatureProvider(ClientConfiguration conf,
-                                                           FeatureProvider featureProvider) {
-        return new ClientInternalConf(conf, featureProvider);
+                                                           FeatureProvider featureProvider,
+                                                           BookieReadLatencyTracker bookieReadLatencyTracker) {
+        return new ClientInternalConf(conf, featureProvider, bookieReadLatencyTracker);
+    }
+
+    /**
+     * Create the read latency tracker of a client, which is shared by the client context and the adaptive speculative
+     * read policy.
+     */
+    static BookieReadLatencyTracker newBookieReadLatencyTracker(ClientConfiguration conf) {
+        return new BookieReadLatencyTracker(TimeUnit.MILLISECONDS.toNanos(conf.getReadLatencyEstimateHalfLifeMs()));
     }
 
     private ClientInternalConf(ClientConfiguration conf,
-                               FeatureProvider featureProvider) {
+                               FeatureProvider featureProvider,
+                               BookieReadLatencyTracker bookieReadLatencyTracker) {
         this.explicitLacInterval = conf.getExplictLacInterval();
         this.enableReorderReadSequence = conf.isReorderReadSequenceEnabled();
         this.enableParallelRecoveryRead = conf.getEnableParallelRecoveryRead();
@@ -76,6 +95,12 @@ class ClientInternalConf {
         this.bookieFailureHistoryExpirationMSec = conf.getBookieFailureHistoryExpirationMSec();
         this.batchReadEnabled = conf.isBatchReadEnabled();
         this.nettyMaxFrameSizeBytes = conf.getNettyMaxFrameSizeBytes();
+        this.readStreamMaxOutstandingRequests = conf.getReadStreamMaxOutstandingRequests();
+        this.readStreamRequestSizeBytes = conf.getReadStreamRequestSizeBytes();
+        this.readStreamMaxMemoryBytes = conf.getReadStreamMaxMemoryBytes();
+        this.parallelDigestChunkSize = conf.getParallelDigestChunkSize();
+        this.systemClient = ClientConfiguration.CLIENT_ROLE_SYSTEM.equals(conf.getClientRole());
+        this.tailingReadMaxEntriesBehindLac = conf.getTailingReadMaxEntriesBehindLac();
         this.disableEnsembleChangeFeature = featureProvider.getFeature(conf.getDisableEnsembleChangeFeatureName());
         this.delayEnsembleChange = conf.getDelayEnsembleChange();
         this.maxAllowedEnsembleChanges = conf.getMaxAllowedEnsembleChanges();
@@ -85,7 +110,22 @@ class ClientInternalConf {
         this.enableStickyReads = conf.isStickyReadsEnabled();
         this.enforceMinNumFaultDomainsForWrite = conf.getEnforceMinNumFaultDomainsForWrite();
 
-        if (conf.getFirstSpeculativeReadTimeout() > 0) {
+        boolean adaptiveSpeculativeRead = conf.isAdaptiveSpeculativeReadEnabled()
+                && conf.getFirstSpeculativeReadTimeout() > 0;
+        this.trackBookieReadLatency = adaptiveSpeculativeRead
+                || (conf.isReorderReadSequenceEnabled() && conf.isReorderReadsByLatencyEnabled());
+
+        if (adaptiveSpeculativeRead) {
+            this.readSpeculativeRequestPolicy =
+                    Optional.of(new AdaptiveSpeculativeRequestExecutionPolicy(
+                                        bookieReadLatencyTracker,
+                                        conf.getAdaptiveSpeculativeReadPercentile(),
+                                        conf.getFirstSpeculativeReadTimeout(),
+                                        conf.getMinSpeculativeReadTimeout(),
+                                        conf.getMaxSpeculativeReadTimeout(),
+                                        conf.getSpeculativeReadTimeoutBackoffMultiplier(),
+                                        conf.getSpeculativeReadMaxRatio()));
+        } else if (conf.getFirstSpeculativeReadTimeout() > 0) {
             this.readSpeculativeRequestPolicy =
                     Optional.of(new DefaultSpeculativeRequestExecutionPolicy(
                                         conf.getFirstSpeculativeReadTimeout(),
@@ -69,10 +69,12 @@ import org.apache.bookkeeper.client.SyncCallbackUtils.SyncReadLastConfirmedCallb
 import org.apache.bookkeeper.client.api.BKException.Code;
 import org.apache.bookkeeper.client.api.LastConfirmedAndEntry;
 import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
 import org.apache.bookkeeper.client.api.WriteFlag;
 import org.apache.bookkeeper.client.api.WriteHandle;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.client.impl.LedgerEntryStreamImpl;
 import org.apache.bookkeeper.common.concurrent.FutureEventListener;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
 import org.apache.bookkeeper.common.util.MathUtils;
@@ -214,6 +216,7 @@ public class LedgerHandle implements WriteHandle {
 
         macManager = DigestManager.instantiate(ledgerId, password, BookKeeper.DigestType.toProtoDigestType(digestType),
                                                clientCtx.getByteBufAllocator(), clientCtx.getConf().useV2WireProtocol);
+        macManager.setParallelDigest(clientCtx.getDigestExecutor(), clientCtx.getConf().parallelDigestChunkSize);
 
         // If the password is empty, pass the same random ledger key which is generated by the hash of the empty
         // password, so that the bookie can avoid processing the keys for each entry
@@ -241,6 +244,11 @@ public class LedgerHandle implements WriteHandle {
             public long getBookiePendingRequests(BookieId bookieSocketAddress) {
                 return clientCtx.getBookieClient().getNumPendingRequests(bookieSocketAddress, ledgerId);
             }
+
+            @Override
+            public long getBookieReadLatencyNanos(BookieId bookieSocketAddress) {
+                return clientCtx.getBookieReadLatencyTracker().getReadLatencyNanos(bookieSocketAddress);
+            }
         };
 
         ensembleChangeCounter = clientCtx.getClientStats().getEnsembleChangeCounter();
@@ -941,6 +949,21 @@ public class LedgerHandle implements WriteHandle {
         return future;
     }
 
+    /**
+     * Read a sequence of entries as a stream, with the read ahead settings of the client configuration.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence
+     */
+    @Override
+    public LedgerEntryStream readStream(long firstEntry, long lastEntry) {
+        ClientInternalConf conf = clientCtx.getConf();
+        return new LedgerEntryStreamImpl(this, firstEntry, lastEntry, conf.batchReadEnabled,
+                conf.readStreamMaxOutstandingRequests, conf.readStreamRequestSizeBytes, conf.readStreamMaxMemoryBytes);
+    }
+
     private boolean notSupportBatchRead() {
         if (!clientCtx.getConf().batchReadEnabled) {
             return true;
@@ -1637,7 +1660,10 @@ public class LedgerHandle implements WriteHandle {
             }
         }
 
-        op.initiate();
+        // The adds of a write batch are initiated when the batch is sent
+        if (!LedgerWriteBatch.deferIfBatching(op)) {
+            op.initiate();
+        }
 
     }
 
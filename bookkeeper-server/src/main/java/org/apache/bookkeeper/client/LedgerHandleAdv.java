@@ -275,7 +275,10 @@ public class LedgerHandleAdv extends LedgerHandle implements WriteAdvHandle {
             }
         }
 
-        op.initiate();
+        // The adds of a write batch are initiated when the batch is sent
+        if (!LedgerWriteBatch.deferIfBatching(op)) {
+            op.initiate();
+        }
     }
 
     @Override
@@ -0,0 +1,168 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import org.apache.bookkeeper.client.api.WriteAdvHandle;
+import org.apache.bookkeeper.client.api.WriteBatch;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Write batch implementation.
+ *
+ * <p>The entries are added to their ledger handle as single adds, with their entry id and their place in the pending
+ * adds of the ledger, but the add ops are only initiated when the batch is sent. The ops of a ledger are then
+ * initiated together, in order, and the flushes of the requests sent by the bookie client are deferred to the end of
+ * the batch. The adds to handles that are not from the client of the batch are sent when they are added, even when
+ * they are issued while adding an entry to the batch.
+ */
+class LedgerWriteBatch implements WriteBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LedgerWriteBatch.class);
+
+    // Batch of the adds issued by the current thread
+    private static final ThreadLocal<LedgerWriteBatch> CURRENT_BATCH = new ThreadLocal<>();
+
+    private final BookieClient bookieClient;
+    private final Map<Long, List<PendingAddOp>> pendingOps = new LinkedHashMap<>();
+    private boolean sent = false;
+
+    LedgerWriteBatch(BookieClient bookieClient) {
+        this.bookieClient = bookieClient;
+    }
+
+    /**
+     * Defer the initiation of an add op to the send of the write batch of the current thread, if any, and if the op
+     * is from the client of the batch.
+     *
+     * @return true if the op is initiated by the batch
+     */
+    static boolean deferIfBatching(PendingAddOp op) {
+        LedgerWriteBatch batch = CURRENT_BATCH.get();
+        if (batch == null || op.clientCtx.getBookieClient() != batch.bookieClient) {
+            return false;
+        }
+        batch.pendingOps.computeIfAbsent(op.lh.getId(), ledgerId -> new ArrayList<>()).add(op);
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<Long> append(WriteHandle handle, ByteBuf data) {
+        checkState(!sent, "Write batch already sent");
+        CURRENT_BATCH.set(this);
+        try {
+            return handle.appendAsync(data);
+        } finally {
+            CURRENT_BATCH.remove();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Long> write(WriteAdvHandle handle, long entryId, ByteBuf data) {
+        checkState(!sent, "Write batch already sent");
+        CURRENT_BATCH.set(this);
+        try {
+            return handle.writeAsync(entryId, data);
+        } finally {
+            CURRENT_BATCH.remove();
+        }
+    }
+
+    @Override
+    public void send() {
+        checkState(!sent, "Write batch already sent");
+        sent = true;
+        RuntimeException failure = null;
+        bookieClient.deferFlushes();
+        try {
+            for (List<PendingAddOp> ops : pendingOps.values()) {
+                LedgerHandle lh = ops.get(0).lh;
+                int initiated = 0;
+                if (failure == null) {
+                    try {
+                        for (; initiated < ops.size(); initiated++) {
+                            ops.get(initiated).initiate();
+                        }
+                    } catch (RuntimeException e) {
+                        LOG.error("Failed to send the add of entry {} of ledger {}, failing the rest of the batch",
+                                ops.get(initiated).entryId, lh.getId(), e);
+                        failure = e;
+                        // The op that failed has run already
+                        initiated++;
+                    }
+                }
+                if (failure != null) {
+                    failOps(lh, ops.subList(initiated, ops.size()), BKException.Code.UnexpectedConditionException);
+                }
+            }
+        } finally {
+            bookieClient.flushDeferred();
+            pendingOps.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (sent) {
+            return;
+        }
+        sent = true;
+        for (List<PendingAddOp> ops : pendingOps.values()) {
+            failOps(ops.get(0).lh, ops, BKException.Code.WriteException);
+        }
+        pendingOps.clear();
+    }
+
+    /**
+     * Fail the ops of a ledger that were not initiated. Their entry ids are taken, so the ledger cannot be written
+     * anymore: the pending adds of the ledger are failed and the ledger is closed, as after an unrecoverable add
+     * error. The ops are then run, to release them.
+     */
+    private static void failOps(LedgerHandle lh, List<PendingAddOp> ops, int rc) {
+        List<PendingAddOp> opsToFail = new ArrayList<>(ops);
+        Runnable fail = () -> {
+            lh.errorOutPendingAdds(rc);
+            lh.handleUnrecoverableErrorDuringAdd(rc);
+            for (PendingAddOp op : opsToFail) {
+                op.initiate();
+            }
+        };
+        try {
+            lh.executeOrdered(fail);
+        } catch (RejectedExecutionException e) {
+            fail.run();
+        }
+    }
+}
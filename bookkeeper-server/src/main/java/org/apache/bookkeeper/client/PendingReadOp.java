@@ -22,9 +22,11 @@ package org.apache.bookkeeper.client;
 
 import com.google.common.collect.Lists;
 import io.netty.buffer.ByteBuf;
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import org.apache.bookkeeper.client.impl.LedgerEntriesImpl;
 import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
@@ -48,6 +50,8 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
     protected boolean parallelRead = false;
     protected final LinkedList<SingleLedgerEntryRequest> seq;
+    // null when the client has no read entry cache, or for recovery reads
+    private final ClientEntryCache entryCache;
 
     PendingReadOp(LedgerHandle lh,
                   ClientContext clientCtx,
@@ -56,6 +60,7 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
                   boolean isRecoveryRead) {
         super(lh, clientCtx, startEntryId, endEntryId, isRecoveryRead);
         this.seq = new LinkedList<>();
+        this.entryCache = isRecoveryRead ? null : clientCtx.getEntryCache();
         numPendingEntries = endEntryId - startEntryId + 1;
     }
 
@@ -83,12 +88,69 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
             i++;
         } while (i <= endEntryId);
         // read the entries.
-        for (LedgerEntryRequest entry : seq) {
-            entry.read();
-            if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
-                speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
-                    .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        List<SingleLedgerEntryRequest> cachedEntries = null;
+        for (SingleLedgerEntryRequest entry : seq) {
+            if (entryCache != null && entry.eId <= lh.getLastAddConfirmed()) {
+                if (entryCache.get(lh.ledgerId, entry.eId, entry.entryImpl)) {
+                    if (cachedEntries == null) {
+                        cachedEntries = new ArrayList<>();
+                    }
+                    cachedEntries.add(entry);
+                    continue;
+                }
+                if (waitForConcurrentFetch(entry)) {
+                    continue;
+                }
             }
+            sendRead(entry);
+        }
+        if (cachedEntries != null) {
+            // The read responses are handled in the ordered executor of the ledger, complete the cached entries
+            // there as well
+            List<SingleLedgerEntryRequest> entries = cachedEntries;
+            clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId, () -> entries.forEach(this::completeFromCache));
+        }
+    }
+
+    private void sendRead(SingleLedgerEntryRequest entry) {
+        entry.read();
+        if (!parallelRead && clientCtx.getConf().readSpeculativeRequestPolicy.isPresent()) {
+            speculativeTask = clientCtx.getConf().readSpeculativeRequestPolicy.get()
+                .initiateSpeculativeRequest(clientCtx.getScheduler(), entry);
+        }
+    }
+
+    /**
+     * Wait for the fetch of the entry by another read operation, if there is one, and get the entry from the cache
+     * once it is done. Otherwise, register the fetch of the entry by this read operation.
+     *
+     * @return true if the entry is fetched by another read operation
+     */
+    private boolean waitForConcurrentFetch(SingleLedgerEntryRequest entry) {
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        CompletableFuture<Void> concurrentFetch = entryCache.startFetch(lh.ledgerId, entry.eId, fetch);
+        if (concurrentFetch == null) {
+            entry.cacheFetch = fetch;
+            return false;
+        }
+        concurrentFetch.whenComplete((ignored, cause) -> clientCtx.getMainWorkerPool().executeOrdered(lh.ledgerId,
+            () -> {
+                if (entry.isComplete()) {
+                    return;
+                }
+                if (entryCache.getAfterFetch(lh.ledgerId, entry.eId, entry.entryImpl)) {
+                    completeFromCache(entry);
+                } else {
+                    // The fetch failed or the entry was already evicted
+                    sendRead(entry);
+                }
+            }));
+        return true;
+    }
+
+    private void completeFromCache(SingleLedgerEntryRequest entry) {
+        if (entry.completeFromCache()) {
+            submitCallback(BKException.Code.OK);
         }
     }
 
@@ -104,10 +166,20 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
         heardFromHosts.add(rctx.to);
         heardFromHostsBitSet.set(rctx.bookieIndex, true);
+        if (clientCtx.getConf().trackBookieReadLatency) {
+            // record the responses that arrive after the entry was completed by another bookie as well,
+            // they are the ones telling that a bookie is slow
+            clientCtx.getBookieReadLatencyTracker()
+                    .recordReadLatency(rctx.to, MathUtils.elapsedNanos(rctx.sentTimeNanos));
+        }
 
         buffer.retain();
         // if entry has completed don't handle twice
         if (entry.complete(rctx.bookieIndex, rctx.to, buffer)) {
+            if (entry.cacheFetch != null) {
+                entryCache.put(lh.ledgerId, entryId, entry.entryImpl.getLength(), entry.entryImpl.getEntryBuffer());
+                entryCache.endFetch(lh.ledgerId, entryId, entry.cacheFetch);
+            }
             if (!isRecoveryRead) {
                 // do not advance LastAddConfirmed for recovery reads
                 lh.updateLastConfirmed(rctx.getLastAddConfirmed(), 0L);
@@ -139,6 +211,16 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
         cancelSpeculativeTask(true);
 
+        if (entryCache != null) {
+            // Let the readers waiting for the entries fetched by this operation read them from the bookies if the
+            // operation failed
+            for (SingleLedgerEntryRequest entry : seq) {
+                if (entry.cacheFetch != null) {
+                    entryCache.endFetch(lh.ledgerId, entry.eId, entry.cacheFetch);
+                }
+            }
+        }
+
         long latencyNanos = MathUtils.elapsedNanos(requestTimeNanos);
         if (code != BKException.Code.OK) {
             long firstUnread = LedgerHandle.INVALID_ENTRY_ID;
@@ -176,12 +258,14 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
                     this, new ReadContext(bookieIndex, to, entry), flags, lh.ledgerKey);
         } else {
             clientCtx.getBookieClient().readEntry(to, lh.ledgerId, entry.eId,
-                    this, new ReadContext(bookieIndex, to, entry), BookieProtocol.FLAG_NONE);
+                    this, new ReadContext(bookieIndex, to, entry), trafficClassFlags);
         }
     }
 
     abstract class SingleLedgerEntryRequest extends LedgerEntryRequest {
         final LedgerEntryImpl entryImpl;
+        // The fetch of the entry registered in the read entry cache, if this request fetches it for the other readers
+        CompletableFuture<Void> cacheFetch;
 
         SingleLedgerEntryRequest(List<BookieId> ensemble, long lId, long eId) {
             super(ensemble, eId);
@@ -230,6 +314,21 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
                 return false;
             }
         }
+
+        /**
+         * Complete the read request with the entry filled from the read entry cache.
+         *
+         * @return true if we managed to complete the entry, false if it was already completed
+         */
+        boolean completeFromCache() {
+            if (!complete.getAndSet(true)) {
+                rc = BKException.Code.OK;
+                writeSet.recycle();
+                return true;
+            } else {
+                return false;
+            }
+        }
     }
 
     class ParallelReadRequest extends SingleLedgerEntryRequest {
@@ -282,6 +381,7 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
     class SequenceReadRequest extends SingleLedgerEntryRequest {
         static final int NOT_FOUND = -1;
         int nextReplicaIndexToReadFrom = 0;
+        BookieId lastSentTo;
 
         final BitSet sentReplicas;
         final BitSet erroredReplicas;
@@ -297,6 +397,11 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
             return nextReplicaIndexToReadFrom;
         }
 
+        @Override
+        public synchronized BookieId getPendingRequestBookie() {
+            return lastSentTo;
+        }
+
         private BitSet getSentToBitSet() {
             BitSet b = new BitSet(ensemble.size());
 
@@ -358,6 +463,7 @@ class PendingReadOp extends ReadOpBase implements ReadEntryCallback  {
 
             try {
                 BookieId to = ensemble.get(bookieIndex);
+                lastSentTo = to;
                 sendReadTo(bookieIndex, to, this);
                 sentToHosts.add(to);
                 sentReplicas.set(replica);
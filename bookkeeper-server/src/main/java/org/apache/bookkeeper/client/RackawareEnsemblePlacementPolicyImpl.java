@@ -114,6 +114,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
     protected boolean enforceDurability = false;
     protected int stabilizePeriodSeconds = 0;
     protected int reorderThresholdPendingRequests = 0;
+    protected boolean reorderReadsByLatency = false;
     // looks like these only assigned in the same thread as constructor, immediately after constructor;
     // no need to make volatile
     protected StatsLogger statsLogger = null;
@@ -332,6 +333,7 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
                     return -1L;
                 }
             });
+        this.reorderReadsByLatency = conf.isReorderReadsByLatencyEnabled();
         return initialize(
                 dnsResolver,
                 timer,
@@ -884,6 +886,9 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
      *      5. read only bookies
      *      6. slow bookies
      *      7. unavailable bookies
+     * When reordering reads by latency, the bookie with the lowest estimated read response time is moved
+     * first in the write set before the ordering, so that it is the first one tried among the available
+     * (local) bookies.
      *
      * @param ensemble
      *          ensemble of bookies
@@ -965,6 +970,30 @@ public class RackawareEnsemblePlacementPolicyImpl extends TopologyAwareEnsembleP
             }
         }
 
+        if (reorderReadsByLatency && !reordered) {
+            // Only move the fastest bookie first when the current first bookie has an estimate, bookies
+            // without a recent read have no estimate and reading from them first gives them one
+            long firstLatency = bookiesHealthInfo.getBookieReadLatencyNanos(ensemble.get(writeSet.get(0)));
+            long bestLatency = firstLatency;
+            int bestBookieIdx = -1;
+            for (int i = 1; firstLatency >= 0 && i < writeSet.size(); i++) {
+                long latency = bookiesHealthInfo.getBookieReadLatencyNanos(ensemble.get(writeSet.get(i)));
+                if (latency >= 0 && latency < bestLatency) {
+                    bestLatency = latency;
+                    bestBookieIdx = i;
+                }
+            }
+            if (bestBookieIdx > 0) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("read set reordered from {} ({} ns) to {} ({} ns)",
+                            ensemble.get(writeSet.get(0)), firstLatency, ensemble.get(writeSet.get(bestBookieIdx)),
+                            bestLatency);
+                }
+                writeSet.moveAndShift(bestBookieIdx, 0);
+                reordered = true;
+            }
+        }
+
         if (!isAnyBookieUnavailable) {
             if (reordered) {
                 readReorderedCounter.registerSuccessfulValue(1);
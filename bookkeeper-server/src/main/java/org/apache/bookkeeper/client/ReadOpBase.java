@@ -31,8 +31,10 @@ import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.client.api.LedgerEntries;
 import org.apache.bookkeeper.client.api.LedgerMetadata;
+import org.apache.bookkeeper.common.util.MathUtils;
 import org.apache.bookkeeper.net.BookieId;
 import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks;
+import org.apache.bookkeeper.proto.ReadTrafficClass;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -53,6 +55,8 @@ public abstract class ReadOpBase implements Runnable {
 
     protected final int requiredBookiesMissingEntryForRecovery;
     protected final boolean isRecoveryRead;
+    // Flags of the traffic class of the read requests
+    protected final int trafficClassFlags;
 
     protected final AtomicBoolean complete = new AtomicBoolean(false);
     protected boolean allowFailFast = false;
@@ -71,6 +75,17 @@ public abstract class ReadOpBase implements Runnable {
         this.heardFromHostsBitSet = new BitSet(getLedgerMetadata().getEnsembleSize());
         this.allowFailFast = false;
         this.clientCtx = clientCtx;
+        this.trafficClassFlags = getTrafficClass().toFlags();
+    }
+
+    private ReadTrafficClass getTrafficClass() {
+        if (clientCtx.getConf().systemClient) {
+            return ReadTrafficClass.RECOVERY;
+        } else if (lh.getLastAddConfirmed() - startEntryId <= clientCtx.getConf().tailingReadMaxEntriesBehindLac) {
+            return ReadTrafficClass.TAILING;
+        } else {
+            return ReadTrafficClass.CATCH_UP;
+        }
     }
 
     protected LedgerMetadata getLedgerMetadata() {
@@ -272,12 +287,14 @@ public abstract class ReadOpBase implements Runnable {
         final int bookieIndex;
         final BookieId to;
         final PendingReadOp.LedgerEntryRequest entry;
+        final long sentTimeNanos;
         long lac = LedgerHandle.INVALID_ENTRY_ID;
 
         ReadContext(int bookieIndex, BookieId to, PendingReadOp.LedgerEntryRequest entry) {
             this.bookieIndex = bookieIndex;
             this.to = to;
             this.entry = entry;
+            this.sentTimeNanos = MathUtils.nowInNano();
         }
 
         @Override
@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client;
 
 import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.bookkeeper.net.BookieId;
 
 /**
  * Define an executor for issuing speculative requests.
@@ -39,4 +40,13 @@ public interface SpeculativeRequestExecutor {
      * @return whether more speculative requests should be issued
      */
     ListenableFuture<Boolean> issueSpeculativeRequest();
+
+    /**
+     * Returns the bookie of the last issued request, which a speculative request would race with.
+     *
+     * @return the bookie of the last issued request, or null if it is unknown
+     */
+    default BookieId getPendingRequestBookie() {
+        return null;
+    }
 }
@@ -81,6 +81,20 @@ public interface BookKeeper extends AutoCloseable {
      */
     CompletableFuture<LedgerMetadata> getLedgerMetadata(long ledgerId);
 
+    /**
+     * Start a batch of entries to append to several ledgers.
+     *
+     * <p>This is meant for the writers appending small entries to many ledgers at once, eg: one ledger per partition.
+     *
+     * <p>The default implementation doesn't support write batches.
+     *
+     * @return a batch of entries to send to the bookies together
+     * @throws UnsupportedOperationException if the client doesn't support write batches
+     */
+    default WriteBatch newWriteBatch() {
+        throw new UnsupportedOperationException("Write batches are not supported by " + getClass().getName());
+    }
+
     /**
      * Close the client and release every resource.
      *
@@ -0,0 +1,63 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * A stream of the entries of a range of a ledger, read in order.
+ *
+ * <p>The entries following the ones returned are read ahead, so that a sequential scan of a ledger doesn't wait for
+ * a round trip to the bookies for each read request. The stream is not thread safe, it is meant to be consumed by a
+ * single reader.
+ *
+ * <p>The caller is responsible for calling {@link LedgerEntry#close()} on the entries returned by {@link #next()},
+ * and for closing the stream to release the entries read ahead.
+ *
+ * @see ReadHandle#readStream(long, long)
+ */
+@Public
+@Unstable
+public interface LedgerEntryStream extends AutoCloseable {
+
+    /**
+     * Return true if there is at least one entry to read.
+     *
+     * @return true if there is at least one entry to read.
+     */
+    boolean hasNext();
+
+    /**
+     * Return the next entry of the stream, waiting for it to be read if needed.
+     *
+     * @return the next entry of the stream
+     * @throws BKException if the entry could not be read
+     * @throws java.util.NoSuchElementException if there is no entry left in the stream
+     */
+    LedgerEntry next() throws BKException, InterruptedException;
+
+    /**
+     * Close the stream and release the entries read ahead and not returned yet.
+     */
+    @Override
+    void close();
+}
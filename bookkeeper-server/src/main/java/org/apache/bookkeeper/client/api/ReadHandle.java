@@ -21,6 +21,7 @@
 package org.apache.bookkeeper.client.api;
 
 import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.impl.LedgerEntryStreamImpl;
 import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
 import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
 import org.apache.bookkeeper.common.concurrent.FutureUtils;
@@ -91,6 +92,29 @@ public interface ReadHandle extends Handle {
         return FutureUtils.result(batchReadAsync(startEntry, maxCount, maxSize), BKException.HANDLER);
     }
 
+    /**
+     * Read a sequence of entries as a stream, keeping a window of read requests in flight ahead of the reader.
+     *
+     * <p>This is meant for long sequential scans of a ledger: the number of entries of each request follows the
+     * size of the entries, and the number of requests in flight follows the speed of the reader, within a bound of
+     * the memory used by the entries read ahead.
+     *
+     * <p>The default implementation reads the entries with {@link #readAsync(long, long)} and the default read ahead
+     * settings of the client configuration.
+     *
+     * @param firstEntry
+     *          id of first entry of sequence
+     * @param lastEntry
+     *          id of last entry of sequence, inclusive
+     * @return a stream of the entries
+     * @see #readAsync(long, long)
+     */
+    default LedgerEntryStream readStream(long firstEntry, long lastEntry) {
+        return new LedgerEntryStreamImpl(this, firstEntry, lastEntry, false,
+                LedgerEntryStreamImpl.DEFAULT_MAX_OUTSTANDING_REQUESTS,
+                LedgerEntryStreamImpl.DEFAULT_REQUEST_SIZE_BYTES, LedgerEntryStreamImpl.DEFAULT_MAX_MEMORY_BYTES);
+    }
+
     /**
      * Read a sequence of entries asynchronously, allowing to read after the LastAddConfirmed range.
      * <br>This is the same of
@@ -0,0 +1,89 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.api;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.common.annotation.InterfaceAudience.Public;
+import org.apache.bookkeeper.common.annotation.InterfaceStability.Unstable;
+
+/**
+ * A batch of entries appended to several ledgers, sent to the bookies together.
+ *
+ * <p>The entries get their entry id when they are added to the batch, and are sent when the batch is sent: the
+ * entries are prepared ledger by ledger, and the requests to the same bookie are flushed together, instead of one
+ * flush per entry and per bookie. The entries of a ledger are written in the order they were added, and are
+ * acknowledged as with {@link WriteHandle#appendAsync(ByteBuf)}.
+ *
+ * <p>A batch is not thread safe, and is sent only once. The entries added to a batch are not written until the batch
+ * is sent. The entries of a batch closed without being sent are failed: since they already have their entry id, their
+ * ledgers cannot be written anymore, and are closed.
+ *
+ * @see BookKeeper#newWriteBatch()
+ */
+@Public
+@Unstable
+public interface WriteBatch extends AutoCloseable {
+
+    /**
+     * Add an entry to append to a ledger.
+     *
+     * @param handle the handle of the ledger
+     * @param data the entry, the ownership of the buffer is passed to the client
+     * @return an handle to the result, the id of the entry once it is written
+     */
+    CompletableFuture<Long> append(WriteHandle handle, ByteBuf data);
+
+    /**
+     * Add an entry to append to a ledger.
+     *
+     * @param handle the handle of the ledger
+     * @param data the entry, it must not be modified until the entry is written
+     * @return an handle to the result, the id of the entry once it is written
+     */
+    default CompletableFuture<Long> append(WriteHandle handle, byte[] data) {
+        return append(handle, Unpooled.wrappedBuffer(data));
+    }
+
+    /**
+     * Add an entry with a given id to write to a ledger.
+     *
+     * @param handle the handle of the ledger
+     * @param entryId the id of the entry
+     * @param data the entry, the ownership of the buffer is passed to the client
+     * @return an handle to the result, the id of the entry once it is written
+     */
+    CompletableFuture<Long> write(WriteAdvHandle handle, long entryId, ByteBuf data);
+
+    /**
+     * Send the entries of the batch to the bookies.
+     *
+     * <p>If an entry cannot be sent, it is failed along with the entries of the batch that were not sent yet.
+     */
+    void send();
+
+    /**
+     * Fail the entries of the batch, if it was not sent.
+     */
+    @Override
+    void close();
+}
@@ -140,6 +140,16 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         help = "The number of speculative read requests"
     )
     private final Counter speculativeReadCounter;
+    @StatsDoc(
+        name = READ_CACHE_HITS,
+        help = "The number of entries read from the client read cache"
+    )
+    private final Counter readCacheHitsCounter;
+    @StatsDoc(
+        name = READ_CACHE_MISSES,
+        help = "The number of entries not found in the client read cache"
+    )
+    private final Counter readCacheMissesCounter;
 
     @StatsDoc(
         name = WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY,
@@ -184,6 +194,8 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
         this.clientChannelWriteWaitStats = stats.getOpStatsLogger(CLIENT_CHANNEL_WRITE_WAIT);
 
         speculativeReadCounter = stats.getCounter(SPECULATIVE_READ_COUNT);
+        this.readCacheHitsCounter = stats.getCounter(READ_CACHE_HITS);
+        this.readCacheMissesCounter = stats.getCounter(READ_CACHE_MISSES);
 
         this.writeDelayedDueToNotEnoughFaultDomainsLatency =
                 stats.getOpStatsLogger(WRITE_DELAYED_DUE_TO_NOT_ENOUGH_FAULT_DOMAINS_LATENCY);
@@ -292,4 +304,16 @@ public class BookKeeperClientStatsImpl implements BookKeeperClientStats {
     public void registerPendingAddsGauge(Gauge<Integer> gauge) {
         stats.registerGauge(PENDING_ADDS, gauge);
     }
+    @Override
+    public Counter getReadCacheHitsCounter() {
+        return readCacheHitsCounter;
+    }
+    @Override
+    public Counter getReadCacheMissesCounter() {
+        return readCacheMissesCounter;
+    }
+    @Override
+    public void registerReadCacheSizeGauge(Gauge<Long> gauge) {
+        stats.registerGauge(READ_CACHE_SIZE, gauge);
+    }
 }
@@ -0,0 +1,260 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.client.impl;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import org.apache.bookkeeper.client.api.BKException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.apache.bookkeeper.common.concurrent.FutureUtils;
+import org.apache.bookkeeper.common.util.MemoryLimitController;
+
+/**
+ * Ledger entry stream implementation, reading ahead the entries with a window of read requests.
+ *
+ * <p>Each read request covers the number of entries expected to fill the request size, from the average size of the
+ * entries read so far. The window of requests in flight grows when the reader has to wait for the entries, and shrinks
+ * when the entries read ahead are waiting for the reader. The requests are only sent when the memory of the entries
+ * read ahead and not returned yet is under the limit of the stream.
+ */
+public class LedgerEntryStreamImpl implements LedgerEntryStream {
+
+    /**
+     * Default max number of read requests in flight.
+     */
+    public static final int DEFAULT_MAX_OUTSTANDING_REQUESTS = 8;
+    /**
+     * Default target size of the read requests, in bytes.
+     */
+    public static final long DEFAULT_REQUEST_SIZE_BYTES = 1024 * 1024;
+    /**
+     * Default max memory of the entries read ahead, in bytes.
+     */
+    public static final long DEFAULT_MAX_MEMORY_BYTES = 64 * 1024 * 1024;
+
+    // Entry size assumed until the first entries are read
+    private static final long INITIAL_ENTRY_SIZE = 1024;
+    private static final int MAX_ENTRIES_PER_REQUEST = 4096;
+
+    private final ReadHandle handle;
+    private final long lastEntry;
+    private final boolean batchRead;
+    private final int maxOutstandingRequests;
+    private final long requestSizeBytes;
+    private final MemoryLimitController memoryLimiter;
+    private final ArrayDeque<ReadRequest> requests = new ArrayDeque<>();
+
+    private long nextEntryToRequest;
+    private long nextEntryToReturn;
+    private int window;
+    private double entrySizeEstimate = INITIAL_ENTRY_SIZE;
+    private ReadRequest current;
+    private BKException failure;
+    private boolean closed;
+
+    public LedgerEntryStreamImpl(ReadHandle handle, long firstEntry, long lastEntry, boolean batchRead,
+                                 int maxOutstandingRequests, long requestSizeBytes, long maxMemoryBytes) {
+        checkArgument(maxOutstandingRequests > 0, "Max outstanding requests must be positive");
+        checkArgument(requestSizeBytes > 0, "Request size must be positive");
+        this.handle = handle;
+        this.lastEntry = lastEntry;
+        this.batchRead = batchRead;
+        this.maxOutstandingRequests = maxOutstandingRequests;
+        this.requestSizeBytes = requestSizeBytes;
+        this.memoryLimiter = new MemoryLimitController(maxMemoryBytes);
+        this.nextEntryToRequest = firstEntry;
+        this.nextEntryToReturn = firstEntry;
+        this.window = Math.min(2, maxOutstandingRequests);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return !closed && nextEntryToReturn <= lastEntry;
+    }
+
+    @Override
+    public LedgerEntry next() throws BKException, InterruptedException {
+        if (closed) {
+            throw new IllegalStateException("Ledger entry stream is closed");
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        if (nextEntryToReturn > lastEntry) {
+            throw new NoSuchElementException();
+        }
+        if (current == null) {
+            current = takeRequest();
+        }
+        LedgerEntry entry = current.iterator.next();
+        nextEntryToReturn = entry.getEntryId() + 1;
+        // The entries of the request are released all together, the reader gets its own reference
+        LedgerEntry result = LedgerEntryImpl.duplicate(entry);
+        if (!current.iterator.hasNext()) {
+            release(current);
+            current = null;
+        }
+        return result;
+    }
+
+    private ReadRequest takeRequest() throws BKException, InterruptedException {
+        while (true) {
+            sendRequests();
+            ReadRequest request = requests.poll();
+            boolean waited = !request.future.isDone();
+            try {
+                request.entries = FutureUtils.result(request.future, org.apache.bookkeeper.client.BKException.HANDLER);
+            } catch (BKException e) {
+                memoryLimiter.releaseMemory(request.reservedBytes);
+                failure = e;
+                throw e;
+            }
+            request.iterator = request.entries.iterator();
+            adaptWindow(waited);
+
+            long entries = 0;
+            long bytes = 0;
+            long lastRead = request.firstEntry - 1;
+            for (LedgerEntry entry : request.entries) {
+                entries++;
+                bytes += entry.getEntryBuffer().readableBytes();
+                lastRead = entry.getEntryId();
+            }
+            if (entries > 0) {
+                entrySizeEstimate = (entrySizeEstimate + (double) bytes / entries) / 2;
+            }
+            if (lastRead < request.lastEntry) {
+                // A batch read stops at its max size, the rest of the range is read first
+                requests.addFirst(sendRequest(lastRead + 1, request.lastEntry, 0, batchRead && entries > 0));
+            }
+            if (entries > 0) {
+                return request;
+            }
+            release(request);
+        }
+    }
+
+    private void adaptWindow(boolean waited) {
+        if (waited) {
+            // The reader is faster than the bookies
+            window = Math.min(maxOutstandingRequests, window + 1);
+        } else {
+            ReadRequest next = requests.peek();
+            if (next != null && next.future.isDone()) {
+                // The bookies are faster than the reader, more entries read ahead would only use memory
+                window = Math.max(1, window - 1);
+            }
+        }
+    }
+
+    private void sendRequests() {
+        while (nextEntryToRequest <= lastEntry && requests.size() < window) {
+            long numEntries = Math.max(1, Math.round(requestSizeBytes / entrySizeEstimate));
+            numEntries = Math.min(numEntries, Math.min(MAX_ENTRIES_PER_REQUEST, lastEntry - nextEntryToRequest + 1));
+            long reservedBytes = Math.round(numEntries * entrySizeEstimate);
+            if (!memoryLimiter.tryReserveMemory(reservedBytes)) {
+                if (!requests.isEmpty()) {
+                    return;
+                }
+                // Always keep a request in flight, so that the reader makes progress
+                reservedBytes = 0;
+            }
+            long first = nextEntryToRequest;
+            nextEntryToRequest += numEntries;
+            requests.add(sendRequest(first, nextEntryToRequest - 1, reservedBytes, batchRead));
+        }
+    }
+
+    private ReadRequest sendRequest(long first, long last, long reservedBytes, boolean batch) {
+        CompletableFuture<LedgerEntries> future;
+        if (batch) {
+            future = handle.batchReadAsync(first, (int) (last - first + 1), requestSizeBytes);
+        } else {
+            future = handle.readAsync(first, last);
+        }
+        return new ReadRequest(first, last, reservedBytes, future);
+    }
+
+    private void release(ReadRequest request) {
+        request.entries.close();
+        memoryLimiter.releaseMemory(request.reservedBytes);
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (current != null) {
+            release(current);
+            current = null;
+        }
+        for (ReadRequest request : requests) {
+            request.future.whenComplete((entries, cause) -> {
+                if (entries != null) {
+                    entries.close();
+                }
+            });
+            memoryLimiter.releaseMemory(request.reservedBytes);
+        }
+        requests.clear();
+    }
+
+    @VisibleForTesting
+    double getEntrySizeEstimate() {
+        return entrySizeEstimate;
+    }
+
+    @VisibleForTesting
+    int getWindow() {
+        return window;
+    }
+
+    @VisibleForTesting
+    long getReservedMemory() {
+        return memoryLimiter.currentUsage();
+    }
+
+    private static final class ReadRequest {
+        private final long firstEntry;
+        private final long lastEntry;
+        private final long reservedBytes;
+        private final CompletableFuture<LedgerEntries> future;
+        private LedgerEntries entries;
+        private Iterator<LedgerEntry> iterator;
+
+        ReadRequest(long firstEntry, long lastEntry, long reservedBytes, CompletableFuture<LedgerEntries> future) {
+            this.firstEntry = firstEntry;
+            this.lastEntry = lastEntry;
+            this.reservedBytes = reservedBytes;
+            this.future = future;
+        }
+    }
+}
@@ -28,6 +28,7 @@ import org.apache.bookkeeper.client.EnsemblePlacementPolicy;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.client.RackawareEnsemblePlacementPolicy;
 import org.apache.bookkeeper.client.api.BookKeeperBuilder;
+import org.apache.bookkeeper.client.impl.LedgerEntryStreamImpl;
 import org.apache.bookkeeper.common.util.ReflectionUtils;
 import org.apache.bookkeeper.discover.RegistrationClient;
 import org.apache.bookkeeper.discover.ZKRegistrationClient;
@@ -94,6 +95,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String CLIENT_RECEIVEBUFFER_SIZE = "clientReceiveBufferSize";
     protected static final String CLIENT_WRITEBUFFER_LOW_WATER_MARK = "clientWriteBufferLowWaterMark";
     protected static final String CLIENT_WRITEBUFFER_HIGH_WATER_MARK = "clientWriteBufferHighWaterMark";
+    protected static final String CLIENT_FLUSH_MAX_DELAY_MICROS = "clientFlushMaxDelayMicros";
+    protected static final String CLIENT_FLUSH_MAX_BYTES = "clientFlushMaxBytes";
     protected static final String CLIENT_CONNECT_TIMEOUT_MILLIS = "clientConnectTimeoutMillis";
     protected static final String CLIENT_TCP_USER_TIMEOUT_MILLIS = "clientTcpUserTimeoutMillis";
     protected static final String NUM_CHANNELS_PER_BOOKIE = "numChannelsPerBookie";
@@ -107,6 +110,10 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String MAX_SPECULATIVE_READ_TIMEOUT = "maxSpeculativeReadTimeout";
     protected static final String SPECULATIVE_READ_TIMEOUT_BACKOFF_MULTIPLIER =
         "speculativeReadTimeoutBackoffMultiplier";
+    protected static final String MIN_SPECULATIVE_READ_TIMEOUT = "minSpeculativeReadTimeout";
+    protected static final String ADAPTIVE_SPECULATIVE_READ_ENABLED = "adaptiveSpeculativeReadEnabled";
+    protected static final String ADAPTIVE_SPECULATIVE_READ_PERCENTILE = "adaptiveSpeculativeReadPercentile";
+    protected static final String SPECULATIVE_READ_MAX_RATIO = "speculativeReadMaxRatio";
     protected static final String FIRST_SPECULATIVE_READ_LAC_TIMEOUT = "firstSpeculativeReadLACTimeout";
     protected static final String MAX_SPECULATIVE_READ_LAC_TIMEOUT = "maxSpeculativeReadLACTimeout";
     protected static final String SPECULATIVE_READ_LAC_TIMEOUT_BACKOFF_MULTIPLIER =
@@ -115,6 +122,13 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     protected static final String RECOVERY_READ_BATCH_SIZE = "recoveryReadBatchSize";
     protected static final String REORDER_READ_SEQUENCE_ENABLED = "reorderReadSequenceEnabled";
     protected static final String STICKY_READS_ENABLED = "stickyReadSEnabled";
+    protected static final String READ_ENTRY_CACHE_MAX_SIZE_MB = "readEntryCacheMaxSizeMb";
+    protected static final String READ_STREAM_MAX_OUTSTANDING_REQUESTS = "readStreamMaxOutstandingRequests";
+    protected static final String READ_STREAM_REQUEST_SIZE_BYTES = "readStreamRequestSizeBytes";
+    protected static final String READ_STREAM_MAX_MEMORY_BYTES = "readStreamMaxMemoryBytes";
+    protected static final String PARALLEL_DIGEST_THREADS = "parallelDigestThreads";
+    protected static final String PARALLEL_DIGEST_CHUNK_SIZE = "parallelDigestChunkSize";
+    protected static final String TAILING_READ_MAX_ENTRIES_BEHIND_LAC = "tailingReadMaxEntriesBehindLac";
     protected static final String RECOVERY_BATCH_READ_ENABLED = "recoveryBatchReadEnabled";
     // Add Parameters
     protected static final String OPPORTUNISTIC_STRIPING = "opportunisticStriping";
@@ -159,6 +173,8 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
     public static final String ENSEMBLE_PLACEMENT_POLICY = "ensemblePlacementPolicy";
     protected static final String NETWORK_TOPOLOGY_STABILIZE_PERIOD_SECONDS = "networkTopologyStabilizePeriodSeconds";
     protected static final String READ_REORDER_THRESHOLD_PENDING_REQUESTS = "readReorderThresholdPendingRequests";
+    protected static final String READ_REORDER_BY_LATENCY_ENABLED = "readReorderByLatencyEnabled";
+    protected static final String READ_LATENCY_ESTIMATE_HALF_LIFE_MS = "readLatencyEstimateHalfLifeMs";
     protected static final String BOOKIE_ADDRESS_RESOLVER_ENABLED = "bookieAddressResolverEnabled";
     // Use hostname to resolve local placement info
     public static final String USE_HOSTNAME_RESOLVE_LOCAL_NODE_PLACEMENT_POLICY =
@@ -472,6 +488,56 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max delay of the flushes of the client netty channels, in microseconds.
+     *
+     * <p>When it is positive, the flushes of a channel are delayed up to this delay while the requests to the bookie
+     * are frequent enough, so that several requests are written to the socket at once. The flushes are not delayed
+     * at low load. The default value is 0: the flushes are done at the end of the reads or in the next run of the
+     * event loop.
+     *
+     * @return max delay of the flushes of the client netty channels, in microseconds.
+     */
+    public long getClientFlushMaxDelayMicros() {
+        return getLong(CLIENT_FLUSH_MAX_DELAY_MICROS, 0L);
+    }
+
+    /**
+     * Set the max delay of the flushes of the client netty channels, in microseconds.
+     *
+     * @param maxDelayMicros
+     *          max delay of the flushes, 0 to disable the adaptive flush consolidation.
+     * @return client configuration.
+     * @see #getClientFlushMaxDelayMicros()
+     */
+    public ClientConfiguration setClientFlushMaxDelayMicros(long maxDelayMicros) {
+        setProperty(CLIENT_FLUSH_MAX_DELAY_MICROS, maxDelayMicros);
+        return this;
+    }
+
+    /**
+     * Get the max size of the data written to a client netty channel before the channel is flushed, when the flushes
+     * are delayed.
+     *
+     * @return max size of the data written before a flush, in bytes.
+     */
+    public long getClientFlushMaxBytes() {
+        return getLong(CLIENT_FLUSH_MAX_BYTES, 64 * 1024L);
+    }
+
+    /**
+     * Set the max size of the data written to a client netty channel before the channel is flushed, when the flushes
+     * are delayed.
+     *
+     * @param maxBytes
+     *          max size of the data written before a flush, in bytes.
+     * @return client configuration.
+     */
+    public ClientConfiguration setClientFlushMaxBytes(long maxBytes) {
+        setProperty(CLIENT_FLUSH_MAX_BYTES, maxBytes);
+        return this;
+    }
+
     /**
      * Get the tick duration in milliseconds that used for timeout timer.
      *
@@ -1042,6 +1108,100 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether the speculative read timeouts adapt to the observed read response times of the bookies.
+     *
+     * <p>When enabled, a speculative entry read is sent when the current replica bookie has not responded after
+     * the {@link #getAdaptiveSpeculativeReadPercentile()} of its recent read response times, bounded by
+     * {@link #getMinSpeculativeReadTimeout()} and {@link #getMaxSpeculativeReadTimeout()}. The first speculative
+     * read timeout is used for the bookies without recent reads. The speculative reads are also limited to
+     * {@link #getSpeculativeReadMaxRatio()} of the reads, so that they cannot amplify the load during an incident.
+     * Speculative reads still need a positive first speculative read timeout to be enabled.
+     *
+     * @return true if the speculative read timeouts are adaptive.
+     */
+    public boolean isAdaptiveSpeculativeReadEnabled() {
+        return getBoolean(ADAPTIVE_SPECULATIVE_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable the adaptive speculative read timeouts.
+     *
+     * @see #isAdaptiveSpeculativeReadEnabled()
+     * @param enabled
+     *          flag to enable/disable the adaptive speculative read timeouts.
+     * @return client configuration.
+     */
+    public ClientConfiguration setAdaptiveSpeculativeReadEnabled(boolean enabled) {
+        setProperty(ADAPTIVE_SPECULATIVE_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the percentile of the recent read response times of a bookie after which an adaptive speculative read
+     * is sent.
+     *
+     * @return the adaptive speculative read percentile. Default 95.
+     */
+    public double getAdaptiveSpeculativeReadPercentile() {
+        return getDouble(ADAPTIVE_SPECULATIVE_READ_PERCENTILE, 95.0);
+    }
+
+    /**
+     * Set the percentile of the recent read response times of a bookie after which an adaptive speculative read
+     * is sent.
+     *
+     * @param percentile
+     *          the percentile, between 0 and 100.
+     * @return client configuration.
+     */
+    public ClientConfiguration setAdaptiveSpeculativeReadPercentile(double percentile) {
+        setProperty(ADAPTIVE_SPECULATIVE_READ_PERCENTILE, percentile);
+        return this;
+    }
+
+    /**
+     * Get the min adaptive speculative read timeout.
+     *
+     * @return min adaptive speculative read timeout in milliseconds. Default 1.
+     */
+    public int getMinSpeculativeReadTimeout() {
+        return getInt(MIN_SPECULATIVE_READ_TIMEOUT, 1);
+    }
+
+    /**
+     * Set the min adaptive speculative read timeout.
+     *
+     * @param timeout
+     *          min adaptive speculative read timeout in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setMinSpeculativeReadTimeout(int timeout) {
+        setProperty(MIN_SPECULATIVE_READ_TIMEOUT, timeout);
+        return this;
+    }
+
+    /**
+     * Get the max ratio of speculative reads to reads, when the speculative read timeouts are adaptive.
+     *
+     * @return the max ratio of speculative reads. Default 0.1.
+     */
+    public double getSpeculativeReadMaxRatio() {
+        return getDouble(SPECULATIVE_READ_MAX_RATIO, 0.1);
+    }
+
+    /**
+     * Set the max ratio of speculative reads to reads, when the speculative read timeouts are adaptive.
+     *
+     * @param ratio
+     *          the max ratio of speculative reads.
+     * @return client configuration.
+     */
+    public ClientConfiguration setSpeculativeReadMaxRatio(double ratio) {
+        setProperty(SPECULATIVE_READ_MAX_RATIO, ratio);
+        return this;
+    }
+
     /**
      * Get the period of time after which the first speculative read last add confirmed and entry
      * should be triggered.
@@ -1202,6 +1362,180 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Get the max size of the client read entry cache, in megabytes. If zero, the cache is disabled.
+     *
+     * <p>The cache is shared by all the ledger handles of the client, and keeps the entries up to the last add
+     * confirmed of their ledger in direct memory, so that readers of the same entries in the same process don't read
+     * them from the bookies again.
+     *
+     * @return the max size of the read entry cache in megabytes. Default 0.
+     */
+    public long getReadEntryCacheMaxSizeMb() {
+        return getLong(READ_ENTRY_CACHE_MAX_SIZE_MB, 0);
+    }
+
+    /**
+     * Set the max size of the client read entry cache, in megabytes.
+     *
+     * @see #getReadEntryCacheMaxSizeMb()
+     * @param maxSizeMb the max size of the read entry cache in megabytes, or 0 to disable it.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setReadEntryCacheMaxSizeMb(long maxSizeMb) {
+        setProperty(READ_ENTRY_CACHE_MAX_SIZE_MB, maxSizeMb);
+        return this;
+    }
+
+    /**
+     * Get the max number of read requests in flight of a ledger entry stream.
+     *
+     * <p>The streams returned by {@link org.apache.bookkeeper.client.api.ReadHandle#readStream(long, long)} read the
+     * entries ahead of the reader, with a window of requests that grows up to this number when the reader waits for
+     * the bookies.
+     *
+     * @return the max number of read requests in flight of a ledger entry stream. Default 8.
+     */
+    public int getReadStreamMaxOutstandingRequests() {
+        return getInt(READ_STREAM_MAX_OUTSTANDING_REQUESTS, LedgerEntryStreamImpl.DEFAULT_MAX_OUTSTANDING_REQUESTS);
+    }
+
+    /**
+     * Set the max number of read requests in flight of a ledger entry stream.
+     *
+     * @see #getReadStreamMaxOutstandingRequests()
+     * @param maxOutstandingRequests the max number of read requests in flight.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setReadStreamMaxOutstandingRequests(int maxOutstandingRequests) {
+        setProperty(READ_STREAM_MAX_OUTSTANDING_REQUESTS, maxOutstandingRequests);
+        return this;
+    }
+
+    /**
+     * Get the target size of the read requests of a ledger entry stream, in bytes. The number of entries of each
+     * request is computed from the average size of the entries read so far.
+     *
+     * @return the target size of the read requests of a ledger entry stream. Default 1MB.
+     */
+    public long getReadStreamRequestSizeBytes() {
+        return getLong(READ_STREAM_REQUEST_SIZE_BYTES, LedgerEntryStreamImpl.DEFAULT_REQUEST_SIZE_BYTES);
+    }
+
+    /**
+     * Set the target size of the read requests of a ledger entry stream, in bytes.
+     *
+     * @see #getReadStreamRequestSizeBytes()
+     * @param requestSizeBytes the target size of the read requests.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setReadStreamRequestSizeBytes(long requestSizeBytes) {
+        setProperty(READ_STREAM_REQUEST_SIZE_BYTES, requestSizeBytes);
+        return this;
+    }
+
+    /**
+     * Get the max memory used by the entries read ahead by a ledger entry stream, in bytes. No new read request is
+     * sent by the stream until the reader consumed enough entries to get under this limit. If zero, the memory is
+     * not limited.
+     *
+     * @return the max memory of the entries read ahead by a ledger entry stream. Default 64MB.
+     */
+    public long getReadStreamMaxMemoryBytes() {
+        return getLong(READ_STREAM_MAX_MEMORY_BYTES, LedgerEntryStreamImpl.DEFAULT_MAX_MEMORY_BYTES);
+    }
+
+    /**
+     * Set the max memory used by the entries read ahead by a ledger entry stream, in bytes.
+     *
+     * @see #getReadStreamMaxMemoryBytes()
+     * @param maxMemoryBytes the max memory of the entries read ahead, or 0 for no limit.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setReadStreamMaxMemoryBytes(long maxMemoryBytes) {
+        setProperty(READ_STREAM_MAX_MEMORY_BYTES, maxMemoryBytes);
+        return this;
+    }
+
+    /**
+     * Get the max number of entries behind the last add confirmed of the ledger handle for a read to be a tailing
+     * read.
+     *
+     * <p>The read requests carry their traffic class to the bookies, which share the reads between the classes when
+     * the read scheduling is enabled on the bookies. The reads starting at most this number of entries behind the
+     * last add confirmed known by the handle are tailing reads, the other reads are catch-up reads. The reads of the
+     * clients with the {@link #CLIENT_ROLE_SYSTEM} role, eg: the auto-recovery, are recovery reads.
+     *
+     * @return the max number of entries behind the last add confirmed of a tailing read. Default 100.
+     */
+    public long getTailingReadMaxEntriesBehindLac() {
+        return getLong(TAILING_READ_MAX_ENTRIES_BEHIND_LAC, 100L);
+    }
+
+    /**
+     * Set the max number of entries behind the last add confirmed of the ledger handle for a read to be a tailing
+     * read.
+     *
+     * @see #getTailingReadMaxEntriesBehindLac()
+     * @param maxEntriesBehind the max number of entries behind the last add confirmed.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setTailingReadMaxEntriesBehindLac(long maxEntriesBehind) {
+        setProperty(TAILING_READ_MAX_ENTRIES_BEHIND_LAC, maxEntriesBehind);
+        return this;
+    }
+
+    /**
+     * Get the number of threads computing the digests of large entries in parallel. If zero, the digests are computed
+     * by the threads adding or reading the entries.
+     *
+     * <p>The CRC32C digests of the entries of at least two chunks are computed by chunks with these threads, and the
+     * digests of the chunks are combined, so that the digest is the same as when it is computed sequentially. The
+     * other digest types are always computed sequentially, as well as the digests computed by the IO threads and the
+     * ordered executor threads of the client, which don't wait for other threads.
+     *
+     * <p>The entries read are verified on the IO threads or the ordered executor threads, so the parallel digests
+     * only apply to the entries added from the application threads, the reads are not made faster.
+     *
+     * @return the number of threads computing the digests in parallel. Default 0.
+     */
+    public int getParallelDigestThreads() {
+        return getInt(PARALLEL_DIGEST_THREADS, 0);
+    }
+
+    /**
+     * Set the number of threads computing the digests of large entries in parallel.
+     *
+     * @see #getParallelDigestThreads()
+     * @param numThreads the number of threads, or 0 to compute the digests sequentially.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setParallelDigestThreads(int numThreads) {
+        setProperty(PARALLEL_DIGEST_THREADS, numThreads);
+        return this;
+    }
+
+    /**
+     * Get the min size of the chunks of the entries whose digests are computed in parallel, in bytes.
+     *
+     * @return the min size of the chunks of the parallel digests. Default 512KB.
+     */
+    public int getParallelDigestChunkSize() {
+        return getInt(PARALLEL_DIGEST_CHUNK_SIZE, 512 * 1024);
+    }
+
+    /**
+     * Set the min size of the chunks of the entries whose digests are computed in parallel, in bytes.
+     *
+     * @see #getParallelDigestChunkSize()
+     * @param chunkSize the min size of the chunks.
+     * @return client configuration instance.
+     */
+    public ClientConfiguration setParallelDigestChunkSize(int chunkSize) {
+        setProperty(PARALLEL_DIGEST_CHUNK_SIZE, chunkSize);
+        return this;
+    }
+
     /**
      * If recovery batch read enabled or not.
      * @return
@@ -1267,6 +1601,52 @@ public class ClientConfiguration extends AbstractConfiguration<ClientConfigurati
         return this;
     }
 
+    /**
+     * Whether to reorder reads by the estimated read response time of the bookies. When enabled, the client keeps a
+     * decaying estimate of the read response time of each bookie, and the bookie of the write set with the lowest
+     * estimate is read from first.
+     *
+     * @return true if reads are reordered by the estimated response time of the bookies.
+     */
+    public boolean isReorderReadsByLatencyEnabled() {
+        return getBoolean(READ_REORDER_BY_LATENCY_ENABLED, false);
+    }
+
+    /**
+     * Enable/disable reordering reads by the estimated read response time of the bookies.
+     *
+     * @param enabled
+     *            flag to enable/disable reordering reads by latency.
+     * @return client configuration.
+     */
+    public ClientConfiguration setReorderReadsByLatencyEnabled(boolean enabled) {
+        setProperty(READ_REORDER_BY_LATENCY_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the half-life, in milliseconds, of the estimated read response times of the bookies, used to reorder the
+     * reads and by the adaptive speculative read timeouts. It is the time after which a sample weighs half of a new
+     * sample in the estimate.
+     *
+     * @return the half-life of the read response time estimates in milliseconds.
+     */
+    public int getReadLatencyEstimateHalfLifeMs() {
+        return getInt(READ_LATENCY_ESTIMATE_HALF_LIFE_MS, 10000);
+    }
+
+    /**
+     * Set the half-life, in milliseconds, of the estimated read response time of the bookies.
+     *
+     * @param halfLifeMs
+     *            the half-life of the read response time estimates in milliseconds.
+     * @return client configuration.
+     */
+    public ClientConfiguration setReadLatencyEstimateHalfLifeMs(int halfLifeMs) {
+        setProperty(READ_LATENCY_ESTIMATE_HALF_LIFE_MS, halfLifeMs);
+        return this;
+    }
+
     /**
      * Get the network topology stabilize period in seconds. if it is zero, this feature is turned off.
      *
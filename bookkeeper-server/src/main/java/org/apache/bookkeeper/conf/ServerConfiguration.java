@@ -154,11 +154,21 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String JOURNAL_PAGECACHE_FLUSH_INTERVAL_MSEC = "journalPageCacheFlushIntervalMSec";
     protected static final String JOURNAL_CHANNEL_PROVIDER = "journalChannelProvider";
     protected static final String JOURNAL_REUSE_FILES = "journalReuseFiles";
+    protected static final String JOURNAL_DIRECT_IO_ENABLED = "journalDirectIoEnabled";
+    protected static final String JOURNAL_MAX_OUTSTANDING_WRITES = "journalMaxOutstandingWrites";
+    protected static final String JOURNAL_WRITE_THROUGH_ENABLED = "journalWriteThroughEnabled";
+    protected static final String JOURNAL_ADAPTIVE_STRIPING_ENABLED = "journalAdaptiveStripingEnabled";
     // backpressure control
     protected static final String MAX_ADDS_IN_PROGRESS_LIMIT = "maxAddsInProgressLimit";
     protected static final String MAX_READS_IN_PROGRESS_LIMIT = "maxReadsInProgressLimit";
     protected static final String CLOSE_CHANNEL_ON_RESPONSE_TIMEOUT = "closeChannelOnResponseTimeout";
     protected static final String WAIT_TIMEOUT_ON_RESPONSE_BACKPRESSURE = "waitTimeoutOnResponseBackpressureMs";
+    protected static final String TENANT_QUOTA_ENABLED = "tenantQuotaEnabled";
+    protected static final String TENANT_QUOTA_KEY = "tenantQuotaKey";
+    protected static final String TENANT_QUOTA_ADD_REQUESTS_PER_SECOND = "tenantQuotaAddRequestsPerSecond";
+    protected static final String TENANT_QUOTA_ADD_BYTES_PER_SECOND = "tenantQuotaAddBytesPerSecond";
+    protected static final String TENANT_QUOTA_READ_REQUESTS_PER_SECOND = "tenantQuotaReadRequestsPerSecond";
+    protected static final String TENANT_QUOTA_READ_BYTES_PER_SECOND = "tenantQuotaReadBytesPerSecond";
 
     // Bookie Parameters
     protected static final String BOOKIE_PORT = "bookiePort";
@@ -179,9 +189,11 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SERVER_SOCK_LINGER = "serverTcpLinger";
     protected static final String SERVER_WRITEBUFFER_LOW_WATER_MARK = "serverWriteBufferLowWaterMark";
     protected static final String SERVER_WRITEBUFFER_HIGH_WATER_MARK = "serverWriteBufferHighWaterMark";
+    protected static final String SERVER_COMPOSITE_CUMULATION_ENABLED = "serverCompositeCumulationEnabled";
 
     protected static final String SERVER_NUM_ACCEPTOR_THREADS = "serverNumAcceptorThreads";
     protected static final String SERVER_NUM_IO_THREADS = "serverNumIOThreads";
+    protected static final String THREAD_PER_CORE_ENABLED = "threadPerCoreEnabled";
 
     // Zookeeper Parameters
     protected static final String ZK_RETRY_BACKOFF_START_MS = "zkRetryBackoffStartMs";
@@ -230,6 +242,13 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String NUM_LONG_POLL_WORKER_THREADS = "numLongPollWorkerThreads";
     protected static final String NUM_HIGH_PRIORITY_WORKER_THREADS = "numHighPriorityWorkerThreads";
     protected static final String READ_WORKER_THREADS_THROTTLING_ENABLED = "readWorkerThreadsThrottlingEnabled";
+    protected static final String READ_SCHEDULING_ENABLED = "readSchedulingEnabled";
+    protected static final String READ_SCHEDULING_TAILING_WEIGHT = "readSchedulingTailingWeight";
+    protected static final String READ_SCHEDULING_CATCH_UP_WEIGHT = "readSchedulingCatchUpWeight";
+    protected static final String READ_SCHEDULING_RECOVERY_WEIGHT = "readSchedulingRecoveryWeight";
+    protected static final String READ_SCHEDULING_MAX_IN_FLIGHT_BYTES_PER_CLASS =
+            "readSchedulingMaxInFlightBytesPerClass";
+    protected static final String READ_SCHEDULING_MAX_DISPATCHED_READS = "readSchedulingMaxDispatchedReads";
 
     // Long poll parameters
     protected static final String REQUEST_TIMER_TICK_DURATION_MILLISEC = "requestTimerTickDurationMs";
@@ -237,6 +256,9 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
 
     protected static final String READ_BUFFER_SIZE = "readBufferSizeBytes";
     protected static final String WRITE_BUFFER_SIZE = "writeBufferSizeBytes";
+    protected static final String ENTRY_LOG_MMAP_READ_ENABLED = "entryLogMmapReadEnabled";
+    protected static final String ENTRY_LOG_MMAP_WINDOW_SIZE = "entryLogMmapWindowSizeBytes";
+    protected static final String ENTRY_LOG_MMAP_MAX_MAPPED_BYTES = "entryLogMmapMaxMappedBytes";
     // Whether the bookie should use its hostname or ipaddress for the
     // registration.
     protected static final String USE_HOST_NAME_AS_BOOKIE_ID = "useHostNameAsBookieID";
@@ -248,6 +270,7 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
     protected static final String SKIP_LIST_SIZE_LIMIT = "skipListSizeLimit";
     protected static final String SKIP_LIST_CHUNK_SIZE_ENTRY = "skipListArenaChunkSize";
     protected static final String SKIP_LIST_MAX_ALLOC_ENTRY = "skipListArenaMaxAllocSize";
+    protected static final String ENTRY_MEMTABLE_OFF_HEAP_ENABLED = "entryMemTableOffHeapEnabled";
 
     // Statistics Parameters
     protected static final String ENABLE_STATISTICS = "enableStatistics";
@@ -1031,6 +1054,99 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the journal is written with O_DIRECT writes submitted in background, through native I/O.
+     *
+     * <p>The journal thread doesn't wait for the writes to complete, so the next group commit batch can be
+     * prepared while the previous ones are being written and synced. When journal sync data is disabled,
+     * entries are acknowledged once their write has completed.
+     *
+     * @return whether journal direct I/O is enabled
+     */
+    public boolean isJournalDirectIoEnabled() {
+        return this.getBoolean(JOURNAL_DIRECT_IO_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable journal direct I/O.
+     *
+     * @param enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalDirectIoEnabled(boolean enabled) {
+        setProperty(JOURNAL_DIRECT_IO_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the max number of journal write batches in flight, when journal direct I/O is enabled. When reached,
+     * the journal thread waits for a write to complete before submitting the next batch.
+     *
+     * @return max number of journal write batches in flight
+     */
+    public int getJournalMaxOutstandingWrites() {
+        return this.getInt(JOURNAL_MAX_OUTSTANDING_WRITES, 4);
+    }
+
+    /**
+     * Set the max number of journal write batches in flight, when journal direct I/O is enabled.
+     *
+     * @param maxOutstandingWrites
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalMaxOutstandingWrites(int maxOutstandingWrites) {
+        setProperty(JOURNAL_MAX_OUTSTANDING_WRITES, maxOutstandingWrites);
+        return this;
+    }
+
+    /**
+     * Whether the journal entries of at least the journal write buffer size are written directly to the journal
+     * file, after the data buffered before them, instead of being copied into the write buffer.
+     *
+     * <p>This doesn't apply when journal direct I/O is enabled, since all the writes then go through the aligned
+     * buffers.
+     *
+     * @return whether the large journal entries are written directly to the journal file
+     */
+    public boolean isJournalWriteThroughEnabled() {
+        return this.getBoolean(JOURNAL_WRITE_THROUGH_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable writing the large journal entries directly to the journal file.
+     *
+     * @param enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalWriteThroughEnabled(boolean enabled) {
+        setProperty(JOURNAL_WRITE_THROUGH_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Whether ledgers are assigned to the least loaded journal, when multiple journal directories are configured.
+     *
+     * <p>The journal load is estimated from its queue size and its recent sync latency. A ledger keeps writing to
+     * the same journal while it has adds in progress, and can be moved to a less loaded journal afterwards. When
+     * disabled, ledgers are mapped to journals by their id.
+     *
+     * @return whether journal adaptive striping is enabled
+     */
+    public boolean isJournalAdaptiveStripingEnabled() {
+        return this.getBoolean(JOURNAL_ADAPTIVE_STRIPING_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable journal adaptive striping.
+     *
+     * @param enabled
+     * @return server configuration
+     */
+    public ServerConfiguration setJournalAdaptiveStripingEnabled(boolean enabled) {
+        setProperty(JOURNAL_ADAPTIVE_STRIPING_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Get max number of adds in progress. 0 == unlimited.
      *
@@ -1073,6 +1189,137 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the requests of each tenant are limited by the tenant quotas.
+     *
+     * <p>When a tenant exceeds one of its quotas, its connections stop reading requests until the quota allows the
+     * next request, instead of returning errors. The quotas apply to each tenant separately, and are shared by the
+     * connections of the tenant.
+     *
+     * @return true if the tenant quotas are enabled.
+     */
+    public boolean isTenantQuotaEnabled() {
+        return this.getBoolean(TENANT_QUOTA_ENABLED, false);
+    }
+
+    /**
+     * Enable the tenant quotas.
+     *
+     * @param enabled
+     *          whether the tenant quotas are enabled.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaEnabled(boolean enabled) {
+        this.setProperty(TENANT_QUOTA_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the key of the tenants of the quotas: "principal" for the principal authenticated on the connections, the
+     * connections without a principal are keyed by remote host, or "address" for the remote host of the connections.
+     *
+     * @return the key of the tenants of the quotas.
+     */
+    public String getTenantQuotaKey() {
+        return this.getString(TENANT_QUOTA_KEY, "principal");
+    }
+
+    /**
+     * Set the key of the tenants of the quotas, "principal" or "address".
+     *
+     * @param key
+     *          the key of the tenants of the quotas.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaKey(String key) {
+        this.setProperty(TENANT_QUOTA_KEY, key);
+        return this;
+    }
+
+    /**
+     * Get the max number of add requests per second of each tenant. 0 == unlimited.
+     *
+     * @return the max number of add requests per second of each tenant.
+     */
+    public long getTenantQuotaAddRequestsPerSecond() {
+        return this.getLong(TENANT_QUOTA_ADD_REQUESTS_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the max number of add requests per second of each tenant. 0 == unlimited.
+     *
+     * @param value
+     *          the max number of add requests per second of each tenant.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaAddRequestsPerSecond(long value) {
+        this.setProperty(TENANT_QUOTA_ADD_REQUESTS_PER_SECOND, value);
+        return this;
+    }
+
+    /**
+     * Get the max bytes added per second by each tenant. 0 == unlimited.
+     *
+     * @return the max bytes added per second by each tenant.
+     */
+    public long getTenantQuotaAddBytesPerSecond() {
+        return this.getLong(TENANT_QUOTA_ADD_BYTES_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the max bytes added per second by each tenant. 0 == unlimited.
+     *
+     * @param value
+     *          the max bytes added per second by each tenant.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaAddBytesPerSecond(long value) {
+        this.setProperty(TENANT_QUOTA_ADD_BYTES_PER_SECOND, value);
+        return this;
+    }
+
+    /**
+     * Get the max number of read requests per second of each tenant. 0 == unlimited.
+     *
+     * @return the max number of read requests per second of each tenant.
+     */
+    public long getTenantQuotaReadRequestsPerSecond() {
+        return this.getLong(TENANT_QUOTA_READ_REQUESTS_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the max number of read requests per second of each tenant. 0 == unlimited.
+     *
+     * @param value
+     *          the max number of read requests per second of each tenant.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaReadRequestsPerSecond(long value) {
+        this.setProperty(TENANT_QUOTA_READ_REQUESTS_PER_SECOND, value);
+        return this;
+    }
+
+    /**
+     * Get the max bytes read per second by each tenant. 0 == unlimited.
+     *
+     * @return the max bytes read per second by each tenant.
+     */
+    public long getTenantQuotaReadBytesPerSecond() {
+        return this.getLong(TENANT_QUOTA_READ_BYTES_PER_SECOND, 0L);
+    }
+
+    /**
+     * Set the max bytes read per second by each tenant. 0 == unlimited.
+     *
+     * @param value
+     *          the max bytes read per second by each tenant.
+     * @return server configuration.
+     */
+    public ServerConfiguration setTenantQuotaReadBytesPerSecond(long value) {
+        this.setProperty(TENANT_QUOTA_READ_BYTES_PER_SECOND, value);
+        return this;
+    }
+
     /**
      * Configures action in case if server timed out sending response to the client.
      * true == close the channel and drop response
@@ -1515,7 +1762,8 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
      * @return the number of IO threads
      */
     public int getServerNumIOThreads() {
-        return getInt(SERVER_NUM_IO_THREADS, 2 * Runtime.getRuntime().availableProcessors());
+        int numCores = Runtime.getRuntime().availableProcessors();
+        return getInt(SERVER_NUM_IO_THREADS, isThreadPerCoreEnabled() ? numCores : 2 * numCores);
     }
 
     /**
@@ -1543,6 +1791,34 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the requests are processed in thread-per-core mode.
+     *
+     * <p>In thread-per-core mode, each IO thread is pinned to a CPU core, and the reads of the entries in the
+     * caches of the ledger storage run on the IO thread of their connection, without being handed off to the
+     * read worker threads. The reads that miss the caches are handed off to the read worker threads, which only
+     * do the blocking disk reads, and the adds, which may block on the write cache or on the journal, still run
+     * on the add worker threads. The bookie fails to start if the IO threads cannot be pinned, which requires
+     * running as root on Linux with isolated CPUs.
+     *
+     * @return true if the requests are processed in thread-per-core mode
+     */
+    public boolean isThreadPerCoreEnabled() {
+        return getBoolean(THREAD_PER_CORE_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable the thread-per-core mode.
+     *
+     * @see #isThreadPerCoreEnabled()
+     * @param enabled whether to process the requests in thread-per-core mode
+     * @return server configuration
+     */
+    public ServerConfiguration setThreadPerCoreEnabled(boolean enabled) {
+        setProperty(THREAD_PER_CORE_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Timeout to drain the socket on close.
      *
@@ -1944,6 +2220,74 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the entries of the sealed entry logs are read through memory mapped windows of the log files.
+     *
+     * <p>The entries read this way are slices of the mapped windows, without a read syscall nor a copy.
+     * Default is false.
+     *
+     * @return whether the sealed entry logs are read through memory mapped windows
+     */
+    public boolean isEntryLogMmapReadEnabled() {
+        return getBoolean(ENTRY_LOG_MMAP_READ_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable reading the sealed entry logs through memory mapped windows of the log files.
+     *
+     * @param enabled
+     *          whether the sealed entry logs are read through memory mapped windows
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapReadEnabled(boolean enabled) {
+        setProperty(ENTRY_LOG_MMAP_READ_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the size of the memory mapped windows of the sealed entry logs. The entries across two windows are
+     * read through the file channel of the log. Default is 64MB.
+     *
+     * @return the size of the memory mapped windows, in bytes
+     */
+    public long getEntryLogMmapWindowSizeBytes() {
+        return getLong(ENTRY_LOG_MMAP_WINDOW_SIZE, 64 * 1024 * 1024L);
+    }
+
+    /**
+     * Set the size of the memory mapped windows of the sealed entry logs.
+     *
+     * @param windowSize
+     *          the size of the memory mapped windows, in bytes
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapWindowSizeBytes(long windowSize) {
+        setProperty(ENTRY_LOG_MMAP_WINDOW_SIZE, windowSize);
+        return this;
+    }
+
+    /**
+     * Get the maximum number of bytes of the entry logs mapped at once. The oldest windows are unmapped once
+     * the limit is reached. Default is 1GB.
+     *
+     * @return the maximum number of bytes mapped at once
+     */
+    public long getEntryLogMmapMaxMappedBytes() {
+        return getLong(ENTRY_LOG_MMAP_MAX_MAPPED_BYTES, 1024 * 1024 * 1024L);
+    }
+
+    /**
+     * Set the maximum number of bytes of the entry logs mapped at once.
+     *
+     * @param maxMappedBytes
+     *          the maximum number of bytes mapped at once
+     * @return server configuration
+     */
+    public ServerConfiguration setEntryLogMmapMaxMappedBytes(long maxMappedBytes) {
+        setProperty(ENTRY_LOG_MMAP_MAX_MAPPED_BYTES, maxMappedBytes);
+        return this;
+    }
+
     /**
      * Set the number of threads that would handle write requests.
      *
@@ -2034,6 +2378,139 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return getBoolean(READ_WORKER_THREADS_THROTTLING_ENABLED, true);
     }
 
+    /**
+     * Whether the reads are scheduled by traffic class.
+     *
+     * <p>When enabled, the read requests are queued by traffic class (tailing, catch-up and recovery reads), and
+     * dispatched to the read worker threads with weighted fair queuing across the classes, so that a backfill or the
+     * auto-recovery don't delay the tailing reads. The fencing reads and the long poll reads are not scheduled. It
+     * requires the read worker threads.
+     *
+     * @return true if the reads are scheduled by traffic class
+     */
+    public boolean isReadSchedulingEnabled() {
+        return getBoolean(READ_SCHEDULING_ENABLED, false);
+    }
+
+    /**
+     * Set whether the reads are scheduled by traffic class.
+     *
+     * @param enabled
+     *          whether the reads are scheduled by traffic class
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingEnabled(boolean enabled) {
+        setProperty(READ_SCHEDULING_ENABLED, enabled);
+        return this;
+    }
+
+    /**
+     * Get the weight of the tailing reads in the read scheduling.
+     *
+     * @return the weight of the tailing reads
+     */
+    public int getReadSchedulingTailingWeight() {
+        return getInt(READ_SCHEDULING_TAILING_WEIGHT, 8);
+    }
+
+    /**
+     * Set the weight of the tailing reads in the read scheduling.
+     *
+     * @param weight
+     *          the weight of the tailing reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingTailingWeight(int weight) {
+        setProperty(READ_SCHEDULING_TAILING_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the weight of the catch-up reads in the read scheduling.
+     *
+     * @return the weight of the catch-up reads
+     */
+    public int getReadSchedulingCatchUpWeight() {
+        return getInt(READ_SCHEDULING_CATCH_UP_WEIGHT, 2);
+    }
+
+    /**
+     * Set the weight of the catch-up reads in the read scheduling.
+     *
+     * @param weight
+     *          the weight of the catch-up reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingCatchUpWeight(int weight) {
+        setProperty(READ_SCHEDULING_CATCH_UP_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the weight of the recovery reads in the read scheduling.
+     *
+     * @return the weight of the recovery reads
+     */
+    public int getReadSchedulingRecoveryWeight() {
+        return getInt(READ_SCHEDULING_RECOVERY_WEIGHT, 1);
+    }
+
+    /**
+     * Set the weight of the recovery reads in the read scheduling.
+     *
+     * @param weight
+     *          the weight of the recovery reads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingRecoveryWeight(int weight) {
+        setProperty(READ_SCHEDULING_RECOVERY_WEIGHT, weight);
+        return this;
+    }
+
+    /**
+     * Get the max bytes of the reads in progress of each traffic class, in the read scheduling. A class is not
+     * dispatched more reads once its reads in progress reach this size, unless it has no read in progress.
+     *
+     * @return the max bytes of the reads in progress of each traffic class
+     */
+    public long getReadSchedulingMaxInFlightBytesPerClass() {
+        return getLong(READ_SCHEDULING_MAX_IN_FLIGHT_BYTES_PER_CLASS, 64 * 1024 * 1024L);
+    }
+
+    /**
+     * Set the max bytes of the reads in progress of each traffic class, in the read scheduling.
+     *
+     * @param maxBytes
+     *          the max bytes of the reads in progress of each traffic class
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingMaxInFlightBytesPerClass(long maxBytes) {
+        setProperty(READ_SCHEDULING_MAX_IN_FLIGHT_BYTES_PER_CLASS, maxBytes);
+        return this;
+    }
+
+    /**
+     * Get the max number of reads dispatched to the read worker threads at once, in the read scheduling. The other
+     * reads wait in the queues of their traffic class. If zero, twice the number of read worker threads.
+     *
+     * @return the max number of reads dispatched to the read worker threads
+     */
+    public int getReadSchedulingMaxDispatchedReads() {
+        return getInt(READ_SCHEDULING_MAX_DISPATCHED_READS, 0);
+    }
+
+    /**
+     * Set the max number of reads dispatched to the read worker threads at once, in the read scheduling.
+     *
+     * @param maxReads
+     *          the max number of reads dispatched to the read worker threads
+     * @return server configuration
+     */
+    public ServerConfiguration setReadSchedulingMaxDispatchedReads(int maxReads) {
+        setProperty(READ_SCHEDULING_MAX_DISPATCHED_READS, maxReads);
+        return this;
+    }
+
 
 
     /**
@@ -2271,6 +2748,30 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         return this;
     }
 
+    /**
+     * Whether the EntryMemTable keeps the entries off the Java heap.
+     *
+     * <p>The entries are copied in direct slabs of {@link #getSkipListArenaChunkSize()} bytes taken from the
+     * bookie allocator, and the entries larger than {@link #getSkipListArenaMaxAllocSize()} get their own
+     * direct buffer. The entries are indexed in primitive maps, without any object per entry on the heap.
+     *
+     * @return true if the EntryMemTable keeps the entries off the Java heap
+     */
+    public boolean isEntryMemTableOffHeapEnabled() {
+        return getBoolean(ENTRY_MEMTABLE_OFF_HEAP_ENABLED, false);
+    }
+
+    /**
+     * Enable or disable keeping the entries of the EntryMemTable off the Java heap.
+     *
+     * @param enabled whether to keep the entries of the EntryMemTable off the Java heap
+     * @return server configuration object.
+     */
+    public ServerConfiguration setEntryMemTableOffHeapEnabled(boolean enabled) {
+        setProperty(ENTRY_MEMTABLE_OFF_HEAP_ENABLED, enabled);
+        return this;
+    }
+
     /**
      * Should the data be fsynced on journal before acknowledgment.
      *
@@ -3817,6 +4318,29 @@ public class ServerConfiguration extends AbstractConfiguration<ServerConfigurati
         setProperty(SERVER_WRITEBUFFER_HIGH_WATER_MARK, waterMark);
         return this;
     }
+
+    /**
+     * Whether the server frame decoder accumulates the partial frames in a composite buffer, instead of copying them
+     * into a single buffer. This avoids copying the large requests (eg: large entries) that are received over many
+     * socket reads, at the cost of a composite frame being passed down to the request processors.
+     *
+     * @return true if the frames are accumulated in a composite buffer.
+     */
+    public boolean isServerCompositeCumulationEnabled() {
+        return getBoolean(SERVER_COMPOSITE_CUMULATION_ENABLED, false);
+    }
+
+    /**
+     * Enable/Disable the accumulation of the partial frames in a composite buffer by the server frame decoder.
+     *
+     * @param enabled
+     *          whether to accumulate the frames in a composite buffer.
+     * @return server configuration.
+     */
+    public ServerConfiguration setServerCompositeCumulationEnabled(boolean enabled) {
+        setProperty(SERVER_COMPOSITE_CUMULATION_ENABLED, enabled);
+        return this;
+    }
     /**
      * Set registration manager class.
      *
@@ -0,0 +1,190 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+
+/**
+ * A flush consolidation handler whose flush delay adapts to the rate of the requests of the channel.
+ *
+ * <p>As with {@link io.netty.handler.flush.FlushConsolidationHandler}, the flushes requested while a read is in
+ * progress are done at the end of the read, and the other flushes are done in the next run of the event loop. When
+ * the requests are frequent enough that more requests are expected within the max flush delay, the flushes are
+ * delayed up to the max delay, or until the data written reaches the max size, so that the requests are written to
+ * the socket with fewer system calls. When the requests are not frequent, the flushes are not delayed, so that the
+ * latency of the requests doesn't change at low load.
+ *
+ * <p>The handler must be the closest one to the socket: the requests are counted by their promise, only the last
+ * buffer of a request is written with a promise that is not void.
+ */
+class AdaptiveFlushConsolidationHandler extends ChannelDuplexHandler {
+
+    // Weight of the last interval between flush requests in their moving average
+    private static final double INTERVAL_WEIGHT = 0.125;
+    // Min number of requests expected within the max delay for the flushes to be delayed
+    private static final int MIN_EXPECTED_REQUESTS = 2;
+    // Max interval taken in the moving average, so that it adapts quickly after an idle period
+    private static final int MAX_INTERVAL_DELAYS = 4;
+
+    private final long maxDelayNanos;
+    private final long maxPendingBytes;
+    private final Counter flushCounter;
+    private final OpStatsLogger requestsPerFlushLogger;
+    private final Runnable flushTask;
+
+    private ChannelHandlerContext ctx;
+    private Future<?> nextScheduledFlush;
+    private boolean readInProgress;
+    private int pendingRequests;
+    private long pendingBytes;
+    private long lastFlushRequestNanos;
+    private double avgIntervalNanos;
+
+    AdaptiveFlushConsolidationHandler(long maxDelayMicros, long maxPendingBytes, Counter flushCounter,
+                                      OpStatsLogger requestsPerFlushLogger) {
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+        this.maxPendingBytes = maxPendingBytes;
+        this.flushCounter = flushCounter;
+        this.requestsPerFlushLogger = requestsPerFlushLogger;
+        this.avgIntervalNanos = MAX_INTERVAL_DELAYS * maxDelayNanos;
+        this.flushTask = () -> {
+            nextScheduledFlush = null;
+            flushNow(ctx);
+        };
+    }
+
+    @Override
+    public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
+        this.ctx = ctx;
+        this.lastFlushRequestNanos = MathUtils.nowInNano();
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        if (!promise.isVoid()) {
+            pendingRequests++;
+        }
+        if (msg instanceof ByteBuf) {
+            pendingBytes += ((ByteBuf) msg).readableBytes();
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void flush(ChannelHandlerContext ctx) throws Exception {
+        long now = MathUtils.nowInNano();
+        long interval = Math.min(now - lastFlushRequestNanos, MAX_INTERVAL_DELAYS * maxDelayNanos);
+        lastFlushRequestNanos = now;
+        avgIntervalNanos += (interval - avgIntervalNanos) * INTERVAL_WEIGHT;
+
+        if (pendingBytes >= maxPendingBytes) {
+            flushNow(ctx);
+        } else if (!readInProgress && nextScheduledFlush == null) {
+            if (avgIntervalNanos * MIN_EXPECTED_REQUESTS <= maxDelayNanos) {
+                nextScheduledFlush = ctx.executor().schedule(flushTask, maxDelayNanos, TimeUnit.NANOSECONDS);
+            } else {
+                nextScheduledFlush = ctx.executor().submit(flushTask);
+            }
+        }
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        readInProgress = true;
+        ctx.fireChannelRead(msg);
+    }
+
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireChannelReadComplete();
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireExceptionCaught(cause);
+    }
+
+    @Override
+    public void disconnect(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.disconnect(promise);
+    }
+
+    @Override
+    public void close(ChannelHandlerContext ctx, ChannelPromise promise) throws Exception {
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.close(promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        // Complete the writes delayed, rather than leaving them to the scheduled flush
+        resetReadAndFlushIfNeeded(ctx);
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (!ctx.channel().isWritable()) {
+            // The data written must be flushed to the socket to become writable again
+            flushIfNeeded(ctx);
+        }
+        ctx.fireChannelWritabilityChanged();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        flushIfNeeded(ctx);
+    }
+
+    private void resetReadAndFlushIfNeeded(ChannelHandlerContext ctx) {
+        readInProgress = false;
+        flushIfNeeded(ctx);
+    }
+
+    private void flushIfNeeded(ChannelHandlerContext ctx) {
+        if (pendingRequests > 0 || pendingBytes > 0) {
+            flushNow(ctx);
+        }
+    }
+
+    private void flushNow(ChannelHandlerContext ctx) {
+        if (nextScheduledFlush != null) {
+            nextScheduledFlush.cancel(false);
+            nextScheduledFlush = null;
+        }
+        flushCounter.inc();
+        requestsPerFlushLogger.registerSuccessfulValue(pendingRequests);
+        pendingRequests = 0;
+        pendingBytes = 0;
+        ctx.flush();
+    }
+}
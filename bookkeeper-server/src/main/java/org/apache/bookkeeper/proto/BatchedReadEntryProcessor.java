@@ -23,6 +23,7 @@ package org.apache.bookkeeper.proto;
 import io.netty.buffer.ByteBuf;
 import io.netty.util.Recycler;
 import io.netty.util.ReferenceCounted;
+import java.util.List;
 import java.util.concurrent.ExecutorService;
 import org.apache.bookkeeper.proto.BookieProtocol.BatchedReadRequest;
 import org.apache.bookkeeper.util.ByteBufList;
@@ -57,24 +58,19 @@ public class BatchedReadEntryProcessor extends ReadEntryProcessor {
         long maxSize = Math.min(batchRequest.getMaxSize(), maxBatchReadSize);
         //See BookieProtoEncoding.ResponseEnDeCoderPreV3#encode on BatchedReadResponse case.
         long frameSize = 24 + 8 + 4;
-        for (int i = 0; i < maxCount; i++) {
-            try {
-                ByteBuf entry = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId() + i);
-                frameSize += entry.readableBytes() + 4;
-                if (data == null) {
-                    data = ByteBufList.get(entry);
-                } else {
-                    if (frameSize > maxSize) {
-                        entry.release();
-                        break;
-                    }
-                    data.add(entry);
-                }
-            } catch (Throwable e) {
-                if (data == null) {
-                    throw e;
-                }
-                break;
+        // The entries next to each other in the storage are read at once
+        List<ByteBuf> entries = requestProcessor.getBookie().readEntries(request.getLedgerId(),
+                request.getEntryId(), maxCount, maxSize - frameSize);
+        for (ByteBuf entry : entries) {
+            frameSize += entry.readableBytes() + 4;
+            if (data == null) {
+                ReadRequestScheduler.recordReadBytes(entry.readableBytes());
+                data = ByteBufList.get(entry);
+            } else if (frameSize > maxSize) {
+                entry.release();
+            } else {
+                ReadRequestScheduler.recordReadBytes(entry.readableBytes());
+                data.add(entry);
             }
         }
         return data;
@@ -144,6 +144,19 @@ public interface BookieClient {
                   long entryId, ReferenceCounted toSend, WriteCallback cb, Object ctx,
                   int options, boolean allowFastFail, EnumSet<WriteFlag> writeFlags);
 
+    /**
+     * Defer the flushes of the requests sent by the current thread, until {@link #flushDeferred()} is called, so that
+     * the requests sent to the same bookie are flushed together.
+     */
+    default void deferFlushes() {
+    }
+
+    /**
+     * Flush the requests sent by the current thread since {@link #deferFlushes()}, and stop deferring the flushes.
+     */
+    default void flushDeferred() {
+    }
+
     /**
      * Read entry with a null masterkey, disallowing failfast.
      * @see #readEntry(BookieId,long,long,ReadEntryCallback,Object,int,byte[],boolean)
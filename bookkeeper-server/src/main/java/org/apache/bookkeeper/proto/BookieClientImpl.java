@@ -584,6 +584,16 @@ public class BookieClientImpl implements BookieClient, PerChannelBookieClientFac
         }
     }
 
+    @Override
+    public void deferFlushes() {
+        PerChannelBookieClient.deferFlushes();
+    }
+
+    @Override
+    public void flushDeferred() {
+        PerChannelBookieClient.flushDeferred();
+    }
+
     @Override
     public boolean isClosed() {
         return closed;
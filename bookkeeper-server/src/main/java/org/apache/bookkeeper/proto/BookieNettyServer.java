@@ -48,6 +48,7 @@ import io.netty.channel.local.LocalChannel;
 import io.netty.channel.local.LocalServerChannel;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslHandler;
@@ -95,11 +96,13 @@ class BookieNettyServer {
     public static final String CONSOLIDATION_HANDLER_NAME = "consolidation";
 
     final int maxFrameSize;
+    final boolean compositeCumulationEnabled;
     final ServerConfiguration conf;
     final EventLoopGroup eventLoopGroup;
     final EventLoopGroup acceptorGroup;
     final EventLoopGroup jvmEventLoopGroup;
     RequestProcessor requestProcessor;
+    volatile TenantQuotaManager tenantQuotaManager;
     final AtomicBoolean isRunning = new AtomicBoolean(false);
     final AtomicBoolean isClosed = new AtomicBoolean(false);
     final Object suspensionLock = new Object();
@@ -118,6 +121,7 @@ class BookieNettyServer {
         throws IOException, KeeperException, InterruptedException, BookieException {
         this.allocator = allocator;
         this.maxFrameSize = conf.getNettyMaxFrameSizeBytes();
+        this.compositeCumulationEnabled = conf.isServerCompositeCumulationEnabled();
         this.conf = conf;
         this.requestProcessor = processor;
         this.authProviderFactory = AuthProviderFactoryFactory.newBookieAuthProviderFactory(conf);
@@ -188,6 +192,11 @@ class BookieNettyServer {
         return this;
     }
 
+    BookieNettyServer setTenantQuotaManager(TenantQuotaManager tenantQuotaManager) {
+        this.tenantQuotaManager = tenantQuotaManager;
+        return this;
+    }
+
     boolean isRunning() {
         return isRunning.get();
     }
@@ -310,6 +319,15 @@ class BookieNettyServer {
         }
     }
 
+    private LengthFieldBasedFrameDecoder newFrameDecoder() {
+        LengthFieldBasedFrameDecoder frameDecoder = new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4);
+        if (compositeCumulationEnabled) {
+            // Large frames received over many reads are not copied into a single buffer
+            frameDecoder.setCumulator(ByteToMessageDecoder.COMPOSITE_CUMULATOR);
+        }
+        return frameDecoder;
+    }
+
     private void listenOn(InetSocketAddress address, BookieSocketAddress bookieAddress) throws InterruptedException {
         if (!conf.isDisableServerSocketBind()) {
             ServerBootstrap bootstrap = new ServerBootstrap();
@@ -349,12 +367,16 @@ class BookieNettyServer {
 
                     pipeline.addLast("bytebufList", ByteBufList.ENCODER);
 
-                    pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
+                    pipeline.addLast("lengthbaseddecoder", newFrameDecoder());
 
                     pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
                     pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
                     pipeline.addLast("bookieAuthHandler", new AuthHandler.ServerSideHandler(
                                 contextHandler.getConnectionPeer(), authProviderFactory));
+                    if (tenantQuotaManager != null) {
+                        pipeline.addLast("tenantQuotaHandler",
+                                new TenantQuotaHandler(tenantQuotaManager, contextHandler.getConnectionPeer()));
+                    }
 
                     ChannelInboundHandler requestHandler = isRunning.get()
                             ? new BookieRequestHandler(conf, requestProcessor, allChannels)
@@ -415,12 +437,16 @@ class BookieNettyServer {
                         new BookieSideConnectionPeerContextHandler();
                     ChannelPipeline pipeline = ch.pipeline();
 
-                    pipeline.addLast("lengthbaseddecoder", new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
+                    pipeline.addLast("lengthbaseddecoder", newFrameDecoder());
 
                     pipeline.addLast("bookieProtoDecoder", new BookieProtoEncoding.RequestDecoder(registry));
                     pipeline.addLast("bookieProtoEncoder", new BookieProtoEncoding.ResponseEncoder(registry));
                     pipeline.addLast("bookieAuthHandler", new AuthHandler.ServerSideHandler(
                                 contextHandler.getConnectionPeer(), authProviderFactory));
+                    if (tenantQuotaManager != null) {
+                        pipeline.addLast("tenantQuotaHandler",
+                                new TenantQuotaHandler(tenantQuotaManager, contextHandler.getConnectionPeer()));
+                    }
 
                     ChannelInboundHandler requestHandler = isRunning.get()
                             ? new BookieRequestHandler(conf, requestProcessor, allChannels)
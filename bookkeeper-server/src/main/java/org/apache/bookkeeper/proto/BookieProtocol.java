@@ -190,6 +190,8 @@ public interface BookieProtocol {
     short FLAG_DO_FENCING = 0x0001;
     short FLAG_RECOVERY_ADD = 0x0002;
     short FLAG_HIGH_PRIORITY = 0x0004;
+    // Bits of the traffic class of the read requests, see {@link ReadTrafficClass}
+    short FLAG_TRAFFIC_CLASS_MASK = 0x0030;
 
     /**
      * A Bookie request object.
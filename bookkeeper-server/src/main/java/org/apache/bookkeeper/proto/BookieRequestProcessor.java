@@ -107,6 +107,17 @@ public class BookieRequestProcessor implements RequestProcessor {
      */
     private final OrderedExecutor highPriorityThreadPool;
 
+    /**
+     * The scheduler of the reads by traffic class, if enabled.
+     */
+    private final ReadRequestScheduler readRequestScheduler;
+
+    /**
+     * Whether the reads of the cached entries are processed on the IO thread of their connection, in thread-per-core
+     * mode.
+     */
+    private final boolean threadPerCore;
+
     /**
      * The Timer used to time out requests for long polling.
      */
@@ -146,6 +157,9 @@ public class BookieRequestProcessor implements RequestProcessor {
                 "BookieReadThreadPool",
                 serverCfg.getMaxPendingReadRequestPerThread(),
                 statsLogger);
+        this.threadPerCore = serverCfg.isThreadPerCoreEnabled();
+        // The adds may block on the write cache or on the journal queue, they stay on the write thread pool in
+        // thread-per-core mode
         this.writeThreadPool = createExecutor(
                 this.serverCfg.getNumAddWorkerThreads(),
                 "BookieWriteThreadPool",
@@ -167,6 +181,11 @@ public class BookieRequestProcessor implements RequestProcessor {
                 this.serverCfg.getNumHighPriorityWorkerThreads(),
                 "BookieHighPriorityThread",
                 OrderedExecutor.NO_TASK_LIMIT, statsLogger);
+        if (serverCfg.isReadSchedulingEnabled() && readThreadPool != null) {
+            this.readRequestScheduler = new ReadRequestScheduler(readThreadPool, serverCfg, statsLogger);
+        } else {
+            this.readRequestScheduler = null;
+        }
         this.shFactory = shFactory;
         if (shFactory != null) {
             shFactory.init(NodeType.Server, serverCfg, allocator);
@@ -519,6 +538,7 @@ public class BookieRequestProcessor implements RequestProcessor {
 
         final ReadEntryProcessorV3 read;
         final OrderedExecutor threadPool;
+        boolean scheduled = false;
         if (RequestUtils.isLongPollReadRequest(r.getReadRequest())) {
             ExecutorService lpThread = longPollThreadPool.chooseThread(requestHandler.ctx());
 
@@ -537,6 +557,7 @@ public class BookieRequestProcessor implements RequestProcessor {
                 threadPool = highPriorityThreadPool;
             } else {
                 threadPool = readThreadPool;
+                scheduled = readRequestScheduler != null;
             }
         }
 
@@ -544,28 +565,37 @@ public class BookieRequestProcessor implements RequestProcessor {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
-                              r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+                if (scheduled) {
+                    readRequestScheduler.schedule(ReadTrafficClass.fromProtocol(r.getHeader()),
+                            r.getReadRequest().getLedgerId(), read, () -> rejectReadRequestV3(r, read));
+                } else {
+                    threadPool.executeOrdered(r.getReadRequest().getLedgerId(), read);
                 }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
-                    .setLedgerId(r.getReadRequest().getLedgerId())
-                    .setEntryId(r.getReadRequest().getEntryId())
-                    .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
-                BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
-                    .setHeader(read.getHeader())
-                    .setStatus(readResponse.getStatus())
-                    .setReadResponse(readResponse);
-                BookkeeperProtocol.Response resp = response.build();
-                read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
-                onReadRequestFinish();
+            } catch (RejectedExecutionException e) {
+                rejectReadRequestV3(r, read);
             }
         }
     }
 
+    private void rejectReadRequestV3(final BookkeeperProtocol.Request r, final ReadEntryProcessorV3 read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests",
+                      r.getReadRequest().getLedgerId(), r.getReadRequest().getEntryId());
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        BookkeeperProtocol.ReadResponse.Builder readResponse = BookkeeperProtocol.ReadResponse.newBuilder()
+            .setLedgerId(r.getReadRequest().getLedgerId())
+            .setEntryId(r.getReadRequest().getEntryId())
+            .setStatus(BookkeeperProtocol.StatusCode.ETOOMANYREQUESTS);
+        BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder()
+            .setHeader(read.getHeader())
+            .setStatus(readResponse.getStatus())
+            .setReadResponse(readResponse);
+        BookkeeperProtocol.Response resp = response.build();
+        read.sendResponse(readResponse.getStatus(), resp, requestStats.getReadRequestStats());
+        onReadRequestFinish();
+    }
+
     private void processStartTLSRequestV3(final BookkeeperProtocol.Request r,
                                           final BookieRequestHandler requestHandler) {
         BookkeeperProtocol.Response.Builder response = BookkeeperProtocol.Response.newBuilder();
@@ -698,33 +728,49 @@ public class BookieRequestProcessor implements RequestProcessor {
         // gets executed as fast as possible, so bypass the normal readThreadPool
         // and execute in highPriorityThreadPool
         final OrderedExecutor threadPool;
+        boolean scheduled = false;
+        if (threadPerCore && !r.isHighPriority() && !r.isFencing()
+                && !(r instanceof BookieProtocol.BatchedReadRequest) && read.tryReadFromCache()) {
+            // The entry was in the caches, only the reads from the disk are handed off to the read thread pool
+            return;
+        }
         if (r.isHighPriority() || r.isFencing()) {
             threadPool = highPriorityThreadPool;
         } else {
             threadPool = readThreadPool;
+            scheduled = readRequestScheduler != null;
         }
 
         if (null == threadPool) {
             read.run();
         } else {
             try {
-                threadPool.executeOrdered(r.getLedgerId(), read);
-            } catch (RejectedExecutionException e) {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
-                            r.entryId);
+                if (scheduled) {
+                    readRequestScheduler.schedule(ReadTrafficClass.fromFlags(r.getFlags()), r.getLedgerId(), read,
+                            () -> rejectReadRequest(r, read));
+                } else {
+                    threadPool.executeOrdered(r.getLedgerId(), read);
                 }
-                getRequestStats().getReadEntryRejectedCounter().inc();
-                read.sendResponse(
-                    BookieProtocol.ETOOMANYREQUESTS,
-                    ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
-                    requestStats.getReadRequestStats());
-                onReadRequestFinish();
-                read.recycle();
+            } catch (RejectedExecutionException e) {
+                rejectReadRequest(r, read);
             }
         }
     }
 
+    private void rejectReadRequest(final BookieProtocol.ReadRequest r, final ReadEntryProcessor read) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Failed to process request to read entry at {}:{}. Too many pending requests", r.ledgerId,
+                    r.entryId);
+        }
+        getRequestStats().getReadEntryRejectedCounter().inc();
+        read.sendResponse(
+            BookieProtocol.ETOOMANYREQUESTS,
+            ResponseBuilder.buildErrorResponse(BookieProtocol.ETOOMANYREQUESTS, r),
+            requestStats.getReadRequestStats());
+        onReadRequestFinish();
+        read.recycle();
+    }
+
     public long getWaitTimeoutOnBackpressureMillis() {
         return waitTimeoutOnBackpressureMillis;
     }
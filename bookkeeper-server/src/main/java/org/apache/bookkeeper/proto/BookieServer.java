@@ -105,6 +105,9 @@ public class BookieServer {
         this.requestProcessor = new BookieRequestProcessor(conf, bookie,
                 statsLogger.scope(SERVER_SCOPE), shFactory, allocator, nettyServer.allChannels);
         this.nettyServer.setRequestProcessor(this.requestProcessor);
+        if (conf.isTenantQuotaEnabled()) {
+            this.nettyServer.setTenantQuotaManager(new TenantQuotaManager(conf, statsLogger.scope(SERVER_SCOPE)));
+        }
     }
 
     @VisibleForTesting
@@ -0,0 +1,337 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.proto;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Registry of the in-flight operations of a channel, keyed on primitive keys.
+ *
+ * <p>An operation is identified by two longs and a key type, eg: the ledger and entry ids and the operation type for
+ * the v2 protocol, or the transaction id and the operation type for the v3 protocol. The registered values hold their
+ * own key, so that registering an operation doesn't allocate. Several values can be registered with the same key
+ * (duplicate v2 reads), a lookup returns any of them. Values are only looked up by key: a value object can be
+ * recycled and registered again under another key while a stale reference to it is still held.
+ *
+ * <p>The registry is split in segments, each with its own lock. Each segment keeps its values in an open addressing
+ * table, and in a hashed timer wheel by deadline, so that the timed out operations are found without going through
+ * all the in-flight operations.
+ */
+class CompletionRegistry<V extends CompletionRegistry.Node> {
+
+    private static final int DEFAULT_SEGMENTS = 16;
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+    private static final int WHEEL_SIZE = 1024;
+    private static final long DEFAULT_TICK_NANOS = 10_000_000L;
+
+    /**
+     * A value that can be registered in the registry.
+     */
+    abstract static class Node {
+        private long key1;
+        private long key2;
+        private int keyType;
+        private int hash;
+        private long deadlineTick;
+        private Node prevInBucket;
+        private Node nextInBucket;
+
+        private boolean matches(long key1, long key2, int keyType) {
+            return this.key1 == key1 && this.key2 == key2 && this.keyType == keyType;
+        }
+    }
+
+    private final Segment[] segments;
+    private final long tickNanos;
+
+    CompletionRegistry(long nowNanos) {
+        this(DEFAULT_SEGMENTS, DEFAULT_TICK_NANOS, nowNanos);
+    }
+
+    CompletionRegistry(int numSegments, long tickNanos, long nowNanos) {
+        checkArgument(Integer.bitCount(numSegments) == 1, "Number of segments must be a power of 2");
+        checkArgument(tickNanos > 0, "Tick duration must be positive");
+        this.tickNanos = tickNanos;
+        this.segments = new Segment[numSegments];
+        long currentTick = Math.floorDiv(nowNanos, tickNanos);
+        for (int i = 0; i < numSegments; i++) {
+            segments[i] = new Segment(currentTick);
+        }
+    }
+
+    /**
+     * Register a value with the given key, it will be returned by {@link #removeExpired(long, Consumer)} once its
+     * deadline has passed.
+     */
+    void put(long key1, long key2, int keyType, V value, long deadlineNanos) {
+        Node node = value;
+        int hash = hash(key1, key2, keyType);
+        node.key1 = key1;
+        node.key2 = key2;
+        node.keyType = keyType;
+        node.hash = hash;
+        // Round up, so that a value is only expired after its deadline
+        node.deadlineTick = Math.floorDiv(deadlineNanos - 1, tickNanos) + 1;
+        segmentFor(hash).put(node);
+    }
+
+    /**
+     * @return any value registered with the key, or null
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key1, long key2, int keyType) {
+        int hash = hash(key1, key2, keyType);
+        return (V) segmentFor(hash).get(key1, key2, keyType, hash, false);
+    }
+
+    /**
+     * Unregister any value registered with the key.
+     *
+     * @return the unregistered value, or null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key1, long key2, int keyType) {
+        int hash = hash(key1, key2, keyType);
+        return (V) segmentFor(hash).get(key1, key2, keyType, hash, true);
+    }
+
+    /**
+     * Unregister the values whose deadline has passed and pass them to the consumer, out of the segment locks.
+     *
+     * @return the number of expired values
+     */
+    @SuppressWarnings("unchecked")
+    int removeExpired(long nowNanos, Consumer<V> expiredConsumer) {
+        long currentTick = Math.floorDiv(nowNanos, tickNanos);
+        int expired = 0;
+        List<Node> expiredValues = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.removeExpired(currentTick, expiredValues);
+            expired += expiredValues.size();
+            for (Node value : expiredValues) {
+                expiredConsumer.accept((V) value);
+            }
+            expiredValues.clear();
+        }
+        return expired;
+    }
+
+    /**
+     * Unregister all the values and pass them to the consumer, out of the segment locks.
+     */
+    @SuppressWarnings("unchecked")
+    void removeAll(Consumer<V> consumer) {
+        List<Node> values = new ArrayList<>();
+        for (Segment segment : segments) {
+            segment.removeAll(values);
+            for (Node value : values) {
+                consumer.accept((V) value);
+            }
+            values.clear();
+        }
+    }
+
+    long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    private Segment segmentFor(int hash) {
+        // The low bits of the hash are used for the position in the segment table
+        return segments[(hash >>> 24) & (segments.length - 1)];
+    }
+
+    private static int hash(long key1, long key2, int keyType) {
+        long h = (key1 * 0x9E3779B97F4A7C15L) ^ (key2 * 0xC2B2AE3D27D4EB4FL) ^ keyType;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        return (int) h;
+    }
+
+    private static final class Segment {
+        private Node[] table = new Node[INITIAL_SEGMENT_CAPACITY];
+        private final Node[] wheel = new Node[WHEEL_SIZE];
+        private long lastExpiredTick;
+        private volatile int size;
+
+        Segment(long currentTick) {
+            this.lastExpiredTick = currentTick;
+        }
+
+        synchronized void put(Node node) {
+            if (node.deadlineTick <= lastExpiredTick) {
+                // The bucket of the deadline was already expired
+                node.deadlineTick = lastExpiredTick + 1;
+            }
+            if (size + 1 > table.length / 2) {
+                rehash(table.length * 2);
+            }
+            insert(table, node);
+            addToWheel(node);
+            size = size + 1;
+        }
+
+        synchronized Node get(long key1, long key2, int keyType, int hash, boolean remove) {
+            int mask = table.length - 1;
+            for (int i = hash & mask; table[i] != null; i = (i + 1) & mask) {
+                Node node = table[i];
+                if (node.matches(key1, key2, keyType)) {
+                    if (remove) {
+                        removeAt(i);
+                    }
+                    return node;
+                }
+            }
+            return null;
+        }
+
+        private boolean remove(Node node) {
+            int index = indexOf(node);
+            if (index < 0) {
+                return false;
+            }
+            removeAt(index);
+            return true;
+        }
+
+        private int indexOf(Node node) {
+            int mask = table.length - 1;
+            for (int i = node.hash & mask; table[i] != null; i = (i + 1) & mask) {
+                if (table[i] == node) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        synchronized void removeExpired(long currentTick, List<Node> expired) {
+            long ticks = currentTick - lastExpiredTick;
+            if (ticks <= 0) {
+                return;
+            }
+            int bucketsToCheck = (int) Math.min(ticks, WHEEL_SIZE);
+            for (int t = 1; t <= bucketsToCheck; t++) {
+                int bucket = (int) ((lastExpiredTick + t) & (WHEEL_SIZE - 1));
+                Node node = wheel[bucket];
+                while (node != null) {
+                    Node next = node.nextInBucket;
+                    // Values in the same bucket can be due in a later round of the wheel
+                    if (node.deadlineTick <= currentTick) {
+                        remove(node);
+                        expired.add(node);
+                    }
+                    node = next;
+                }
+            }
+            lastExpiredTick = currentTick;
+        }
+
+        synchronized void removeAll(List<Node> values) {
+            for (Node node : table) {
+                if (node != null) {
+                    node.prevInBucket = null;
+                    node.nextInBucket = null;
+                    values.add(node);
+                }
+            }
+            table = new Node[INITIAL_SEGMENT_CAPACITY];
+            for (int i = 0; i < wheel.length; i++) {
+                wheel[i] = null;
+            }
+            size = 0;
+        }
+
+        private void removeAt(int index) {
+            Node removed = table[index];
+            removeFromWheel(removed);
+            size = size - 1;
+
+            // Shift back the following entries of the cluster, so that lookups don't stop at the free slot
+            int mask = table.length - 1;
+            int free = index;
+            for (int i = (index + 1) & mask; table[i] != null; i = (i + 1) & mask) {
+                int home = table[i].hash & mask;
+                boolean canMove = free <= i ? (home <= free || home > i) : (home <= free && home > i);
+                if (canMove) {
+                    table[free] = table[i];
+                    free = i;
+                }
+            }
+            table[free] = null;
+
+            if (table.length > INITIAL_SEGMENT_CAPACITY && size < table.length / 8) {
+                rehash(table.length / 2);
+            }
+        }
+
+        private void rehash(int capacity) {
+            Node[] newTable = new Node[capacity];
+            for (Node node : table) {
+                if (node != null) {
+                    insert(newTable, node);
+                }
+            }
+            table = newTable;
+        }
+
+        private void insert(Node[] table, Node node) {
+            int mask = table.length - 1;
+            int i = node.hash & mask;
+            while (table[i] != null) {
+                i = (i + 1) & mask;
+            }
+            table[i] = node;
+        }
+
+        private void addToWheel(Node node) {
+            int bucket = (int) (node.deadlineTick & (WHEEL_SIZE - 1));
+            Node head = wheel[bucket];
+            node.prevInBucket = null;
+            node.nextInBucket = head;
+            if (head != null) {
+                head.prevInBucket = node;
+            }
+            wheel[bucket] = node;
+        }
+
+        private void removeFromWheel(Node node) {
+            if (node.prevInBucket != null) {
+                node.prevInBucket.nextInBucket = node.nextInBucket;
+            } else {
+                wheel[(int) (node.deadlineTick & (WHEEL_SIZE - 1))] = node.nextInBucket;
+            }
+            if (node.nextInBucket != null) {
+                node.nextInBucket.prevInBucket = node.prevInBucket;
+            }
+            node.prevInBucket = null;
+            node.nextInBucket = null;
+        }
+    }
+}
@@ -76,10 +76,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
@@ -87,7 +87,6 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.function.BiPredicate;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLPeerUnverifiedException;
 import lombok.SneakyThrows;
@@ -145,8 +144,6 @@ import org.apache.bookkeeper.tls.SecurityHandlerFactory.NodeType;
 import org.apache.bookkeeper.util.AvailabilityOfEntriesOfLedger;
 import org.apache.bookkeeper.util.ByteBufList;
 import org.apache.bookkeeper.util.StringUtils;
-import org.apache.bookkeeper.util.collections.ConcurrentOpenHashMap;
-import org.apache.bookkeeper.util.collections.SynchronizedHashMultiMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
@@ -176,6 +173,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private static final int DEFAULT_HIGH_PRIORITY_VALUE = 100; // We may add finer grained priority later.
     private static final AtomicLong txnIdGenerator = new AtomicLong(0);
     static final String CONSOLIDATION_HANDLER_NAME = "consolidation";
+    // Channels written by the current thread and not flushed yet, null when the flushes are not deferred
+    private static final ThreadLocal<Set<Channel>> deferredFlushChannels = new ThreadLocal<>();
 
     final BookieId bookieId;
     final BookieAddressResolver bookieAddressResolver;
@@ -188,13 +187,10 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     final long getBookieInfoTimeoutNanos;
     final int startTLSTimeout;
 
-    private final ConcurrentOpenHashMap<CompletionKey, CompletionValue> completionObjects =
-            ConcurrentOpenHashMap.<CompletionKey, CompletionValue>newBuilder().autoShrink(true).build();
-
-    // Map that hold duplicated read requests. The idea is to only use this map (synchronized) when there is a duplicate
-    // read request for the same ledgerId/entryId
-    private final SynchronizedHashMultiMap<CompletionKey, CompletionValue> completionObjectsV2Conflicts =
-        new SynchronizedHashMultiMap<>();
+    // In-flight operations, keyed by ledgerId/entryId for the v2 requests and by txnId for the v3 requests. Duplicate
+    // v2 read requests for the same ledgerId/entryId are registered under the same key
+    private final CompletionRegistry<CompletionValue> completionObjects =
+            new CompletionRegistry<>(MathUtils.nowInNano());
 
     private final StatsLogger statsLogger;
     @StatsDoc(
@@ -295,6 +291,17 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         help = "channel stats for all operations flowing through netty pipeline"
     )
     private final OpStatsLogger nettyOpLogger;
+    @StatsDoc(
+        name = BookKeeperClientStats.NETTY_FLUSHES,
+        help = "the number of flushes of the channels, when the adaptive flush consolidation is enabled"
+    )
+    private final Counter flushCounter;
+    @StatsDoc(
+        name = BookKeeperClientStats.NETTY_REQUESTS_PER_FLUSH,
+        help = "the number of requests written to the socket per flush, when the adaptive flush consolidation"
+            + " is enabled, its inverse is the number of write syscalls per request"
+    )
+    private final OpStatsLogger requestsPerFlushLogger;
     @StatsDoc(
         name = BookKeeperClientStats.ACTIVE_NON_TLS_CHANNEL_COUNTER,
         help = "the number of active non-tls channels"
@@ -439,6 +446,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         addEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.ADD_OP_OUTSTANDING);
         readEntryOutstanding = statsLogger.getCounter(BookKeeperClientStats.READ_OP_OUTSTANDING);
         nettyOpLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.NETTY_OPS);
+        flushCounter = statsLogger.getCounter(BookKeeperClientStats.NETTY_FLUSHES);
+        requestsPerFlushLogger = statsLogger.getOpStatsLogger(BookKeeperClientStats.NETTY_REQUESTS_PER_FLUSH);
         activeNonTlsChannelCounter = statsLogger.getCounter(BookKeeperClientStats.ACTIVE_NON_TLS_CHANNEL_COUNTER);
         activeTlsChannelCounter = statsLogger.getCounter(BookKeeperClientStats.ACTIVE_TLS_CHANNEL_COUNTER);
         failedConnectionCounter = statsLogger.getCounter(BookKeeperClientStats.FAILED_CONNECTION_COUNTER);
@@ -596,7 +605,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             @Override
             protected void initChannel(Channel ch) throws Exception {
                 ChannelPipeline pipeline = ch.pipeline();
-                pipeline.addLast(CONSOLIDATION_HANDLER_NAME, new FlushConsolidationHandler(1024, true));
+                if (conf.getClientFlushMaxDelayMicros() > 0) {
+                    pipeline.addLast(CONSOLIDATION_HANDLER_NAME, new AdaptiveFlushConsolidationHandler(
+                            conf.getClientFlushMaxDelayMicros(), conf.getClientFlushMaxBytes(), flushCounter,
+                            requestsPerFlushLogger));
+                } else {
+                    pipeline.addLast(CONSOLIDATION_HANDLER_NAME, new FlushConsolidationHandler(1024, true));
+                }
                 pipeline.addLast("bytebufList", ByteBufList.ENCODER);
                 pipeline.addLast("lengthbasedframedecoder",
                         new LengthFieldBasedFrameDecoder(maxFrameSize, 0, 4, 0, 4));
@@ -689,12 +704,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void writeLac(final long ledgerId, final byte[] masterKey, final long lac, ByteBufList toSend, WriteLacCallback cb,
             Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.WRITE_LAC);
-        // writeLac is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new WriteLacCompletion(completionKey, cb,
-                                                     ctx, ledgerId));
+        final CompletionValue completion = new WriteLacCompletion(cb, ctx, ledgerId);
+        putTxnCompletion(txnId, OperationType.WRITE_LAC, completion);
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -715,8 +726,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setWriteLacRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, writeLacRequest, false, cleanupActionFailedBeforeWrite,
-                cleanupActionAfterWrite);
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.WRITE_LAC), writeLacRequest, false,
+                cleanupActionFailedBeforeWrite, cleanupActionAfterWrite);
     }
 
     void forceLedger(final long ledgerId, ForceLedgerCallback cb, Object ctx) {
@@ -728,12 +739,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 return;
         }
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId,
-                                                                OperationType.FORCE_LEDGER);
-        // force is mostly like addEntry hence uses addEntryTimeout
-        completionObjects.put(completionKey,
-                              new ForceLedgerCompletion(completionKey, cb,
-                                                     ctx, ledgerId));
+        final CompletionValue completion = new ForceLedgerCompletion(cb, ctx, ledgerId);
+        putTxnCompletion(txnId, OperationType.FORCE_LEDGER, completion);
 
         // Build the request
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -747,7 +754,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setHeader(headerBuilder)
                 .setForceLedgerRequest(writeLacBuilder)
                 .build();
-        writeAndFlush(channel, completionKey, forceLedgerRequest);
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.FORCE_LEDGER), forceLedgerRequest);
     }
 
     /**
@@ -774,7 +781,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     void addEntry(final long ledgerId, byte[] masterKey, final long entryId, ReferenceCounted toSend, WriteCallback cb,
                   Object ctx, final int options, boolean allowFastFail, final EnumSet<WriteFlag> writeFlags) {
         Object request = null;
-        CompletionKey completionKey = null;
+        long txnId = -1;
         Runnable cleanupActionFailedBeforeWrite = null;
         Runnable cleanupActionAfterWrite = null;
         if (useV2WireProtocol) {
@@ -783,7 +790,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 cb.writeComplete(BKException.Code.IllegalOpException, ledgerId, entryId, bookieId, ctx);
                 return;
             }
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.ADD_ENTRY);
 
             if (toSend instanceof ByteBuf) {
                 ByteBuf byteBuf = ((ByteBuf) toSend).retainedDuplicate();
@@ -796,8 +802,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 cleanupActionFailedBeforeWrite = byteBufList::release;
             }
         } else {
-            final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.ADD_ENTRY);
+            txnId = getTxnId();
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -834,24 +839,30 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        putCompletionKeyValue(completionKey,
-                              acquireAddCompletion(completionKey,
-                                                   cb, ctx, ledgerId, entryId));
+        AddCompletion completion = acquireAddCompletion(cb, ctx, ledgerId, entryId);
         // addEntry times out on backpressure
-        writeAndFlush(channel, completionKey, request, allowFastFail, cleanupActionFailedBeforeWrite,
-                cleanupActionAfterWrite);
+        if (useV2WireProtocol) {
+            putV2Completion(ledgerId, entryId, OperationType.ADD_ENTRY, completion);
+            writeAndFlush(channel, ledgerId, entryId, v2KeyType(OperationType.ADD_ENTRY), request, allowFastFail,
+                    cleanupActionFailedBeforeWrite, cleanupActionAfterWrite);
+        } else {
+            putTxnCompletion(txnId, OperationType.ADD_ENTRY, completion);
+            writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.ADD_ENTRY), request, allowFastFail,
+                    cleanupActionFailedBeforeWrite, cleanupActionAfterWrite);
+        }
     }
 
     public void readLac(final long ledgerId, ReadLacCallback cb, Object ctx) {
         Object request = null;
-        CompletionKey completionKey = null;
+        final CompletionValue completion = new ReadLacCompletion(cb, ctx, ledgerId);
         if (useV2WireProtocol) {
             request = BookieProtocol.ReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                                                      ledgerId, 0, (short) 0, null);
-            completionKey = acquireV2Key(ledgerId, 0, OperationType.READ_LAC);
+            putV2Completion(ledgerId, 0, OperationType.READ_LAC, completion);
+            writeAndFlush(channel, ledgerId, 0L, v2KeyType(OperationType.READ_LAC), request);
         } else {
             final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_LAC);
+            putTxnCompletion(txnId, OperationType.READ_LAC, completion);
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -864,17 +875,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .setHeader(headerBuilder)
                     .setReadLacRequest(readLacBuilder)
                     .build();
+            writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.READ_LAC), request);
         }
-        putCompletionKeyValue(completionKey,
-                              new ReadLacCompletion(completionKey, cb,
-                                                    ctx, ledgerId));
-        writeAndFlush(channel, completionKey, request);
     }
 
     public void getListOfEntriesOfLedger(final long ledgerId, GetListOfEntriesOfLedgerCallback cb) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER);
-        completionObjects.put(completionKey, new GetListOfEntriesOfLedgerCompletion(completionKey, cb, ledgerId));
+        final CompletionValue completion = new GetListOfEntriesOfLedgerCompletion(cb, ledgerId);
+        putTxnCompletion(txnId, OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER, completion);
 
         // Build the request.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder().setVersion(ProtocolVersion.VERSION_THREE)
@@ -886,7 +894,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         final Request getListOfEntriesOfLedgerRequest = Request.newBuilder().setHeader(headerBuilder)
                 .setGetListOfEntriesOfLedgerRequest(getListOfEntriesOfLedgerRequestBuilder).build();
 
-        writeAndFlush(channel, completionKey, getListOfEntriesOfLedgerRequest);
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.GET_LIST_OF_ENTRIES_OF_LEDGER),
+                getListOfEntriesOfLedgerRequest);
     }
 
     /**
@@ -928,14 +937,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                    byte[] masterKey,
                                    boolean allowFastFail) {
         Object request = null;
-        CompletionKey completionKey = null;
+        long txnId = -1;
         if (useV2WireProtocol) {
             request = BookieProtocol.ReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, entryId, (short) flags, masterKey);
-            completionKey = acquireV2Key(ledgerId, entryId, OperationType.READ_ENTRY);
         } else {
-            final long txnId = getTxnId();
-            completionKey = new TxnCompletionKey(txnId, OperationType.READ_ENTRY);
+            txnId = getTxnId();
 
             // Build the request and calculate the total size to be included in the packet.
             BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -945,6 +952,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             if (((short) flags & BookieProtocol.FLAG_HIGH_PRIORITY) == BookieProtocol.FLAG_HIGH_PRIORITY) {
                 headerBuilder.setPriority(DEFAULT_HIGH_PRIORITY_VALUE);
             }
+            if ((flags & BookieProtocol.FLAG_TRAFFIC_CLASS_MASK) != 0) {
+                headerBuilder.setTrafficClass(ReadTrafficClass.fromFlags(flags).toProtocol());
+            }
 
             ReadRequest.Builder readBuilder = ReadRequest.newBuilder()
                     .setLedgerId(ledgerId)
@@ -991,10 +1001,16 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     .build();
         }
 
-        ReadCompletion readCompletion = new ReadCompletion(completionKey, cb, ctx, ledgerId, entryId);
-        putCompletionKeyValue(completionKey, readCompletion);
-
-        writeAndFlush(channel, completionKey, request, allowFastFail, null, null);
+        ReadCompletion readCompletion = new ReadCompletion(cb, ctx, ledgerId, entryId);
+        if (useV2WireProtocol) {
+            putV2Completion(ledgerId, entryId, OperationType.READ_ENTRY, readCompletion);
+            writeAndFlush(channel, ledgerId, entryId, v2KeyType(OperationType.READ_ENTRY), request, allowFastFail,
+                    null, null);
+        } else {
+            putTxnCompletion(txnId, OperationType.READ_ENTRY, readCompletion);
+            writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.READ_ENTRY), request, allowFastFail,
+                    null, null);
+        }
     }
 
     public void batchReadEntries(final long ledgerId,
@@ -1024,28 +1040,24 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                      byte[] masterKey,
                                      boolean allowFastFail) {
         Object request;
-        CompletionKey completionKey;
         final long txnId = getTxnId();
         if (useV2WireProtocol) {
             request = BookieProtocol.BatchedReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION,
                     ledgerId, startEntryId, (short) flags, masterKey, txnId, maxCount, maxSize);
-            completionKey = new TxnCompletionKey(txnId, OperationType.BATCH_READ_ENTRY);
         } else {
             throw new UnsupportedOperationException("Unsupported batch read entry operation for v3 protocol.");
         }
-        BatchedReadCompletion readCompletion = new BatchedReadCompletion(
-                completionKey, cb, ctx, ledgerId, startEntryId);
-        putCompletionKeyValue(completionKey, readCompletion);
+        BatchedReadCompletion readCompletion = new BatchedReadCompletion(cb, ctx, ledgerId, startEntryId);
+        putTxnCompletion(txnId, OperationType.BATCH_READ_ENTRY, readCompletion);
 
-        writeAndFlush(channel, completionKey, request, allowFastFail, null, null);
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.BATCH_READ_ENTRY), request, allowFastFail,
+                null, null);
     }
 
     public void getBookieInfo(final long requested, GetBookieInfoCallback cb, Object ctx) {
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.GET_BOOKIE_INFO);
-        completionObjects.put(completionKey,
-                              new GetBookieInfoCompletion(
-                                      completionKey, cb, ctx));
+        final CompletionValue completion = new GetBookieInfoCompletion(cb, ctx);
+        putTxnCompletion(txnId, OperationType.GET_BOOKIE_INFO, completion);
 
         // Build the request and calculate the total size to be included in the packet.
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
@@ -1061,17 +1073,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 .setGetBookieInfoRequest(getBookieInfoBuilder)
                 .build();
 
-        writeAndFlush(channel, completionKey, getBookieInfoRequest);
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.GET_BOOKIE_INFO), getBookieInfoRequest);
     }
 
-    private static final BiPredicate<CompletionKey, CompletionValue> timeoutCheck = (key, value) -> {
-        return value.maybeTimeout();
-    };
-
     public void checkTimeoutOnPendingOperations() {
-        int timedOutOperations = completionObjects.removeIf(timeoutCheck);
-
-        timedOutOperations += completionObjectsV2Conflicts.removeIf(timeoutCheck);
+        int timedOutOperations = completionObjects.removeExpired(MathUtils.nowInNano(), CompletionValue::timeout);
 
         if (timedOutOperations > 0) {
             LOG.info("Timed-out {} operations to channel {} for {}",
@@ -1157,19 +1163,24 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     }
 
     private void writeAndFlush(final Channel channel,
-                               final CompletionKey key,
+                               final long key1, final long key2, final int keyType,
                                final Object request) {
-        writeAndFlush(channel, key, request, false, null, null);
+        writeAndFlush(channel, key1, key2, keyType, request, false, null, null);
     }
 
+    /**
+     * Write the request of the completion registered under the given key. The completion is always looked up
+     * again by its key, never by its identity, since a recycled completion object may already be registered
+     * for another request by the time the write completes.
+     */
     private void writeAndFlush(final Channel channel,
-                           final CompletionKey key,
-                           final Object request,
+                               final long key1, final long key2, final int keyType,
+                               final Object request,
                                final boolean allowFastFail, final Runnable cleanupActionFailedBeforeWrite,
                                final Runnable cleanupActionAfterWrite) {
         if (channel == null) {
             LOG.warn("Operation {} failed: channel == null", StringUtils.requestToString(request));
-            errorOut(key);
+            errorOut(key1, key2, keyType);
             if (cleanupActionFailedBeforeWrite != null) {
                 cleanupActionFailedBeforeWrite.run();
             }
@@ -1186,7 +1197,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             LOG.warn("Operation {} failed: TooManyRequestsException",
                     StringUtils.requestToString(request));
 
-            errorOut(key, BKException.Code.TooManyRequestsException);
+            errorOut(key1, key2, keyType, BKException.Code.TooManyRequestsException);
             if (cleanupActionFailedBeforeWrite != null) {
                 cleanupActionFailedBeforeWrite.run();
             }
@@ -1200,7 +1211,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 try {
                     if (future.isSuccess()) {
                         nettyOpLogger.registerSuccessfulEvent(MathUtils.elapsedNanos(startTime), TimeUnit.NANOSECONDS);
-                        CompletionValue completion = completionObjects.get(key);
+                        CompletionValue completion = completionObjects.get(key1, key2, keyType);
                         if (completion != null) {
                             completion.setOutstanding();
                         }
@@ -1213,39 +1224,61 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     }
                 }
             });
-            channel.writeAndFlush(request, promise);
+            Set<Channel> deferredFlushes = deferredFlushChannels.get();
+            if (deferredFlushes != null) {
+                channel.write(request, promise);
+                deferredFlushes.add(channel);
+            } else {
+                channel.writeAndFlush(request, promise);
+            }
         } catch (Throwable e) {
             LOG.warn("Operation {} failed", StringUtils.requestToString(request), e);
-            errorOut(key);
+            errorOut(key1, key2, keyType);
             if (cleanupActionFailedBeforeWrite != null) {
                 cleanupActionFailedBeforeWrite.run();
             }
         }
     }
 
-    void errorOut(final CompletionKey key) {
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
+    /**
+     * Defer the flushes of the requests written by the current thread, until {@link #flushDeferred()}.
+     */
+    static void deferFlushes() {
+        if (deferredFlushChannels.get() == null) {
+            deferredFlushChannels.set(new LinkedHashSet<>());
+        }
+    }
+
+    /**
+     * Flush the channels written by the current thread since {@link #deferFlushes()}.
+     */
+    static void flushDeferred() {
+        Set<Channel> channels = deferredFlushChannels.get();
+        if (channels != null) {
+            deferredFlushChannels.remove();
+            for (Channel channel : channels) {
+                channel.flush();
+            }
         }
-        CompletionValue completion = completionObjects.remove(key);
+    }
+
+    void errorOut(final long key1, final long key2, final int keyType) {
+        final CompletionValue completion = completionObjects.remove(key1, key2, keyType);
         if (completion != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Removing completion of ledger {}, entry {}", completion.ledgerId, completion.entryId);
+            }
             completion.errorOut();
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut());
         }
     }
 
-    void errorOut(final CompletionKey key, final int rc) {
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Removing completion key: {}", key);
-        }
-        CompletionValue completion = completionObjects.remove(key);
+    void errorOut(final long key1, final long key2, final int keyType, final int rc) {
+        final CompletionValue completion = completionObjects.remove(key1, key2, keyType);
         if (completion != null) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug("Removing completion of ledger {}, entry {}", completion.ledgerId, completion.entryId);
+            }
             completion.errorOut(rc);
-        } else {
-            // If there's no completion object here, try in the multimap
-            completionObjectsV2Conflicts.removeAny(key).ifPresent(c -> c.errorOut(rc));
         }
     }
 
@@ -1274,14 +1307,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     void errorOutOutstandingEntries(int rc) {
-        Optional<CompletionKey> multikey = completionObjectsV2Conflicts.getAnyKey();
-        while (multikey.isPresent()) {
-            multikey.ifPresent(k -> errorOut(k, rc));
-            multikey = completionObjectsV2Conflicts.getAnyKey();
-        }
-        for (CompletionKey key : completionObjects.keys()) {
-            errorOut(key, rc);
-        }
+        completionObjects.removeAll(completion -> completion.errorOut(rc));
     }
 
     void recordError() {
@@ -1404,14 +1430,14 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         OperationType operationType = getOperationType(response.getOpCode());
         StatusCode status = getStatusCodeFromErrorCode(response.errorCode);
 
-        CompletionKey key;
+        CompletionValue completionValue;
         if (OperationType.BATCH_READ_ENTRY == operationType) {
-            key = new TxnCompletionKey(((BookieProtocol.BatchedReadResponse) response).getRequestId(), operationType);
+            completionValue = completionObjects.remove(((BookieProtocol.BatchedReadResponse) response).getRequestId(),
+                    0, txnKeyType(operationType));
         } else {
-            key = acquireV2Key(response.ledgerId, response.entryId, operationType);
+            completionValue = completionObjects.remove(response.ledgerId, response.entryId,
+                    v2KeyType(operationType));
         }
-        CompletionValue completionValue = getCompletionValue(key);
-        key.release();
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1528,8 +1554,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     private void readV3Response(final Response response) {
         final BKPacketHeader header = response.getHeader();
 
-        final CompletionKey key = newCompletionKey(header.getTxnId(), header.getOperation());
-        final CompletionValue completionValue = completionObjects.get(key);
+        final CompletionValue completionValue = completionObjects.remove(header.getTxnId(), 0,
+                txnKeyType(header.getOperation()));
 
         if (null == completionValue) {
             // Unexpected response, so log it. The txnId should have been present.
@@ -1554,8 +1580,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                 }
             });
         }
-
-        completionObjects.remove(key);
     }
 
     void initTLSHandshake() {
@@ -1657,7 +1681,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
      */
 
     // visible for testing
-    abstract class CompletionValue {
+    abstract class CompletionValue extends CompletionRegistry.Node {
         private final OpStatsLogger opLogger;
         private final OpStatsLogger timeoutOpLogger;
         private final String operationName;
@@ -1699,13 +1723,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         }
 
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= readEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return readEntryTimeoutNanos;
         }
 
         void timeout() {
@@ -1773,8 +1792,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class WriteLacCompletion extends CompletionValue {
         final WriteLacCallback cb;
 
-        public WriteLacCompletion(final CompletionKey key,
-                                  final WriteLacCallback originalCallback,
+        public WriteLacCompletion(final WriteLacCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("WriteLAC",
@@ -1788,7 +1806,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.writeLacComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1822,8 +1839,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ForceLedgerCompletion extends CompletionValue {
         final ForceLedgerCallback cb;
 
-        public ForceLedgerCompletion(final CompletionKey key,
-                                  final ForceLedgerCallback originalCallback,
+        public ForceLedgerCompletion(final ForceLedgerCallback originalCallback,
                                   final Object originalCtx,
                                   final long ledgerId) {
             super("ForceLedger",
@@ -1837,7 +1853,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.forceLedgerComplete(rc, ledgerId,
                                                           addr, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -1872,8 +1887,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadLacCompletion extends CompletionValue {
         final ReadLacCallback cb;
 
-        public ReadLacCompletion(final CompletionKey key,
-                                 ReadLacCallback originalCallback,
+        public ReadLacCompletion(ReadLacCallback originalCallback,
                                  final Object ctx, final long ledgerId) {
             super("ReadLAC", ctx, ledgerId, BookieProtocol.LAST_ADD_CONFIRMED,
                   readLacOpLogger, readLacTimeoutOpLogger);
@@ -1886,7 +1900,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         logOpResult(rc);
                         originalCallback.readLacComplete(
                                 rc, ledgerId, lacBuffer, lastEntryBuffer, ctx);
-                        key.release();
                     }
                 };
         }
@@ -1932,8 +1945,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class ReadCompletion extends CompletionValue {
         final ReadEntryCallback cb;
 
-        public ReadCompletion(final CompletionKey key,
-                              final ReadEntryCallback originalCallback,
+        public ReadCompletion(final ReadEntryCallback originalCallback,
                               final Object originalCtx,
                               long ledgerId, final long entryId) {
             super("Read", originalCtx, ledgerId, entryId,
@@ -1948,7 +1960,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         originalCallback.readEntryComplete(rc,
                                                            ledgerId, entryId,
                                                            buffer, originalCtx);
-                        key.release();
                     }
                 };
         }
@@ -2035,8 +2046,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
 
         final BatchedReadEntryCallback cb;
 
-        public BatchedReadCompletion(final CompletionKey key,
-                                     final BatchedReadEntryCallback originalCallback,
+        public BatchedReadCompletion(final BatchedReadEntryCallback originalCallback,
                                      final Object originalCtx,
                                      long ledgerId, final long entryId) {
             super("BatchedRead", originalCtx, ledgerId, entryId,
@@ -2053,7 +2063,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                     originalCallback.readEntriesComplete(rc,
                             ledgerId, entryId,
                             bufList, originalCtx);
-                    key.release();
                 }
             };
         }
@@ -2111,14 +2120,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class StartTLSCompletion extends CompletionValue {
         final StartTLSCallback cb;
 
-        public StartTLSCompletion(final CompletionKey key) {
+        public StartTLSCompletion() {
             super("StartTLS", null, -1, -1,
                   startTLSOpLogger, startTLSTimeoutOpLogger);
             this.cb = new StartTLSCallback() {
                 @Override
                 public void startTLSComplete(int rc, Object ctx) {
                     logOpResult(rc);
-                    key.release();
                 }
             };
         }
@@ -2163,8 +2171,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetBookieInfoCompletion extends CompletionValue {
         final GetBookieInfoCallback cb;
 
-        public GetBookieInfoCompletion(final CompletionKey key,
-                                       final GetBookieInfoCallback origCallback,
+        public GetBookieInfoCompletion(final GetBookieInfoCallback origCallback,
                                        final Object origCtx) {
             super("GetBookieInfo", origCtx, 0L, 0L,
                   getBookieInfoOpLogger, getBookieInfoTimeoutOpLogger);
@@ -2174,19 +2181,13 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                                   Object ctx) {
                     logOpResult(rc);
                     origCallback.getBookieInfoComplete(rc, bInfo, origCtx);
-                    key.release();
                 }
             };
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= getBookieInfoTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return getBookieInfoTimeoutNanos;
         }
 
         @Override
@@ -2223,8 +2224,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class GetListOfEntriesOfLedgerCompletion extends CompletionValue {
         final GetListOfEntriesOfLedgerCallback cb;
 
-        public GetListOfEntriesOfLedgerCompletion(final CompletionKey key,
-                final GetListOfEntriesOfLedgerCallback origCallback, final long ledgerId) {
+        public GetListOfEntriesOfLedgerCompletion(final GetListOfEntriesOfLedgerCallback origCallback,
+                                                  final long ledgerId) {
             super("GetListOfEntriesOfLedger", null, ledgerId, 0L, getListOfEntriesOfLedgerCompletionOpLogger,
                     getListOfEntriesOfLedgerCompletionTimeoutOpLogger);
             this.cb = new GetListOfEntriesOfLedgerCallback() {
@@ -2233,7 +2234,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                         AvailabilityOfEntriesOfLedger availabilityOfEntriesOfLedger) {
                     logOpResult(rc);
                     origCallback.getListOfEntriesOfLedgerComplete(rc, ledgerId, availabilityOfEntriesOfLedger);
-                    key.release();
                 }
             };
         }
@@ -2282,12 +2282,11 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             }
         };
 
-    AddCompletion acquireAddCompletion(final CompletionKey key,
-                                       final WriteCallback originalCallback,
+    AddCompletion acquireAddCompletion(final WriteCallback originalCallback,
                                        final Object originalCtx,
                                        final long ledgerId, final long entryId) {
         AddCompletion completion = addCompletionRecycler.get();
-        completion.reset(key, originalCallback, originalCtx, ledgerId, entryId);
+        completion.reset(originalCallback, originalCtx, ledgerId, entryId);
         return completion;
     }
 
@@ -2295,7 +2294,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
     class AddCompletion extends CompletionValue implements WriteCallback {
         final Recycler.Handle<AddCompletion> handle;
 
-        CompletionKey key = null;
         WriteCallback originalCallback = null;
 
         AddCompletion(Recycler.Handle<AddCompletion> handle) {
@@ -2303,11 +2301,9 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
             this.handle = handle;
         }
 
-        void reset(final CompletionKey key,
-                   final WriteCallback originalCallback,
+        void reset(final WriteCallback originalCallback,
                    final Object originalCtx,
                    final long ledgerId, final long entryId) {
-            this.key = key;
             this.originalCallback = originalCallback;
             this.ctx = originalCtx;
             this.ledgerId = ledgerId;
@@ -2321,18 +2317,12 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
                                   Object ctx) {
             logOpResult(rc);
             originalCallback.writeComplete(rc, ledgerId, entryId, addr, ctx);
-            key.release();
             handle.recycle(this);
         }
 
         @Override
-        boolean maybeTimeout() {
-            if (MathUtils.elapsedNanos(startTime) >= addEntryTimeoutNanos) {
-                timeout();
-                return true;
-            } else {
-                return false;
-            }
+        long timeoutNanos() {
+            return addEntryTimeoutNanos;
         }
 
         @Override
@@ -2381,50 +2371,6 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    // visible for testing
-    CompletionKey newCompletionKey(long txnId, OperationType operationType) {
-        return new TxnCompletionKey(txnId, operationType);
-    }
-
-    class TxnCompletionKey extends CompletionKey {
-        final long txnId;
-
-        public TxnCompletionKey(long txnId, OperationType operationType) {
-            super(operationType);
-            this.txnId = txnId;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (!(obj instanceof TxnCompletionKey)) {
-                return false;
-            }
-            TxnCompletionKey that = (TxnCompletionKey) obj;
-            return this.txnId == that.txnId && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return ((int) txnId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("TxnId(%d), OperationType(%s)", txnId, operationType);
-        }
-
-    }
-
-    abstract class CompletionKey {
-        OperationType operationType;
-
-        CompletionKey(OperationType operationType) {
-            this.operationType = operationType;
-        }
-
-        public void release() {}
-    }
-
     /**
      * Note : Helper functions follow
      */
@@ -2458,83 +2404,25 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         }
     }
 
-    private void putCompletionKeyValue(CompletionKey key, CompletionValue value) {
-        CompletionValue existingValue = completionObjects.putIfAbsent(key, value);
-        if (existingValue != null) { // will only happen for V2 keys, as V3 have unique txnid
-            // There's a pending read request on same ledger/entry. Use the multimap to track all of them
-            completionObjectsV2Conflicts.put(key, value);
-        }
+    private static int v2KeyType(OperationType operationType) {
+        return operationType.getNumber() << 1;
     }
 
-    private CompletionValue getCompletionValue(CompletionKey key) {
-        CompletionValue completionValue = completionObjects.remove(key);
-        if (completionValue == null) {
-            // If there's no completion object here, try in the multimap
-            completionValue = completionObjectsV2Conflicts.removeAny(key).orElse(null);
-        }
-        return completionValue;
+    private static int txnKeyType(OperationType operationType) {
+        return (operationType.getNumber() << 1) | 1;
     }
 
-    private long getTxnId() {
-        return txnIdGenerator.incrementAndGet();
+    private void putV2Completion(long ledgerId, long entryId, OperationType operationType, CompletionValue value) {
+        completionObjects.put(ledgerId, entryId, v2KeyType(operationType), value,
+                value.startTime + value.timeoutNanos());
     }
 
-    private final Recycler<EntryCompletionKey> v2KeyRecycler = new Recycler<EntryCompletionKey>() {
-            @Override
-            protected EntryCompletionKey newObject(
-                    Recycler.Handle<EntryCompletionKey> handle) {
-                return new EntryCompletionKey(handle);
-            }
-        };
-
-    EntryCompletionKey acquireV2Key(long ledgerId, long entryId,
-                             OperationType operationType) {
-        EntryCompletionKey key = v2KeyRecycler.get();
-        key.reset(ledgerId, entryId, operationType);
-        return key;
+    private void putTxnCompletion(long txnId, OperationType operationType, CompletionValue value) {
+        completionObjects.put(txnId, 0, txnKeyType(operationType), value, value.startTime + value.timeoutNanos());
     }
 
-    private class EntryCompletionKey extends CompletionKey {
-        private final Handle<EntryCompletionKey> recyclerHandle;
-        long ledgerId;
-        long entryId;
-
-        private EntryCompletionKey(Handle<EntryCompletionKey> handle) {
-            super(null);
-            this.recyclerHandle = handle;
-        }
-
-        void reset(long ledgerId, long entryId, OperationType operationType) {
-            this.ledgerId = ledgerId;
-            this.entryId = entryId;
-            this.operationType = operationType;
-        }
-
-        @Override
-        public boolean equals(Object object) {
-            if (!(object instanceof EntryCompletionKey)) {
-                return  false;
-            }
-            EntryCompletionKey that = (EntryCompletionKey) object;
-            return this.entryId == that.entryId
-                && this.ledgerId == that.ledgerId
-                && this.operationType == that.operationType;
-        }
-
-        @Override
-        public int hashCode() {
-            return Long.hashCode(ledgerId) * 31 + Long.hashCode(entryId);
-        }
-
-        @Override
-        public String toString() {
-            return String.format("%d:%d %s", ledgerId, entryId, operationType);
-        }
-
-        @Override
-        public void release() {
-            recyclerHandle.recycle(this);
-        }
+    private long getTxnId() {
+        return txnIdGenerator.incrementAndGet();
     }
 
     Request.Builder withRequestContext(Request.Builder builder) {
@@ -2703,9 +2591,8 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         LOG.info("Initializing TLS to {}", channel);
         assert state == ConnectionState.CONNECTING;
         final long txnId = getTxnId();
-        final CompletionKey completionKey = new TxnCompletionKey(txnId, OperationType.START_TLS);
-        completionObjects.put(completionKey,
-                              new StartTLSCompletion(completionKey));
+        final CompletionValue completion = new StartTLSCompletion();
+        putTxnCompletion(txnId, OperationType.START_TLS, completion);
         BookkeeperProtocol.Request.Builder h = withRequestContext(BookkeeperProtocol.Request.newBuilder());
         BKPacketHeader.Builder headerBuilder = BKPacketHeader.newBuilder()
                 .setVersion(ProtocolVersion.VERSION_THREE)
@@ -2714,7 +2601,7 @@ public class PerChannelBookieClient extends ChannelInboundHandlerAdapter {
         h.setHeader(headerBuilder.build());
         h.setStartTLSRequest(BookkeeperProtocol.StartTLSRequest.newBuilder().build());
         state = ConnectionState.START_TLS;
-        writeAndFlush(channel, completionKey, h.build());
+        writeAndFlush(channel, txnId, 0L, txnKeyType(OperationType.START_TLS), h.build());
     }
 
     private void failTLS(int rc) {
@@ -128,7 +128,36 @@ class ReadEntryProcessor extends PacketProcessorBase<ReadRequest> {
     }
 
     protected ReferenceCounted readData() throws Exception {
-        return requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
+        ByteBuf data = requestProcessor.getBookie().readEntry(request.getLedgerId(), request.getEntryId());
+        ReadRequestScheduler.recordReadBytes(data.readableBytes());
+        return data;
+    }
+
+    /**
+     * Read the entry from the caches of the ledger storage and send the response, in the calling thread.
+     *
+     * @return true if the entry was in the caches and the response is sent, false if the read must be run
+     */
+    boolean tryReadFromCache() {
+        // Sending the response must not wait for the channel to be writable
+        if (!requestHandler.ctx().channel().isWritable() || !isVersionCompatible()) {
+            return false;
+        }
+        long startTimeNanos = MathUtils.nowInNano();
+        ByteBuf data;
+        try {
+            data = requestProcessor.getBookie().readEntryIfCached(request.getLedgerId(), request.getEntryId());
+        } catch (Throwable t) {
+            // The errors are reported by the read of the entry
+            return false;
+        }
+        if (data == null) {
+            return false;
+        }
+        requestProcessor.getRequestStats().getReadEntrySchedulingDelayStats()
+                .registerSuccessfulEvent(MathUtils.elapsedNanos(enqueueNanos), TimeUnit.NANOSECONDS);
+        sendResponse(data, BookieProtocol.EOK, startTimeNanos);
+        return true;
     }
 
     private void sendResponse(ReferenceCounted data, int errorCode, long startTimeNanos) {
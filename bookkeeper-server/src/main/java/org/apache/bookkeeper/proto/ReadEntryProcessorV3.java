@@ -171,6 +171,7 @@ class ReadEntryProcessorV3 extends PacketProcessorBaseV3 {
                                      Stopwatch startTimeSw)
         throws IOException, BookieException {
         ByteBuf entryBody = requestProcessor.getBookie().readEntry(ledgerId, entryId);
+        ReadRequestScheduler.recordReadBytes(entryBody.readableBytes());
         if (null != fenceResult) {
             handleReadResultForFenceRead(entryBody, readResponseBuilder, entryId, startTimeSw);
             return null;
@@ -0,0 +1,251 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_TRAFFIC_CLASS_IN_FLIGHT_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.READ_ENTRY_TRAFFIC_CLASS_QUEUE_DELAY;
+
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Gauge;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * Scheduler of the read requests by traffic class.
+ *
+ * <p>The reads are queued by traffic class, and dispatched to the read thread pool with start-time fair queuing:
+ * each read gets a virtual start tag, and the read with the smallest tag is dispatched first. The tags of a class
+ * grow with the estimated size of its reads divided by its weight, so that the classes get a share of the read
+ * bandwidth proportional to their weight when they are all busy, and an idle class doesn't accumulate credit.
+ *
+ * <p>The number of reads dispatched at once is limited, so that the reads wait in the queues of their class rather
+ * than in the queues of the read threads, and the bytes of the reads in progress of each class are limited, so that
+ * a class reading large entries can't take all the read threads.
+ */
+class ReadRequestScheduler {
+
+    // Weight of the size of the last read in the moving average of the size of the reads of a class
+    private static final double SIZE_ESTIMATE_WEIGHT = 0.125;
+    // Size of the reads assumed until the first reads of a class are done
+    private static final long INITIAL_SIZE_ESTIMATE = 4096;
+
+    // Scheduled read running in the current thread, to record the bytes it reads
+    private static final ThreadLocal<ScheduledRead> CURRENT_READ = new ThreadLocal<>();
+
+    private final OrderedExecutor readThreadPool;
+    private final ClassQueue[] queues;
+    private final long maxInFlightBytesPerClass;
+    private final int maxDispatchedReads;
+    private final int maxQueuedReadsPerClass;
+
+    private double virtualTime = 0;
+    private int dispatchedReads = 0;
+
+    ReadRequestScheduler(OrderedExecutor readThreadPool, ServerConfiguration conf, StatsLogger statsLogger) {
+        this.readThreadPool = readThreadPool;
+        this.maxInFlightBytesPerClass = conf.getReadSchedulingMaxInFlightBytesPerClass();
+        int numThreads = conf.getNumReadWorkerThreads();
+        this.maxDispatchedReads = conf.getReadSchedulingMaxDispatchedReads() > 0
+                ? conf.getReadSchedulingMaxDispatchedReads() : 2 * numThreads;
+        this.maxQueuedReadsPerClass = conf.getMaxPendingReadRequestPerThread() > 0
+                ? conf.getMaxPendingReadRequestPerThread() * numThreads : 0;
+
+        ReadTrafficClass[] classes = ReadTrafficClass.values();
+        this.queues = new ClassQueue[classes.length];
+        for (ReadTrafficClass trafficClass : classes) {
+            int weight;
+            switch (trafficClass) {
+                case CATCH_UP:
+                    weight = conf.getReadSchedulingCatchUpWeight();
+                    break;
+                case RECOVERY:
+                    weight = conf.getReadSchedulingRecoveryWeight();
+                    break;
+                default:
+                    weight = conf.getReadSchedulingTailingWeight();
+                    break;
+            }
+            queues[trafficClass.ordinal()] = new ClassQueue(Math.max(1, weight), statsLogger.scopeLabel(
+                    "trafficClass", trafficClass.name().toLowerCase(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Record the bytes read by the scheduled read running in the current thread, if any.
+     *
+     * @param bytes the bytes read
+     */
+    static void recordReadBytes(long bytes) {
+        ScheduledRead read = CURRENT_READ.get();
+        if (read != null) {
+            read.bytesRead += bytes;
+        }
+    }
+
+    /**
+     * Queue a read, it is run by the read thread pool once it is dispatched.
+     *
+     * @param trafficClass the traffic class of the read
+     * @param ledgerId the ledger of the read, the reads of a ledger are run in order by the read thread pool
+     * @param read the read
+     * @param onRejected run instead of the read if the read thread pool rejects it
+     * @throws RejectedExecutionException if the queue of the traffic class is full
+     */
+    void schedule(ReadTrafficClass trafficClass, long ledgerId, Runnable read, Runnable onRejected) {
+        synchronized (this) {
+            ClassQueue queue = queues[trafficClass.ordinal()];
+            if (maxQueuedReadsPerClass > 0 && queue.reads.size() >= maxQueuedReadsPerClass) {
+                throw new RejectedExecutionException("Too many queued reads of class " + trafficClass);
+            }
+            double startTag = Math.max(virtualTime, queue.lastFinishTag);
+            queue.lastFinishTag = startTag + queue.sizeEstimate / queue.weight;
+            queue.reads.add(new ScheduledRead(queue, ledgerId, read, onRejected, startTag));
+        }
+        dispatch();
+    }
+
+    private void dispatch() {
+        while (true) {
+            ScheduledRead read;
+            synchronized (this) {
+                read = pollNext();
+            }
+            if (read == null) {
+                return;
+            }
+            try {
+                readThreadPool.executeOrdered(read.ledgerId, read);
+            } catch (RejectedExecutionException e) {
+                try {
+                    read.onRejected.run();
+                } finally {
+                    complete(read);
+                }
+            }
+        }
+    }
+
+    private ScheduledRead pollNext() {
+        if (dispatchedReads >= maxDispatchedReads) {
+            return null;
+        }
+        ClassQueue next = null;
+        for (ClassQueue queue : queues) {
+            ScheduledRead head = queue.reads.peek();
+            if (head == null || (queue.inFlightBytes > 0 && queue.inFlightBytes >= maxInFlightBytesPerClass)) {
+                continue;
+            }
+            if (next == null || head.startTag < next.reads.peek().startTag) {
+                next = queue;
+            }
+        }
+        if (next == null) {
+            return null;
+        }
+        ScheduledRead read = next.reads.poll();
+        virtualTime = Math.max(virtualTime, read.startTag);
+        read.reservedBytes = Math.round(next.sizeEstimate);
+        next.inFlightBytes += read.reservedBytes;
+        dispatchedReads++;
+        next.queueDelayStats.registerSuccessfulEvent(MathUtils.elapsedNanos(read.enqueueNanos),
+                TimeUnit.NANOSECONDS);
+        return read;
+    }
+
+    private void complete(ScheduledRead read) {
+        synchronized (this) {
+            ClassQueue queue = read.queue;
+            queue.inFlightBytes -= read.reservedBytes;
+            if (read.bytesRead > 0) {
+                queue.sizeEstimate += (read.bytesRead - queue.sizeEstimate) * SIZE_ESTIMATE_WEIGHT;
+            }
+            dispatchedReads--;
+        }
+        dispatch();
+    }
+
+    private static class ClassQueue {
+        private final ArrayDeque<ScheduledRead> reads = new ArrayDeque<>();
+        private final int weight;
+        private double lastFinishTag = 0;
+        private double sizeEstimate = INITIAL_SIZE_ESTIMATE;
+        private volatile long inFlightBytes = 0;
+
+        @StatsDoc(
+            name = READ_ENTRY_TRAFFIC_CLASS_QUEUE_DELAY,
+            help = "the time spent by the reads of a traffic class in its queue before being dispatched"
+        )
+        private final OpStatsLogger queueDelayStats;
+
+        ClassQueue(int weight, StatsLogger statsLogger) {
+            this.weight = weight;
+            this.queueDelayStats = statsLogger.getOpStatsLogger(READ_ENTRY_TRAFFIC_CLASS_QUEUE_DELAY);
+            statsLogger.registerGauge(READ_ENTRY_TRAFFIC_CLASS_IN_FLIGHT_BYTES, new Gauge<Number>() {
+                @Override
+                public Number getDefaultValue() {
+                    return 0;
+                }
+
+                @Override
+                public Number getSample() {
+                    return inFlightBytes;
+                }
+            });
+        }
+    }
+
+    private class ScheduledRead implements Runnable {
+        private final ClassQueue queue;
+        private final long ledgerId;
+        private final Runnable read;
+        private final Runnable onRejected;
+        private final double startTag;
+        private final long enqueueNanos = MathUtils.nowInNano();
+        private long reservedBytes;
+        private long bytesRead;
+
+        ScheduledRead(ClassQueue queue, long ledgerId, Runnable read, Runnable onRejected, double startTag) {
+            this.queue = queue;
+            this.ledgerId = ledgerId;
+            this.read = read;
+            this.onRejected = onRejected;
+            this.startTag = startTag;
+        }
+
+        @Override
+        public void run() {
+            CURRENT_READ.set(this);
+            try {
+                read.run();
+            } finally {
+                CURRENT_READ.remove();
+                complete(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+/**
+ * Traffic class of the read requests.
+ *
+ * <p>The class is sent in the flags of the v2 requests, and in the header of the v3 requests. The reads without a
+ * class, eg: from the older clients, are tailing reads.
+ */
+public enum ReadTrafficClass {
+    /**
+     * Reads of the entries recently added, the readers are waiting for them.
+     */
+    TAILING(1, BookkeeperProtocol.TrafficClass.TAILING_READ),
+    /**
+     * Reads of the older entries, eg: a reader catching up or a backfill.
+     */
+    CATCH_UP(2, BookkeeperProtocol.TrafficClass.CATCH_UP_READ),
+    /**
+     * Reads of the auto-recovery, to replicate the entries.
+     */
+    RECOVERY(3, BookkeeperProtocol.TrafficClass.RECOVERY_READ);
+
+    private static final int FLAGS_SHIFT = 4;
+    private static final ReadTrafficClass[] VALUES = values();
+
+    private final int value;
+    private final BookkeeperProtocol.TrafficClass protocolValue;
+
+    ReadTrafficClass(int value, BookkeeperProtocol.TrafficClass protocolValue) {
+        this.value = value;
+        this.protocolValue = protocolValue;
+    }
+
+    /**
+     * Get the request flags of the traffic class.
+     *
+     * @return the flags to add to the flags of the read requests
+     */
+    public int toFlags() {
+        return value << FLAGS_SHIFT;
+    }
+
+    BookkeeperProtocol.TrafficClass toProtocol() {
+        return protocolValue;
+    }
+
+    /**
+     * Get the traffic class of the read request flags.
+     *
+     * @param flags the flags of the read request
+     * @return the traffic class, {@link #TAILING} when the flags have no class
+     */
+    public static ReadTrafficClass fromFlags(int flags) {
+        int value = (flags & BookieProtocol.FLAG_TRAFFIC_CLASS_MASK) >> FLAGS_SHIFT;
+        for (ReadTrafficClass trafficClass : VALUES) {
+            if (trafficClass.value == value) {
+                return trafficClass;
+            }
+        }
+        return TAILING;
+    }
+
+    static ReadTrafficClass fromProtocol(BookkeeperProtocol.BKPacketHeader header) {
+        if (!header.hasTrafficClass()) {
+            return TAILING;
+        }
+        switch (header.getTrafficClass()) {
+            case CATCH_UP_READ:
+                return CATCH_UP;
+            case RECOVERY_READ:
+                return RECOVERY;
+            default:
+                return TAILING;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.ChannelDuplexHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPromise;
+import io.netty.util.ReferenceCountUtil;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.proto.TenantQuotaManager.TenantQuota;
+
+/**
+ * Enforces the quotas of the tenant of a connection on the add and read requests of the connection.
+ *
+ * <p>When a request exceeds the quota of the tenant, the channel stops reading, and the request and the requests
+ * received after it wait in the handler until the quota allows the request. The requests are then passed to the
+ * request handler in order, and the channel reads again. No error is returned to the client: it sees the bookie
+ * slowing down, as with the other throttles of the bookie.
+ *
+ * <p>The reads of the channel are only enabled again if they were stopped by this handler, so that the other
+ * throttles stopping the reads of the channel, as the limits of the requests in progress, are left in place.
+ */
+class TenantQuotaHandler extends ChannelDuplexHandler {
+
+    private final TenantQuotaManager quotaManager;
+    private final BookieConnectionPeer connectionPeer;
+    private final ArrayDeque<Object> throttledRequests = new ArrayDeque<>();
+
+    private String tenant;
+    private boolean resumeScheduled = false;
+    // Whether the reads of the channel were stopped by this handler
+    private boolean autoReadDisabled = false;
+    private long throttleStartNanos;
+
+    TenantQuotaHandler(TenantQuotaManager quotaManager, BookieConnectionPeer connectionPeer) {
+        this.quotaManager = quotaManager;
+        this.connectionPeer = connectionPeer;
+    }
+
+    private TenantQuota getQuota(ChannelHandlerContext ctx) {
+        if (tenant == null) {
+            // The requests are only received once the connection is authenticated
+            tenant = quotaManager.getTenant(connectionPeer.getAuthorizedId(), ctx.channel().remoteAddress());
+        }
+        return quotaManager.getQuota(tenant);
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (!throttledRequests.isEmpty()) {
+            // The requests are kept in order, the processors may have enabled the reads again
+            disableAutoRead(ctx);
+            throttledRequests.add(msg);
+            return;
+        }
+        long waitNanos = tryAcquire(ctx, msg);
+        if (waitNanos == 0) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        throttledRequests.add(msg);
+        throttleStartNanos = MathUtils.nowInNano();
+        getQuota(ctx).recordThrottled();
+        disableAutoRead(ctx);
+        scheduleResume(ctx, waitNanos);
+    }
+
+    private void disableAutoRead(ChannelHandlerContext ctx) {
+        if (ctx.channel().config().isAutoRead()) {
+            ctx.channel().config().setAutoRead(false);
+            autoReadDisabled = true;
+        }
+    }
+
+    private void scheduleResume(ChannelHandlerContext ctx, long waitNanos) {
+        if (!resumeScheduled) {
+            resumeScheduled = true;
+            ctx.executor().schedule(() -> resume(ctx), waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void resume(ChannelHandlerContext ctx) {
+        resumeScheduled = false;
+        while (!throttledRequests.isEmpty()) {
+            if (!ctx.channel().isActive()) {
+                releaseThrottledRequests();
+                return;
+            }
+            long waitNanos = tryAcquire(ctx, throttledRequests.peek());
+            if (waitNanos > 0) {
+                scheduleResume(ctx, waitNanos);
+                return;
+            }
+            ctx.fireChannelRead(throttledRequests.poll());
+        }
+        getQuota(ctx).recordThrottledWait(MathUtils.elapsedNanos(throttleStartNanos));
+        if (autoReadDisabled) {
+            autoReadDisabled = false;
+            ctx.channel().config().setAutoRead(true);
+        }
+    }
+
+    private long tryAcquire(ChannelHandlerContext ctx, Object msg) {
+        if (msg instanceof BookieProtocol.ParsedAddRequest) {
+            return getQuota(ctx).tryAcquireAdd(((BookieProtocol.ParsedAddRequest) msg).getData().readableBytes());
+        } else if (msg instanceof BookieProtocol.ReadRequest) {
+            return getQuota(ctx).tryAcquireRead();
+        } else if (msg instanceof BookkeeperProtocol.Request) {
+            BookkeeperProtocol.Request request = (BookkeeperProtocol.Request) msg;
+            if (request.hasAddRequest()) {
+                return getQuota(ctx).tryAcquireAdd(request.getAddRequest().getBody().size());
+            } else if (request.hasReadRequest()) {
+                return getQuota(ctx).tryAcquireRead();
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+        long readBytes = 0;
+        if (msg instanceof BookieProtocol.ReadResponse) {
+            BookieProtocol.ReadResponse response = (BookieProtocol.ReadResponse) msg;
+            readBytes = response.hasData() ? response.getData().readableBytes() : 0;
+        } else if (msg instanceof BookieProtocol.BatchedReadResponse) {
+            BookieProtocol.BatchedReadResponse response = (BookieProtocol.BatchedReadResponse) msg;
+            readBytes = response.getData() != null ? response.getData().readableBytes() : 0;
+        } else if (msg instanceof BookkeeperProtocol.Response) {
+            BookkeeperProtocol.Response response = (BookkeeperProtocol.Response) msg;
+            if (response.hasReadResponse() && response.getReadResponse().hasBody()) {
+                readBytes = response.getReadResponse().getBody().size();
+            }
+        }
+        if (readBytes > 0) {
+            getQuota(ctx).recordReadBytes(readBytes);
+        }
+        ctx.write(msg, promise);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releaseThrottledRequests();
+        ctx.fireChannelInactive();
+    }
+
+    @Override
+    public void handlerRemoved(ChannelHandlerContext ctx) throws Exception {
+        releaseThrottledRequests();
+    }
+
+    private void releaseThrottledRequests() {
+        Object msg;
+        while ((msg = throttledRequests.poll()) != null) {
+            if (msg instanceof BookieProtocol.ParsedAddRequest) {
+                BookieProtocol.ParsedAddRequest request = (BookieProtocol.ParsedAddRequest) msg;
+                request.release();
+                request.recycle();
+            } else if (msg instanceof BookieProtocol.Request) {
+                ((BookieProtocol.Request) msg).recycle();
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+    }
+}
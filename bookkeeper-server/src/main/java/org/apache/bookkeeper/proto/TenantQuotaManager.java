@@ -0,0 +1,303 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.bookkeeper.proto;
+
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_ADD_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_ADD_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_READ_BYTES;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_READ_REQUESTS;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_THROTTLED;
+import static org.apache.bookkeeper.bookie.BookKeeperServerStats.TENANT_THROTTLED_WAIT;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.auth.BookKeeperPrincipal;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.Counter;
+import org.apache.bookkeeper.stats.OpStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.apache.bookkeeper.stats.annotations.StatsDoc;
+
+/**
+ * Quotas of the requests of the tenants of the bookie.
+ *
+ * <p>A tenant is the principal authenticated on the connection, or the remote host of the connection when the
+ * connection is not authenticated or when the quotas are keyed by address. Each tenant gets token buckets of
+ * requests per second and of bytes per second for the adds and for the reads, shared by all its connections. The
+ * buckets hold up to one second of their rate.
+ *
+ * <p>The bytes of the reads are only known once the entries are read, so the read bytes are taken from their bucket
+ * when the responses are sent, and the bucket can go below zero: the next reads of the tenant wait until the bucket
+ * is refilled.
+ *
+ * <p>The stats of the tenants are labelled by tenant. As the tenants can be the remote hosts of the connections, only
+ * the first {@link #MAX_TENANT_STATS_LABELS} tenants get their own label, the stats of the other tenants are
+ * aggregated under the {@link #OTHER_TENANTS_STATS_LABEL} label.
+ */
+class TenantQuotaManager {
+
+    static final String KEY_PRINCIPAL = "principal";
+    static final String KEY_ADDRESS = "address";
+
+    static final int MAX_TENANT_STATS_LABELS = 100;
+    static final String OTHER_TENANTS_STATS_LABEL = "other";
+
+    private final boolean keyByPrincipal;
+    private final double addRequestsPerSecond;
+    private final double addBytesPerSecond;
+    private final double readRequestsPerSecond;
+    private final double readBytesPerSecond;
+    private final StatsLogger statsLogger;
+    private final LoadingCache<String, TenantQuota> quotas;
+    // Tenants with their own stats label, kept once the quota of the tenant is dropped as the label remains exported
+    private final Set<String> labelledTenants = new HashSet<>();
+
+    TenantQuotaManager(ServerConfiguration conf, StatsLogger statsLogger) {
+        this.keyByPrincipal = !KEY_ADDRESS.equalsIgnoreCase(conf.getTenantQuotaKey());
+        this.addRequestsPerSecond = conf.getTenantQuotaAddRequestsPerSecond();
+        this.addBytesPerSecond = conf.getTenantQuotaAddBytesPerSecond();
+        this.readRequestsPerSecond = conf.getTenantQuotaReadRequestsPerSecond();
+        this.readBytesPerSecond = conf.getTenantQuotaReadBytesPerSecond();
+        this.statsLogger = statsLogger;
+        // The quotas of the tenants without any request for a while are dropped, they are full again by then
+        this.quotas = CacheBuilder.newBuilder()
+                .expireAfterAccess(10, TimeUnit.MINUTES)
+                .build(new CacheLoader<String, TenantQuota>() {
+                    @Override
+                    public TenantQuota load(String tenant) {
+                        return new TenantQuota(tenant);
+                    }
+                });
+    }
+
+    /**
+     * Get the tenant of a connection.
+     *
+     * @param principal the principal authenticated on the connection, or null
+     * @param remoteAddress the remote address of the connection
+     * @return the tenant of the connection
+     */
+    String getTenant(BookKeeperPrincipal principal, SocketAddress remoteAddress) {
+        if (keyByPrincipal && principal != null && !BookKeeperPrincipal.ANONYMOUS.equals(principal)) {
+            return principal.getName();
+        } else if (remoteAddress instanceof InetSocketAddress) {
+            return ((InetSocketAddress) remoteAddress).getHostString();
+        } else {
+            return String.valueOf(remoteAddress);
+        }
+    }
+
+    /**
+     * Get the quota of a tenant.
+     *
+     * @param tenant the tenant
+     * @return the quota of the tenant
+     */
+    TenantQuota getQuota(String tenant) {
+        return quotas.getUnchecked(tenant);
+    }
+
+    private String getStatsLabel(String tenant) {
+        synchronized (labelledTenants) {
+            if (labelledTenants.contains(tenant) || labelledTenants.size() < MAX_TENANT_STATS_LABELS) {
+                labelledTenants.add(tenant);
+                return tenant;
+            }
+        }
+        return OTHER_TENANTS_STATS_LABEL;
+    }
+
+    /**
+     * Token bucket of a rate, holding up to one second of the rate.
+     */
+    private static class TokenBucket {
+        private final double rate;
+        private double tokens;
+
+        TokenBucket(double rate) {
+            this.rate = rate;
+            this.tokens = rate;
+        }
+
+        void refill(long elapsedNanos) {
+            tokens = Math.min(rate, tokens + rate * elapsedNanos / TimeUnit.SECONDS.toNanos(1));
+        }
+
+        // Time to wait until the bucket holds the tokens, 0 if it already holds them
+        long waitNanos(double needed) {
+            if (tokens >= needed) {
+                return 0;
+            }
+            return Math.max(1, (long) ((needed - tokens) * TimeUnit.SECONDS.toNanos(1) / rate));
+        }
+    }
+
+    /**
+     * Quota of a tenant.
+     */
+    class TenantQuota {
+        private final TokenBucket addRequests;
+        private final TokenBucket addBytes;
+        private final TokenBucket readRequests;
+        private final TokenBucket readBytes;
+        private long lastRefillNanos = MathUtils.nowInNano();
+
+        @StatsDoc(
+            name = TENANT_ADD_REQUESTS,
+            help = "the number of add requests of a tenant"
+        )
+        private final Counter addRequestsCounter;
+        @StatsDoc(
+            name = TENANT_ADD_BYTES,
+            help = "the bytes of the add requests of a tenant"
+        )
+        private final Counter addBytesCounter;
+        @StatsDoc(
+            name = TENANT_READ_REQUESTS,
+            help = "the number of read requests of a tenant"
+        )
+        private final Counter readRequestsCounter;
+        @StatsDoc(
+            name = TENANT_READ_BYTES,
+            help = "the bytes of the read responses of a tenant"
+        )
+        private final Counter readBytesCounter;
+        @StatsDoc(
+            name = TENANT_THROTTLED,
+            help = "the number of times the requests of a tenant were throttled"
+        )
+        private final Counter throttledCounter;
+        @StatsDoc(
+            name = TENANT_THROTTLED_WAIT,
+            help = "the time the connections of a tenant stopped reading requests because of its quota"
+        )
+        private final OpStatsLogger throttledWaitStats;
+
+        private TenantQuota(String tenant) {
+            this.addRequests = addRequestsPerSecond > 0 ? new TokenBucket(addRequestsPerSecond) : null;
+            this.addBytes = addBytesPerSecond > 0 ? new TokenBucket(addBytesPerSecond) : null;
+            this.readRequests = readRequestsPerSecond > 0 ? new TokenBucket(readRequestsPerSecond) : null;
+            this.readBytes = readBytesPerSecond > 0 ? new TokenBucket(readBytesPerSecond) : null;
+
+            StatsLogger tenantStatsLogger = statsLogger.scopeLabel("tenant", getStatsLabel(tenant));
+            this.addRequestsCounter = tenantStatsLogger.getCounter(TENANT_ADD_REQUESTS);
+            this.addBytesCounter = tenantStatsLogger.getCounter(TENANT_ADD_BYTES);
+            this.readRequestsCounter = tenantStatsLogger.getCounter(TENANT_READ_REQUESTS);
+            this.readBytesCounter = tenantStatsLogger.getCounter(TENANT_READ_BYTES);
+            this.throttledCounter = tenantStatsLogger.getCounter(TENANT_THROTTLED);
+            this.throttledWaitStats = tenantStatsLogger.getOpStatsLogger(TENANT_THROTTLED_WAIT);
+        }
+
+        private void refill() {
+            long now = MathUtils.nowInNano();
+            long elapsedNanos = now - lastRefillNanos;
+            lastRefillNanos = now;
+            for (TokenBucket bucket : new TokenBucket[] { addRequests, addBytes, readRequests, readBytes }) {
+                if (bucket != null) {
+                    bucket.refill(elapsedNanos);
+                }
+            }
+        }
+
+        /**
+         * Take the tokens of an add request, if the quota allows it.
+         *
+         * @param bytes the bytes of the entry
+         * @return 0 if the request is allowed, otherwise the time to wait before trying again, in nanos
+         */
+        synchronized long tryAcquireAdd(long bytes) {
+            refill();
+            long waitNanos = 0;
+            if (addRequests != null) {
+                waitNanos = addRequests.waitNanos(1);
+            }
+            if (addBytes != null) {
+                // An entry larger than the bucket is allowed once the bucket is full
+                waitNanos = Math.max(waitNanos, addBytes.waitNanos(Math.min(bytes, addBytes.rate)));
+            }
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (addRequests != null) {
+                addRequests.tokens -= 1;
+            }
+            if (addBytes != null) {
+                addBytes.tokens -= bytes;
+            }
+            addRequestsCounter.inc();
+            addBytesCounter.addCount(bytes);
+            return 0;
+        }
+
+        /**
+         * Take the tokens of a read request, if the quota allows it.
+         *
+         * @return 0 if the request is allowed, otherwise the time to wait before trying again, in nanos
+         */
+        synchronized long tryAcquireRead() {
+            refill();
+            long waitNanos = 0;
+            if (readRequests != null) {
+                waitNanos = readRequests.waitNanos(1);
+            }
+            if (readBytes != null) {
+                // The bytes already read must be paid back before reading more
+                waitNanos = Math.max(waitNanos, readBytes.waitNanos(0));
+            }
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (readRequests != null) {
+                readRequests.tokens -= 1;
+            }
+            readRequestsCounter.inc();
+            return 0;
+        }
+
+        /**
+         * Take the bytes of a read response.
+         *
+         * @param bytes the bytes of the entries of the response
+         */
+        synchronized void recordReadBytes(long bytes) {
+            if (readBytes != null) {
+                refill();
+                readBytes.tokens -= bytes;
+            }
+            readBytesCounter.addCount(bytes);
+        }
+
+        void recordThrottled() {
+            throttledCounter.inc();
+        }
+
+        void recordThrottledWait(long waitNanos) {
+            throttledWaitStats.registerSuccessfulEvent(waitNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -55,6 +55,11 @@ class CRC32CDigestManager extends DigestManager {
         return Crc32cIntChecksum.resumeChecksum(digest, buffer, offset, len);
     }
 
+    @Override
+    DigestCombiner getCombiner() {
+        return Crc32cIntChecksum::combineChecksums;
+    }
+
     @Override
     boolean acceptsMemoryAddressBuffer() {
         return Crc32cIntChecksum.acceptsMemoryAddressBuffer();
@@ -17,6 +17,7 @@
  */
 package org.apache.bookkeeper.proto.checksum;
 
+import com.google.common.util.concurrent.Uninterruptibles;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufUtil;
@@ -24,8 +25,16 @@ import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.buffer.Unpooled;
 import io.netty.util.ReferenceCounted;
 import io.netty.util.concurrent.FastThreadLocal;
+import io.netty.util.concurrent.FastThreadLocalThread;
 import java.security.GeneralSecurityException;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.bookkeeper.client.BKException.BKDigestMatchException;
 import org.apache.bookkeeper.client.LedgerHandle;
 import org.apache.bookkeeper.proto.BookieProtoEncoding;
@@ -53,6 +62,17 @@ public abstract class DigestManager {
     final boolean useV2Protocol;
     private final ByteBufAllocator allocator;
     private final DigestUpdaterByteBufVisitorCallback byteBufVisitorCallback;
+    // Executor of the digests of the parts of the large entries, null if the digests are not computed in parallel
+    private ExecutorService parallelDigestExecutor;
+    private DigestCombiner parallelDigestCombiner;
+    private int parallelDigestChunkSize;
+
+    /**
+     * Combines the digests of two consecutive blocks into the digest of the concatenation of the blocks.
+     */
+    interface DigestCombiner {
+        int combine(int digest1, int digest2, long len2);
+    }
 
     abstract int getMacCodeLength();
 
@@ -72,6 +92,98 @@ public abstract class DigestManager {
         }
     }
 
+    /**
+     * Update the digest with the payload of an entry. The payloads of at least two chunks are split in chunks whose
+     * digests are computed in parallel and combined, when the digest supports it and the parallel digests are enabled.
+     *
+     * <p>The IO threads and the ordered executor threads, which are netty {@link FastThreadLocalThread}s, don't wait
+     * for the digest executor and always compute the digest themselves. As the entries read are verified on these
+     * threads, only the digests of the entries added from the application threads are computed in parallel.
+     */
+    final int updatePayload(int digest, ByteBuf payload, int offset, int len) {
+        ExecutorService executor = parallelDigestExecutor;
+        if (executor == null || len < 2 * parallelDigestChunkSize
+                || Thread.currentThread() instanceof FastThreadLocalThread) {
+            return update(digest, payload, offset, len);
+        }
+        int numChunks = len / parallelDigestChunkSize;
+        int chunkSize = len / numChunks;
+        // Set when the caller computes the digest itself, so that the chunk tasks not started yet are skipped
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<Future<Integer>> chunkDigests = new ArrayList<>(numChunks - 1);
+        try {
+            for (int i = 1; i < numChunks; i++) {
+                int chunkOffset = offset + i * chunkSize;
+                int chunkLen = i == numChunks - 1 ? len - i * chunkSize : chunkSize;
+                chunkDigests.add(executor.submit(
+                        () -> abandoned.get() ? 0 : update(0, payload, chunkOffset, chunkLen)));
+            }
+        } catch (RejectedExecutionException e) {
+            abandonChunkDigests(abandoned, chunkDigests);
+            return update(digest, payload, offset, len);
+        }
+        // The first chunk is computed by the caller, while the others are computed by the executor
+        digest = update(digest, payload, offset, chunkSize);
+        for (int i = 1; i < numChunks; i++) {
+            int chunkLen = i == numChunks - 1 ? len - i * chunkSize : chunkSize;
+            int chunkDigest;
+            try {
+                chunkDigest = chunkDigests.get(i - 1).get();
+            } catch (InterruptedException e) {
+                abandonChunkDigests(abandoned, chunkDigests.subList(i - 1, chunkDigests.size()));
+                Thread.currentThread().interrupt();
+                return update(digest, payload, offset + i * chunkSize, len - i * chunkSize);
+            } catch (ExecutionException e) {
+                chunkDigest = update(0, payload, offset + i * chunkSize, chunkLen);
+            }
+            digest = parallelDigestCombiner.combine(digest, chunkDigest, chunkLen);
+        }
+        return digest;
+    }
+
+    /**
+     * Skip the chunk tasks not started yet, and wait for the running ones, as the payload may be released once the
+     * digest is returned.
+     */
+    private static void abandonChunkDigests(AtomicBoolean abandoned, List<Future<Integer>> chunkDigests) {
+        abandoned.set(true);
+        for (Future<Integer> chunkDigest : chunkDigests) {
+            try {
+                Uninterruptibles.getUninterruptibly(chunkDigest);
+            } catch (ExecutionException e) {
+                // The chunk digest is not used
+            }
+        }
+    }
+
+    /**
+     * Return the combiner of the digests of consecutive blocks, or null if the digests of this type can't be combined.
+     */
+    DigestCombiner getCombiner() {
+        return null;
+    }
+
+    /**
+     * Compute the digests of the payloads of at least two chunks in parallel with an executor, if the digest type
+     * supports it. The digest is the same as when it is computed sequentially.
+     *
+     * <p>The digests computed on the netty {@link FastThreadLocalThread}s, which include the verification of all the
+     * entries read, are always computed sequentially.
+     *
+     * @param executor the executor of the digests of the chunks, or null to disable the parallel digests
+     * @param chunkSize the min size of the chunks of the payloads
+     */
+    public void setParallelDigest(ExecutorService executor, int chunkSize) {
+        DigestCombiner combiner = getCombiner();
+        if (executor != null && combiner != null && chunkSize > 0) {
+            this.parallelDigestChunkSize = chunkSize;
+            this.parallelDigestCombiner = combiner;
+            this.parallelDigestExecutor = executor;
+        } else {
+            this.parallelDigestExecutor = null;
+        }
+    }
+
     abstract void populateValueAndReset(int digest, ByteBuf buffer);
 
     abstract boolean isInt32Digest();
@@ -151,7 +263,7 @@ public abstract class DigestManager {
 
         // Compute checksum over the headers
         int digest = update(0, buf, buf.readerIndex(), buf.readableBytes());
-        digest = update(digest, data, data.readerIndex(), data.readableBytes());
+        digest = updatePayload(digest, data, data.readerIndex(), data.readableBytes());
 
         populateValueAndReset(digest, buf);
 
@@ -176,7 +288,7 @@ public abstract class DigestManager {
         headersBuffer.writeLong(length);
 
         int digest = update(0, headersBuffer, 0, METADATA_LENGTH);
-        digest = update(digest, data, data.readerIndex(), data.readableBytes());
+        digest = updatePayload(digest, data, data.readerIndex(), data.readableBytes());
         populateValueAndReset(digest, headersBuffer);
         return ByteBufList.get(headersBuffer, data);
     }
@@ -237,7 +349,7 @@ public abstract class DigestManager {
         int digest = update(0, dataReceived, 0, METADATA_LENGTH);
 
         int offset = METADATA_LENGTH + macCodeLength;
-        digest = update(digest, dataReceived, offset, dataReceived.readableBytes() - offset);
+        digest = updatePayload(digest, dataReceived, offset, dataReceived.readableBytes() - offset);
 
         if (isInt32Digest()) {
             int receivedDigest = dataReceived.getInt(METADATA_LENGTH);
@@ -314,6 +426,9 @@ public abstract class DigestManager {
     /**
      * Verify that the digest matches and returns the data in the entry.
      *
+     * <p>The entries are verified on the IO threads or the ordered executor threads, so the digest is computed
+     * sequentially even when the parallel digests are enabled.
+     *
      * @param entryId
      * @param dataReceived
      * @return
@@ -23,6 +23,9 @@ import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.incubator.channel.uring.IOUring;
 import io.netty.incubator.channel.uring.IOUringEventLoopGroup;
+import io.netty.util.concurrent.Future;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ThreadFactory;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
@@ -47,7 +50,8 @@ public class EventLoopUtil {
     }
 
     public static EventLoopGroup getServerEventLoopGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
-        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled());
+        return getEventLoopGroup(threadFactory, conf.getServerNumIOThreads(), conf.isBusyWaitEnabled(),
+                conf.isThreadPerCoreEnabled());
     }
 
     public static EventLoopGroup getServerAcceptorGroup(ServerConfiguration conf, ThreadFactory threadFactory) {
@@ -56,6 +60,29 @@ public class EventLoopUtil {
 
     private static EventLoopGroup getEventLoopGroup(ThreadFactory threadFactory,
             int numThreads, boolean enableBusyWait) {
+        return getEventLoopGroup(threadFactory, numThreads, enableBusyWait, false);
+    }
+
+    /**
+     * Create an event loop group.
+     *
+     * @param requireCpuAffinity whether the threads must be pinned to CPU cores: the threads are pinned whatever the
+     *                           transport, and the creation fails if they cannot be pinned
+     */
+    private static EventLoopGroup getEventLoopGroup(ThreadFactory threadFactory,
+            int numThreads, boolean enableBusyWait, boolean requireCpuAffinity) {
+        EventLoopGroup eventLoopGroup = newEventLoopGroup(threadFactory, numThreads, enableBusyWait);
+        if (requireCpuAffinity) {
+            acquireCores(eventLoopGroup, numThreads, true);
+        } else if (enableBusyWait && eventLoopGroup instanceof EpollEventLoopGroup) {
+            // Enable CPU affinity on IO threads
+            acquireCores(eventLoopGroup, numThreads, false);
+        }
+        return eventLoopGroup;
+    }
+
+    private static EventLoopGroup newEventLoopGroup(ThreadFactory threadFactory,
+            int numThreads, boolean enableBusyWait) {
         if (!SystemUtils.IS_OS_LINUX) {
             return new NioEventLoopGroup(numThreads, threadFactory);
         }
@@ -77,26 +104,46 @@ public class EventLoopUtil {
 
                 // With low latency setting, put the Netty event loop on busy-wait loop to reduce cost of
                 // context switches
-                EpollEventLoopGroup eventLoopGroup = new EpollEventLoopGroup(numThreads, threadFactory,
+                return new EpollEventLoopGroup(numThreads, threadFactory,
                         () -> (selectSupplier, hasTasks) -> SelectStrategy.BUSY_WAIT);
-
-                // Enable CPU affinity on IO threads
-                for (int i = 0; i < numThreads; i++) {
-                    eventLoopGroup.next().submit(() -> {
-                        try {
-                            CpuAffinity.acquireCore();
-                        } catch (Throwable t) {
-                            log.warn("Failed to acquire CPU core for thread {} err {} {}",
-                                    Thread.currentThread().getName(), t.getMessage(), t);
-                        }
-                    });
-                }
-
-                return eventLoopGroup;
             } catch (ExceptionInInitializerError | NoClassDefFoundError | UnsatisfiedLinkError e) {
                 log.warn("Could not use Netty Epoll event loop: {}", e.getMessage());
                 return new NioEventLoopGroup(numThreads, threadFactory);
             }
         }
     }
+
+    /**
+     * Pin each thread of the event loop group to a CPU core.
+     *
+     * @param required whether to wait for the threads to be pinned, and fail if one of them cannot be. Otherwise,
+     *                 the failures are only logged
+     */
+    private static void acquireCores(EventLoopGroup eventLoopGroup, int numThreads, boolean required) {
+        List<Future<?>> pinnings = new ArrayList<>(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            pinnings.add(eventLoopGroup.next().submit(() -> {
+                try {
+                    CpuAffinity.acquireCore();
+                } catch (Throwable t) {
+                    log.warn("Failed to acquire CPU core for thread {} err {} {}",
+                            Thread.currentThread().getName(), t.getMessage(), t);
+                    if (required) {
+                        throw t;
+                    }
+                }
+            }));
+        }
+        if (!required) {
+            return;
+        }
+        for (Future<?> pinning : pinnings) {
+            pinning.awaitUninterruptibly();
+            if (!pinning.isSuccess()) {
+                eventLoopGroup.shutdownGracefully();
+                throw new IllegalStateException("Failed to pin the IO threads to CPU cores, the CPU affinity requires"
+                        + " the bookie to run as root on Linux with isolated CPUs", pinning.cause());
+            }
+        }
+    }
 }
@@ -0,0 +1,185 @@
+package org.apache.bookkeeper.bookie;
+
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.Counter;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the assignment of the ledgers to the journals by {@link AdaptiveJournalSelector}.
+ */
+public class AdaptiveJournalSelectorTest {
+
+    private static final long LEDGER_ID = 1L;
+
+    private final List<Journal> journals = new ArrayList<>();
+    private Counter reassignments;
+    private AdaptiveJournalSelector selector;
+    private long now;
+
+    @Before
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            Journal journal = mock(Journal.class);
+            when(journal.getSyncLatencyEwmaNanos()).thenReturn(1000L);
+            this.journals.add(journal);
+        }
+        setQueueDepths(10, 5, 20);
+        this.reassignments = mock(Counter.class);
+        this.selector = new AdaptiveJournalSelector(this.journals, this.reassignments);
+        this.now = MathUtils.nowInNano();
+    }
+
+    private void setQueueDepths(int... queueDepths) {
+        for (int i = 0; i < queueDepths.length; i++) {
+            when(this.journals.get(i).getQueueDepth()).thenReturn(queueDepths[i]);
+        }
+    }
+
+    private static void completeAdd(AdaptiveJournalSelector.LedgerJournal ledgerJournal) {
+        WriteCallback cb = ledgerJournal.trackAdd((rc, ledgerId, entryId, addr, ctx) -> { });
+        cb.writeComplete(BKException.Code.OK, LEDGER_ID, 0, null, null);
+    }
+
+    @Test
+    public void testLeastLoadedJournal() {
+        Assert.assertSame(this.journals.get(1), this.selector.getJournal(LEDGER_ID));
+
+        // the load is the queue depth weighted by the sync latency
+        when(this.journals.get(1).getSyncLatencyEwmaNanos()).thenReturn(10_000L);
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = this.selector.startAdd(2L, false, this.now);
+        Assert.assertSame(this.journals.get(0), ledgerJournal.getJournal());
+        Assert.assertTrue(ledgerJournal.shouldLogMasterKey());
+        Assert.assertFalse(ledgerJournal.shouldLogMasterKey());
+    }
+
+    @Test
+    public void testAffinityWhilePendingAdds() {
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertSame(this.journals.get(1), ledgerJournal.getJournal());
+
+        // the ledger stays on its journal while it has adds not acknowledged, however long they take
+        setQueueDepths(1, 100, 20);
+        this.now += 10 * AdaptiveJournalSelector.REBALANCE_IDLE_NANOS;
+        Assert.assertSame(ledgerJournal, this.selector.startAdd(LEDGER_ID, false, this.now));
+        Assert.assertSame(this.journals.get(1), ledgerJournal.getJournal());
+        completeAdd(ledgerJournal);
+
+        // as long as one of them is not acknowledged
+        this.now += 10 * AdaptiveJournalSelector.REBALANCE_IDLE_NANOS;
+        this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertSame(this.journals.get(1), ledgerJournal.getJournal());
+        verify(this.reassignments, never()).inc();
+    }
+
+    @Test
+    public void testMoveOnlyWhenIdle() {
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertTrue(ledgerJournal.shouldLogMasterKey());
+        completeAdd(ledgerJournal);
+        setQueueDepths(1, 100, 20);
+
+        // the ledger written continuously stays on its journal, even between its adds
+        for (int i = 0; i < 10; i++) {
+            this.now += AdaptiveJournalSelector.REBALANCE_IDLE_NANOS / 2;
+            Assert.assertSame(ledgerJournal, this.selector.startAdd(LEDGER_ID, false, this.now));
+            Assert.assertSame(this.journals.get(1), ledgerJournal.getJournal());
+            Assert.assertFalse(ledgerJournal.shouldLogMasterKey());
+            completeAdd(ledgerJournal);
+        }
+        verify(this.reassignments, never()).inc();
+
+        // the idle ledger moves to the least loaded journal, and logs its master key there
+        this.now += 2 * AdaptiveJournalSelector.REBALANCE_IDLE_NANOS;
+        this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertSame(this.journals.get(0), ledgerJournal.getJournal());
+        Assert.assertTrue(ledgerJournal.shouldLogMasterKey());
+        verify(this.reassignments, times(1)).inc();
+        completeAdd(ledgerJournal);
+
+        // not when the load difference is small
+        setQueueDepths(10, 100, 8);
+        this.now += 2 * AdaptiveJournalSelector.REBALANCE_IDLE_NANOS;
+        this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertSame(this.journals.get(0), ledgerJournal.getJournal());
+        verify(this.reassignments, times(1)).inc();
+    }
+
+    @Test
+    public void testAckBeforeSyncNotMoved() {
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = this.selector.startAdd(LEDGER_ID, true, this.now);
+        completeAdd(ledgerJournal);
+        setQueueDepths(1, 100, 20);
+        this.now += 2 * AdaptiveJournalSelector.REBALANCE_IDLE_NANOS;
+        this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertSame(this.journals.get(1), ledgerJournal.getJournal());
+    }
+
+    @Test
+    public void testIdleLedgerRemoved() {
+        AdaptiveJournalSelector.LedgerJournal ledgerJournal = this.selector.startAdd(LEDGER_ID, true, this.now);
+        completeAdd(ledgerJournal);
+        this.now += 2 * AdaptiveJournalSelector.IDLE_LEDGER_TIMEOUT_NANOS;
+        this.selector.startAdd(2L, false, this.now);
+        Assert.assertNull(this.selector.getLedgerJournal(LEDGER_ID));
+
+        // the ledger is assigned again on its next add
+        setQueueDepths(1, 100, 20);
+        AdaptiveJournalSelector.LedgerJournal newLedgerJournal = this.selector.startAdd(LEDGER_ID, false, this.now);
+        Assert.assertNotSame(ledgerJournal, newLedgerJournal);
+        Assert.assertSame(this.journals.get(0), newLedgerJournal.getJournal());
+    }
+
+    @Test
+    public void testIdleLedgersCleanupRacingWithAdds() throws Exception {
+        AtomicLong clock = new AtomicLong(this.now);
+        AtomicBoolean done = new AtomicBoolean();
+        long numLedgers = 8;
+
+        // the cleanups happen continuously, as the clock moves forward of the idle timeout on each add
+        CompletableFuture<Void> cleaner = CompletableFuture.runAsync(() -> {
+            while (!done.get()) {
+                long now = clock.addAndGet(AdaptiveJournalSelector.IDLE_LEDGER_TIMEOUT_NANOS + 1);
+                completeAdd(this.selector.startAdd(numLedgers, false, now));
+            }
+        });
+
+        List<CompletableFuture<Void>> writers = new ArrayList<>();
+        for (long ledgerId = 0; ledgerId < numLedgers; ledgerId++) {
+            long writerLedgerId = ledgerId;
+            writers.add(CompletableFuture.runAsync(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    AdaptiveJournalSelector.LedgerJournal ledgerJournal =
+                            this.selector.startAdd(writerLedgerId, false, clock.get());
+                    // the ledger with a pending add is never removed, its adds are all on the same journal
+                    Assert.assertSame(ledgerJournal, this.selector.getLedgerJournal(writerLedgerId));
+                    Assert.assertSame(ledgerJournal, this.selector.startAdd(writerLedgerId, false, clock.get()));
+                    Assert.assertSame(ledgerJournal, this.selector.getLedgerJournal(writerLedgerId));
+                    completeAdd(ledgerJournal);
+                    completeAdd(ledgerJournal);
+                }
+            }));
+        }
+        try {
+            CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).get();
+        } finally {
+            done.set(true);
+        }
+        cleaner.get();
+    }
+}
@@ -0,0 +1,322 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** we want to verify that the direct writes are acknowledged once written, and that the channel cleans up on errors */
+
+public class DirectBufferedChannelTest {
+
+    private static final int CAPACITY = 8192;
+    private static final int MAX_OUTSTANDING_WRITES = 2;
+
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+
+    private File file;
+    private FileChannel fileChannel;
+    private FakeNativeIO nativeIO;
+    private ExecutorService writeExecutor;
+
+    /**
+     * Writes to the file through a file channel, and lets the tests hold or fail the writes.
+     */
+    private static final class FakeNativeIO implements NativeIO {
+        private final FileChannel fileChannel;
+        private final Map<Long, ByteBuffer> memory = new HashMap<>();
+        private final AtomicInteger openFds = new AtomicInteger();
+        private final AtomicInteger fallocateCalls = new AtomicInteger();
+        private volatile CountDownLatch writeGate = new CountDownLatch(0);
+        private volatile boolean failWrites = false;
+
+        private FakeNativeIO(FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+        }
+
+        @Override
+        public int open(String pathname, int flags, int mode) {
+            return openFds.incrementAndGet();
+        }
+
+        @Override
+        public int fsync(int fd) {
+            return 0;
+        }
+
+        @Override
+        public int fallocate(int fd, int mode, long offset, long len) {
+            fallocateCalls.incrementAndGet();
+            return 0;
+        }
+
+        @Override
+        public int posix_fadvise(int fd, long offset, long len, int flag) {
+            return 0;
+        }
+
+        @Override
+        public int pwrite(int fd, long pointer, int count, long offset) throws NativeIOException {
+            try {
+                writeGate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NativeIOException("Interrupted", 4);
+            }
+            if (failWrites) {
+                throw new NativeIOException("Write failure", 5);
+            }
+            try {
+                return Unpooled.wrappedBuffer(pointer, count, false).getBytes(0, fileChannel, offset, count);
+            } catch (IOException e) {
+                throw new NativeIOException(e.getMessage(), 5);
+            }
+        }
+
+        @Override
+        public synchronized long posix_memalign(int alignment, int size) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(size + alignment);
+            long address = PlatformDependent.directBufferAddress(buffer);
+            long aligned = (address + alignment - 1) & ~((long) alignment - 1);
+            memory.put(aligned, buffer);
+            return aligned;
+        }
+
+        @Override
+        public synchronized void free(long pointer) throws NativeIOException {
+            if (memory.remove(pointer) == null) {
+                throw new NativeIOException("Unknown pointer " + pointer);
+            }
+        }
+
+        @Override
+        public long lseek(int fd, long offset, int whence) {
+            return 0;
+        }
+
+        @Override
+        public long pread(int fd, long pointer, long size, long offset) {
+            return 0;
+        }
+
+        @Override
+        public int close(int fd) {
+            openFds.decrementAndGet();
+            return 0;
+        }
+
+        synchronized int allocatedBuffers() {
+            return memory.size();
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        // the write buffers are wrapped around native memory, run with -Dio.netty.tryReflectionSetAccessible=true
+        Assume.assumeTrue(PlatformDependent.hasDirectBufferNoCleanerConstructor());
+        this.file = File.createTempFile("directBufferedChannelTest", ".log");
+        this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.nativeIO = new FakeNativeIO(this.fileChannel);
+        this.writeExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.file == null) {
+            return;
+        }
+        this.nativeIO.writeGate.countDown();
+        this.writeExecutor.shutdownNow();
+        if (this.fileChannel.isOpen()) {
+            this.fileChannel.close();
+        }
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    private DirectBufferedChannel newChannel() throws IOException {
+        return new DirectBufferedChannel(this.allocator, this.file, this.fileChannel, CAPACITY, this.nativeIO,
+                this.writeExecutor, MAX_OUTSTANDING_WRITES);
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(System.currentTimeMillis()).nextBytes(data);
+        return data;
+    }
+
+    private void assertCleanedUp() {
+        Assert.assertEquals("Write buffers not freed", 0, this.nativeIO.allocatedBuffers());
+        Assert.assertEquals("File descriptor not closed", 0, this.nativeIO.openFds.get());
+    }
+
+    @Test(timeout = 10000)
+    public void writeTest() throws IOException {
+        DirectBufferedChannel channel = newChannel();
+        byte[] first = randomBytes(100);
+        byte[] second = randomBytes(5000);
+        channel.write(Unpooled.wrappedBuffer(first));
+        channel.flush();
+        // the second write rewrites the block holding the end of the first one
+        channel.write(Unpooled.wrappedBuffer(second));
+        channel.flush();
+        Assert.assertEquals(first.length + second.length, channel.forceWrite(false));
+
+        byte[] all = new byte[first.length + second.length];
+        System.arraycopy(first, 0, all, 0, first.length);
+        System.arraycopy(second, 0, all, first.length, second.length);
+        ByteBuffer actual = ByteBuffer.allocate(all.length);
+        this.fileChannel.read(actual, 0);
+        Assert.assertArrayEquals("File Check Failed", all, actual.array());
+        channel.close();
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void ackAfterWriteTest() throws Exception {
+        DirectBufferedChannel channel = newChannel();
+        this.nativeIO.writeGate = new CountDownLatch(1);
+        channel.write(Unpooled.wrappedBuffer(randomBytes(100)));
+        channel.flush();
+
+        CountDownLatch acked = new CountDownLatch(1);
+        channel.whenFlushedWritten(acked::countDown);
+        Assert.assertFalse("Acknowledged before the write", acked.await(100, TimeUnit.MILLISECONDS));
+
+        this.nativeIO.writeGate.countDown();
+        Assert.assertTrue("Not acknowledged after the write", acked.await(5, TimeUnit.SECONDS));
+
+        // all the flushed data is written, the next action runs right away
+        AtomicBoolean ran = new AtomicBoolean();
+        channel.whenFlushedWritten(() -> ran.set(true));
+        Assert.assertTrue(ran.get());
+        channel.close();
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void writeErrorTest() throws Exception {
+        DirectBufferedChannel channel = newChannel();
+        this.nativeIO.failWrites = true;
+        this.nativeIO.writeGate = new CountDownLatch(1);
+        channel.write(Unpooled.wrappedBuffer(randomBytes(100)));
+        channel.flush();
+        AtomicBoolean acked = new AtomicBoolean();
+        channel.whenFlushedWritten(() -> acked.set(true));
+        this.nativeIO.writeGate.countDown();
+
+        try {
+            channel.forceWrite(false);
+            Assert.fail("Should fail with the write error");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertFalse("Acknowledged a failed write", acked.get());
+        try {
+            channel.close();
+            Assert.fail("Should fail with the write error");
+        } catch (IOException e) {
+            // expected
+        }
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void rejectedWriteTest() throws IOException {
+        this.writeExecutor.shutdown();
+        DirectBufferedChannel channel = newChannel();
+        channel.write(Unpooled.wrappedBuffer(randomBytes(100)));
+        try {
+            channel.flush();
+            Assert.fail("Should fail when the write cannot be submitted");
+        } catch (IOException e) {
+            Assert.assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        AtomicBoolean acked = new AtomicBoolean();
+        channel.whenFlushedWritten(() -> acked.set(true));
+        Assert.assertFalse("Acknowledged a rejected write", acked.get());
+        try {
+            channel.close();
+            Assert.fail("Should fail with the write error");
+        } catch (IOException e) {
+            // expected
+        }
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void interruptedCloseTest() throws Exception {
+        DirectBufferedChannel channel = newChannel();
+        this.nativeIO.writeGate = new CountDownLatch(1);
+        channel.write(Unpooled.wrappedBuffer(randomBytes(100)));
+        channel.flush();
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread closer = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // checked below
+            }
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        closer.start();
+        closer.join(200);
+        Assert.assertTrue("Close should wait for the outstanding write", closer.isAlive());
+
+        this.nativeIO.writeGate.countDown();
+        closer.join();
+        Assert.assertTrue("Interrupt flag should be kept", interrupted.get());
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void preallocateTest() throws IOException {
+        DirectBufferedChannel channel = newChannel();
+        channel.preallocate(ByteBuffer.allocate(512), 1024 * 1024);
+        Assert.assertEquals(1, this.nativeIO.fallocateCalls.get());
+        Assert.assertEquals("Preallocation should not write through the file channel", 0,
+                this.fileChannel.size());
+        channel.close();
+        assertCleanedUp();
+    }
+
+    @Test(timeout = 10000)
+    public void readBackTest() throws IOException {
+        DirectBufferedChannel channel = newChannel();
+        byte[] data = randomBytes(3000);
+        channel.write(Unpooled.wrappedBuffer(data));
+        channel.flush();
+        channel.forceWrite(false);
+        byte[] actual = new byte[data.length];
+        ByteBuffer read = ByteBuffer.wrap(actual);
+        this.fileChannel.read(read, 0);
+        Assert.assertArrayEquals(data, Arrays.copyOf(actual, data.length));
+        channel.close();
+        assertCleanedUp();
+    }
+}
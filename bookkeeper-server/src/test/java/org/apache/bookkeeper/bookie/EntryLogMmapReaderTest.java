@@ -0,0 +1,221 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests of the reads of the sealed entry logs through the windows mapped by {@link EntryLogMmapReader}.
+ */
+public class EntryLogMmapReaderTest {
+
+    private static final int WINDOW_SIZE = 4096;
+    private static final long LOG_ID = 1L;
+
+    private File tmpDir;
+    private RandomAccessFile logFile;
+    private FileChannel fileChannel;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmpDir = Files.createTempDirectory("entryLogMmapReaderTest").toFile();
+        this.logFile = new RandomAccessFile(new File(this.tmpDir, "1.log"), "rw");
+        // 3 windows and a half
+        byte[] content = new byte[3 * WINDOW_SIZE + WINDOW_SIZE / 2];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = byteAt(i);
+        }
+        this.logFile.write(content);
+        this.fileChannel = this.logFile.getChannel();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.logFile.close();
+        FileUtils.deleteDirectory(this.tmpDir);
+    }
+
+    private static byte byteAt(long pos) {
+        return (byte) (pos % 251);
+    }
+
+    private static void assertContent(ByteBuf buffer, long pos, int length) {
+        Assert.assertEquals(length, buffer.readableBytes());
+        for (int i = 0; i < length; i++) {
+            Assert.assertEquals(byteAt(pos + i), buffer.getByte(buffer.readerIndex() + i));
+        }
+    }
+
+    private ByteBuf read(EntryLogMmapReader reader, long pos, int length) throws IOException {
+        return reader.read(LOG_ID, this.fileChannel, pos, length);
+    }
+
+    @Test
+    public void testReadWithinWindow() throws Exception {
+        EntryLogMmapReader reader = new EntryLogMmapReader(UnpooledByteBufAllocator.DEFAULT, WINDOW_SIZE,
+                Long.MAX_VALUE);
+        ByteBuf buffer = read(reader, WINDOW_SIZE + 100, 500);
+        assertContent(buffer, WINDOW_SIZE + 100, 500);
+        buffer.release();
+        Assert.assertTrue(reader.isMapped(LOG_ID, 1));
+        Assert.assertFalse(reader.isMapped(LOG_ID, 0));
+
+        // the last window is smaller than the others
+        buffer = read(reader, 3 * WINDOW_SIZE + 10, WINDOW_SIZE / 2 - 10);
+        assertContent(buffer, 3 * WINDOW_SIZE + 10, WINDOW_SIZE / 2 - 10);
+        buffer.release();
+        Assert.assertEquals(WINDOW_SIZE + WINDOW_SIZE / 2, reader.getMappedBytes());
+        reader.close();
+        Assert.assertEquals(0, reader.getMappedBytes());
+    }
+
+    @Test
+    public void testReadAcrossWindows() throws Exception {
+        EntryLogMmapReader reader = new EntryLogMmapReader(UnpooledByteBufAllocator.DEFAULT, WINDOW_SIZE,
+                Long.MAX_VALUE);
+        // the bytes of two windows are left to the file channel
+        Assert.assertNull(read(reader, WINDOW_SIZE - 10, 20));
+        Assert.assertNull(read(reader, 0, WINDOW_SIZE + 1));
+        // as well as the bytes beyond the end of the log
+        Assert.assertNull(read(reader, 3 * WINDOW_SIZE + 10, WINDOW_SIZE / 2));
+        Assert.assertNull(read(reader, 4 * WINDOW_SIZE, 10));
+        Assert.assertNull(read(reader, -1, 10));
+        Assert.assertFalse(reader.isMapped(LOG_ID, 0));
+        Assert.assertFalse(reader.isMapped(LOG_ID, 1));
+
+        ByteBuf buffer = read(reader, WINDOW_SIZE - 20, 20);
+        assertContent(buffer, WINDOW_SIZE - 20, 20);
+        buffer.release();
+        reader.close();
+    }
+
+    @Test
+    public void testUnmapOldestWindows() throws Exception {
+        EntryLogMmapReader reader = new EntryLogMmapReader(UnpooledByteBufAllocator.DEFAULT, WINDOW_SIZE,
+                2 * WINDOW_SIZE);
+        // the buffer of the first window stays readable after the window is unmapped
+        ByteBuf first = read(reader, 10, 100);
+        read(reader, WINDOW_SIZE, 100).release();
+        Assert.assertEquals(2 * WINDOW_SIZE, reader.getMappedBytes());
+
+        read(reader, 2 * WINDOW_SIZE, 100).release();
+        Assert.assertEquals(2 * WINDOW_SIZE, reader.getMappedBytes());
+        Assert.assertFalse(reader.isMapped(LOG_ID, 0));
+        Assert.assertTrue(reader.isMapped(LOG_ID, 1));
+        Assert.assertTrue(reader.isMapped(LOG_ID, 2));
+        assertContent(first, 10, 100);
+        first.release();
+
+        // the windows are unmapped in the order they were mapped, not in the order they were read
+        read(reader, WINDOW_SIZE + 200, 100).release();
+        read(reader, 3 * WINDOW_SIZE, 100).release();
+        Assert.assertFalse(reader.isMapped(LOG_ID, 1));
+        Assert.assertTrue(reader.isMapped(LOG_ID, 2));
+        Assert.assertTrue(reader.isMapped(LOG_ID, 3));
+        Assert.assertEquals(WINDOW_SIZE + WINDOW_SIZE / 2, reader.getMappedBytes());
+
+        // a window unmapped is mapped again when read
+        ByteBuf buffer = read(reader, 20, 100);
+        assertContent(buffer, 20, 100);
+        buffer.release();
+        Assert.assertTrue(reader.isMapped(LOG_ID, 0));
+        reader.close();
+    }
+
+    @Test
+    public void testReadAfterLogRemoved() throws Exception {
+        EntryLogMmapReader reader = new EntryLogMmapReader(UnpooledByteBufAllocator.DEFAULT, WINDOW_SIZE,
+                Long.MAX_VALUE);
+        ByteBuf buffer = read(reader, WINDOW_SIZE + 10, 100);
+
+        // the log is removed and deleted while a buffer read from it is still used
+        reader.removeLog(LOG_ID);
+        Assert.assertFalse(reader.isMapped(LOG_ID, 1));
+        Assert.assertEquals(0, reader.getMappedBytes());
+        this.logFile.close();
+        Assert.assertTrue(new File(this.tmpDir, "1.log").delete());
+        assertContent(buffer, WINDOW_SIZE + 10, 100);
+        buffer.release();
+
+        // the log can't be read anymore
+        try {
+            read(reader, WINDOW_SIZE + 10, 100);
+            Assert.fail("Should have failed to read a closed log");
+        } catch (IOException e) {
+            // expected
+        }
+        reader.close();
+    }
+
+    @Test
+    public void testReadAfterClose() throws Exception {
+        EntryLogMmapReader reader = new EntryLogMmapReader(UnpooledByteBufAllocator.DEFAULT, WINDOW_SIZE,
+                Long.MAX_VALUE);
+        ByteBuf buffer = read(reader, 10, 100);
+        reader.close();
+        Assert.assertFalse(reader.isMapped(LOG_ID, 0));
+        assertContent(buffer, 10, 100);
+        buffer.release();
+    }
+
+    @Test
+    public void testEntryLoggerFallback() throws Exception {
+        File ledgerDir = new File(this.tmpDir, "ledgers");
+        BookieImpl.checkDirectoryStructure(BookieImpl.getCurrentDirectory(ledgerDir));
+        ServerConfiguration conf = new ServerConfiguration()
+                .setLedgerDirNames(new String[] { ledgerDir.getPath() })
+                .setEntryLogSizeLimit(8 * WINDOW_SIZE)
+                .setEntryLogMmapReadEnabled(true)
+                .setEntryLogMmapWindowSizeBytes(WINDOW_SIZE);
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+        DefaultEntryLogger entryLogger = new DefaultEntryLogger(conf, ledgerDirsManager, null,
+                NullStatsLogger.INSTANCE, UnpooledByteBufAllocator.DEFAULT);
+        try {
+            // some of the entries span two windows
+            int entrySize = 1000;
+            List<Long> locations = new ArrayList<>();
+            for (long entryId = 0; entryId < 100; entryId++) {
+                ByteBuf entry = Unpooled.buffer(entrySize);
+                entry.writeLong(LOG_ID);
+                entry.writeLong(entryId);
+                while (entry.isWritable()) {
+                    entry.writeByte(byteAt(entryId + entry.writerIndex()));
+                }
+                locations.add(entryLogger.addEntry(LOG_ID, entry));
+            }
+            entryLogger.flush();
+            entryLogger.checkpoint();
+
+            for (long entryId = 0; entryId < 100; entryId++) {
+                ByteBuf entry = entryLogger.readEntry(LOG_ID, entryId, locations.get((int) entryId));
+                Assert.assertEquals(entrySize, entry.readableBytes());
+                Assert.assertEquals(entryId, entry.getLong(8));
+                for (int i = 16; i < entrySize; i++) {
+                    Assert.assertEquals(byteAt(entryId + i), entry.getByte(i));
+                }
+                entry.release();
+            }
+            // the entries of the sealed logs within one window are read through the mapped windows
+            Assert.assertTrue(entryLogger.getMmapReader().getMappedBytes() > 0);
+        } finally {
+            entryLogger.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.apache.bookkeeper.bookie;
+
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests of the eviction of the index pages by the clock hand of {@link IndexInMemPageMgr}.
+ */
+public class IndexInMemPageMgrClockTest {
+
+    private static final int ENTRIES_PER_PAGE = 8;
+    private static final int PAGE_SIZE = ENTRIES_PER_PAGE * LedgerEntryPage.getIndexEntrySize();
+
+    private IndexPersistenceMgr persistenceMgr;
+    private final AtomicInteger pagesRead = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        this.persistenceMgr = mock(IndexPersistenceMgr.class);
+        // The offset of each entry identifies its ledger
+        doAnswer(invocation -> {
+            LedgerEntryPage lep = invocation.getArgument(0);
+            for (int i = 0; i < ENTRIES_PER_PAGE; i++) {
+                lep.setOffset(offsetOf(lep.getLedger(), lep.getFirstEntry() + i),
+                        i * LedgerEntryPage.getIndexEntrySize());
+            }
+            lep.setClean(lep.getVersion());
+            this.pagesRead.incrementAndGet();
+            return false;
+        }).when(this.persistenceMgr).updatePage(any(LedgerEntryPage.class));
+    }
+
+    private static long offsetOf(long ledgerId, long entryId) {
+        return ledgerId * 1_000_000L + entryId + 1;
+    }
+
+    private IndexInMemPageMgr newPageMgr(int pageLimit) {
+        ServerConfiguration conf = new ServerConfiguration().setPageLimit(pageLimit);
+        return new IndexInMemPageMgr(PAGE_SIZE, ENTRIES_PER_PAGE, conf, this.persistenceMgr, NullStatsLogger.INSTANCE);
+    }
+
+    private static void read(IndexInMemPageMgr pageMgr, long ledgerId) throws Exception {
+        Assert.assertEquals(offsetOf(ledgerId, 1), pageMgr.getEntryOffset(ledgerId, 1));
+    }
+
+    @Test
+    public void testSecondChance() throws Exception {
+        IndexInMemPageMgr pageMgr = newPageMgr(4);
+        for (long ledgerId = 1; ledgerId <= 4; ledgerId++) {
+            read(pageMgr, ledgerId);
+        }
+        Assert.assertEquals(4, this.pagesRead.get());
+
+        // the first sweep clears the reference bits of the new pages, the second one evicts the oldest page
+        read(pageMgr, 5);
+        Assert.assertFalse(pageMgr.isPageCached(1, 0));
+        Assert.assertTrue(pageMgr.isPageCached(2, 0));
+
+        // the page used since the last sweep gets a second chance, the next one is evicted
+        read(pageMgr, 2);
+        read(pageMgr, 6);
+        Assert.assertTrue(pageMgr.isPageCached(2, 0));
+        Assert.assertFalse(pageMgr.isPageCached(3, 0));
+        Assert.assertTrue(pageMgr.isPageCached(4, 0));
+
+        // the hand moves on without waiting for the pages to be unreferenced
+        read(pageMgr, 7);
+        Assert.assertFalse(pageMgr.isPageCached(4, 0));
+        Assert.assertTrue(pageMgr.isPageCached(2, 0));
+        Assert.assertTrue(pageMgr.isPageCached(5, 0));
+        Assert.assertTrue(pageMgr.isPageCached(6, 0));
+        Assert.assertEquals(7, this.pagesRead.get());
+    }
+
+    @Test
+    public void testPageInUseNotEvicted() throws Exception {
+        IndexInMemPageMgr pageMgr = newPageMgr(2);
+        LedgerEntryPage used = pageMgr.getLedgerEntryPage(1, 0);
+        try {
+            for (long ledgerId = 2; ledgerId <= 20; ledgerId++) {
+                read(pageMgr, ledgerId);
+                Assert.assertTrue(pageMgr.isPageCached(1, 0));
+                Assert.assertTrue(used.hasEntryKey(1, 0));
+            }
+            for (int i = 0; i < ENTRIES_PER_PAGE; i++) {
+                Assert.assertEquals(offsetOf(1, i), used.getOffset(i * LedgerEntryPage.getIndexEntrySize()));
+            }
+        } finally {
+            used.releasePage();
+        }
+
+        // once released, the page can be evicted
+        read(pageMgr, 21);
+        read(pageMgr, 22);
+        Assert.assertFalse(pageMgr.isPageCached(1, 0));
+    }
+
+    @Test
+    public void testConcurrentReadsAndEvictions() throws Exception {
+        IndexInMemPageMgr pageMgr = newPageMgr(4);
+        int numLedgers = 16;
+        int numThreads = 4;
+        int numReads = 20_000;
+        List<CompletableFuture<Void>> readers = new ArrayList<>();
+        for (int t = 0; t < numThreads; t++) {
+            readers.add(CompletableFuture.runAsync(() -> {
+                try {
+                    for (int i = 0; i < numReads; i++) {
+                        long ledgerId = ThreadLocalRandom.current().nextInt(numLedgers) + 1;
+                        long entryId = ThreadLocalRandom.current().nextInt(2 * ENTRIES_PER_PAGE);
+                        // the page read is never the page of another ledger, even if it was evicted meanwhile
+                        Assert.assertEquals(offsetOf(ledgerId, entryId), pageMgr.getEntryOffset(ledgerId, entryId));
+                    }
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (CompletableFuture<Void> reader : readers) {
+            reader.get();
+        }
+        Assert.assertTrue(this.pagesRead.get() > 2 * numLedgers);
+    }
+}
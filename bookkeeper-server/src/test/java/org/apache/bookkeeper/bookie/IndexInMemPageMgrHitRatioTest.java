@@ -0,0 +1,57 @@
+package org.apache.bookkeeper.bookie;
+
+import org.apache.bookkeeper.common.util.MathUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests of the ledger cache hit ratio: reading it does not reset it, and it follows the recent lookups.
+ */
+public class IndexInMemPageMgrHitRatioTest {
+
+    private static final long PERIOD_NANOS = IndexInMemPageMgr.HitRatio.PERIOD_NANOS;
+
+    private static void record(IndexInMemPageMgr.HitRatio ratio, int hits, int misses) {
+        for (int i = 0; i < hits; i++) {
+            ratio.recordHit();
+        }
+        for (int i = 0; i < misses; i++) {
+            ratio.recordMiss();
+        }
+    }
+
+    @Test
+    public void testSamplingDoesNotReset() {
+        IndexInMemPageMgr.HitRatio ratio = new IndexInMemPageMgr.HitRatio();
+        long start = MathUtils.nowInNano();
+        Assert.assertEquals(0.0, ratio.getRatio(start), 0.0);
+
+        record(ratio, 3, 1);
+        Assert.assertEquals(0.75, ratio.getRatio(start), 0.0);
+        // a second reader sees the same ratio
+        Assert.assertEquals(0.75, ratio.getRatio(start), 0.0);
+        Assert.assertEquals(0.75, ratio.getRatio(start + PERIOD_NANOS / 2), 0.0);
+    }
+
+    @Test
+    public void testOldLookupsLeaveTheWindow() {
+        IndexInMemPageMgr.HitRatio ratio = new IndexInMemPageMgr.HitRatio();
+        long start = MathUtils.nowInNano();
+        record(ratio, 0, 10);
+        Assert.assertEquals(0.0, ratio.getRatio(start), 0.0);
+
+        // the misses are still in the previous period
+        long now = start + PERIOD_NANOS;
+        Assert.assertEquals(0.0, ratio.getRatio(now), 0.0);
+        record(ratio, 10, 0);
+        Assert.assertEquals(0.5, ratio.getRatio(now), 0.0);
+
+        // the misses are older than two periods
+        now += PERIOD_NANOS;
+        Assert.assertEquals(1.0, ratio.getRatio(now), 0.0);
+        Assert.assertEquals(1.0, ratio.getRatio(now), 0.0);
+
+        now += PERIOD_NANOS;
+        Assert.assertEquals(0.0, ratio.getRatio(now), 0.0);
+    }
+}
@@ -0,0 +1,224 @@
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+
+/**
+ * Tests of the entries of {@link OffHeapEntryMemTable}, of their flush and of the slabs holding them.
+ */
+public class OffHeapEntryMemTableTest {
+
+    private static final int SLAB_SIZE = 1024;
+    private static final int MAX_ALLOC_SIZE = 128;
+    private static final int ENTRY_SIZE = 100;
+
+    private final List<ByteBuf> slabs = Collections.synchronizedList(new ArrayList<>());
+    private OffHeapEntryMemTable memTable;
+
+    @Before
+    public void setUp() {
+        // The copies of the entries are heap buffers, the slabs are the only direct buffers
+        UnpooledByteBufAllocator allocator = spy(new UnpooledByteBufAllocator(false));
+        doAnswer(invocation -> {
+            ByteBuf slab = (ByteBuf) invocation.callRealMethod();
+            this.slabs.add(slab);
+            return slab;
+        }).when(allocator).directBuffer(anyInt(), anyInt());
+
+        ServerConfiguration conf = new ServerConfiguration()
+                .setSkipListSizeLimit(1024 * 1024)
+                .setSkipListArenaChunkSize(SLAB_SIZE)
+                .setSkipListArenaMaxAllocSize(MAX_ALLOC_SIZE);
+        this.memTable = new OffHeapEntryMemTable(conf, CheckpointSource.DEFAULT, allocator, NullStatsLogger.INSTANCE);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.memTable.close();
+    }
+
+    private static ByteBuffer entry(long ledgerId, long entryId, int size) {
+        ByteBuffer entry = ByteBuffer.allocate(size);
+        entry.putLong(ledgerId);
+        entry.putLong(entryId);
+        while (entry.hasRemaining()) {
+            entry.put((byte) (ledgerId + entryId + entry.position()));
+        }
+        entry.flip();
+        return entry;
+    }
+
+    private long add(long ledgerId, long entryId, int size) throws Exception {
+        return this.memTable.addEntry(ledgerId, entryId, entry(ledgerId, entryId, size), checkpoint -> { });
+    }
+
+    private void assertEntry(long ledgerId, long entryId, int size) throws Exception {
+        EntryKeyValue kv = this.memTable.getEntry(ledgerId, entryId);
+        Assert.assertNotNull(kv);
+        Assert.assertEquals(entryId, kv.getEntryId());
+        ByteBuf value = kv.getValueAsByteBuffer();
+        Assert.assertEquals(entry(ledgerId, entryId, size), value.nioBuffer());
+        value.release();
+    }
+
+    private void assertReleased(List<ByteBuf> buffers) {
+        for (ByteBuf buffer : buffers) {
+            Assert.assertEquals(0, buffer.refCnt());
+        }
+    }
+
+    @Test
+    public void testAddAndGet() throws Exception {
+        for (long entryId = 4; entryId >= 0; entryId--) {
+            Assert.assertEquals(ENTRY_SIZE, add(1, entryId, ENTRY_SIZE));
+            Assert.assertEquals(ENTRY_SIZE, add(2, entryId, ENTRY_SIZE));
+        }
+        // the entries already there are not added again
+        Assert.assertEquals(0, add(1, 2, ENTRY_SIZE));
+
+        for (long entryId = 0; entryId <= 4; entryId++) {
+            assertEntry(1, entryId, ENTRY_SIZE);
+            assertEntry(2, entryId, ENTRY_SIZE);
+        }
+        Assert.assertNull(this.memTable.getEntry(1, 5));
+        Assert.assertNull(this.memTable.getEntry(3, 0));
+        Assert.assertEquals(4, this.memTable.getLastEntry(1).getEntryId());
+        Assert.assertNull(this.memTable.getLastEntry(3));
+        Assert.assertTrue(this.memTable.containsLedger(2));
+        Assert.assertFalse(this.memTable.containsLedger(3));
+
+        PrimitiveIterator.OfLong entries = this.memTable.getListOfEntriesOfLedger(1);
+        for (long entryId = 0; entryId <= 4; entryId++) {
+            Assert.assertEquals(entryId, entries.nextLong());
+        }
+        Assert.assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void testSnapshotAndFlush() throws Exception {
+        for (long entryId = 0; entryId < 10; entryId++) {
+            add(2, entryId, ENTRY_SIZE);
+            add(1, entryId, ENTRY_SIZE);
+        }
+        Assert.assertNotNull(this.memTable.snapshot());
+        List<ByteBuf> snapshotSlabs = new ArrayList<>(this.slabs);
+
+        // the entries of the snapshot are still readable, the new entries go in a new table
+        assertEntry(1, 5, ENTRY_SIZE);
+        add(3, 0, ENTRY_SIZE);
+
+        List<long[]> flushed = new ArrayList<>();
+        long size = this.memTable.flush((ledgerId, entryId, entry) -> {
+            Assert.assertEquals(entry(ledgerId, entryId, ENTRY_SIZE), entry.nioBuffer());
+            flushed.add(new long[] { ledgerId, entryId });
+        });
+        Assert.assertEquals(20 * ENTRY_SIZE, size);
+
+        // the entries of the snapshot are flushed in (ledgerId, entryId) order
+        Assert.assertEquals(20, flushed.size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(i / 10 + 1, flushed.get(i)[0]);
+            Assert.assertEquals(i % 10, flushed.get(i)[1]);
+        }
+
+        // the slabs of the snapshot are released once it is flushed
+        assertReleased(snapshotSlabs);
+        Assert.assertNull(this.memTable.getEntry(1, 5));
+        Assert.assertFalse(this.memTable.containsLedger(2));
+        assertEntry(3, 0, ENTRY_SIZE);
+        Assert.assertFalse(this.memTable.isEmpty());
+    }
+
+    @Test
+    public void testFlushSkipsDeletedLedger() throws Exception {
+        for (long entryId = 0; entryId < 3; entryId++) {
+            add(1, entryId, ENTRY_SIZE);
+            add(2, entryId, ENTRY_SIZE);
+        }
+        this.memTable.snapshot();
+        List<Long> flushed = new ArrayList<>();
+        this.memTable.flush((ledgerId, entryId, entry) -> {
+            if (ledgerId == 1) {
+                throw new Bookie.NoLedgerException(ledgerId);
+            }
+            flushed.add(entryId);
+        });
+        Assert.assertEquals(3, flushed.size());
+        assertReleased(this.slabs);
+        Assert.assertTrue(this.memTable.isEmpty());
+    }
+
+    @Test
+    public void testSlabRollover() throws Exception {
+        int entriesPerSlab = SLAB_SIZE / ENTRY_SIZE;
+        for (long entryId = 0; entryId < entriesPerSlab; entryId++) {
+            add(1, entryId, ENTRY_SIZE);
+        }
+        Assert.assertEquals(1, this.slabs.size());
+        Assert.assertEquals(SLAB_SIZE, this.slabs.get(0).capacity());
+
+        // the entry that doesn't fit at the end of the slab goes in a new slab
+        add(1, entriesPerSlab, ENTRY_SIZE);
+        Assert.assertEquals(2, this.slabs.size());
+        Assert.assertEquals(SLAB_SIZE, this.slabs.get(1).capacity());
+        for (long entryId = 0; entryId <= entriesPerSlab; entryId++) {
+            assertEntry(1, entryId, ENTRY_SIZE);
+        }
+    }
+
+    @Test
+    public void testLargeEntries() throws Exception {
+        add(1, 0, ENTRY_SIZE);
+        Assert.assertEquals(1, this.slabs.size());
+
+        // the entries larger than the max alloc size get their own slab, even if larger than a slab
+        add(1, 1, MAX_ALLOC_SIZE + 1);
+        add(1, 2, 2 * SLAB_SIZE);
+        Assert.assertEquals(3, this.slabs.size());
+        Assert.assertEquals(MAX_ALLOC_SIZE + 1, this.slabs.get(1).capacity());
+        Assert.assertEquals(2 * SLAB_SIZE, this.slabs.get(2).capacity());
+
+        // the small entries keep filling the current slab
+        add(1, 3, ENTRY_SIZE);
+        Assert.assertEquals(3, this.slabs.size());
+
+        assertEntry(1, 0, ENTRY_SIZE);
+        assertEntry(1, 1, MAX_ALLOC_SIZE + 1);
+        assertEntry(1, 2, 2 * SLAB_SIZE);
+        assertEntry(1, 3, ENTRY_SIZE);
+        Assert.assertEquals(ENTRY_SIZE, this.memTable.getLastEntry(1).getLength());
+    }
+
+    @Test
+    public void testReleaseOnClose() throws Exception {
+        for (long entryId = 0; entryId < 30; entryId++) {
+            add(1, entryId, ENTRY_SIZE);
+        }
+        this.memTable.snapshot();
+        for (long entryId = 30; entryId < 60; entryId++) {
+            add(1, entryId, ENTRY_SIZE);
+        }
+        add(1, 60, 2 * SLAB_SIZE);
+        Assert.assertTrue(this.slabs.size() > 2);
+
+        // the slabs of the memtable and of its snapshot not flushed
+        this.memTable.close();
+        assertReleased(this.slabs);
+    }
+}
@@ -0,0 +1,426 @@
+package org.apache.bookkeeper.bookie.storage.directentrylogger;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.internal.PlatformDependent;
+import org.apache.bookkeeper.common.util.nativeio.NativeIO;
+import org.apache.bookkeeper.common.util.nativeio.NativeIOException;
+import org.apache.bookkeeper.slogger.Slogger;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Tests of the batched reads of {@link DirectReader}, which only return the consecutive entries of a ledger, including
+ * when racing with the eviction of the blocks and the close of the reader.
+ */
+public class DirectReaderTest {
+
+    private static final int BLOCK_SIZE = Buffer.ALIGNMENT;
+    private static final int MAX_SANE_ENTRY_SIZE = 64 * 1024;
+    private static final int ENTRY_SIZE = 1000;
+
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+
+    private File file;
+    private FileChannel fileChannel;
+    private FakeNativeIO nativeIO;
+
+    /**
+     * Reads the file through a file channel.
+     */
+    private static final class FakeNativeIO implements NativeIO {
+        private final FileChannel fileChannel;
+        private final AtomicInteger openFds = new AtomicInteger();
+        private final AtomicInteger preads = new AtomicInteger();
+        // When set, the reads wait for the latch once they started
+        private volatile CountDownLatch preadStarted;
+        private volatile CountDownLatch preadResume;
+        // The reads from this offset fail
+        private volatile long failPreadsFrom = Long.MAX_VALUE;
+
+        private FakeNativeIO(FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+        }
+
+        @Override
+        public int open(String pathname, int flags, int mode) {
+            return openFds.incrementAndGet();
+        }
+
+        @Override
+        public int fsync(int fd) {
+            return 0;
+        }
+
+        @Override
+        public int fallocate(int fd, int mode, long offset, long len) {
+            return 0;
+        }
+
+        @Override
+        public int posix_fadvise(int fd, long offset, long len, int flag) {
+            return 0;
+        }
+
+        @Override
+        public int pwrite(int fd, long pointer, int count, long offset) throws NativeIOException {
+            throw new NativeIOException("Read only");
+        }
+
+        @Override
+        public long posix_memalign(int alignment, int size) throws NativeIOException {
+            throw new NativeIOException("Not used");
+        }
+
+        @Override
+        public void free(long pointer) {
+        }
+
+        @Override
+        public long lseek(int fd, long offset, int whence) throws NativeIOException {
+            try {
+                return fileChannel.size();
+            } catch (IOException e) {
+                throw new NativeIOException(e.getMessage(), 5);
+            }
+        }
+
+        @Override
+        public long pread(int fd, long pointer, long size, long offset) throws NativeIOException {
+            preads.incrementAndGet();
+            if (offset >= failPreadsFrom) {
+                throw new NativeIOException("Read failure", 5);
+            }
+            CountDownLatch resume = preadResume;
+            if (resume != null) {
+                preadStarted.countDown();
+                try {
+                    resume.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new NativeIOException("Interrupted", 4);
+                }
+            }
+            try {
+                int toRead = (int) Math.max(0, Math.min(size, fileChannel.size() - offset));
+                return Unpooled.wrappedBuffer(pointer, toRead, false).setBytes(0, fileChannel, offset, toRead);
+            } catch (IOException e) {
+                throw new NativeIOException(e.getMessage(), 5);
+            }
+        }
+
+        @Override
+        public int close(int fd) {
+            openFds.decrementAndGet();
+            return 0;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        // the read buffers are wrapped around native memory, run with -Dio.netty.tryReflectionSetAccessible=true
+        Assume.assumeTrue(PlatformDependent.hasDirectBufferNoCleanerConstructor());
+        this.file = File.createTempFile("directReaderTest", ".log");
+        this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.nativeIO = new FakeNativeIO(this.fileChannel);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.file == null) {
+            return;
+        }
+        this.fileChannel.close();
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    private DirectReader newReader() throws IOException {
+        return new DirectReader(1, this.file.getPath(), this.allocator, this.nativeIO, BLOCK_SIZE,
+                MAX_SANE_ENTRY_SIZE, NullStatsLogger.INSTANCE.getOpStatsLogger("readBlock"));
+    }
+
+    /**
+     * Append an entry to the log.
+     *
+     * @return the offset of the entry
+     */
+    private int append(long ledgerId, long entryId, int size) throws IOException {
+        ByteBuf entry = Unpooled.buffer(Integer.BYTES + size);
+        entry.writeInt(size);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        while (entry.writerIndex() < Integer.BYTES + size) {
+            entry.writeByte(payloadByte(entryId));
+        }
+        long position = this.fileChannel.size();
+        this.fileChannel.write(entry.nioBuffer(), position);
+        return (int) position + Integer.BYTES;
+    }
+
+    private static byte payloadByte(long entryId) {
+        return (byte) (entryId * 31);
+    }
+
+    private static void assertEntry(ByteBuf entry, long ledgerId, long entryId) {
+        Assert.assertEquals(ENTRY_SIZE, entry.readableBytes());
+        Assert.assertEquals(ledgerId, entry.getLong(0));
+        Assert.assertEquals(entryId, entry.getLong(8));
+        for (int i = 2 * Long.BYTES; i < ENTRY_SIZE; i++) {
+            Assert.assertEquals(payloadByte(entryId), entry.getByte(i));
+        }
+    }
+
+    private static void assertEntries(List<ByteBuf> entries, long ledgerId, long firstEntryId, int count) {
+        Assert.assertEquals(count, entries.size());
+        for (int i = 0; i < count; i++) {
+            assertEntry(entries.get(i), ledgerId, firstEntryId + i);
+        }
+    }
+
+    private static void release(List<ByteBuf> entries) {
+        for (ByteBuf entry : entries) {
+            Assert.assertTrue(entry.release());
+        }
+    }
+
+    @Test
+    public void readEntriesTest() throws IOException {
+        // the entries span several blocks
+        int first = append(1L, 0L, ENTRY_SIZE);
+        for (long entryId = 1; entryId < 10; entryId++) {
+            append(1L, entryId, ENTRY_SIZE);
+        }
+        try (DirectReader reader = newReader()) {
+            List<ByteBuf> entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 10);
+            release(entries);
+
+            entries = reader.readEntriesAt(first, 1L, 0L, 4, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 4);
+            release(entries);
+
+            // the first entry is read even if larger than the max size
+            entries = reader.readEntriesAt(first, 1L, 0L, 10, 3 * ENTRY_SIZE - 1);
+            assertEntries(entries, 1L, 0L, 2);
+            release(entries);
+            entries = reader.readEntriesAt(first, 1L, 0L, 10, 1);
+            assertEntries(entries, 1L, 0L, 1);
+            release(entries);
+        }
+        Assert.assertEquals("File not closed", 0, this.nativeIO.openFds.get());
+    }
+
+    @Test
+    public void readEntriesLedgerBoundaryTest() throws IOException {
+        int first = append(1L, 0L, ENTRY_SIZE);
+        append(1L, 1L, ENTRY_SIZE);
+        append(1L, 2L, ENTRY_SIZE);
+        append(2L, 3L, ENTRY_SIZE);
+        append(2L, 4L, ENTRY_SIZE);
+        int otherLedger = append(1L, 3L, ENTRY_SIZE);
+        // a gap in the entries of the ledger
+        append(1L, 5L, ENTRY_SIZE);
+        try (DirectReader reader = newReader()) {
+            List<ByteBuf> entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 3);
+            release(entries);
+
+            entries = reader.readEntriesAt(otherLedger, 1L, 3L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 3L, 1);
+            release(entries);
+        }
+    }
+
+    @Test
+    public void readEntriesEndOfLogTest() throws IOException {
+        int first = append(1L, 0L, ENTRY_SIZE);
+        append(1L, 1L, ENTRY_SIZE);
+        try (DirectReader reader = newReader()) {
+            List<ByteBuf> entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 2);
+            release(entries);
+
+            // the entries written after the reader was opened are read too
+            append(1L, 2L, ENTRY_SIZE);
+            entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 3);
+            release(entries);
+        }
+    }
+
+    @Test
+    public void readEntriesFailureTest() throws IOException {
+        int first = append(1L, 0L, ENTRY_SIZE);
+        List<Integer> offsets = new ArrayList<>();
+        for (long entryId = 1; entryId < 10; entryId++) {
+            offsets.add(append(1L, entryId, ENTRY_SIZE));
+        }
+        // the entries of the second block can't be read, the batch stops at the first entry not read
+        this.nativeIO.failPreadsFrom = BLOCK_SIZE;
+        Slogger slog = mock(Slogger.class, RETURNS_SELF);
+        BufferPool bufferPool = new BufferPool(this.nativeIO, this.allocator, BLOCK_SIZE, 2, 0);
+        try (DirectReader reader = new DirectReader(1, this.file.getPath(), this.allocator, this.nativeIO, bufferPool,
+                MAX_SANE_ENTRY_SIZE, NullStatsLogger.INSTANCE.getOpStatsLogger("readBlock"), slog)) {
+            List<ByteBuf> entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            int count = entries.size();
+            Assert.assertTrue(count > 0 && count < 10);
+            assertEntries(entries, 1L, 0L, count);
+            release(entries);
+            verify(slog).warn(eq(Events.READ_NEXT_ENTRY_ERROR), any(IOException.class));
+
+            // the read of that entry on its own reports the error, it is not taken for the end of the log
+            try {
+                reader.readEntryAt(offsets.get(count - 1));
+                Assert.fail("Should fail to read the entry");
+            } catch (EOFException e) {
+                Assert.fail("Should not be taken for the end of the log");
+            } catch (IOException e) {
+                // expected
+            }
+
+            this.nativeIO.failPreadsFrom = Long.MAX_VALUE;
+            entries = reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            assertEntries(entries, 1L, 0L, 10);
+            release(entries);
+        } finally {
+            bufferPool.close();
+        }
+    }
+
+    @Test
+    public void readEntriesFromCachedBlocksTest() throws IOException {
+        int first = append(1L, 0L, ENTRY_SIZE);
+        append(1L, 1L, ENTRY_SIZE);
+        try (DirectReader reader = newReader()) {
+            List<ByteBuf> entries = new ArrayList<>(reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE));
+            int preads = this.nativeIO.preads.get();
+            entries.addAll(reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE));
+            Assert.assertEquals("Entries should be read from the cached block", preads, this.nativeIO.preads.get());
+            release(entries);
+        }
+    }
+
+    @Test
+    public void closeDuringReadTest() throws Exception {
+        int first = append(1L, 0L, ENTRY_SIZE);
+        append(1L, 1L, ENTRY_SIZE);
+        DirectReader reader = newReader();
+        this.nativeIO.preadStarted = new CountDownLatch(1);
+        this.nativeIO.preadResume = new CountDownLatch(1);
+        CompletableFuture<List<ByteBuf>> read = CompletableFuture.supplyAsync(() -> {
+            try {
+                return reader.readEntriesAt(first, 1L, 0L, 10, Long.MAX_VALUE);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Assert.assertTrue(this.nativeIO.preadStarted.await(10, TimeUnit.SECONDS));
+
+        // the new reads are rejected, and the file is closed once the read in progress is done
+        reader.close();
+        Assert.assertTrue(reader.isClosed());
+        Assert.assertEquals("File closed during a read", 1, this.nativeIO.openFds.get());
+        try {
+            reader.readEntryAt(first);
+            Assert.fail("Should not read from a closed reader");
+        } catch (IOException e) {
+            // expected
+        }
+        this.nativeIO.preadResume.countDown();
+        this.nativeIO.preadResume = null;
+
+        List<ByteBuf> entries = read.get(10, TimeUnit.SECONDS);
+        assertEntries(entries, 1L, 0L, 2);
+        release(entries);
+        Assert.assertEquals("File not closed", 0, this.nativeIO.openFds.get());
+    }
+
+    @Test
+    public void concurrentReadsEvictAndCloseTest() throws Exception {
+        // many more blocks than the reader caches, so that the reads keep evicting the blocks of the others
+        int numEntries = 200;
+        int[] offsets = new int[numEntries];
+        for (int i = 0; i < numEntries; i++) {
+            offsets[i] = append(1L, i, ENTRY_SIZE);
+        }
+
+        // the buffers of the evicted blocks are reused, a block released too early is overwritten
+        BufferPool bufferPool = new BufferPool(this.nativeIO, this.allocator, BLOCK_SIZE, 2, 0);
+        DirectReader reader = new DirectReader(1, this.file.getPath(), this.allocator, this.nativeIO, bufferPool,
+                MAX_SANE_ENTRY_SIZE, NullStatsLogger.INSTANCE.getOpStatsLogger("readBlock"), Slogger.NULL);
+        int numThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        CountDownLatch closeLatch = new CountDownLatch(numThreads * 500);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < numThreads; t++) {
+                results.add(executor.submit(() -> {
+                    int reads = 0;
+                    while (true) {
+                        int entryId = ThreadLocalRandom.current().nextInt(numEntries - 3);
+                        try {
+                            if (ThreadLocalRandom.current().nextBoolean()) {
+                                ByteBuf entry = reader.readEntryAt(offsets[entryId]);
+                                assertEntry(entry, 1L, entryId);
+                                entry.release();
+                            } else {
+                                List<ByteBuf> entries = reader.readEntriesAt(offsets[entryId], 1L, entryId, 3,
+                                        Long.MAX_VALUE);
+                                assertEntries(entries, 1L, entryId, 3);
+                                release(entries);
+                            }
+                        } catch (IOException e) {
+                            // only the reads running when the reader is closed can fail
+                            Assert.assertTrue(reader.isClosed());
+                            return reads;
+                        }
+                        reads++;
+                        closeLatch.countDown();
+                    }
+                }));
+            }
+
+            Assert.assertTrue(closeLatch.await(60, TimeUnit.SECONDS));
+            reader.close();
+            for (Future<Integer> result : results) {
+                Assert.assertTrue(result.get(60, TimeUnit.SECONDS) > 0);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Assert.assertEquals("File not closed", 0, this.nativeIO.openFds.get());
+        // all the blocks went back to the pool
+        bufferPool.close();
+        Assert.assertEquals(0, this.allocator.metric().usedDirectMemory());
+    }
+}
@@ -0,0 +1,105 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.bookie.BookieImpl;
+import org.apache.bookkeeper.bookie.CheckpointSource;
+import org.apache.bookkeeper.bookie.CheckpointSource.Checkpoint;
+import org.apache.bookkeeper.bookie.LedgerDirsManager;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.meta.LedgerManager;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** we want to verify that the flushes of the write cache ring complete the checkpoints */
+
+public class DbLedgerStorageWriteCacheTest {
+
+    private static final int ENTRY_SIZE = 10 * 1024;
+
+    private File tmpDir;
+    private DbLedgerStorage storage;
+    private CheckpointSource checkpointSource;
+    private Checkpoint checkpoint;
+
+    @Before
+    public void setUp() throws Exception {
+        this.tmpDir = Files.createTempDirectory("dbLedgerStorageWriteCacheTest").toFile();
+        File curDir = BookieImpl.getCurrentDirectory(this.tmpDir);
+        BookieImpl.checkDirectoryStructure(curDir);
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setAllowLoopback(true);
+        conf.setLedgerDirNames(new String[] { this.tmpDir.getPath() });
+        conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.READ_AHEAD_CACHE_MAX_SIZE_MB, 1);
+        conf.setProperty(DbLedgerStorage.WRITE_CACHES_COUNT, 4);
+        LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+
+        this.checkpoint = mock(Checkpoint.class);
+        this.checkpointSource = mock(CheckpointSource.class);
+        when(this.checkpointSource.newCheckpoint()).thenReturn(this.checkpoint);
+
+        this.storage = new DbLedgerStorage();
+        this.storage.initialize(conf, mock(LedgerManager.class), ledgerDirsManager, ledgerDirsManager,
+                NullStatsLogger.INSTANCE, UnpooledByteBufAllocator.DEFAULT);
+        this.storage.setCheckpointSource(this.checkpointSource);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (this.storage != null) {
+            this.storage.shutdown();
+        }
+        FileUtils.deleteDirectory(this.tmpDir);
+    }
+
+    private static ByteBuf entry(long ledgerId, long entryId) {
+        ByteBuf entry = Unpooled.buffer(ENTRY_SIZE);
+        entry.writeLong(ledgerId);
+        entry.writeLong(entryId);
+        entry.writeLong(entryId - 1);
+        entry.writeZero(ENTRY_SIZE - entry.writerIndex());
+        return entry;
+    }
+
+    @Test(timeout = 60000)
+    public void writeCacheRingFlushCheckpointTest() throws Exception {
+        this.storage.setMasterKey(1L, "key".getBytes());
+        // each of the 4 write caches holds 256KB, fill the first one
+        long entries = 0;
+        for (; entries < 20; entries++) {
+            this.storage.addEntry(entry(1L, entries));
+        }
+        verify(this.checkpointSource, never()).checkpointComplete(eq(this.checkpoint), eq(true));
+
+        for (; entries < 40; entries++) {
+            this.storage.addEntry(entry(1L, entries));
+        }
+        // the full write cache is flushed in background, which completes the checkpoint
+        verify(this.checkpointSource, timeout(10000)).checkpointComplete(eq(this.checkpoint), eq(true));
+
+        for (long entryId = 0; entryId < entries; entryId++) {
+            ByteBuf entry = this.storage.getEntry(1L, entryId);
+            Assert.assertEquals(entryId, entry.getLong(8));
+            entry.release();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import org.apache.bookkeeper.util.collections.ConcurrentLongHashSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/** we want to verify that the entry location cache never returns a location of another entry */
+
+public class EntryLocationCacheTest {
+
+    private static long locationOf(long ledgerId, long entryId) {
+        return (ledgerId << 32) + entryId + 1;
+    }
+
+    @Test
+    public void putGetRemoveTest() {
+        EntryLocationCache cache = new EntryLocationCache(1024);
+        Assert.assertEquals(0, cache.get(1L, 0L));
+
+        cache.put(1L, 0L, 100L);
+        cache.put(1L, 1L, 200L);
+        Assert.assertEquals(100L, cache.get(1L, 0L));
+        Assert.assertEquals(200L, cache.get(1L, 1L));
+        cache.put(1L, 0L, 300L);
+        Assert.assertEquals("Location should be updated", 300L, cache.get(1L, 0L));
+
+        cache.remove(1L, 0L);
+        Assert.assertEquals(0, cache.get(1L, 0L));
+        Assert.assertEquals(200L, cache.get(1L, 1L));
+    }
+
+    @Test
+    public void boundedSizeTest() {
+        // 16 buckets of 2 slots
+        EntryLocationCache cache = new EntryLocationCache(16 * 64);
+        Assert.assertEquals(32, cache.capacity());
+        int found = 0;
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            cache.put(1L, entryId, locationOf(1L, entryId));
+        }
+        for (long entryId = 0; entryId < 1000; entryId++) {
+            long location = cache.get(1L, entryId);
+            if (location != 0) {
+                Assert.assertEquals(locationOf(1L, entryId), location);
+                found++;
+            }
+        }
+        Assert.assertTrue(found > 0);
+        Assert.assertTrue("Cache should not grow", found <= cache.capacity());
+    }
+
+    @Test
+    public void removeLedgersTest() {
+        EntryLocationCache cache = new EntryLocationCache(64 * 1024);
+        for (long ledgerId = 1; ledgerId <= 3; ledgerId++) {
+            for (long entryId = 0; entryId < 10; entryId++) {
+                cache.put(ledgerId, entryId, locationOf(ledgerId, entryId));
+            }
+        }
+        ConcurrentLongHashSet deleted = ConcurrentLongHashSet.newBuilder().build();
+        deleted.add(1L);
+        deleted.add(3L);
+        cache.removeLedgers(deleted);
+
+        for (long entryId = 0; entryId < 10; entryId++) {
+            Assert.assertEquals(0, cache.get(1L, entryId));
+            Assert.assertEquals(locationOf(2L, entryId), cache.get(2L, entryId));
+            Assert.assertEquals(0, cache.get(3L, entryId));
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void concurrentReadWriteTest() throws Exception {
+        // a single bucket, so that the writers keep replacing each other's slots under the readers
+        EntryLocationCache cache = new EntryLocationCache(64);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            final long ledgerId = t + 1;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2_000_000; i++) {
+                    long entryId = i % 4;
+                    cache.put(ledgerId, entryId, locationOf(ledgerId, entryId));
+                }
+                done.set(true);
+            }));
+            threads.add(new Thread(() -> {
+                while (!done.get() && failure.get() == null) {
+                    for (long entryId = 0; entryId < 4; entryId++) {
+                        long location = cache.get(ledgerId, entryId);
+                        if (location != 0 && location != locationOf(ledgerId, entryId)) {
+                            failure.set("Read location " + location + " for " + ledgerId + "@" + entryId);
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertNull(failure.get());
+    }
+}
@@ -0,0 +1,202 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import org.apache.bookkeeper.bookie.EntryLocation;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** we want to verify that the entry location cache only exposes the locations that are in the db */
+
+public class EntryLocationIndexTest {
+
+    private final Map<List<Long>, Long> db = new ConcurrentSkipListMap<>((a, b) -> {
+        int c = Long.compare(a.get(0), b.get(0));
+        return c != 0 ? c : Long.compare(a.get(1), b.get(1));
+    });
+    private KeyValueStorage storage;
+    private EntryLocationIndex index;
+    private volatile boolean failFlush = false;
+    // run while a lookup is in the db, after the location was read
+    private volatile Runnable duringGet = null;
+
+    private static List<Long> key(byte[] key) {
+        List<Long> k = new ArrayList<>();
+        k.add(ArrayUtil.getLong(key, 0));
+        k.add(ArrayUtil.getLong(key, 8));
+        return k;
+    }
+
+    private static List<Long> key(long ledgerId, long entryId) {
+        List<Long> k = new ArrayList<>();
+        k.add(ledgerId);
+        k.add(entryId);
+        return k;
+    }
+
+    /**
+     * Applies its operations to the db on flush, unless the flush fails.
+     */
+    private class FakeBatch implements Batch {
+        private final List<Runnable> ops = new ArrayList<>();
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            List<Long> k = key(key);
+            long location = ArrayUtil.getLong(value, 0);
+            ops.add(() -> db.put(k, location));
+        }
+
+        @Override
+        public void remove(byte[] key) {
+            List<Long> k = key(key);
+            ops.add(() -> db.remove(k));
+        }
+
+        @Override
+        public void deleteRange(byte[] beginKey, byte[] endKey) {
+            long ledgerId = ArrayUtil.getLong(beginKey, 0);
+            ops.add(() -> db.keySet().removeIf(k -> k.get(0) == ledgerId));
+        }
+
+        @Override
+        public void clear() {
+            ops.clear();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (failFlush) {
+                throw new IOException("Flush failure");
+            }
+            ops.forEach(Runnable::run);
+            ops.clear();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.storage = mock(KeyValueStorage.class);
+        when(this.storage.newBatch()).thenAnswer(invocation -> new FakeBatch());
+        when(this.storage.get(any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            Long location = db.get(key((byte[]) invocation.getArgument(0)));
+            Runnable action = duringGet;
+            if (action != null) {
+                duringGet = null;
+                action.run();
+            }
+            if (location == null) {
+                return -1;
+            }
+            ArrayUtil.setLong(invocation.getArgument(1), 0, location);
+            return Long.BYTES;
+        });
+        KeyValueStorageFactory factory = mock(KeyValueStorageFactory.class);
+        when(factory.newKeyValueStorage(anyString(), anyString(), any(), any())).thenReturn(this.storage);
+
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setLedgerDirNames(new String[] { "/tmp/bk-data" });
+        conf.setProperty(EntryLocationIndex.ENTRY_LOCATION_CACHE_MAX_SIZE_MB, 1);
+        this.index = new EntryLocationIndex(conf, factory, "/tmp/bk-data", NullStatsLogger.INSTANCE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        this.index.close();
+    }
+
+    @Test
+    public void cacheFilledOnFlushTest() throws Exception {
+        Batch batch = this.index.newBatch();
+        this.index.addLocation(batch, 1L, 0L, 100L);
+        Assert.assertEquals("Location should not be exposed before the flush", 0, this.index.getLocation(1L, 0L));
+        verify(this.storage, times(1)).get(any(byte[].class), any(byte[].class));
+
+        batch.flush();
+        batch.close();
+        Assert.assertEquals(100L, this.index.getLocation(1L, 0L));
+        Assert.assertEquals(100L, this.index.getLocation(1L, 0L));
+        verify(this.storage, times(1)).get(any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    public void failedFlushTest() throws Exception {
+        this.failFlush = true;
+        try {
+            this.index.addLocation(1L, 0L, 100L);
+            Assert.fail("Should fail with the flush failure");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals("Failed location should not be cached", 0, this.index.getLocation(1L, 0L));
+        Assert.assertEquals(0, this.index.getLocation(1L, 0L));
+        verify(this.storage, times(2)).get(any(byte[].class), any(byte[].class));
+    }
+
+    @Test
+    public void lookupRacingWithDeleteTest() throws Exception {
+        // not in the cache, so that the lookup reads the db
+        this.db.put(key(1L, 0L), 100L);
+        this.duringGet = () -> {
+            try {
+                this.index.delete(1L);
+                this.index.removeOffsetFromDeletedLedgers();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        Assert.assertEquals(100L, this.index.getLocation(1L, 0L));
+        Assert.assertEquals("Deleted location should not be cached", 0, this.index.getLocation(1L, 0L));
+    }
+
+    @Test
+    public void lookupRacingWithUpdateTest() throws Exception {
+        this.db.put(key(1L, 0L), 100L);
+        this.duringGet = () -> {
+            try {
+                this.index.updateLocations(Collections.singletonList(new EntryLocation(1L, 0L, 200L)));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        };
+        Assert.assertEquals(100L, this.index.getLocation(1L, 0L));
+        Assert.assertEquals("Old location should not be cached", 200L, this.index.getLocation(1L, 0L));
+    }
+
+    @Test
+    public void largeBatchTest() throws Exception {
+        // more locations than the cache holds, the last ones are cached
+        Batch batch = this.index.newBatch();
+        int count = 200_000;
+        for (long entryId = 0; entryId < count; entryId++) {
+            this.index.addLocation(batch, 1L, entryId, entryId + 1);
+        }
+        batch.flush();
+        batch.close();
+        Assert.assertEquals(count, this.db.size());
+        Assert.assertEquals(count, this.index.getLocation(1L, count - 1));
+        verify(this.storage, times(0)).get(any(byte[].class), any(byte[].class));
+        Assert.assertEquals(1L, this.index.getLocation(1L, 0L));
+    }
+}
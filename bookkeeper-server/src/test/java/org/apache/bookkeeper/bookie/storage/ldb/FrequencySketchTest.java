@@ -0,0 +1,44 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** we want to verify that the sketch counts the accesses of a key, saturates, and ages the counts */
+
+public class FrequencySketchTest {
+
+    @Test
+    public void testCountAndSaturate() {
+        FrequencySketch sketch = new FrequencySketch(1024);
+        Assert.assertEquals(0, sketch.frequency(1, 0));
+
+        for (int i = 1; i <= 5; i++) {
+            sketch.increment(1, 0);
+            Assert.assertEquals(i, sketch.frequency(1, 0));
+        }
+        Assert.assertEquals(0, sketch.frequency(1, 1));
+        Assert.assertEquals(0, sketch.frequency(2, 0));
+
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(1, 0);
+        }
+        Assert.assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(1, 0));
+    }
+
+    @Test
+    public void testAging() {
+        // 64 counters words, the counts are halved after 640 additions
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < FrequencySketch.MAX_FREQUENCY; i++) {
+            sketch.increment(1, 0);
+        }
+        Assert.assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(1, 0));
+
+        int entryId = 0;
+        while (sketch.frequency(1, 0) == FrequencySketch.MAX_FREQUENCY) {
+            Assert.assertTrue("The sketch was never aged", entryId < 10 * 64 * 4);
+            sketch.increment(2, entryId++);
+        }
+        Assert.assertTrue(sketch.frequency(1, 0) <= FrequencySketch.MAX_FREQUENCY / 2);
+    }
+}
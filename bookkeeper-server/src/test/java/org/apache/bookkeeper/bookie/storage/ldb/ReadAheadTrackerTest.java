@@ -0,0 +1,67 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/** we want to verify that the read-ahead window follows the access pattern and restarts after an eviction */
+
+public class ReadAheadTrackerTest {
+
+    private static final long LEDGER_ID = 1L;
+
+    private final ReadAheadTracker tracker = new ReadAheadTracker(10, 40);
+
+    @Test
+    public void testSequentialGrowsWindow() {
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 0));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 11);
+        Assert.assertEquals(20, this.tracker.onCacheMiss(LEDGER_ID, 11));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 32);
+        Assert.assertEquals(40, this.tracker.onCacheMiss(LEDGER_ID, 32));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 73);
+        Assert.assertEquals(40, this.tracker.onCacheMiss(LEDGER_ID, 73));
+    }
+
+    @Test
+    public void testRandomShrinksWindow() {
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 0));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 11);
+        Assert.assertEquals(2, this.tracker.onCacheMiss(LEDGER_ID, 100));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 103);
+        Assert.assertEquals(0, this.tracker.onCacheMiss(LEDGER_ID, 50));
+
+        // sequential again
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 51));
+    }
+
+    @Test
+    public void testMissDuringReadAhead() {
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 0));
+        Assert.assertEquals(0, this.tracker.onCacheMiss(LEDGER_ID, 1));
+        Assert.assertEquals(0, this.tracker.onCacheMiss(LEDGER_ID, 5));
+
+        // the window didn't change
+        this.tracker.onReadAheadComplete(LEDGER_ID, 11);
+        Assert.assertEquals(20, this.tracker.onCacheMiss(LEDGER_ID, 11));
+    }
+
+    @Test
+    public void testMissAfterReadAheadCompleted() {
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 0));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 11);
+
+        // the entries read ahead were evicted before being read
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 5));
+        Assert.assertEquals(0, this.tracker.onCacheMiss(LEDGER_ID, 6));
+        this.tracker.onReadAheadComplete(LEDGER_ID, 16);
+        Assert.assertEquals(20, this.tracker.onCacheMiss(LEDGER_ID, 16));
+    }
+
+    @Test
+    public void testReadAheadStoppedEarly() {
+        Assert.assertEquals(10, this.tracker.onCacheMiss(LEDGER_ID, 0));
+        // end of the entry log after 3 entries
+        this.tracker.onReadAheadComplete(LEDGER_ID, 4);
+        Assert.assertEquals(20, this.tracker.onCacheMiss(LEDGER_ID, 4));
+    }
+}
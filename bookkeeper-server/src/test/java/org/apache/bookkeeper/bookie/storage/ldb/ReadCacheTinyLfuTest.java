@@ -0,0 +1,127 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/** we want to verify that the TINY_LFU read cache only admits re-read entries once full, and keeps the frequent ones */
+
+public class ReadCacheTinyLfuTest {
+
+    // 4 segments of 819 bytes, ie: 12 entries of 64 bytes per segment
+    private static final int CACHE_SIZE = 4 * 1024;
+    private static final int MAX_SEGMENT_SIZE = 1024;
+    private static final int ENTRIES_PER_SEGMENT = 12;
+
+    private static ByteBuf entry() {
+        return Unpooled.wrappedBuffer(new byte[64]);
+    }
+
+    private static void read(ReadCache cache, long ledgerId, long entryId, int times) {
+        for (int i = 0; i < times; i++) {
+            ByteBuf buf = cache.get(ledgerId, entryId);
+            if (buf != null) {
+                buf.release();
+            }
+        }
+    }
+
+    private static ReadCache fullCache(ReadCache.EvictionPolicy policy) {
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, CACHE_SIZE, MAX_SEGMENT_SIZE, policy);
+        for (int i = 0; i < 5 * ENTRIES_PER_SEGMENT; i++) {
+            Assert.assertTrue(cache.put(1, i, entry(), true));
+        }
+        return cache;
+    }
+
+    @Test
+    public void testAdmission() {
+        ReadCache cache = fullCache(ReadCache.EvictionPolicy.TINY_LFU);
+        try {
+            // entry read once, by the miss that inserts it
+            read(cache, 2, 0, 1);
+            Assert.assertFalse(cache.put(2, 0, entry()));
+            Assert.assertFalse(cache.hasEntry(2, 0));
+
+            // entry that keeps being re-read
+            read(cache, 2, 1, 2);
+            Assert.assertTrue(cache.put(2, 1, entry()));
+            Assert.assertTrue(cache.hasEntry(2, 1));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testAdmissionUntilFull() {
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, CACHE_SIZE, MAX_SEGMENT_SIZE,
+                ReadCache.EvictionPolicy.TINY_LFU);
+        try {
+            Assert.assertTrue(cache.put(2, 0, entry()));
+            Assert.assertTrue(cache.hasEntry(2, 0));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testFifoAdmitsAll() {
+        ReadCache cache = fullCache(ReadCache.EvictionPolicy.FIFO);
+        try {
+            read(cache, 2, 0, 1);
+            Assert.assertTrue(cache.put(2, 0, entry()));
+            Assert.assertTrue(cache.hasEntry(2, 0));
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testFrequentEntriesSurviveRotation() {
+        ReadCache cache = new ReadCache(UnpooledByteBufAllocator.DEFAULT, CACHE_SIZE, MAX_SEGMENT_SIZE,
+                ReadCache.EvictionPolicy.TINY_LFU);
+        try {
+            for (int i = 0; i < ENTRIES_PER_SEGMENT; i++) {
+                Assert.assertTrue(cache.put(1, i, entry(), true));
+            }
+            read(cache, 1, 0, 3);
+
+            // fill the other segments, and rotate the first one
+            for (int i = ENTRIES_PER_SEGMENT; i < 4 * ENTRIES_PER_SEGMENT + 2; i++) {
+                Assert.assertTrue(cache.put(1, i, entry(), true));
+            }
+
+            Assert.assertTrue(cache.hasEntry(1, 0));
+            Assert.assertFalse(cache.hasEntry(1, 1));
+            Assert.assertTrue(cache.hasEntry(1, 4 * ENTRIES_PER_SEGMENT + 1));
+            ByteBuf buf = cache.get(1, 0);
+            Assert.assertEquals(64, buf.readableBytes());
+            buf.release();
+        } finally {
+            cache.close();
+        }
+    }
+
+    @Test
+    public void testEvictionPolicyConfig() {
+        ServerConfiguration conf = new ServerConfiguration();
+        Assert.assertEquals(ReadCache.EvictionPolicy.FIFO,
+                SingleDirectoryDbLedgerStorage.getReadCacheEvictionPolicy(conf));
+
+        conf.setProperty(DbLedgerStorage.READ_CACHE_EVICTION_POLICY, "tiny_lfu");
+        Assert.assertEquals(ReadCache.EvictionPolicy.TINY_LFU,
+                SingleDirectoryDbLedgerStorage.getReadCacheEvictionPolicy(conf));
+
+        conf.setProperty(DbLedgerStorage.READ_CACHE_EVICTION_POLICY, "LRU");
+        try {
+            SingleDirectoryDbLedgerStorage.getReadCacheEvictionPolicy(conf);
+            Assert.fail("Should have failed on an unknown policy");
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().contains(DbLedgerStorage.READ_CACHE_EVICTION_POLICY));
+            Assert.assertTrue(e.getMessage().contains("LRU"));
+        }
+    }
+}
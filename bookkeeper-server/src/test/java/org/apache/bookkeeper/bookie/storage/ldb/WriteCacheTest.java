@@ -0,0 +1,166 @@
+package org.apache.bookkeeper.bookie.storage.ldb;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the iteration of the {@link WriteCache} entries sorted in parallel shards.
+ */
+public class WriteCacheTest {
+
+    private static final int LEDGERS = 100;
+    private static final int ENTRIES_PER_LEDGER = 10;
+    private static final int SHARDS = 4;
+
+    private WriteCache cache;
+    private ExecutorService sortExecutor;
+
+    @Before
+    public void setUp() {
+        this.cache = new WriteCache(ByteBufAllocator.DEFAULT, 1024 * 1024, 64 * 1024);
+        this.sortExecutor = Executors.newFixedThreadPool(SHARDS);
+
+        List<long[]> entries = new ArrayList<>();
+        for (long ledgerId = 0; ledgerId < LEDGERS; ledgerId++) {
+            for (long entryId = 0; entryId < ENTRIES_PER_LEDGER; entryId++) {
+                entries.add(new long[] { ledgerId * 7, entryId });
+            }
+        }
+        Collections.shuffle(entries, new Random(1));
+        for (long[] entry : entries) {
+            ByteBuf buffer = Unpooled.buffer(16);
+            buffer.writeLong(entry[0]);
+            buffer.writeLong(entry[1]);
+            Assert.assertTrue(this.cache.put(entry[0], entry[1], buffer));
+            buffer.release();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        this.sortExecutor.shutdownNow();
+        this.cache.close();
+    }
+
+    private void assertSortedForEach(ExecutorService executor) throws IOException {
+        AtomicInteger count = new AtomicInteger();
+        long[] previous = { -1, -1 };
+        this.cache.forEach((ledgerId, entryId, entry) -> {
+            Assert.assertTrue(ledgerId > previous[0] || (ledgerId == previous[0] && entryId > previous[1]));
+            Assert.assertEquals(ledgerId, entry.getLong(entry.readerIndex()));
+            Assert.assertEquals(entryId, entry.getLong(entry.readerIndex() + 8));
+            previous[0] = ledgerId;
+            previous[1] = entryId;
+            count.incrementAndGet();
+        }, executor, SHARDS);
+        Assert.assertEquals(LEDGERS * ENTRIES_PER_LEDGER, count.get());
+    }
+
+    @Test
+    public void testShardedForEach() throws Exception {
+        assertSortedForEach(this.sortExecutor);
+        // the sharded iteration can be repeated, and matches the single threaded one
+        assertSortedForEach(this.sortExecutor);
+
+        List<Long> sharded = new ArrayList<>();
+        this.cache.forEach((ledgerId, entryId, entry) -> sharded.add(ledgerId * ENTRIES_PER_LEDGER + entryId),
+                this.sortExecutor, SHARDS);
+        List<Long> sequential = new ArrayList<>();
+        this.cache.forEach((ledgerId, entryId, entry) -> sequential.add(ledgerId * ENTRIES_PER_LEDGER + entryId));
+        Assert.assertEquals(sequential, sharded);
+    }
+
+    @Test
+    public void testShardedForEachWithDeletedLedger() throws Exception {
+        this.cache.deleteLedger(7);
+        AtomicInteger count = new AtomicInteger();
+        this.cache.forEach((ledgerId, entryId, entry) -> {
+            Assert.assertNotEquals(7, ledgerId);
+            count.incrementAndGet();
+        }, this.sortExecutor, SHARDS);
+        Assert.assertEquals((LEDGERS - 1) * ENTRIES_PER_LEDGER, count.get());
+    }
+
+    @Test
+    public void testRetryAfterConsumerFailure() throws Exception {
+        // only the first shard is sorted, the others wait until the iteration has failed
+        CountDownLatch failed = new CountDownLatch(1);
+        AtomicInteger submitted = new AtomicInteger();
+        ExecutorService blockingExecutor = mock(ExecutorService.class);
+        when(blockingExecutor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            Runnable task = invocation.getArgument(0);
+            if (submitted.getAndIncrement() == 0) {
+                return this.sortExecutor.submit(task);
+            }
+            return this.sortExecutor.submit(() -> {
+                Uninterruptibles.awaitUninterruptibly(failed);
+                task.run();
+            });
+        });
+
+        AtomicInteger consumed = new AtomicInteger();
+        try {
+            this.cache.forEach((ledgerId, entryId, entry) -> {
+                if (consumed.incrementAndGet() == 10) {
+                    throw new IOException("failed to add the entry");
+                }
+            }, blockingExecutor, SHARDS);
+            Assert.fail("Should have failed to consume the entries");
+        } catch (IOException e) {
+            // expected
+        }
+        Assert.assertEquals(10, consumed.get());
+        Assert.assertEquals(SHARDS, submitted.get());
+
+        // the sort tasks of the failed iteration must not touch the entries of the next one
+        failed.countDown();
+        assertSortedForEach(this.sortExecutor);
+
+        this.sortExecutor.shutdown();
+        Assert.assertTrue(this.sortExecutor.awaitTermination(10, TimeUnit.SECONDS));
+        this.sortExecutor = Executors.newFixedThreadPool(SHARDS);
+        assertSortedForEach(this.sortExecutor);
+    }
+
+    @Test
+    public void testSortFailure() throws Exception {
+        ExecutorService rejectingExecutor = mock(ExecutorService.class);
+        AtomicInteger submitted = new AtomicInteger();
+        when(rejectingExecutor.submit(any(Runnable.class))).thenAnswer(invocation -> {
+            if (submitted.getAndIncrement() == 2) {
+                throw new RejectedExecutionException("full");
+            }
+            return this.sortExecutor.submit((Runnable) invocation.getArgument(0));
+        });
+
+        try {
+            this.cache.forEach((ledgerId, entryId, entry) -> { }, rejectingExecutor, SHARDS);
+            Assert.fail("Should have failed to sort the entries");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        assertSortedForEach(this.sortExecutor);
+    }
+}
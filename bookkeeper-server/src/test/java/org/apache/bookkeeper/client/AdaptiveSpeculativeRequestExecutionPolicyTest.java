@@ -0,0 +1,188 @@
+package org.apache.bookkeeper.client;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the timeouts and of the budget of the speculative requests of
+ * {@link AdaptiveSpeculativeRequestExecutionPolicy}, with a scheduler run by the test.
+ */
+public class AdaptiveSpeculativeRequestExecutionPolicyTest {
+
+    private static final int FIRST_TIMEOUT_MS = 10;
+    private static final int MIN_TIMEOUT_MS = 5;
+    private static final int MAX_TIMEOUT_MS = 100;
+    private static final float BACKOFF_MULTIPLIER = 2;
+    private static final double MAX_RATIO = 0.1;
+
+    private final List<Runnable> scheduledTasks = new ArrayList<>();
+    private final List<Long> scheduledDelaysNanos = new ArrayList<>();
+    private final AtomicInteger issued = new AtomicInteger();
+    // Whether the request executors issue their speculative requests
+    private final AtomicBoolean issue = new AtomicBoolean(true);
+    private ScheduledExecutorService scheduler;
+    private BookieReadLatencyTracker latencyTracker;
+    private AdaptiveSpeculativeRequestExecutionPolicy policy;
+
+    @Before
+    public void setUp() {
+        this.scheduler = mock(ScheduledExecutorService.class);
+        when(this.scheduler.schedule(any(Runnable.class), anyLong(), eq(TimeUnit.NANOSECONDS))).thenAnswer(
+                invocation -> {
+                    this.scheduledTasks.add(invocation.getArgument(0));
+                    this.scheduledDelaysNanos.add(invocation.getArgument(1));
+                    return null;
+                });
+        this.latencyTracker = mock(BookieReadLatencyTracker.class);
+        when(this.latencyTracker.getReadLatencyNanos(any(BookieId.class), anyDouble(), anyInt())).thenReturn(-1L);
+        this.policy = new AdaptiveSpeculativeRequestExecutionPolicy(this.latencyTracker, 99, FIRST_TIMEOUT_MS,
+                MIN_TIMEOUT_MS, MAX_TIMEOUT_MS, BACKOFF_MULTIPLIER, MAX_RATIO);
+    }
+
+    private SpeculativeRequestExecutor newRequestExecutor(BookieId bookie) {
+        return new SpeculativeRequestExecutor() {
+            @Override
+            public ListenableFuture<Boolean> issueSpeculativeRequest() {
+                if (issue.get()) {
+                    issued.incrementAndGet();
+                }
+                return Futures.immediateFuture(issue.get());
+            }
+
+            @Override
+            public BookieId getPendingRequestBookie() {
+                return bookie;
+            }
+        };
+    }
+
+    /**
+     * Start requests, and run their first speculative request tasks.
+     */
+    private int runRequests(int numRequests) {
+        int issuedBefore = this.issued.get();
+        for (int i = 0; i < numRequests; i++) {
+            this.policy.initiateSpeculativeRequest(this.scheduler, newRequestExecutor(null));
+        }
+        runScheduledTasks();
+        return this.issued.get() - issuedBefore;
+    }
+
+    /**
+     * Run the tasks scheduled so far, not the tasks they schedule.
+     */
+    private void runScheduledTasks() {
+        List<Runnable> tasks = new ArrayList<>(this.scheduledTasks);
+        this.scheduledTasks.clear();
+        this.scheduledDelaysNanos.clear();
+        tasks.forEach(Runnable::run);
+    }
+
+    @Test
+    public void testTimeouts() {
+        this.policy.initiateSpeculativeRequest(this.scheduler, newRequestExecutor(null));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(FIRST_TIMEOUT_MS), (long) this.scheduledDelaysNanos.get(0));
+
+        // the following speculative requests back off, up to the max timeout
+        long expectedTimeoutMs = FIRST_TIMEOUT_MS;
+        for (int i = 0; i < 5; i++) {
+            runScheduledTasks();
+            expectedTimeoutMs = Math.min(MAX_TIMEOUT_MS, (long) (expectedTimeoutMs * BACKOFF_MULTIPLIER));
+            Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(expectedTimeoutMs),
+                    (long) this.scheduledDelaysNanos.get(0));
+        }
+        Assert.assertEquals(MAX_TIMEOUT_MS, expectedTimeoutMs);
+
+        // the percentile of the response times of the bookie, bounded by the min and max timeouts
+        BookieId bookie = BookieId.parse("bookie-1:3181");
+        this.scheduledTasks.clear();
+        this.scheduledDelaysNanos.clear();
+        when(this.latencyTracker.getReadLatencyNanos(eq(bookie), eq(99.0), anyInt()))
+                .thenReturn(TimeUnit.MILLISECONDS.toNanos(20), TimeUnit.MILLISECONDS.toNanos(1),
+                        TimeUnit.SECONDS.toNanos(1));
+        for (int i = 0; i < 3; i++) {
+            this.policy.initiateSpeculativeRequest(this.scheduler, newRequestExecutor(bookie));
+        }
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(20), (long) this.scheduledDelaysNanos.get(0));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(MIN_TIMEOUT_MS), (long) this.scheduledDelaysNanos.get(1));
+        Assert.assertEquals(TimeUnit.MILLISECONDS.toNanos(MAX_TIMEOUT_MS), (long) this.scheduledDelaysNanos.get(2));
+    }
+
+    @Test
+    public void testMaxBurst() {
+        // the budget of the requests started while it is full is lost, the burst is capped
+        int numRequests = (int) (10 * AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST / MAX_RATIO);
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST, runRequests(numRequests));
+        Assert.assertEquals(0, runRequests(1));
+    }
+
+    @Test
+    public void testBudget() {
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST,
+                runRequests((int) AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST * 2));
+
+        // once the budget is exhausted, each request adds a fraction of a speculative request to it
+        int requestsPerToken = (int) Math.round(1 / MAX_RATIO);
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(1, runRequests(requestsPerToken));
+        }
+        Assert.assertEquals(0, runRequests(requestsPerToken - 1));
+        Assert.assertEquals(1, runRequests(1));
+    }
+
+    @Test
+    public void testBackoffOnExhaustedBudget() {
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST,
+                runRequests((int) AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST));
+
+        // the speculative requests stop when the budget is exhausted, and don't schedule the next ones
+        this.policy.initiateSpeculativeRequest(this.scheduler, newRequestExecutor(null));
+        this.scheduledTasks.remove(this.scheduledTasks.size() - 1).run();
+        this.scheduledDelaysNanos.remove(this.scheduledDelaysNanos.size() - 1);
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST, this.issued.get());
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST, this.scheduledTasks.size());
+
+        // the next speculative requests of the outstanding requests stop as well
+        runScheduledTasks();
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST, this.issued.get());
+        Assert.assertTrue(this.scheduledTasks.isEmpty());
+
+        // and resume as the budget refills
+        Assert.assertEquals(1, runRequests((int) Math.round(1 / MAX_RATIO)));
+    }
+
+    @Test
+    public void testRefundWhenNotIssued() {
+        Assert.assertEquals(AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST - 1,
+                runRequests((int) AdaptiveSpeculativeRequestExecutionPolicy.MAX_BURST - 1));
+
+        // the token taken for a speculative request that was not issued is given back
+        this.issue.set(false);
+        for (int i = 0; i < 10; i++) {
+            this.policy.initiateSpeculativeRequest(this.scheduler, newRequestExecutor(null));
+            runScheduledTasks();
+        }
+        this.issue.set(true);
+        this.scheduledTasks.clear();
+        Assert.assertEquals(2, runRequests(2));
+    }
+}
@@ -0,0 +1,64 @@
+package org.apache.bookkeeper.client;
+
+import org.apache.bookkeeper.net.BookieId;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/** we want to verify that the samples of a bookie count less as they age, so that old reads do not make an estimate */
+
+public class BookieReadLatencyTrackerTest {
+
+    private static final long HALF_LIFE_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final BookieId BOOKIE = BookieId.parse("bookie-1:3181");
+
+    private final BookieReadLatencyTracker tracker = new BookieReadLatencyTracker(HALF_LIFE_NANOS);
+
+    private void record(int count, long latencyNanos, long nowNanos) {
+        for (int i = 0; i < count; i++) {
+            this.tracker.recordReadLatency(BOOKIE, latencyNanos, nowNanos);
+        }
+    }
+
+    @Test
+    public void testOldSamplesAreNotEnough() {
+        record(100, TimeUnit.MILLISECONDS.toNanos(1), 0L);
+        Assert.assertTrue(this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 20, 0L) > 0);
+
+        // 3 half-lives later the 100 reads only count as 12.5
+        long now = 3 * HALF_LIFE_NANOS;
+        Assert.assertEquals(-1L, this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 20, now));
+        Assert.assertTrue(this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 10, now) > 0);
+
+        record(10, TimeUnit.MILLISECONDS.toNanos(1), now);
+        Assert.assertTrue(this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 20, now) > 0);
+    }
+
+    @Test
+    public void testPercentileFollowsRecentSamples() {
+        record(100, TimeUnit.MILLISECONDS.toNanos(1), 0L);
+        long now = 3 * HALF_LIFE_NANOS;
+        record(100, TimeUnit.MILLISECONDS.toNanos(10), now);
+
+        long median = this.tracker.getReadLatencyNanos(BOOKIE, 50.0, 20, now);
+        Assert.assertTrue(median >= TimeUnit.MILLISECONDS.toNanos(10));
+        Assert.assertTrue(median < TimeUnit.MILLISECONDS.toNanos(13));
+    }
+
+    @Test
+    public void testEstimateExpires() {
+        record(100, TimeUnit.MILLISECONDS.toNanos(1), 0L);
+        Assert.assertEquals(-1L, this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 1, 5 * HALF_LIFE_NANOS));
+
+        // the expired estimate is dropped, new samples start from scratch
+        record(1, TimeUnit.MILLISECONDS.toNanos(1), 5 * HALF_LIFE_NANOS);
+        Assert.assertEquals(-1L, this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 2, 5 * HALF_LIFE_NANOS));
+        Assert.assertTrue(this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 1, 5 * HALF_LIFE_NANOS) > 0);
+    }
+
+    @Test
+    public void testUnknownBookie() {
+        Assert.assertEquals(-1L, this.tracker.getReadLatencyNanos(BOOKIE, 99.0, 1, 0L));
+    }
+}
@@ -0,0 +1,118 @@
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.client.impl.LedgerEntryImpl;
+import org.apache.bookkeeper.stats.Counter;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** we want to verify that each read of the cache is counted once, as a hit or a miss */
+
+public class ClientEntryCacheTest {
+
+    private static final long LEDGER_ID = 1L;
+
+    private Counter hits;
+    private Counter misses;
+    private ClientEntryCache cache;
+
+    @Before
+    public void setUp() {
+        this.hits = mock(Counter.class);
+        this.misses = mock(Counter.class);
+        BookKeeperClientStats clientStats = mock(BookKeeperClientStats.class);
+        when(clientStats.getReadCacheHitsCounter()).thenReturn(this.hits);
+        when(clientStats.getReadCacheMissesCounter()).thenReturn(this.misses);
+        this.cache = new ClientEntryCache(UnpooledByteBufAllocator.DEFAULT, 16 * 1024, clientStats);
+    }
+
+    @After
+    public void tearDown() {
+        this.cache.clear();
+    }
+
+    private static ByteBuf data(String content) {
+        return Unpooled.wrappedBuffer(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean get(long entryId, String expected) {
+        LedgerEntryImpl entry = LedgerEntryImpl.create(LEDGER_ID, entryId);
+        try {
+            boolean found = this.cache.get(LEDGER_ID, entryId, entry);
+            if (found) {
+                Assert.assertEquals(expected, entry.getEntryBuffer().toString(StandardCharsets.UTF_8));
+            }
+            return found;
+        } finally {
+            entry.close();
+        }
+    }
+
+    @Test
+    public void hitMissTest() {
+        Assert.assertFalse(get(0L, null));
+        verify(this.misses, times(1)).inc();
+        verify(this.hits, never()).inc();
+
+        ByteBuf data = data("entry-0");
+        this.cache.put(LEDGER_ID, 0L, 7L, data);
+        Assert.assertEquals("Caller keeps the ownership of the data", 1, data.refCnt());
+
+        Assert.assertTrue(get(0L, "entry-0"));
+        Assert.assertTrue(get(0L, "entry-0"));
+        verify(this.hits, times(2)).inc();
+        verify(this.misses, times(1)).inc();
+    }
+
+    @Test
+    public void getAfterFetchTest() {
+        // the reader waiting for a concurrent fetch was counted once, when it missed the entry
+        Assert.assertFalse(get(0L, null));
+        CompletableFuture<Void> fetch = new CompletableFuture<>();
+        Assert.assertNull(this.cache.startFetch(LEDGER_ID, 0L, fetch));
+        Assert.assertSame(fetch, this.cache.startFetch(LEDGER_ID, 0L, new CompletableFuture<>()));
+
+        this.cache.put(LEDGER_ID, 0L, 7L, data("entry-0"));
+        this.cache.endFetch(LEDGER_ID, 0L, fetch);
+        Assert.assertTrue(fetch.isDone());
+
+        LedgerEntryImpl entry = LedgerEntryImpl.create(LEDGER_ID, 0L);
+        Assert.assertTrue(this.cache.getAfterFetch(LEDGER_ID, 0L, entry));
+        Assert.assertEquals(7L, entry.getLength());
+        entry.close();
+        LedgerEntryImpl missing = LedgerEntryImpl.create(LEDGER_ID, 1L);
+        Assert.assertFalse(this.cache.getAfterFetch(LEDGER_ID, 1L, missing));
+        missing.close();
+
+        verify(this.misses, times(1)).inc();
+        verify(this.hits, never()).inc();
+        Assert.assertNull("Fetch should be unregistered", this.cache.startFetch(LEDGER_ID, 0L, fetch));
+    }
+
+    @Test
+    public void evictionTest() {
+        // 16 segments of 1KB, the entries of 600 bytes don't fit twice in a segment
+        byte[] content = new byte[600];
+        for (long entryId = 0; entryId < 64; entryId++) {
+            this.cache.put(LEDGER_ID, entryId, content.length, Unpooled.wrappedBuffer(content));
+        }
+        Assert.assertTrue("Cache size should be bounded", this.cache.size() <= 16 * 1024);
+        Assert.assertTrue(this.cache.size() > 0);
+
+        this.cache.clear();
+        Assert.assertEquals(0, this.cache.size());
+    }
+}
@@ -0,0 +1,197 @@
+package org.apache.bookkeeper.client;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.client.api.WriteHandle;
+import org.apache.bookkeeper.proto.BookieClient;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the deferred adds of {@link LedgerWriteBatch}, none of them dropped when the batch fails or is abandoned.
+ */
+public class LedgerWriteBatchTest {
+
+    private BookieClient bookieClient;
+    private ClientContext clientCtx;
+    private LedgerWriteBatch batch;
+
+    @Before
+    public void setUp() {
+        this.bookieClient = mock(BookieClient.class);
+        this.clientCtx = mock(ClientContext.class);
+        when(this.clientCtx.getBookieClient()).thenReturn(this.bookieClient);
+        this.batch = new LedgerWriteBatch(this.bookieClient);
+    }
+
+    private static LedgerHandle newLedgerHandle(long ledgerId) {
+        LedgerHandle lh = mock(LedgerHandle.class);
+        when(lh.getId()).thenReturn(ledgerId);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(lh).executeOrdered(any(Runnable.class));
+        return lh;
+    }
+
+    /**
+     * Add an op to the batch, the way the ledger handle does when an entry is appended.
+     */
+    private PendingAddOp append(LedgerHandle lh, long entryId) {
+        PendingAddOp op = newOp(lh, entryId, this.clientCtx);
+        WriteHandle handle = mock(WriteHandle.class);
+        when(handle.appendAsync(any(ByteBuf.class))).thenAnswer(invocation -> {
+            Assert.assertTrue("Op should be deferred", LedgerWriteBatch.deferIfBatching(op));
+            return new CompletableFuture<Long>();
+        });
+        this.batch.append(handle, Unpooled.wrappedBuffer(new byte[] { 1 }));
+        return op;
+    }
+
+    private static PendingAddOp newOp(LedgerHandle lh, long entryId, ClientContext clientCtx) {
+        PendingAddOp op = mock(PendingAddOp.class);
+        op.lh = lh;
+        op.entryId = entryId;
+        op.clientCtx = clientCtx;
+        return op;
+    }
+
+    @Test
+    public void sendTest() {
+        LedgerHandle lh1 = newLedgerHandle(1L);
+        LedgerHandle lh2 = newLedgerHandle(2L);
+        List<PendingAddOp> ops = new ArrayList<>();
+        ops.add(append(lh1, 0L));
+        ops.add(append(lh2, 0L));
+        ops.add(append(lh1, 1L));
+        Assert.assertFalse("Op should not be deferred out of the batch", LedgerWriteBatch.deferIfBatching(ops.get(0)));
+        for (PendingAddOp op : ops) {
+            verify(op, never()).initiate();
+        }
+
+        this.batch.send();
+
+        // the ops are initiated ledger by ledger, and the flushes deferred to the end
+        InOrder inOrder = inOrder(this.bookieClient, ops.get(0), ops.get(2), ops.get(1));
+        inOrder.verify(this.bookieClient).deferFlushes();
+        inOrder.verify(ops.get(0)).initiate();
+        inOrder.verify(ops.get(2)).initiate();
+        inOrder.verify(ops.get(1)).initiate();
+        inOrder.verify(this.bookieClient).flushDeferred();
+        verify(lh1, never()).handleUnrecoverableErrorDuringAdd(any(int.class));
+        verify(lh2, never()).handleUnrecoverableErrorDuringAdd(any(int.class));
+
+        try {
+            this.batch.send();
+            Assert.fail("Should not send twice");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void sendFailureTest() {
+        LedgerHandle lh1 = newLedgerHandle(1L);
+        LedgerHandle lh2 = newLedgerHandle(2L);
+        LedgerHandle lh3 = newLedgerHandle(3L);
+        PendingAddOp sent = append(lh1, 0L);
+        PendingAddOp failing = append(lh2, 0L);
+        PendingAddOp afterFailing = append(lh2, 1L);
+        PendingAddOp otherLedger = append(lh3, 0L);
+        RuntimeException failure = new RuntimeException("Failed to compute the digest");
+        doThrow(failure).doNothing().when(failing).initiate();
+
+        try {
+            this.batch.send();
+            Assert.fail("Should fail with the initiate failure");
+        } catch (RuntimeException e) {
+            Assert.assertSame(failure, e);
+        }
+
+        verify(this.bookieClient).flushDeferred();
+        // the ops sent before the failure are left alone
+        verify(sent, times(1)).initiate();
+        verify(lh1, never()).errorOutPendingAdds(any(int.class));
+        // the ledgers of the ops that were not sent are failed, and the ops are run once to release them
+        verify(failing, times(1)).initiate();
+        verify(lh2).errorOutPendingAdds(BKException.Code.UnexpectedConditionException);
+        verify(lh2).handleUnrecoverableErrorDuringAdd(BKException.Code.UnexpectedConditionException);
+        verify(afterFailing, times(1)).initiate();
+        verify(lh3).errorOutPendingAdds(BKException.Code.UnexpectedConditionException);
+        verify(lh3).handleUnrecoverableErrorDuringAdd(BKException.Code.UnexpectedConditionException);
+        verify(otherLedger, times(1)).initiate();
+    }
+
+    @Test
+    public void closeTest() {
+        LedgerHandle lh1 = newLedgerHandle(1L);
+        PendingAddOp op = append(lh1, 0L);
+
+        this.batch.close();
+
+        InOrder inOrder = inOrder(lh1, op);
+        inOrder.verify(lh1).errorOutPendingAdds(BKException.Code.WriteException);
+        inOrder.verify(lh1).handleUnrecoverableErrorDuringAdd(BKException.Code.WriteException);
+        inOrder.verify(op).initiate();
+        verify(this.bookieClient, never()).deferFlushes();
+
+        // closing again, or after the send, does nothing
+        this.batch.close();
+        verify(lh1, times(1)).errorOutPendingAdds(any(int.class));
+        try {
+            this.batch.send();
+            Assert.fail("Should not send a closed batch");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void closeAfterSendTest() {
+        LedgerHandle lh1 = newLedgerHandle(1L);
+        PendingAddOp op = append(lh1, 0L);
+        this.batch.send();
+        this.batch.close();
+        verify(op, times(1)).initiate();
+        verify(lh1, never()).errorOutPendingAdds(any(int.class));
+    }
+
+    @Test
+    public void otherClientTest() {
+        ClientContext otherClientCtx = mock(ClientContext.class);
+        when(otherClientCtx.getBookieClient()).thenReturn(mock(BookieClient.class));
+        PendingAddOp otherClientOp = newOp(newLedgerHandle(2L), 0L, otherClientCtx);
+
+        // the add to a handle of another client, issued while adding an entry to the batch, is not deferred
+        LedgerHandle lh1 = newLedgerHandle(1L);
+        PendingAddOp op = newOp(lh1, 0L, this.clientCtx);
+        WriteHandle handle = mock(WriteHandle.class);
+        when(handle.appendAsync(any(ByteBuf.class))).thenAnswer(invocation -> {
+            Assert.assertFalse("Op of another client should not be deferred",
+                    LedgerWriteBatch.deferIfBatching(otherClientOp));
+            Assert.assertTrue("Op should be deferred", LedgerWriteBatch.deferIfBatching(op));
+            return new CompletableFuture<Long>();
+        });
+        this.batch.append(handle, Unpooled.wrappedBuffer(new byte[] { 1 }));
+
+        this.batch.send();
+        verify(op, times(1)).initiate();
+        verify(otherClientOp, never()).initiate();
+    }
+}
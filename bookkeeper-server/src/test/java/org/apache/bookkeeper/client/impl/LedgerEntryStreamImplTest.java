@@ -0,0 +1,269 @@
+package org.apache.bookkeeper.client.impl;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.apache.bookkeeper.client.BKException;
+import org.apache.bookkeeper.client.api.LedgerEntries;
+import org.apache.bookkeeper.client.api.LedgerEntry;
+import org.apache.bookkeeper.client.api.LedgerEntryStream;
+import org.apache.bookkeeper.client.api.ReadHandle;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests of the read ahead window, the entry size estimate and the memory of {@link LedgerEntryStreamImpl}.
+ */
+public class LedgerEntryStreamImplTest {
+
+    private static final long LEDGER_ID = 1L;
+    private static final int ENTRY_SIZE = 100;
+    private static final long REQUEST_SIZE = 10 * ENTRY_SIZE;
+
+    /**
+     * A read request sent to the handle.
+     */
+    private static final class Request {
+        private final long first;
+        private final long last;
+        private final boolean batch;
+        private final CompletableFuture<LedgerEntries> future = new CompletableFuture<>();
+
+        private Request(long first, long last, boolean batch) {
+            this.first = first;
+            this.last = last;
+            this.batch = batch;
+        }
+    }
+
+    private final List<Request> requests = Collections.synchronizedList(new ArrayList<>());
+    private final List<ByteBuf> buffers = Collections.synchronizedList(new ArrayList<>());
+    // Ranges not returned by the truncated batch reads
+    private final List<long[]> truncated = Collections.synchronizedList(new ArrayList<>());
+    private volatile int maxInFlight = 0;
+    private ReadHandle handle;
+    // Delay before the requests complete, -1 to complete them from the test
+    private volatile long completionDelayMs = 0;
+    // Max entries returned by a batch read
+    private volatile int batchMaxEntries = Integer.MAX_VALUE;
+    private volatile long failedEntry = -1;
+    private ScheduledExecutorService executor;
+
+    @Before
+    public void setUp() {
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+        this.handle = mock(ReadHandle.class);
+        when(this.handle.readAsync(anyLong(), anyLong())).thenAnswer(invocation ->
+                send(new Request(invocation.getArgument(0), invocation.getArgument(1), false)));
+        when(this.handle.batchReadAsync(anyLong(), anyInt(), anyLong())).thenAnswer(invocation -> {
+            long first = invocation.getArgument(0);
+            int count = invocation.getArgument(1);
+            return send(new Request(first, first + count - 1, true));
+        });
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    private CompletableFuture<LedgerEntries> send(Request request) {
+        synchronized (this.requests) {
+            this.requests.add(request);
+            this.maxInFlight = Math.max(this.maxInFlight,
+                    (int) this.requests.stream().filter(r -> !r.future.isDone()).count());
+        }
+        if (this.completionDelayMs == 0) {
+            complete(request);
+        } else if (this.completionDelayMs > 0) {
+            this.executor.schedule(() -> complete(request), this.completionDelayMs, TimeUnit.MILLISECONDS);
+        }
+        return request.future;
+    }
+
+    private void complete(Request request) {
+        if (request.first <= this.failedEntry && this.failedEntry <= request.last) {
+            request.future.completeExceptionally(BKException.create(BKException.Code.ReadException));
+            return;
+        }
+        long last = request.batch ? Math.min(request.last, request.first + this.batchMaxEntries - 1) : request.last;
+        if (last < request.last) {
+            this.truncated.add(new long[] { last + 1, request.last });
+        }
+        List<LedgerEntry> entries = new ArrayList<>();
+        for (long entryId = request.first; entryId <= last; entryId++) {
+            ByteBuf buffer = Unpooled.buffer(ENTRY_SIZE).writerIndex(ENTRY_SIZE);
+            this.buffers.add(buffer);
+            // the length of an entry is the length of the ledger up to this entry
+            entries.add(LedgerEntryImpl.create(LEDGER_ID, entryId, (entryId + 1) * 1_000_000L, buffer));
+        }
+        request.future.complete(LedgerEntriesImpl.create(entries));
+    }
+
+    private LedgerEntryStreamImpl newStream(long lastEntry, boolean batchRead, int maxOutstandingRequests,
+                                            long maxMemoryBytes) {
+        return new LedgerEntryStreamImpl(this.handle, 0, lastEntry, batchRead, maxOutstandingRequests, REQUEST_SIZE,
+                maxMemoryBytes);
+    }
+
+    private void readAll(LedgerEntryStreamImpl stream, long lastEntry) throws Exception {
+        for (long entryId = 0; entryId <= lastEntry; entryId++) {
+            Assert.assertTrue(stream.hasNext());
+            LedgerEntry entry = stream.next();
+            Assert.assertEquals(entryId, entry.getEntryId());
+            Assert.assertEquals(ENTRY_SIZE, entry.getEntryBuffer().readableBytes());
+            entry.close();
+        }
+        Assert.assertFalse(stream.hasNext());
+    }
+
+    private void assertReleased() {
+        synchronized (this.buffers) {
+            for (ByteBuf buffer : this.buffers) {
+                Assert.assertEquals(0, buffer.refCnt());
+            }
+        }
+    }
+
+    @Test
+    public void testEntrySizeEstimate() throws Exception {
+        LedgerEntryStreamImpl stream = newStream(999, false, 4, 1024 * 1024);
+        readAll(stream, 999);
+
+        // the estimate follows the size of the entries, not the length of the ledger
+        Assert.assertEquals(ENTRY_SIZE, stream.getEntrySizeEstimate(), 5);
+        Request last = this.requests.get(this.requests.size() - 2);
+        Assert.assertEquals(REQUEST_SIZE / ENTRY_SIZE, last.last - last.first + 1, 1);
+        stream.close();
+        Assert.assertEquals(0, stream.getReservedMemory());
+        assertReleased();
+    }
+
+    @Test
+    public void testWindowGrowsWhenReaderWaits() throws Exception {
+        this.completionDelayMs = 2;
+        LedgerEntryStreamImpl stream = newStream(199, false, 4, 1024 * 1024);
+        // the requests sent together complete together, so the window can shrink again at the end of the stream
+        int maxWindow = 0;
+        for (long entryId = 0; entryId <= 199; entryId++) {
+            LedgerEntry entry = stream.next();
+            Assert.assertEquals(entryId, entry.getEntryId());
+            entry.close();
+            maxWindow = Math.max(maxWindow, stream.getWindow());
+        }
+        Assert.assertFalse(stream.hasNext());
+        Assert.assertEquals(4, maxWindow);
+        Assert.assertEquals(4, this.maxInFlight);
+        stream.close();
+        assertReleased();
+    }
+
+    @Test
+    public void testWindowShrinksWhenReaderIsSlow() throws Exception {
+        LedgerEntryStreamImpl stream = newStream(199, false, 4, 1024 * 1024);
+        readAll(stream, 199);
+        Assert.assertEquals(1, stream.getWindow());
+        stream.close();
+        assertReleased();
+    }
+
+    @Test
+    public void testBatchReadTail() throws Exception {
+        this.batchMaxEntries = 3;
+        LedgerEntryStreamImpl stream = newStream(99, true, 4, 1024 * 1024);
+        readAll(stream, 99);
+
+        // the rest of the range of a truncated batch read is requested again, from the first entry not read
+        Assert.assertFalse(this.truncated.isEmpty());
+        synchronized (this.requests) {
+            for (long[] range : this.truncated) {
+                Assert.assertTrue(this.requests.stream()
+                        .anyMatch(r -> r.batch && r.first == range[0] && r.last == range[1]));
+            }
+        }
+        stream.close();
+        Assert.assertEquals(0, stream.getReservedMemory());
+        assertReleased();
+    }
+
+    @Test
+    public void testMemoryReleasedOnFailure() throws Exception {
+        this.completionDelayMs = -1;
+        this.failedEntry = 15;
+        LedgerEntryStreamImpl stream = newStream(99, false, 4, 1024 * 1024);
+        CompletableFuture<Void> reader = CompletableFuture.runAsync(() -> {
+            try {
+                for (int i = 0; i < 20; i++) {
+                    stream.next().close();
+                }
+                Assert.fail("Should have failed to read the entry " + this.failedEntry);
+            } catch (org.apache.bookkeeper.client.api.BKException e) {
+                // expected
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        while (!reader.isDone()) {
+            synchronized (this.requests) {
+                for (Request request : this.requests) {
+                    if (!request.future.isDone()) {
+                        complete(request);
+                    }
+                }
+            }
+            Thread.sleep(1);
+        }
+        reader.get();
+
+        try {
+            stream.next();
+            Assert.fail("Should keep failing");
+        } catch (org.apache.bookkeeper.client.api.BKException e) {
+            // expected
+        }
+        stream.close();
+        Assert.assertEquals(0, stream.getReservedMemory());
+        assertReleased();
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        this.completionDelayMs = 2;
+        // the memory limit is lower than a request, only one request is sent at a time
+        LedgerEntryStreamImpl stream = newStream(99, false, 4, ENTRY_SIZE);
+        readAll(stream, 99);
+        Assert.assertEquals(1, this.maxInFlight);
+        stream.close();
+        Assert.assertEquals(0, stream.getReservedMemory());
+        assertReleased();
+    }
+
+    @Test
+    public void testDefaultReadStream() throws Exception {
+        when(this.handle.readStream(anyLong(), anyLong())).thenCallRealMethod();
+        try (LedgerEntryStream stream = this.handle.readStream(0, 9)) {
+            for (long entryId = 0; entryId <= 9; entryId++) {
+                try (LedgerEntry entry = stream.next()) {
+                    Assert.assertEquals(entryId, entry.getEntryId());
+                }
+            }
+            Assert.assertFalse(stream.hasNext());
+        }
+        Assert.assertFalse(this.requests.stream().anyMatch(r -> r.batch));
+        assertReleased();
+    }
+}
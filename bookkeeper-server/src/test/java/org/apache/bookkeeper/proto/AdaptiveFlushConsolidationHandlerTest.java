@@ -0,0 +1,171 @@
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests of the flushes of {@link AdaptiveFlushConsolidationHandler}, delayed only while the requests are frequent.
+ */
+public class AdaptiveFlushConsolidationHandlerTest {
+
+    // Large enough for the requests sent in a loop to be frequent, whatever the speed of the test
+    private static final long MAX_DELAY_MICROS = TimeUnit.MILLISECONDS.toMicros(20);
+    private static final long MAX_PENDING_BYTES = 64 * 1024;
+    private static final int REQUEST_SIZE = 100;
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        this.channel = new EmbeddedChannel(new AdaptiveFlushConsolidationHandler(MAX_DELAY_MICROS, MAX_PENDING_BYTES,
+                NullStatsLogger.INSTANCE.getCounter("flushes"),
+                NullStatsLogger.INSTANCE.getOpStatsLogger("requestsPerFlush")));
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+    }
+
+    /**
+     * Send a request, and run the tasks of the event loop, without advancing its time.
+     */
+    private ChannelFuture send(int size) {
+        ChannelFuture future = this.channel.write(Unpooled.buffer(size).writerIndex(size), this.channel.newPromise());
+        this.channel.flush();
+        this.channel.runPendingTasks();
+        return future;
+    }
+
+    /**
+     * Get the number of requests flushed since the last call.
+     */
+    private int readFlushed() {
+        int count = 0;
+        ByteBuf buf;
+        while ((buf = this.channel.readOutbound()) != null) {
+            buf.release();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Send requests in a loop until their flushes are delayed.
+     */
+    private void sendUntilDelayed() {
+        for (int i = 0; i < 100; i++) {
+            send(REQUEST_SIZE);
+            if (readFlushed() == 0) {
+                return;
+            }
+        }
+        Assert.fail("The flushes should be delayed under load");
+    }
+
+    private void advanceToMaxDelay() {
+        this.channel.advanceTimeBy(MAX_DELAY_MICROS, TimeUnit.MICROSECONDS);
+        this.channel.runScheduledPendingTasks();
+    }
+
+    @Test
+    public void testFlushWhenIdle() {
+        ChannelFuture future = this.channel.write(Unpooled.buffer(REQUEST_SIZE).writerIndex(REQUEST_SIZE),
+                this.channel.newPromise());
+        this.channel.flush();
+        // the flush is done in the next run of the event loop, without waiting for the max delay
+        Assert.assertEquals(0, readFlushed());
+        this.channel.runPendingTasks();
+        Assert.assertEquals(1, readFlushed());
+        Assert.assertTrue(future.isSuccess());
+    }
+
+    @Test
+    public void testConsolidateUnderLoad() throws Exception {
+        sendUntilDelayed();
+        // the next requests are flushed together at the max delay
+        for (int i = 0; i < 9; i++) {
+            send(REQUEST_SIZE);
+        }
+        Assert.assertEquals(0, readFlushed());
+        advanceToMaxDelay();
+        Assert.assertEquals(10, readFlushed());
+
+        // the flushes pass through again once the requests stop being frequent
+        Thread.sleep(TimeUnit.MICROSECONDS.toMillis(5 * MAX_DELAY_MICROS));
+        ChannelFuture future = send(REQUEST_SIZE);
+        Assert.assertEquals(1, readFlushed());
+        Assert.assertTrue(future.isSuccess());
+    }
+
+    @Test
+    public void testFlushAtMaxPendingBytes() {
+        sendUntilDelayed();
+        send(REQUEST_SIZE);
+        Assert.assertEquals(0, readFlushed());
+        // the data written reaching the max size is flushed without waiting for the max delay
+        send((int) MAX_PENDING_BYTES);
+        Assert.assertEquals(3, readFlushed());
+    }
+
+    @Test
+    public void testFlushAfterRead() {
+        this.channel.pipeline().fireChannelRead(Unpooled.EMPTY_BUFFER);
+        ChannelFuture future = send(REQUEST_SIZE);
+        // the flushes requested while reading are done at the end of the read
+        Assert.assertEquals(0, readFlushed());
+        this.channel.pipeline().fireChannelReadComplete();
+        Assert.assertEquals(1, readFlushed());
+        Assert.assertTrue(future.isSuccess());
+        this.channel.readInbound();
+    }
+
+    @Test
+    public void testFlushWhenInactive() {
+        sendUntilDelayed();
+        ChannelFuture future = send(REQUEST_SIZE);
+        Assert.assertEquals(0, readFlushed());
+        // the writes delayed are completed when the channel goes inactive, not left to the scheduled flush
+        this.channel.pipeline().fireChannelInactive();
+        Assert.assertEquals(2, readFlushed());
+        Assert.assertTrue(future.isDone());
+        advanceToMaxDelay();
+        Assert.assertEquals(0, readFlushed());
+    }
+
+    @Test
+    public void testFlushWhenClosed() {
+        sendUntilDelayed();
+        ChannelFuture future = send(REQUEST_SIZE);
+        Assert.assertEquals(0, readFlushed());
+        this.channel.close();
+        Assert.assertEquals(2, readFlushed());
+        Assert.assertTrue(future.isSuccess());
+    }
+
+    @Test
+    public void testFlushWhenUnwritable() {
+        sendUntilDelayed();
+        Assert.assertTrue(this.channel.isWritable());
+        this.channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(REQUEST_SIZE, 4 * REQUEST_SIZE));
+        send(REQUEST_SIZE);
+        Assert.assertEquals(0, readFlushed());
+
+        // the data written is flushed as soon as the channel becomes unwritable, so that it becomes writable again
+        ChannelFuture future = this.channel.write(Unpooled.buffer(4 * REQUEST_SIZE).writerIndex(4 * REQUEST_SIZE),
+                this.channel.newPromise());
+        Assert.assertEquals(3, readFlushed());
+        Assert.assertTrue(future.isSuccess());
+        Assert.assertTrue(this.channel.isWritable());
+    }
+}
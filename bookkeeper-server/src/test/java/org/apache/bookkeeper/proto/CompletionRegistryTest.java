@@ -0,0 +1,175 @@
+package org.apache.bookkeeper.proto;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** we want to verify the lookups, the expiration and the removal of the in-flight operations of a channel */
+
+public class CompletionRegistryTest {
+
+    private static final long TICK = 10L;
+    private static final int TYPE = 2;
+
+    private static final class Value extends CompletionRegistry.Node {
+        private final int id;
+
+        private Value(int id) {
+            this.id = id;
+        }
+
+        @Override
+        public String toString() {
+            return "value-" + id;
+        }
+    }
+
+    private CompletionRegistry<Value> registry;
+
+    @Before
+    public void setUp() {
+        this.registry = new CompletionRegistry<>(4, TICK, 0L);
+    }
+
+    @Test
+    public void putGetRemoveTest() {
+        Value value = new Value(1);
+        this.registry.put(1L, 2L, TYPE, value, 1000L);
+
+        Assert.assertEquals(1, this.registry.size());
+        Assert.assertSame(value, this.registry.get(1L, 2L, TYPE));
+        Assert.assertNull("Other key type should not match", this.registry.get(1L, 2L, TYPE + 1));
+        Assert.assertNull("Other entry should not match", this.registry.get(1L, 3L, TYPE));
+        Assert.assertSame(value, this.registry.remove(1L, 2L, TYPE));
+        Assert.assertNull(this.registry.get(1L, 2L, TYPE));
+        Assert.assertNull(this.registry.remove(1L, 2L, TYPE));
+        Assert.assertEquals(0, this.registry.size());
+    }
+
+    @Test
+    public void duplicateKeyTest() {
+        Value first = new Value(1);
+        Value second = new Value(2);
+        this.registry.put(1L, 2L, TYPE, first, 1000L);
+        this.registry.put(1L, 2L, TYPE, second, 1000L);
+
+        Set<Value> removed = new HashSet<>();
+        removed.add(this.registry.remove(1L, 2L, TYPE));
+        removed.add(this.registry.remove(1L, 2L, TYPE));
+        Assert.assertTrue(removed.contains(first));
+        Assert.assertTrue(removed.contains(second));
+        Assert.assertNull(this.registry.remove(1L, 2L, TYPE));
+    }
+
+    @Test
+    public void manyKeysTest() {
+        // go through the growing and the shrinking of the segment tables
+        List<Value> values = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            Value value = new Value(i);
+            values.add(value);
+            this.registry.put(i / 100, i % 100, TYPE, value, 1000L);
+        }
+        Assert.assertEquals(values.size(), this.registry.size());
+        for (int i = 0; i < values.size(); i += 2) {
+            Assert.assertSame(values.get(i), this.registry.remove(i / 100, i % 100, TYPE));
+        }
+        for (int i = 1; i < values.size(); i += 2) {
+            Assert.assertSame(values.get(i), this.registry.get(i / 100, i % 100, TYPE));
+        }
+        Assert.assertEquals(values.size() / 2, this.registry.size());
+    }
+
+    @Test
+    public void recycledValueTest() {
+        // a value recycled and registered again under another key must only be found under the new key
+        Value value = new Value(1);
+        this.registry.put(1L, 1L, TYPE, value, 1000L);
+        Assert.assertSame(value, this.registry.remove(1L, 1L, TYPE));
+        this.registry.put(1L, 2L, TYPE, value, 1000L);
+
+        Assert.assertNull("Stale key should not match", this.registry.get(1L, 1L, TYPE));
+        Assert.assertNull("Stale key should not match", this.registry.remove(1L, 1L, TYPE));
+        Assert.assertSame(value, this.registry.get(1L, 2L, TYPE));
+        Assert.assertEquals(1, this.registry.size());
+    }
+
+    @Test
+    public void removeExpiredTest() {
+        Value early = new Value(1);
+        Value late = new Value(2);
+        Value removed = new Value(3);
+        this.registry.put(1L, 1L, TYPE, early, 25L);
+        this.registry.put(1L, 2L, TYPE, late, 55L);
+        this.registry.put(1L, 3L, TYPE, removed, 25L);
+        this.registry.remove(1L, 3L, TYPE);
+
+        List<Value> expired = new ArrayList<>();
+        Assert.assertEquals("Nothing should expire before the deadline", 0,
+                this.registry.removeExpired(25L, expired::add));
+        Assert.assertEquals(1, this.registry.removeExpired(30L, expired::add));
+        Assert.assertEquals(1, expired.size());
+        Assert.assertSame(early, expired.get(0));
+        Assert.assertNull(this.registry.get(1L, 1L, TYPE));
+        Assert.assertSame(late, this.registry.get(1L, 2L, TYPE));
+
+        expired.clear();
+        Assert.assertEquals(1, this.registry.removeExpired(60L, expired::add));
+        Assert.assertSame(late, expired.get(0));
+        Assert.assertEquals(0, this.registry.size());
+    }
+
+    @Test
+    public void removeExpiredAfterWheelRoundTest() {
+        // deadlines past one round of the wheel share the bucket of earlier deadlines
+        Value now = new Value(1);
+        Value nextRound = new Value(2);
+        this.registry.put(1L, 1L, TYPE, now, 5 * TICK);
+        this.registry.put(1L, 2L, TYPE, nextRound, (5 + 1024) * TICK);
+
+        List<Value> expired = new ArrayList<>();
+        Assert.assertEquals(1, this.registry.removeExpired(6 * TICK, expired::add));
+        Assert.assertSame(now, expired.get(0));
+        Assert.assertSame(nextRound, this.registry.get(1L, 2L, TYPE));
+
+        expired.clear();
+        Assert.assertEquals(1, this.registry.removeExpired((6 + 1024) * TICK, expired::add));
+        Assert.assertSame(nextRound, expired.get(0));
+    }
+
+    @Test
+    public void putPastDeadlineTest() {
+        this.registry.removeExpired(100L, value -> { });
+        Value value = new Value(1);
+        // the deadline is already past, the value expires on the next check
+        this.registry.put(1L, 1L, TYPE, value, 50L);
+
+        List<Value> expired = new ArrayList<>();
+        Assert.assertEquals(1, this.registry.removeExpired(110L, expired::add));
+        Assert.assertSame(value, expired.get(0));
+    }
+
+    @Test
+    public void removeAllTest() {
+        for (int i = 0; i < 100; i++) {
+            this.registry.put(i, 0L, TYPE, new Value(i), 1000L);
+        }
+        List<Value> removed = new ArrayList<>();
+        this.registry.removeAll(removed::add);
+        Assert.assertEquals(100, removed.size());
+        Assert.assertEquals(0, this.registry.size());
+        Assert.assertNull(this.registry.get(0L, 0L, TYPE));
+
+        // the registry is still usable, and the removed values are not expired later
+        Value value = new Value(1);
+        this.registry.put(1L, 1L, TYPE, value, 1000L);
+        List<Value> expired = new ArrayList<>();
+        Assert.assertEquals(1, this.registry.removeExpired(2000L, expired::add));
+        Assert.assertSame(value, expired.get(0));
+    }
+}
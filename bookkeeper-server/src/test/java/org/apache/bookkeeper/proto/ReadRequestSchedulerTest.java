@@ -0,0 +1,171 @@
+package org.apache.bookkeeper.proto;
+
+import org.apache.bookkeeper.common.util.OrderedExecutor;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+/** we want to verify that the reads are dispatched by traffic class in proportion to the class weights */
+
+public class ReadRequestSchedulerTest {
+
+    private OrderedExecutor readThreadPool;
+    private Deque<Runnable> dispatched;
+    private List<ReadTrafficClass> completed;
+    private ServerConfiguration conf;
+
+    @Before
+    public void setUp() {
+        this.dispatched = new ArrayDeque<>();
+        this.completed = new ArrayList<>();
+        this.readThreadPool = mock(OrderedExecutor.class);
+        doAnswer(invocation -> this.dispatched.add(invocation.getArgument(1)))
+                .when(this.readThreadPool).executeOrdered(anyLong(), any(Runnable.class));
+        this.conf = new ServerConfiguration()
+                .setReadSchedulingEnabled(true)
+                .setReadSchedulingMaxDispatchedReads(1);
+    }
+
+    private ReadRequestScheduler newScheduler() {
+        return new ReadRequestScheduler(this.readThreadPool, this.conf, NullStatsLogger.INSTANCE);
+    }
+
+    private void schedule(ReadRequestScheduler scheduler, ReadTrafficClass trafficClass, int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.schedule(trafficClass, i, () -> this.completed.add(trafficClass), () -> { });
+        }
+    }
+
+    private void scheduleLargeReads(ReadRequestScheduler scheduler, int count) {
+        for (int i = 0; i < count; i++) {
+            scheduler.schedule(ReadTrafficClass.CATCH_UP, i, () -> {
+                ReadRequestScheduler.recordReadBytes(64 * 1024);
+                this.completed.add(ReadTrafficClass.CATCH_UP);
+            }, () -> { });
+        }
+    }
+
+    private void runDispatched(int count) {
+        for (int i = 0; i < count && !this.dispatched.isEmpty(); i++) {
+            this.dispatched.poll().run();
+        }
+    }
+
+    private int completedOf(ReadTrafficClass trafficClass) {
+        return (int) this.completed.stream().filter(c -> c == trafficClass).count();
+    }
+
+    @Test
+    public void testWeightedShares() {
+        ReadRequestScheduler scheduler = newScheduler();
+        schedule(scheduler, ReadTrafficClass.CATCH_UP, 100);
+        schedule(scheduler, ReadTrafficClass.TAILING, 100);
+        schedule(scheduler, ReadTrafficClass.RECOVERY, 100);
+
+        // one read dispatched at a time, in the 8/2/1 proportions of the default weights
+        Assert.assertEquals(1, this.dispatched.size());
+        runDispatched(55);
+        Assert.assertEquals(1, this.dispatched.size());
+        Assert.assertEquals(40, completedOf(ReadTrafficClass.TAILING), 2);
+        Assert.assertEquals(10, completedOf(ReadTrafficClass.CATCH_UP), 2);
+        Assert.assertEquals(5, completedOf(ReadTrafficClass.RECOVERY), 2);
+    }
+
+    @Test
+    public void testIdleClassDoesNotAccumulateCredit() {
+        ReadRequestScheduler scheduler = newScheduler();
+        schedule(scheduler, ReadTrafficClass.CATCH_UP, 100);
+        runDispatched(50);
+        Assert.assertEquals(50, completedOf(ReadTrafficClass.CATCH_UP));
+
+        // the tailing reads that arrive later only get their share, not the time they were idle
+        this.completed.clear();
+        schedule(scheduler, ReadTrafficClass.TAILING, 100);
+        runDispatched(20);
+        Assert.assertEquals(16, completedOf(ReadTrafficClass.TAILING), 2);
+        Assert.assertEquals(4, completedOf(ReadTrafficClass.CATCH_UP), 2);
+    }
+
+    @Test
+    public void testInFlightBytesPerClass() {
+        this.conf.setReadSchedulingMaxDispatchedReads(10)
+                .setReadSchedulingMaxInFlightBytesPerClass(8192);
+        ReadRequestScheduler scheduler = newScheduler();
+        schedule(scheduler, ReadTrafficClass.CATCH_UP, 10);
+        schedule(scheduler, ReadTrafficClass.TAILING, 10);
+
+        // 2 reads of the initial estimate of 4KB per class
+        Assert.assertEquals(4, this.dispatched.size());
+        runDispatched(4);
+        Assert.assertEquals(2, completedOf(ReadTrafficClass.CATCH_UP));
+        Assert.assertEquals(2, completedOf(ReadTrafficClass.TAILING));
+        Assert.assertEquals(4, this.dispatched.size());
+    }
+
+    @Test
+    public void testLargeReadsLowerClassShare() {
+        ReadRequestScheduler scheduler = newScheduler();
+        // learn the size of the catch-up reads
+        scheduleLargeReads(scheduler, 50);
+        runDispatched(50);
+        this.completed.clear();
+
+        scheduleLargeReads(scheduler, 100);
+        schedule(scheduler, ReadTrafficClass.TAILING, 200);
+        runDispatched(100);
+        Assert.assertTrue(completedOf(ReadTrafficClass.CATCH_UP) <= 3);
+    }
+
+    @Test
+    public void testQueueFull() {
+        this.conf.setNumReadWorkerThreads(1).setMaxPendingReadRequestPerThread(2);
+        ReadRequestScheduler scheduler = newScheduler();
+        // 1 dispatched and 2 queued
+        schedule(scheduler, ReadTrafficClass.CATCH_UP, 3);
+        try {
+            schedule(scheduler, ReadTrafficClass.CATCH_UP, 1);
+            Assert.fail("Should have rejected the read");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+
+        // the other classes have their own queue
+        schedule(scheduler, ReadTrafficClass.TAILING, 1);
+        runDispatched(4);
+        Assert.assertEquals(3, completedOf(ReadTrafficClass.CATCH_UP));
+        Assert.assertEquals(1, completedOf(ReadTrafficClass.TAILING));
+    }
+
+    @Test
+    public void testRejectedByReadThreadPool() {
+        AtomicInteger rejected = new AtomicInteger();
+        doThrow(new RejectedExecutionException("full")).doAnswer(invocation ->
+                this.dispatched.add(invocation.getArgument(1)))
+                .when(this.readThreadPool).executeOrdered(anyLong(), any(Runnable.class));
+        ReadRequestScheduler scheduler = newScheduler();
+
+        scheduler.schedule(ReadTrafficClass.TAILING, 1, () -> this.completed.add(ReadTrafficClass.TAILING),
+                rejected::incrementAndGet);
+        Assert.assertEquals(1, rejected.get());
+
+        // the dispatch slot of the rejected read was released
+        schedule(scheduler, ReadTrafficClass.TAILING, 1);
+        runDispatched(1);
+        Assert.assertEquals(1, completedOf(ReadTrafficClass.TAILING));
+    }
+}
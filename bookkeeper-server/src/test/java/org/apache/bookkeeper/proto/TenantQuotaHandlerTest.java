@@ -0,0 +1,124 @@
+package org.apache.bookkeeper.proto;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.stats.StatsLogger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/** we want to verify that the tenant quotas hold the requests in order, without overriding the other throttles */
+
+public class TenantQuotaHandlerTest {
+
+    private static final int READS_PER_SECOND = 10;
+
+    private EmbeddedChannel channel;
+
+    @Before
+    public void setUp() {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setTenantQuotaReadRequestsPerSecond(READS_PER_SECOND);
+        TenantQuotaManager quotaManager = new TenantQuotaManager(conf, NullStatsLogger.INSTANCE);
+        this.channel = new EmbeddedChannel(new TenantQuotaHandler(quotaManager, mock(BookieConnectionPeer.class)));
+    }
+
+    @After
+    public void tearDown() {
+        this.channel.finishAndReleaseAll();
+    }
+
+    private static BookieProtocol.ReadRequest read(long entryId) {
+        return BookieProtocol.ReadRequest.create(BookieProtocol.CURRENT_PROTOCOL_VERSION, 1L, entryId,
+                BookieProtocol.FLAG_NONE, null);
+    }
+
+    /**
+     * Send reads beyond the quota, until one is throttled.
+     *
+     * @return the number of reads sent
+     */
+    private int sendReadsUntilThrottled() {
+        int sent = 0;
+        while (this.channel.inboundMessages().size() == sent) {
+            this.channel.writeInbound(read(sent++));
+            Assert.assertTrue("Reads should be throttled", sent <= 2 * READS_PER_SECOND);
+        }
+        return sent;
+    }
+
+    private void waitForResume() throws InterruptedException {
+        // the quota is refilled with the wall clock time, the resume is scheduled with the channel time
+        Thread.sleep(2 * TimeUnit.SECONDS.toMillis(1) / READS_PER_SECOND);
+        this.channel.advanceTimeBy(1, TimeUnit.SECONDS);
+        this.channel.runScheduledPendingTasks();
+    }
+
+    private List<Long> readEntryIds() {
+        List<Long> entryIds = new ArrayList<>();
+        Object msg;
+        while ((msg = this.channel.readInbound()) != null) {
+            entryIds.add(((BookieProtocol.ReadRequest) msg).getEntryId());
+        }
+        return entryIds;
+    }
+
+    @Test
+    public void throttleAndResumeTest() throws Exception {
+        int sent = sendReadsUntilThrottled();
+        Assert.assertFalse("Reads should be stopped", this.channel.config().isAutoRead());
+        this.channel.writeInbound(read(sent++));
+        Assert.assertEquals(sent - 2, this.channel.inboundMessages().size());
+
+        waitForResume();
+        Assert.assertTrue("Reads should be enabled again", this.channel.config().isAutoRead());
+        List<Long> entryIds = readEntryIds();
+        Assert.assertEquals(sent, entryIds.size());
+        for (int i = 0; i < sent; i++) {
+            Assert.assertEquals("Requests should be kept in order", i, entryIds.get(i).longValue());
+        }
+    }
+
+    @Test
+    public void keepOtherThrottleTest() throws Exception {
+        // another throttle stopped the reads of the channel, the quota must not enable them again
+        this.channel.config().setAutoRead(false);
+        int sent = sendReadsUntilThrottled();
+        waitForResume();
+        Assert.assertFalse("Reads stopped by another throttle should stay stopped", this.channel.config().isAutoRead());
+        Assert.assertEquals(sent, readEntryIds().size());
+    }
+
+    @Test
+    public void tenantStatsLabelsTest() {
+        StatsLogger statsLogger = mock(StatsLogger.class);
+        List<String> labels = new ArrayList<>();
+        when(statsLogger.scopeLabel(eq("tenant"), anyString())).thenAnswer(invocation -> {
+            labels.add(invocation.getArgument(1));
+            return NullStatsLogger.INSTANCE;
+        });
+        TenantQuotaManager quotaManager = new TenantQuotaManager(new ServerConfiguration(), statsLogger);
+
+        int tenants = TenantQuotaManager.MAX_TENANT_STATS_LABELS + 10;
+        for (int i = 0; i < tenants; i++) {
+            quotaManager.getQuota("10.0.0." + i);
+        }
+        Assert.assertEquals(tenants, labels.size());
+        for (int i = 0; i < tenants; i++) {
+            String expected = i < TenantQuotaManager.MAX_TENANT_STATS_LABELS
+                    ? "10.0.0." + i : TenantQuotaManager.OTHER_TENANTS_STATS_LABEL;
+            Assert.assertEquals(expected, labels.get(i));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package org.apache.bookkeeper.proto.checksum;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.util.concurrent.FastThreadLocalThread;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+/** we want to verify that the parallel digests match the sequential ones, and never outlive the call */
+
+public class ParallelDigestTest {
+
+    private static final int CHUNK_SIZE = 1024;
+    private static final int PAYLOAD_SIZE = 10 * CHUNK_SIZE + 100;
+
+    private ThreadPoolExecutor executor;
+    private DigestManager digestManager;
+    private ByteBuf payload;
+    private int sequentialDigest;
+
+    @Before
+    public void setUp() throws Exception {
+        this.executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.digestManager = DigestManager.instantiate(1L, new byte[0], DigestType.CRC32C,
+                UnpooledByteBufAllocator.DEFAULT, false);
+        byte[] data = new byte[PAYLOAD_SIZE];
+        new Random(1).nextBytes(data);
+        this.payload = Unpooled.wrappedBuffer(data);
+        this.sequentialDigest = this.digestManager.update(0, this.payload, 0, PAYLOAD_SIZE);
+        this.digestManager.setParallelDigest(this.executor, CHUNK_SIZE);
+    }
+
+    @After
+    public void tearDown() {
+        this.executor.shutdownNow();
+    }
+
+    @Test
+    public void parallelDigestTest() {
+        Assert.assertEquals(this.sequentialDigest, this.digestManager.updatePayload(0, this.payload, 0, PAYLOAD_SIZE));
+        Assert.assertTrue("Chunks should be computed by the executor", this.executor.getTaskCount() > 0);
+    }
+
+    @Test
+    public void ioThreadDigestTest() throws Exception {
+        ExecutorService mockExecutor = mock(ExecutorService.class);
+        this.digestManager.setParallelDigest(mockExecutor, CHUNK_SIZE);
+        AtomicInteger digest = new AtomicInteger();
+        Thread ioThread = new FastThreadLocalThread(
+                () -> digest.set(this.digestManager.updatePayload(0, this.payload, 0, PAYLOAD_SIZE)));
+        ioThread.start();
+        ioThread.join();
+        Assert.assertEquals(this.sequentialDigest, digest.get());
+        verifyNoInteractions(mockExecutor);
+    }
+
+    @Test(timeout = 10000)
+    public void interruptedDigestTest() throws Exception {
+        // hold the executor, so that the chunk tasks are still pending when the caller is interrupted
+        CountDownLatch blocker = new CountDownLatch(1);
+        this.executor.execute(() -> {
+            try {
+                blocker.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        AtomicLong releaseNanos = new AtomicLong();
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                return;
+            }
+            releaseNanos.set(System.nanoTime());
+            blocker.countDown();
+        });
+
+        AtomicInteger digest = new AtomicInteger();
+        AtomicLong returnNanos = new AtomicLong();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            Thread.currentThread().interrupt();
+            digest.set(this.digestManager.updatePayload(0, this.payload, 0, PAYLOAD_SIZE));
+            returnNanos.set(System.nanoTime());
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        releaser.start();
+        caller.start();
+        caller.join();
+        releaser.join();
+
+        Assert.assertEquals(this.sequentialDigest, digest.get());
+        Assert.assertTrue("Interrupt flag should be restored", interrupted.get());
+        Assert.assertTrue("Should wait for the chunk tasks", returnNanos.get() >= releaseNanos.get());
+        Assert.assertTrue(this.executor.getQueue().isEmpty());
+    }
+}
@@ -0,0 +1,61 @@
+package org.apache.bookkeeper.util;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.apache.bookkeeper.common.util.affinity.CpuAffinity;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/** we want to verify that the thread-per-core mode doesn't run with IO threads that are not pinned */
+
+public class EventLoopUtilTest {
+
+    private static boolean canAcquireCore() throws InterruptedException {
+        AtomicBoolean acquired = new AtomicBoolean(true);
+        Thread thread = new Thread(CpuAffinity::acquireCore);
+        thread.setUncaughtExceptionHandler((t, e) -> acquired.set(false));
+        thread.start();
+        thread.join();
+        return acquired.get();
+    }
+
+    @Test(timeout = 30000)
+    public void threadPerCoreTest() throws Exception {
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setThreadPerCoreEnabled(true);
+        conf.setServerNumIOThreads(1);
+        boolean canPin = canAcquireCore();
+        try {
+            EventLoopGroup eventLoopGroup = EventLoopUtil.getServerEventLoopGroup(conf,
+                    new DefaultThreadFactory("thread-per-core-test"));
+            Assert.assertTrue("Should fail when the IO threads cannot be pinned", canPin);
+            eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).await();
+        } catch (IllegalStateException e) {
+            Assert.assertFalse("Should not fail when the IO threads can be pinned", canPin);
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void defaultModeTest() throws Exception {
+        // the IO threads are not required to be pinned out of the thread-per-core mode
+        ServerConfiguration conf = new ServerConfiguration();
+        conf.setServerNumIOThreads(1);
+        EventLoopGroup eventLoopGroup = EventLoopUtil.getServerEventLoopGroup(conf,
+                new DefaultThreadFactory("default-mode-test"));
+        Assert.assertNotNull(eventLoopGroup.next());
+        eventLoopGroup.shutdownGracefully(0, 0, TimeUnit.SECONDS).await();
+    }
+
+    @Test
+    public void numIOThreadsTest() {
+        int numCores = Runtime.getRuntime().availableProcessors();
+        ServerConfiguration conf = new ServerConfiguration();
+        Assert.assertEquals(2 * numCores, conf.getServerNumIOThreads());
+        conf.setThreadPerCoreEnabled(true);
+        Assert.assertEquals("One IO thread per core in thread-per-core mode", numCores, conf.getServerNumIOThreads());
+    }
+}
@@ -0,0 +1,143 @@
+package org.apche.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.apache.bookkeeper.bookie.BufferedChannel;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+/** we want to verify that the writes of at least the write capacity skip the write buffer only when enabled */
+
+@RunWith(Parameterized.class)
+public class BufferedChannelWriteThroughTest {
+
+    private static final int CAPACITY = 10;
+
+    private final int bufferedSize; // bytes written before, which stay in the write buffer
+    private final int srcSize;
+    private final boolean writeThrough;
+
+    private final UnpooledByteBufAllocator allocator = new UnpooledByteBufAllocator(true);
+
+    private File file;
+    private FileChannel fileChannel;
+
+    public BufferedChannelWriteThroughTest(WriteThroughInputTuple tuple) {
+        this.bufferedSize = tuple.bufferedSize;
+        this.srcSize = tuple.srcSize;
+        this.writeThrough = tuple.writeThrough;
+    }
+
+    @Parameterized.Parameters
+    public static Collection<WriteThroughInputTuple> getWriteThroughInputTuples() {
+        List<WriteThroughInputTuple> tuples = new ArrayList<>();
+        //(BUFFEREDSIZE, SRCSIZE, WRITETHROUGH)
+        tuples.add(new WriteThroughInputTuple(0, 5, false));
+        tuples.add(new WriteThroughInputTuple(0, 5, true)); // smaller than the capacity --> buffered anyway
+        tuples.add(new WriteThroughInputTuple(0, 10, false));
+        tuples.add(new WriteThroughInputTuple(0, 10, true));
+        tuples.add(new WriteThroughInputTuple(0, 25, false));
+        tuples.add(new WriteThroughInputTuple(0, 25, true));
+        tuples.add(new WriteThroughInputTuple(3, 25, false));
+        tuples.add(new WriteThroughInputTuple(3, 25, true)); // the buffered bytes are written first
+        return tuples;
+    }
+
+    private static final class WriteThroughInputTuple {
+        private final int bufferedSize;
+        private final int srcSize;
+        private final boolean writeThrough;
+
+        private WriteThroughInputTuple(int bufferedSize, int srcSize, boolean writeThrough) {
+            this.bufferedSize = bufferedSize;
+            this.srcSize = srcSize;
+            this.writeThrough = writeThrough;
+        }
+
+        @Override
+        public String toString() {
+            return "buffered=" + bufferedSize + ", src=" + srcSize + ", writeThrough=" + writeThrough;
+        }
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        this.file = File.createTempFile("bufferedChannelWriteThroughTest", ".log");
+        this.fileChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (this.fileChannel.isOpen()) {
+            this.fileChannel.close();
+        }
+        Files.deleteIfExists(this.file.toPath());
+    }
+
+    @Test(timeout = 5000)
+    public void writeTest() throws IOException {
+        Random random = new Random(System.currentTimeMillis());
+        byte[] buffered = new byte[this.bufferedSize];
+        random.nextBytes(buffered);
+        byte[] data = new byte[this.srcSize];
+        random.nextBytes(data);
+
+        BufferedChannel bufferedChannel = new BufferedChannel(this.allocator, this.fileChannel, CAPACITY, CAPACITY,
+                0L, this.writeThrough);
+        bufferedChannel.write(Unpooled.wrappedBuffer(buffered));
+        ByteBuf src = Unpooled.wrappedBuffer(data);
+        bufferedChannel.write(src);
+
+        byte[] all = new byte[this.bufferedSize + this.srcSize];
+        System.arraycopy(buffered, 0, all, 0, this.bufferedSize);
+        System.arraycopy(data, 0, all, this.bufferedSize, this.srcSize);
+
+        int expectedNumByteInWriteBuff;
+        if (this.writeThrough && this.srcSize >= CAPACITY) {
+            expectedNumByteInWriteBuff = 0; // all the bytes are in the file channel
+        } else {
+            expectedNumByteInWriteBuff = all.length % CAPACITY;
+        }
+        int expectedNumByteInFileChannel = all.length - expectedNumByteInWriteBuff;
+
+        Assert.assertEquals("BytesInWriteBuff Check Failed", expectedNumByteInWriteBuff,
+                bufferedChannel.writeBuffer.readableBytes());
+        byte[] actualBytesInWriteBuff = new byte[expectedNumByteInWriteBuff];
+        bufferedChannel.writeBuffer.getBytes(0, actualBytesInWriteBuff);
+        Assert.assertArrayEquals("BytesInWriteBuff Check Failed",
+                Arrays.copyOfRange(all, expectedNumByteInFileChannel, all.length), actualBytesInWriteBuff);
+
+        Assert.assertEquals("BytesInFC Check Failed", expectedNumByteInFileChannel, this.fileChannel.size());
+        ByteBuffer actualByteInFC = ByteBuffer.allocate(expectedNumByteInFileChannel);
+        this.fileChannel.read(actualByteInFC, 0);
+        Assert.assertArrayEquals("BytesInFC Check Failed",
+                Arrays.copyOfRange(all, 0, expectedNumByteInFileChannel), actualByteInFC.array());
+
+        Assert.assertEquals("Source should not be consumed", this.srcSize, src.readableBytes());
+        Assert.assertEquals("BufferedChannelPosition Check Failed", all.length, bufferedChannel.position());
+
+        // the data reads back the same, whatever the path it was written with
+        bufferedChannel.flush();
+        ByteBuf readBack = Unpooled.buffer(all.length);
+        bufferedChannel.read(readBack, 0, all.length);
+        Assert.assertArrayEquals("Read Check Failed", all, Arrays.copyOf(readBack.array(), all.length));
+        bufferedChannel.close();
+    }
+}
@@ -25,6 +25,11 @@ public class Crc32cIntChecksum {
 
     private final static IntHash CRC32C_HASH;
 
+    // Reversed CRC-32C polynomial
+    private final static int POLY = 0x82F63B78;
+    // x^(2^n) modulo the polynomial, for n from 0 to 31
+    private final static int[] X2N_TABLE = new int[32];
+
     static {
         if (Sse42Crc32C.isSupported()) {
             CRC32C_HASH = new JniIntHash();
@@ -33,6 +38,13 @@ public class Crc32cIntChecksum {
         } else {
             CRC32C_HASH = new Java8IntHash();
         }
+
+        int p = 1 << 30; // x^1
+        X2N_TABLE[0] = p;
+        for (int n = 1; n < X2N_TABLE.length; n++) {
+            p = multModP(p, p);
+            X2N_TABLE[n] = p;
+        }
     }
 
     /**
@@ -94,6 +106,49 @@ public class Crc32cIntChecksum {
         return CRC32C_HASH.resume(previousChecksum, payload, offset, len);
     }
 
+    /**
+     * Combines the checksums of two consecutive blocks of data into the checksum of the concatenation of the blocks,
+     * as zlib's crc32_combine, so that the checksum of large payloads can be computed by parts in parallel.
+     *
+     * @param checksum1 the checksum of the first block
+     * @param checksum2 the checksum of the second block
+     * @param len2 the length of the second block
+     * @return the checksum of the first block followed by the second block
+     */
+    public static int combineChecksums(int checksum1, int checksum2, long len2) {
+        return multModP(x2nModP(len2, 3), checksum1) ^ checksum2;
+    }
+
+    // Multiplies a and b modulo the polynomial, the polynomials are reflected
+    private static int multModP(int a, int b) {
+        int m = 1 << 31;
+        int p = 0;
+        while (true) {
+            if ((a & m) != 0) {
+                p ^= b;
+                if ((a & (m - 1)) == 0) {
+                    break;
+                }
+            }
+            m >>>= 1;
+            b = (b & 1) != 0 ? (b >>> 1) ^ POLY : b >>> 1;
+        }
+        return p;
+    }
+
+    // Returns x^(n * 2^k) modulo the polynomial
+    private static int x2nModP(long n, int k) {
+        int p = 1 << 31; // x^0
+        while (n != 0) {
+            if ((n & 1) != 0) {
+                p = multModP(X2N_TABLE[k & 31], p);
+            }
+            n >>>= 1;
+            k++;
+        }
+        return p;
+    }
+
     public static boolean acceptsMemoryAddressBuffer() {
         return CRC32C_HASH.acceptsMemoryAddressBuffer();
     }
@@ -0,0 +1,151 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.DbLedgerStorage;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the adds in {@link DbLedgerStorage}, with a single ledger directory. The adds include the
+ * write cache insertions and the backpressure of the write cache flushes to the entry log and the entry location
+ * index.
+ *
+ * <p>The ledger directory is created in {@code baseDir}, eg: a tmpfs mount or a local disk, or in the default temp
+ * directory when it is empty.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class DbLedgerStorageAddEntryBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "100"})
+        private int ledgers;
+
+        @Param({"64"})
+        private int writeCacheSizeMb;
+
+        @Param({""})
+        private String baseDir;
+
+        private File dir;
+        private DbLedgerStorage storage;
+        private byte[] payload;
+        private long[] nextEntryIds;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = baseDir.isEmpty()
+                    ? Files.createTempDirectory("db-ledger-storage-benchmark").toFile()
+                    : Files.createTempDirectory(Paths.get(baseDir), "db-ledger-storage-benchmark").toFile();
+            BookieImpl.getCurrentDirectory(dir).mkdirs();
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { dir.getAbsolutePath() });
+            conf.setProperty(DbLedgerStorage.WRITE_CACHE_MAX_SIZE_MB, writeCacheSizeMb);
+
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            storage = new DbLedgerStorage();
+            storage.initialize(conf, null, ledgerDirsManager, ledgerDirsManager, NullStatsLogger.INSTANCE,
+                    PooledByteBufAllocator.DEFAULT);
+            for (long ledgerId = 0; ledgerId < ledgers; ledgerId++) {
+                storage.setMasterKey(ledgerId, new byte[0]);
+            }
+
+            payload = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(payload);
+            nextEntryIds = new long[ledgers];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            storage.shutdown();
+            FileUtils.deleteDirectory(dir);
+        }
+
+        synchronized long nextEntryId(int ledgerId) {
+            return nextEntryIds[ledgerId]++;
+        }
+    }
+
+    /**
+     * Entry buffer of a benchmark thread.
+     */
+    @State(Scope.Thread)
+    public static class EntryState {
+        private ByteBuf entry;
+
+        @Setup(Level.Trial)
+        public void setup(TestState s) {
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(24 + s.entrySize);
+            entry.writeLong(0L); // ledgerId
+            entry.writeLong(0L); // entryId
+            entry.writeLong(-1L); // lac
+            entry.writeBytes(s.payload);
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            entry.release();
+        }
+    }
+
+    @Benchmark
+    public long addEntry(TestState s, EntryState e) throws Exception {
+        int ledgerId = ThreadLocalRandom.current().nextInt(s.ledgers);
+        long entryId = s.nextEntryId(ledgerId);
+        e.entry.setLong(0, ledgerId);
+        e.entry.setLong(8, entryId);
+        e.entry.setLong(16, entryId - 1);
+        return s.storage.addEntry(e.entry);
+    }
+}
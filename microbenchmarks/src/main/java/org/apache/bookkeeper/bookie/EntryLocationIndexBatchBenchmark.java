@@ -0,0 +1,111 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryLocationIndex;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the batched entry location writes done when flushing the write cache.
+ *
+ * <p>The index directory is created in {@code baseDir}, eg: a tmpfs mount or a local disk, or in the default temp
+ * directory when it is empty.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLocationIndexBatchBenchmark {
+
+    private static final int ENTRIES_PER_BATCH = 10_000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"1", "100"})
+        private int ledgers;
+
+        @Param({""})
+        private String baseDir;
+
+        private File dir;
+        private EntryLocationIndex index;
+        private long[] nextEntryIds;
+        private long location = 1;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = baseDir.isEmpty()
+                    ? Files.createTempDirectory("entry-location-index-batch-benchmark").toFile()
+                    : Files.createTempDirectory(Paths.get(baseDir), "entry-location-index-batch-benchmark").toFile();
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { dir.getAbsolutePath() });
+
+            index = new EntryLocationIndex(conf, KeyValueStorageRocksDB::new, dir.getAbsolutePath(),
+                    NullStatsLogger.INSTANCE);
+            nextEntryIds = new long[ledgers];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            index.close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES_PER_BATCH)
+    public void addLocations(TestState s) throws Exception {
+        // Entries are added in the order of the sorted write cache: by ledger, then by entry
+        try (Batch batch = s.index.newBatch()) {
+            int entriesPerLedger = ENTRIES_PER_BATCH / s.ledgers;
+            for (int ledgerId = 0; ledgerId < s.ledgers; ledgerId++) {
+                for (int i = 0; i < entriesPerLedger; i++) {
+                    s.index.addLocation(batch, ledgerId, s.nextEntryIds[ledgerId]++, s.location++);
+                }
+            }
+            batch.flush();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.EntryLocationIndex;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorage.Batch;
+import org.apache.bookkeeper.bookie.storage.ldb.KeyValueStorageRocksDB;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the entry location lookups, with and without the entry location cache.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class EntryLocationIndexBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"0", "64"})
+        private int locationCacheSizeMb;
+
+        @Param({"100"})
+        private int ledgers;
+
+        @Param({"10000"})
+        private int entriesPerLedger;
+
+        private File dir;
+        private EntryLocationIndex index;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = Files.createTempDirectory("entry-location-index-benchmark").toFile();
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setLedgerDirNames(new String[] { dir.getAbsolutePath() });
+            conf.setProperty("dbStorage_entryLocationCacheMaxSizeMb", locationCacheSizeMb);
+
+            index = new EntryLocationIndex(conf, KeyValueStorageRocksDB::new, dir.getAbsolutePath(),
+                    NullStatsLogger.INSTANCE);
+
+            Batch batch = index.newBatch();
+            for (long ledgerId = 0; ledgerId < ledgers; ledgerId++) {
+                for (long entryId = 0; entryId < entriesPerLedger; entryId++) {
+                    index.addLocation(batch, ledgerId, entryId, (ledgerId << 32) + entryId + 1);
+                }
+            }
+            batch.flush();
+            batch.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            index.close();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    public long getLocation(TestState s) throws Exception {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        return s.index.getLocation(r.nextInt(s.ledgers), r.nextInt(s.entriesPerLedger));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.bookkeeper.conf.ServerConfiguration;
+import org.apache.bookkeeper.proto.BookkeeperInternalCallbacks.WriteCallback;
+import org.apache.bookkeeper.stats.NullStatsLogger;
+import org.apache.bookkeeper.util.DiskChecker;
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the journal adds, from {@link Journal#logAddEntry} to the acknowledgement of the entries
+ * after they were written and synced.
+ *
+ * <p>Each invocation adds a batch of entries spread over the ledgers and waits for all of them to be acknowledged,
+ * so that the journal can group them in the same writes and syncs, as with concurrent writers.
+ *
+ * <p>The journal directory is created in {@code baseDir}, eg: a tmpfs mount or a local disk, or in the default temp
+ * directory when it is empty.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class JournalAddEntryBenchmark {
+
+    private static final int ENTRIES_PER_INVOCATION = 1000;
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Benchmark)
+    public static class TestState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "100"})
+        private int ledgers;
+
+        @Param({"true", "false"})
+        private boolean journalSyncData;
+
+        @Param({""})
+        private String baseDir;
+
+        private File dir;
+        private Journal journal;
+        private ByteBuf entry;
+        private long[] nextEntryIds;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            dir = baseDir.isEmpty()
+                    ? Files.createTempDirectory("journal-benchmark").toFile()
+                    : Files.createTempDirectory(Paths.get(baseDir), "journal-benchmark").toFile();
+            File journalDir = BookieImpl.getCurrentDirectory(new File(dir, "journal"));
+            journalDir.mkdirs();
+            File ledgerDir = new File(dir, "ledgers");
+            BookieImpl.getCurrentDirectory(ledgerDir).mkdirs();
+
+            ServerConfiguration conf = new ServerConfiguration();
+            conf.setJournalDirName(journalDir.getParent());
+            conf.setLedgerDirNames(new String[] { ledgerDir.getAbsolutePath() });
+            conf.setJournalSyncData(journalSyncData);
+
+            LedgerDirsManager ledgerDirsManager = new LedgerDirsManager(conf, conf.getLedgerDirs(),
+                    new DiskChecker(conf.getDiskUsageThreshold(), conf.getDiskUsageWarnThreshold()));
+            journal = new Journal(0, journalDir, conf, ledgerDirsManager, NullStatsLogger.INSTANCE,
+                    PooledByteBufAllocator.DEFAULT);
+            journal.start();
+
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+            nextEntryIds = new long[ledgers];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() throws Exception {
+            journal.shutdown();
+            entry.release();
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ENTRIES_PER_INVOCATION)
+    public void logAddEntry(TestState s) throws Exception {
+        CountDownLatch latch = new CountDownLatch(ENTRIES_PER_INVOCATION);
+        AtomicInteger failures = new AtomicInteger();
+        WriteCallback cb = (rc, ledgerId, entryId, addr, ctx) -> {
+            if (rc != 0) {
+                failures.incrementAndGet();
+            }
+            latch.countDown();
+        };
+
+        for (int i = 0; i < ENTRIES_PER_INVOCATION; i++) {
+            int ledgerId = i % s.ledgers;
+            // The journal only reads the entry, the same buffer can be queued many times
+            s.journal.logAddEntry(ledgerId, s.nextEntryIds[ledgerId]++, s.entry, false, cb, null);
+        }
+
+        latch.await();
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " journal adds failed");
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.bookie;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Microbenchmarks for the write cache insertions, and for the sorted iteration done when flushing it.
+ */
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 1, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class WriteCacheBenchmark {
+
+    private static final long WRITE_CACHE_SIZE = 256 * 1024 * 1024;
+
+    /**
+     * State holder of the insertions.
+     */
+    @State(Scope.Thread)
+    public static class PutState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "100"})
+        private int ledgers;
+
+        private WriteCache writeCache;
+        private ByteBuf entry;
+        private long[] nextEntryIds;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            writeCache = new WriteCache(PooledByteBufAllocator.DEFAULT, WRITE_CACHE_SIZE);
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+            nextEntryIds = new long[ledgers];
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            writeCache.close();
+            entry.release();
+        }
+    }
+
+    /**
+     * State holder of the sorted iteration, with a write cache filled once.
+     */
+    @State(Scope.Thread)
+    public static class ForEachState {
+        @Param({"100", "1024", "65536"})
+        private int entrySize;
+
+        @Param({"1", "100"})
+        private int ledgers;
+
+        @Param({"10000"})
+        private int entries;
+
+        private WriteCache writeCache;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            writeCache = new WriteCache(PooledByteBufAllocator.DEFAULT, (long) entries * entrySize * 2);
+            ByteBuf entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize);
+            entry.writeZero(entrySize);
+            // Interleave the ledgers, as with concurrent writers, so that the iteration has to sort the entries
+            for (int i = 0; i < entries; i++) {
+                writeCache.put(i % ledgers, i / ledgers, entry);
+            }
+            entry.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            writeCache.close();
+        }
+    }
+
+    @Benchmark
+    public boolean put(PutState s) {
+        int ledgerId = ThreadLocalRandom.current().nextInt(s.ledgers);
+        long entryId = s.nextEntryIds[ledgerId]++;
+        if (!s.writeCache.put(ledgerId, entryId, s.entry)) {
+            s.writeCache.clear();
+            return s.writeCache.put(ledgerId, entryId, s.entry);
+        }
+        return true;
+    }
+
+    @Benchmark
+    public void forEach(ForEachState s, Blackhole bh) throws Exception {
+        s.writeCache.forEach((ledgerId, entryId, entry) -> bh.consume(entry));
+    }
+}
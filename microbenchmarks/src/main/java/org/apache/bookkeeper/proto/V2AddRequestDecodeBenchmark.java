@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.bookkeeper.proto;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.bookie.storage.ldb.WriteCache;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark the path of a V2 add request from the socket reads to the write cache: the frame decoder, the request
+ * decoder and the insertion in the write cache.
+ *
+ * <p>The frames are received in {@code chunkSize} reads, so that large entries go through the cumulation of the
+ * frame decoder, with either the default merge cumulator or the composite cumulator.
+ *
+ * <p>The {@code copiedBytes} counter reports the bytes of the entries copied by the frame decoder and the write cache,
+ * at the same rate as the adds, so the bytes copied per add are {@code copiedBytes / addRequest}.
+ */
+@BenchmarkMode({Mode.Throughput})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class V2AddRequestDecodeBenchmark {
+
+    private static final int MAX_FRAME_SIZE = 5 * 1024 * 1024;
+    private static final long WRITE_CACHE_SIZE = 256 * 1024 * 1024;
+
+    @Param({"1024", "65536", "1048576"})
+    int entrySize;
+
+    @Param({"65536"})
+    int chunkSize;
+
+    @Param({"false", "true"})
+    boolean compositeCumulation;
+
+    private EmbeddedChannel channel;
+    private WriteCache writeCache;
+    private ByteBuf frame;
+    private long ledgerId;
+    private long entryId;
+
+    private ByteToMessageDecoder.Cumulator cumulator;
+    private long cumulatorCopiedBytes;
+
+    /**
+     * Bytes copied on the add path, reported by JMH next to the adds.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class CopyCounters {
+        public long copiedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            copiedBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        LengthFieldBasedFrameDecoder frameDecoder = new LengthFieldBasedFrameDecoder(MAX_FRAME_SIZE, 0, 4, 0, 4);
+        cumulator = compositeCumulation
+                ? ByteToMessageDecoder.COMPOSITE_CUMULATOR
+                : ByteToMessageDecoder.MERGE_CUMULATOR;
+        frameDecoder.setCumulator(this::countingCumulate);
+        channel = new EmbeddedChannel(frameDecoder, new BookieProtoEncoding.RequestDecoder(null));
+        writeCache = new WriteCache(ByteBufAllocator.DEFAULT, WRITE_CACHE_SIZE);
+
+        ledgerId = ThreadLocalRandom.current().nextLong(Long.MAX_VALUE);
+        byte[] payload = new byte[entrySize];
+        ThreadLocalRandom.current().nextBytes(payload);
+
+        int frameSize = 4 // for request type
+                + BookieProtocol.MASTER_KEY_LENGTH
+                + 8 // for ledgerId
+                + 8 // for entryId
+                + entrySize;
+        frame = ByteBufAllocator.DEFAULT.directBuffer(frameSize + 4);
+        frame.writeInt(frameSize);
+        frame.writeInt(BookieProtocol.PacketHeader.toInt(BookieProtocol.CURRENT_PROTOCOL_VERSION,
+                BookieProtocol.ADDENTRY, BookieProtocol.FLAG_NONE));
+        frame.writeZero(BookieProtocol.MASTER_KEY_LENGTH);
+        frame.writeLong(ledgerId);
+        frame.writeLong(0L);
+        frame.writeBytes(payload);
+    }
+
+    @TearDown
+    public void teardown() {
+        channel.finishAndReleaseAll();
+        writeCache.close();
+        frame.release();
+    }
+
+    /**
+     * Cumulate with the cumulator of the benchmark, counting the bytes it copies: the received bytes when they are
+     * merged into the cumulation, and the cumulation too when it is moved into a new buffer.
+     */
+    private ByteBuf countingCumulate(ByteBufAllocator alloc, ByteBuf cumulation, ByteBuf in) {
+        int cumulationBytes = cumulation.readableBytes();
+        int inBytes = in.readableBytes();
+        ByteBuf result = cumulator.cumulate(alloc, cumulation, in);
+        if (result == in) {
+            // The received buffer is used as is
+            return result;
+        }
+        if (result != cumulation) {
+            cumulatorCopiedBytes += cumulationBytes + inBytes;
+        } else if (!(result instanceof CompositeByteBuf)) {
+            cumulatorCopiedBytes += inBytes;
+        }
+        return result;
+    }
+
+    @Benchmark
+    public void addRequest(CopyCounters counters) {
+        // Deliver the frame in chunks, as it would be read from the socket
+        for (int offset = 0; offset < frame.readableBytes(); offset += chunkSize) {
+            int length = Math.min(chunkSize, frame.readableBytes() - offset);
+            ByteBuf chunk = ByteBufAllocator.DEFAULT.directBuffer(length);
+            chunk.writeBytes(frame, offset, length);
+            channel.writeInbound(chunk);
+        }
+
+        BookieProtocol.ParsedAddRequest request = channel.readInbound();
+        counters.copiedBytes += cumulatorCopiedBytes + request.getData().readableBytes();
+        cumulatorCopiedBytes = 0;
+        try {
+            if (!writeCache.put(ledgerId, entryId++, request.getData())) {
+                writeCache.clear();
+                writeCache.put(ledgerId, entryId++, request.getData());
+            }
+        } finally {
+            request.release();
+            request.recycle();
+        }
+    }
+}
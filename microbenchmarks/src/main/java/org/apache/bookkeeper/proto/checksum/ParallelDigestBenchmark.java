@@ -0,0 +1,130 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+
+package org.apache.bookkeeper.proto.checksum;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.ReferenceCounted;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.apache.bookkeeper.proto.DataFormats.LedgerMetadataFormat.DigestType;
+import org.apache.bookkeeper.util.ByteBufList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmarks for the CRC32C digests of the entries, computed sequentially or in parallel chunks.
+ *
+ * <p>With {@code digestThreads} set to 0 the digests are computed by the benchmark thread only, otherwise the entries
+ * of at least two chunks are split between the benchmark thread and the digest threads.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 2, time = 3, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+public class ParallelDigestBenchmark {
+
+    /**
+     * State holder of the test.
+     */
+    @State(Scope.Thread)
+    public static class TestState {
+        @Param({"100", "4096", "65536", "1048576", "5242880"})
+        private int entrySize;
+
+        @Param({"0", "4"})
+        private int digestThreads;
+
+        @Param({"262144"})
+        private int chunkSize;
+
+        @Param({"true", "false"})
+        private boolean useV2Protocol;
+
+        private ExecutorService executor;
+        private DigestManager dm;
+        private ByteBuf entry;
+        private ByteBuf packet;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            long ledgerId = ThreadLocalRandom.current().nextLong(0, Long.MAX_VALUE);
+            dm = DigestManager.instantiate(ledgerId, new byte[0], DigestType.CRC32C, PooledByteBufAllocator.DEFAULT,
+                    useV2Protocol);
+            if (digestThreads > 0) {
+                executor = Executors.newFixedThreadPool(digestThreads, new DefaultThreadFactory("digest"));
+                dm.setParallelDigest(executor, chunkSize);
+            }
+
+            entry = PooledByteBufAllocator.DEFAULT.directBuffer(entrySize, entrySize);
+            byte[] data = new byte[entrySize];
+            ThreadLocalRandom.current().nextBytes(data);
+            entry.writeBytes(data);
+
+            // The entry as received by the client: the digest header followed by the payload
+            DigestManager v3Dm = DigestManager.instantiate(ledgerId, new byte[0], DigestType.CRC32C,
+                    PooledByteBufAllocator.DEFAULT, false);
+            ByteBufList toSend = (ByteBufList) v3Dm.computeDigestAndPackageForSending(1234, 1233, entrySize,
+                    entry.retainedDuplicate(), new byte[20], 0);
+            packet = ByteBufList.coalesce(toSend);
+            toSend.release();
+        }
+
+        @TearDown(Level.Trial)
+        public void teardown() {
+            if (executor != null) {
+                executor.shutdown();
+            }
+            entry.release();
+            packet.release();
+        }
+    }
+
+    @Benchmark
+    public void computeDigest(TestState s) {
+        ReferenceCounted toSend = s.dm.computeDigestAndPackageForSending(1234, 1233, s.entrySize,
+                s.entry.retainedDuplicate(), new byte[20], 0);
+        ReferenceCountUtil.release(toSend);
+    }
+
+    @Benchmark
+    public ByteBuf verifyDigest(TestState s) throws Exception {
+        s.packet.readerIndex(0);
+        return s.dm.verifyDigestAndReturnData(1234, s.packet);
+    }
+}